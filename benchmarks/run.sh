@@ -0,0 +1,52 @@
+#!/usr/bin/env bash
+#
+# Copyright (C) 2015 Red Hat, Inc.
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#         http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+#
+
+# Builds and runs the JMH benchmarks, then compares the results with the stored baseline.
+#
+# Usage: benchmarks/run.sh [--save-baseline] [--threads 1,4,8] [JMH options and benchmark regexp]
+
+set -euo pipefail
+
+BENCHMARKS_DIR="$(cd "$(dirname "$0")" && pwd)"
+BASELINE="${BASELINE:-$BENCHMARKS_DIR/baseline.json}"
+RESULTS="$BENCHMARKS_DIR/target/results.json"
+MAX_REGRESSION="${MAX_REGRESSION:-10}"
+
+SAVE_BASELINE=false
+ARGS=()
+for arg in "$@"; do
+  if [ "$arg" == "--save-baseline" ]; then
+    SAVE_BASELINE=true
+  else
+    ARGS+=("$arg")
+  fi
+done
+
+mvn -B -q -f "$BENCHMARKS_DIR/../pom.xml" install -DskipTests
+mvn -B -q -f "$BENCHMARKS_DIR/pom.xml" package
+
+java -jar "$BENCHMARKS_DIR/target/benchmarks.jar" --result "$RESULTS" "${ARGS[@]+"${ARGS[@]}"}"
+
+if [ "$SAVE_BASELINE" == "true" ]; then
+  cp "$RESULTS" "$BASELINE"
+  echo "Baseline saved to $BASELINE"
+elif [ -f "$BASELINE" ]; then
+  java -cp "$BENCHMARKS_DIR/target/benchmarks.jar" io.fabric8.mockwebserver.benchmarks.CompareBaseline \
+    "$BASELINE" "$RESULTS" "$MAX_REGRESSION"
+else
+  echo "No baseline found at $BASELINE, run with --save-baseline to store one"
+fi
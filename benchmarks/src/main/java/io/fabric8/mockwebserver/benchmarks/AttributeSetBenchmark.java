@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.benchmarks;
+
+import io.fabric8.mockwebserver.crud.Attribute;
+import io.fabric8.mockwebserver.crud.AttributeSet;
+import io.fabric8.mockwebserver.crud.AttributeType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link AttributeSet#matches(AttributeSet)} for the different attribute types.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AttributeSetBenchmark {
+
+    @Param({"2", "16"})
+    public int attributes;
+
+    @Param({"WITH", "WITHOUT", "IN", "EXISTS"})
+    public AttributeType queryType;
+
+    private AttributeSet stored;
+    private AttributeSet query;
+
+    @Setup
+    public void setUp() {
+        Attribute[] storedAttributes = new Attribute[attributes];
+        for (int i = 0; i < attributes; i++) {
+            storedAttributes[i] = new Attribute("key" + i, "value" + i);
+        }
+        stored = new AttributeSet(storedAttributes);
+        String key = "key" + (attributes - 1);
+        String value = "value" + (attributes - 1);
+        switch (queryType) {
+            case IN:
+                query = new AttributeSet(new Attribute(key, Arrays.asList("other", value), AttributeType.IN));
+                break;
+            case WITHOUT:
+                query = new AttributeSet(new Attribute(key, "other", AttributeType.WITHOUT));
+                break;
+            default:
+                query = new AttributeSet(new Attribute(key, value, queryType));
+        }
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return stored.matches(query);
+    }
+}
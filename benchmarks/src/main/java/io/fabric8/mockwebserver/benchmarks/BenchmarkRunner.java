@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the benchmarks once per requested thread count and merges the JMH JSON results into a single file.
+ *
+ * <p> Usage: {@code java -jar benchmarks.jar [--threads 1,4,8] [--result results.json] [JMH options]}
+ */
+public class BenchmarkRunner {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws IOException, RunnerException, CommandLineOptionException {
+        int[] threads = {1};
+        File result = new File("target/results.json");
+        List<String> jmhArgs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if ("--threads".equals(args[i]) && i + 1 < args.length) {
+                threads = Arrays.stream(args[++i].split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+            } else if ("--result".equals(args[i]) && i + 1 < args.length) {
+                result = new File(args[++i]);
+            } else {
+                jmhArgs.add(args[i]);
+            }
+        }
+        CommandLineOptions commandLineOptions = new CommandLineOptions(jmhArgs.toArray(new String[0]));
+        ArrayNode merged = MAPPER.createArrayNode();
+        for (int threadCount : threads) {
+            File partial = File.createTempFile("jmh-t" + threadCount + "-", ".json");
+            try {
+                ChainedOptionsBuilder options = new OptionsBuilder()
+                    .parent(commandLineOptions)
+                    .threads(threadCount)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(partial.getAbsolutePath());
+                new Runner(options.build()).run();
+                for (JsonNode benchmark : MAPPER.readTree(partial)) {
+                    merged.add(benchmark);
+                }
+            } finally {
+                if (!partial.delete()) {
+                    partial.deleteOnExit();
+                }
+            }
+        }
+        File parent = result.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Unable to create " + parent);
+        }
+        MAPPER.writerWithDefaultPrettyPrinter().writeValue(result, merged);
+        System.out.println("Results written to " + result.getAbsolutePath());
+    }
+}
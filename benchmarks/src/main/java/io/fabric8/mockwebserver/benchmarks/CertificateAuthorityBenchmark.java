@@ -0,0 +1,74 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.benchmarks;
+
+import io.fabric8.mockwebserver.tls.CertificateAuthority;
+import io.fabric8.mockwebserver.tls.SniKeyManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.KeyStore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures issuing a server certificate with {@link CertificateAuthority} and retrieving an already issued one from
+ * the {@link SniKeyManager} cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CertificateAuthorityBenchmark {
+
+    private static final int HOSTS = 128;
+
+    private CertificateAuthority authority;
+    private SniKeyManager keyManager;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        authority = new CertificateAuthority();
+        keyManager = new SniKeyManager(authority, "localhost", HOSTS);
+        for (int i = 0; i < HOSTS; i++) {
+            keyManager.getEntry(host(i));
+        }
+    }
+
+    @Benchmark
+    public KeyStore.PrivateKeyEntry issue() {
+        return authority.issue(host(next++ % HOSTS));
+    }
+
+    @Benchmark
+    public KeyStore.PrivateKeyEntry cached() {
+        return keyManager.getEntry(host(next++ % HOSTS));
+    }
+
+    private static String host(int index) {
+        return "host-" + index + ".example.com";
+    }
+}
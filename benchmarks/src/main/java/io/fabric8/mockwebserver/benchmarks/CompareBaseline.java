@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares two JMH JSON result files and reports the relative change of every benchmark present in both.
+ *
+ * <p> Usage: {@code java -cp benchmarks.jar io.fabric8.mockwebserver.benchmarks.CompareBaseline baseline.json results.json [maxRegressionPercent]}
+ *
+ * <p> Exits with status 1 if any benchmark regressed more than the allowed percentage (10% by default).
+ */
+public class CompareBaseline {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private CompareBaseline() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: CompareBaseline <baseline.json> <results.json> [maxRegressionPercent]");
+            System.exit(2);
+        }
+        double maxRegression = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+        Map<String, JsonNode> baseline = index(MAPPER.readTree(new File(args[0])));
+        Map<String, JsonNode> current = index(MAPPER.readTree(new File(args[1])));
+        int regressions = 0;
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode previous = baseline.get(entry.getKey());
+            if (previous == null) {
+                System.out.printf("%-100s %14s%n", entry.getKey(), "new");
+                continue;
+            }
+            double before = previous.path("primaryMetric").path("score").asDouble();
+            double after = entry.getValue().path("primaryMetric").path("score").asDouble();
+            // Throughput scores are better when higher, time based scores when lower
+            boolean higherIsBetter = "thrpt".equals(entry.getValue().path("mode").asText());
+            double change = before == 0 ? 0 : (after - before) * 100 / before;
+            double regression = higherIsBetter ? -change : change;
+            boolean regressed = regression > maxRegression;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-100s %+13.2f%% %s%n", entry.getKey(), change, regressed ? "REGRESSION" : "");
+        }
+        if (regressions > 0) {
+            System.out.printf("%d benchmark(s) regressed more than %.1f%%%n", regressions, maxRegression);
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, JsonNode> index(JsonNode results) {
+        Map<String, JsonNode> index = new LinkedHashMap<>();
+        for (JsonNode result : results) {
+            StringBuilder key = new StringBuilder(result.path("benchmark").asText());
+            JsonNode params = result.path("params");
+            for (Iterator<Map.Entry<String, JsonNode>> it = params.fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> param = it.next();
+                key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText());
+            }
+            key.append(" threads=").append(result.path("threads").asInt());
+            index.put(key.toString(), result);
+        }
+        return index;
+    }
+}
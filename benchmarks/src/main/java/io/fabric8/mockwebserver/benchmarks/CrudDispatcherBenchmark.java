@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.benchmarks;
+
+import io.fabric8.mockwebserver.Context;
+import io.fabric8.mockwebserver.crud.CrudDispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link CrudDispatcher} GET, POST and PATCH handlers for a populated store.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CrudDispatcherBenchmark {
+
+    private static final String PATCH = "[{\"op\":\"replace\",\"path\":\"/spec/replicas\",\"value\":2}]";
+
+    @Param({"100", "10000"})
+    public int storeSize;
+
+    @Param({"64", "16384"})
+    public int bodySize;
+
+    private CrudDispatcher dispatcher;
+    private String[] paths;
+    private String[] resources;
+
+    @Setup
+    public void setUp() {
+        dispatcher = new CrudDispatcher(new Context(), new Fixtures.PathAttributeExtractor(), new Fixtures.JsonArrayComposer());
+        paths = new String[storeSize];
+        resources = new String[storeSize];
+        for (int i = 0; i < storeSize; i++) {
+            paths[i] = Fixtures.resourcePath(i);
+            resources[i] = Fixtures.resource(i, bodySize);
+            dispatcher.handleCreate(paths[i], resources[i]);
+        }
+    }
+
+    @Benchmark
+    public MockResponse handleGet(MockDispatcherBenchmark.Cursor cursor) {
+        return dispatcher.handleGet(paths[cursor.next(storeSize)]);
+    }
+
+    @Benchmark
+    public MockResponse handleGetNamespace() {
+        return dispatcher.handleGet("/namespaces/ns1");
+    }
+
+    @Benchmark
+    public MockResponse handleCreate(MockDispatcherBenchmark.Cursor cursor) {
+        int index = cursor.next(storeSize);
+        return dispatcher.handleCreate(paths[index], resources[index]);
+    }
+
+    @Benchmark
+    public MockResponse handlePatch(MockDispatcherBenchmark.Cursor cursor) {
+        return dispatcher.handlePatch(paths[cursor.next(storeSize)], PATCH);
+    }
+}
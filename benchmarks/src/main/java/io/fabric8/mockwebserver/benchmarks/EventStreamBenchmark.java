@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.benchmarks;
+
+import io.fabric8.mockwebserver.Context;
+import io.fabric8.mockwebserver.events.EventStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the fan-out of a batch of events published to an {@link EventStream} until every watcher has written it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class EventStreamBenchmark {
+
+    @Param({"1", "100", "1000"})
+    public int watchers;
+
+    @Param({"1", "16"})
+    public int batchSize;
+
+    private EventStream stream;
+    private List<String> batch;
+    private Sink[] sinks;
+    private long frameLength;
+    private long expected;
+
+    @Setup
+    public void setUp() throws InterruptedException {
+        stream = new EventStream(EventStream.Format.WATCH, new Context(), 1 << 16);
+        batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            batch.add(Fixtures.body(256));
+        }
+        // Chunk size, CRLF, event and its line feed, CRLF
+        frameLength = Integer.toHexString(257).length() + 2 + 257 + 2;
+        sinks = new Sink[watchers];
+        for (int i = 0; i < watchers; i++) {
+            final Sink sink = new Sink();
+            final EventStream.Watcher watcher = stream.watch();
+            final Thread thread = new Thread(() -> {
+                try {
+                    watcher.writeTo(sink);
+                } catch (Exception e) {
+                    // Closed on tear down
+                }
+            }, "watcher-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            sinks[i] = sink;
+        }
+        stream.awaitWatchers(watchers, 10, TimeUnit.SECONDS);
+    }
+
+    @TearDown
+    public void tearDown() {
+        stream.close();
+    }
+
+    @Benchmark
+    public long sendAll() {
+        stream.sendAll(batch);
+        expected += batchSize * frameLength;
+        for (Sink sink : sinks) {
+            while (sink.written < expected) {
+                Thread.yield();
+            }
+        }
+        return expected;
+    }
+
+    /**
+     * Discards the written bytes, publishing their count on flush.
+     */
+    private static final class Sink extends OutputStream {
+
+        private long pending;
+        private volatile long written;
+
+        @Override
+        public void write(int b) {
+            pending++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            pending += len;
+        }
+
+        @Override
+        public void flush() {
+            written = pending;
+        }
+    }
+}
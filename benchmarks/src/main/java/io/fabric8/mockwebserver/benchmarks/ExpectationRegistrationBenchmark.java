@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.benchmarks;
+
+import io.fabric8.mockwebserver.DefaultMockServer;
+import io.fabric8.mockwebserver.ExpectationSpec;
+import io.fabric8.mockwebserver.dsl.HttpMethod;
+import okhttp3.mockwebserver.MockWebServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Compares registering a fixture set through the {@code expect()} DSL and through {@code expectAll}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpectationRegistrationBenchmark {
+
+    @Param({"10000"})
+    public int expectations;
+
+    private String[] paths;
+    private String body;
+
+    @Setup
+    public void setUp() {
+        paths = new String[expectations];
+        for (int i = 0; i < expectations; i++) {
+            paths[i] = Fixtures.resourcePath(i);
+        }
+        body = Fixtures.resource(0, 128);
+    }
+
+    @Benchmark
+    public DefaultMockServer dsl() {
+        DefaultMockServer server = newServer();
+        for (String path : paths) {
+            server.expect().get().withPath(path).andReturn(200, body)
+                .withHeader("Content-Type", "application/json").withHeader("X-Fixture", "true").always();
+        }
+        return server;
+    }
+
+    @Benchmark
+    public DefaultMockServer expectAll() {
+        DefaultMockServer server = newServer();
+        server.expectAll(IntStream.range(0, paths.length).mapToObj(i -> ExpectationSpec.of(HttpMethod.GET, paths[i], 200, body)
+            .withHeader("Content-Type", "application/json").withHeader("X-Fixture", "true").always()));
+        return server;
+    }
+
+    private static DefaultMockServer newServer() {
+        return new DefaultMockServer(new MockWebServer(), new ConcurrentHashMap<>(), false);
+    }
+}
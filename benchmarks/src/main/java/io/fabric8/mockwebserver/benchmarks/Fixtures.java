@@ -0,0 +1,96 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.benchmarks;
+
+import io.fabric8.mockwebserver.crud.Attribute;
+import io.fabric8.mockwebserver.crud.AttributeExtractor;
+import io.fabric8.mockwebserver.crud.AttributeSet;
+import io.fabric8.mockwebserver.crud.ResponseComposer;
+import okhttp3.Headers;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+import java.net.Socket;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.stream.Collectors;
+
+/**
+ * Shared fixtures for the benchmarks.
+ */
+final class Fixtures {
+
+    private static final Socket SOCKET = new Socket();
+
+    private Fixtures() {
+        //Utility class
+    }
+
+    static RecordedRequest request(String method, String path) {
+        return new RecordedRequest(method + " " + path + " HTTP/1.1", Headers.of(), Collections.emptyList(), 0,
+            new Buffer(), 0, SOCKET);
+    }
+
+    static String body(int size) {
+        StringBuilder sb = new StringBuilder(size);
+        for (int i = 0; i < size; i++) {
+            sb.append((char) ('a' + i % 26));
+        }
+        return sb.toString();
+    }
+
+    static String resourcePath(int index) {
+        return "/namespaces/ns" + (index % 10) + "/resources/r" + index;
+    }
+
+    static String resource(int index, int dataSize) {
+        return "{\"metadata\":{\"namespace\":\"ns" + (index % 10) + "\",\"name\":\"r" + index + "\"}," +
+            "\"spec\":{\"replicas\":1,\"data\":\"" + body(dataSize) + "\"}}";
+    }
+
+    /**
+     * Extracts the namespace and name attributes from paths with the
+     * {@code /namespaces/{namespace}/resources/{name}} format.
+     */
+    static final class PathAttributeExtractor implements AttributeExtractor {
+
+        @Override
+        public AttributeSet fromPath(String path) {
+            AttributeSet set = new AttributeSet();
+            String[] parts = path.split("/");
+            if (parts.length > 2) {
+                set = set.add(new Attribute("namespace", parts[2]));
+            }
+            if (parts.length > 4) {
+                set = set.add(new Attribute("name", parts[4]));
+            }
+            return set;
+        }
+
+        @Override
+        public AttributeSet fromResource(String resource) {
+            return new AttributeSet();
+        }
+    }
+
+    static final class JsonArrayComposer implements ResponseComposer {
+
+        @Override
+        public String compose(Collection<String> items) {
+            return items.stream().collect(Collectors.joining(",", "[", "]"));
+        }
+    }
+}
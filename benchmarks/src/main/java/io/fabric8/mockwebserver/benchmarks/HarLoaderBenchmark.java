@@ -0,0 +1,79 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.benchmarks;
+
+import io.fabric8.mockwebserver.ServerRequest;
+import io.fabric8.mockwebserver.ServerResponse;
+import io.fabric8.mockwebserver.replay.HarLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time it takes to load a HAR file with the provided number of entries spread over 1000 paths.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HarLoaderBenchmark {
+
+    @Param({"1000", "100000"})
+    public int entries;
+
+    private byte[] har;
+
+    @Setup
+    public void setUp() {
+        StringBuilder sb = new StringBuilder("{\"log\":{\"version\":\"1.2\",\"entries\":[");
+        for (int i = 0; i < entries; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"request\":{\"method\":\"GET\",\"url\":\"https://example.com").append(Fixtures.resourcePath(i % 1000))
+                .append("\",\"headers\":[{\"name\":\"Accept\",\"value\":\"application/json\"}]},")
+                .append("\"response\":{\"status\":200,\"headers\":[{\"name\":\"Content-Type\",\"value\":\"application/json\"}],")
+                .append("\"content\":{\"mimeType\":\"application/json\",\"text\":\"")
+                .append(Fixtures.resource(i, 128).replace("\"", "\\\"")).append("\"}},\"timings\":{\"wait\":1}}");
+        }
+        har = sb.append("]}}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Map<ServerRequest, Queue<ServerResponse>> load() throws IOException {
+        Map<ServerRequest, Queue<ServerResponse>> responses = new ConcurrentHashMap<>();
+        new HarLoader().load(new ByteArrayInputStream(har), responses);
+        return responses;
+    }
+}
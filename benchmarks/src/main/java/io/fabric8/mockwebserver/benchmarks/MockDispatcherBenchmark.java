@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.benchmarks;
+
+import io.fabric8.mockwebserver.Context;
+import io.fabric8.mockwebserver.ServerRequest;
+import io.fabric8.mockwebserver.ServerResponse;
+import io.fabric8.mockwebserver.internal.MockDispatcher;
+import io.fabric8.mockwebserver.internal.MockServerExpectationImpl;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link MockDispatcher#dispatch(RecordedRequest)} for repeatable expectations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MockDispatcherBenchmark {
+
+    private static final int DISTINCT_REQUESTS = 1024;
+
+    @Param({"10", "1000", "10000"})
+    public int expectations;
+
+    @Param({"64", "16384"})
+    public int bodySize;
+
+    private MockDispatcher dispatcher;
+    private RecordedRequest[] requests;
+
+    @Setup
+    public void setUp() {
+        Context context = new Context();
+        Map<ServerRequest, Queue<ServerResponse>> responses = new ConcurrentHashMap<>();
+        String body = Fixtures.body(bodySize);
+        for (int i = 0; i < expectations; i++) {
+            new MockServerExpectationImpl(responses, context).get().withPath(Fixtures.resourcePath(i))
+                .andReturn(200, body).always();
+        }
+        dispatcher = new MockDispatcher(responses);
+        requests = new RecordedRequest[DISTINCT_REQUESTS];
+        for (int i = 0; i < requests.length; i++) {
+            requests[i] = Fixtures.request("GET", Fixtures.resourcePath(i % expectations));
+        }
+    }
+
+    @Benchmark
+    public MockResponse dispatch(Cursor cursor) throws InterruptedException {
+        return dispatcher.dispatch(requests[cursor.next(requests.length)]);
+    }
+
+    @Benchmark
+    public MockResponse dispatchNotFound() throws InterruptedException {
+        return dispatcher.dispatch(Fixtures.request("GET", "/not/registered"));
+    }
+
+    /**
+     * Per-thread position over the prepared requests.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int position;
+
+        int next(int bound) {
+            position = (position + 1) % bound;
+            return position;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.benchmarks;
+
+import io.fabric8.mockwebserver.Context;
+import io.fabric8.mockwebserver.crud.CrudDispatcher;
+import io.fabric8.mockwebserver.crud.PatchType;
+import okhttp3.mockwebserver.MockResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link CrudDispatcher} patch modes when updating the image of a single container of a large resource.
+ *
+ * <p> JSON Patch addresses the container by index, strategic merge patch by name, and JSON Merge Patch has to
+ * send the whole container list since lists can't be merged.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PatchBenchmark {
+
+    private static final String PATH = "/namespaces/ns0/resources/r0";
+
+    @Param({"JSON", "MERGE", "STRATEGIC_MERGE"})
+    public PatchType patchType;
+
+    @Param({"10", "1000"})
+    public int containers;
+
+    private CrudDispatcher dispatcher;
+    private String[] patches;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        dispatcher = new CrudDispatcher(new Context(), new Fixtures.PathAttributeExtractor(), new Fixtures.JsonArrayComposer());
+        dispatcher.handleCreate(PATH, resource(containers, -1));
+        // Alternate the values so every patch is an actual modification
+        patches = new String[] {patch(1), patch(2)};
+    }
+
+    @Benchmark
+    public MockResponse handlePatch() {
+        next ^= 1;
+        return dispatcher.handlePatch(PATH, patchType.getContentType(), patches[next]);
+    }
+
+    private String patch(int revision) {
+        int target = containers / 2;
+        switch (patchType) {
+            case JSON:
+                return "[{\"op\":\"replace\",\"path\":\"/spec/containers/" + target + "/image\",\"value\":\"image:" + revision + "\"}]";
+            case MERGE:
+                return resource(containers, revision).replaceFirst("^\\{\"metadata\":\\{[^}]*},", "{");
+            default:
+                return "{\"spec\":{\"containers\":[{\"name\":\"c" + target + "\",\"image\":\"image:" + revision + "\"}]}}";
+        }
+    }
+
+    /**
+     * Builds a resource with the provided number of containers, the one in the middle has the provided revision.
+     */
+    private static String resource(int containers, int revision) {
+        StringBuilder sb = new StringBuilder("{\"metadata\":{\"namespace\":\"ns0\",\"name\":\"r0\"},\"spec\":{\"containers\":[");
+        for (int i = 0; i < containers; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            String image = i == containers / 2 && revision >= 0 ? "image:" + revision : "image:0";
+            sb.append("{\"name\":\"c").append(i).append("\",\"image\":\"").append(image)
+                .append("\",\"ports\":[{\"containerPort\":8080}],\"env\":[{\"name\":\"KEY\",\"value\":\"").append(Fixtures.body(32))
+                .append("\"}]}");
+        }
+        return sb.append("]}}").toString();
+    }
+}
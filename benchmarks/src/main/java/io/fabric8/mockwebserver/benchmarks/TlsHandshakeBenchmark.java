@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.benchmarks;
+
+import io.fabric8.mockwebserver.internal.MockSSLContextFactory;
+import io.fabric8.mockwebserver.utils.SSLUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of setting up HTTPS: creating the server {@link SSLContext} and a TLS handshake with and without
+ * session resumption against the shared context ({@link MockSSLContextFactory#getDefault()}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TlsHandshakeBenchmark {
+
+    private SSLServerSocket serverSocket;
+    private Thread acceptor;
+
+    @Setup
+    public void setUp() throws Exception {
+        serverSocket = (SSLServerSocket) MockSSLContextFactory.getDefault().getServerSocketFactory()
+            .createServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        acceptor = new Thread(this::accept, "tls-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, InterruptedException {
+        serverSocket.close();
+        acceptor.join();
+    }
+
+    @Benchmark
+    public SSLContext newContext() {
+        return MockSSLContextFactory.create();
+    }
+
+    @Benchmark
+    public int handshake(Client client) throws IOException {
+        try (SSLSocket socket = (SSLSocket) client.context.getSocketFactory()
+            .createSocket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort())) {
+            socket.setTcpNoDelay(true);
+            socket.startHandshake();
+            // Reading processes the TLS 1.3 session ticket sent after the handshake
+            int read = socket.getInputStream().read();
+            if (!client.resume) {
+                socket.getSession().invalidate();
+            }
+            return read;
+        }
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try (Socket socket = serverSocket.accept()) {
+                socket.setTcpNoDelay(true);
+                ((SSLSocket) socket).startHandshake();
+                socket.getOutputStream().write(1);
+                socket.getOutputStream().flush();
+                socket.getInputStream().read();
+            } catch (IOException e) {
+                // Closed by the client or on tear down
+            }
+        }
+    }
+
+    /**
+     * Client side of the handshakes, whose sessions are invalidated after each handshake unless they're resumed.
+     */
+    @State(Scope.Benchmark)
+    public static class Client {
+
+        @Param({"false", "true"})
+        public boolean resume;
+
+        private SSLContext context;
+
+        @Setup
+        public void setUp() throws Exception {
+            context = SSLUtils.sslContext(null, null, true);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.benchmarks;
+
+import io.fabric8.mockwebserver.DefaultMockServer;
+import io.fabric8.mockwebserver.transport.NioTransport;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockWebServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Measures a batch of small concurrent requests, each on its own kept alive connection, served by the
+ * {@link okhttp3.mockwebserver.MockWebServer} transport, a thread per connection, and by the {@link NioTransport}, a
+ * single selector thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransportBenchmark {
+
+    @Param({"mockwebserver", "nio"})
+    public String transport;
+
+    @Param({"64"})
+    public int concurrency;
+
+    // Every request is logged at INFO level, held so that the level isn't lost when the logger is collected
+    private static final Logger MOCK_WEB_SERVER_LOGGER = Logger.getLogger(MockWebServer.class.getName());
+
+    private DefaultMockServer server;
+    private OkHttpClient client;
+    private Request request;
+
+    @Setup
+    public void setUp() {
+        MOCK_WEB_SERVER_LOGGER.setLevel(Level.WARNING);
+        server = "nio".equals(transport) ? new DefaultMockServer(new NioTransport()) : new DefaultMockServer(false);
+        server.start();
+        server.expect().get().withPath("/api/v1/users/1").andReturn(200, "{\"id\":1}").always();
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(concurrency);
+        dispatcher.setMaxRequestsPerHost(concurrency);
+        client = new OkHttpClient.Builder()
+            .dispatcher(dispatcher)
+            .connectionPool(new ConnectionPool(concurrency, 5, TimeUnit.MINUTES))
+            .build();
+        request = new Request.Builder().url(server.url("/api/v1/users/1")).get().build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+        server.shutdown();
+    }
+
+    @Benchmark
+    public int concurrentRequests() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(concurrency);
+        final AtomicInteger ok = new AtomicInteger();
+        for (int i = 0; i < concurrency; i++) {
+            client.newCall(request).enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    done.countDown();
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) throws IOException {
+                    try (Response r = response) {
+                        r.body().bytes();
+                        ok.incrementAndGet();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+        if (!done.await(30, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Timed out waiting for the responses");
+        }
+        if (ok.get() != concurrency) {
+            throw new IllegalStateException((concurrency - ok.get()) + " requests failed");
+        }
+        return ok.get();
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.benchmarks;
+
+import io.fabric8.mockwebserver.internal.WebSocketMessage;
+import io.fabric8.mockwebserver.internal.WebSocketSession;
+import okhttp3.Request;
+import okhttp3.WebSocket;
+import okio.ByteString;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the round trip from an incoming WebSocket message to the delivery of the configured reply
+ * through {@link WebSocketSession}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebSocketSessionBenchmark {
+
+    private static final String REQUEST = "ping";
+
+    @Param({"64", "1048576"})
+    public int bodySize;
+
+    @Param({"false", "true"})
+    public boolean binary;
+
+    private WebSocketSession session;
+
+    @Setup
+    public void setUp() {
+        session = new WebSocketSession(Collections.emptyList(), null, null);
+        Queue<WebSocketMessage> replies = new ConcurrentLinkedQueue<>();
+        replies.add(new WebSocketMessage(0L, Fixtures.body(bodySize), false, binary));
+        session.getRequestEvents().put(REQUEST, replies);
+    }
+
+    @TearDown
+    public void tearDown() {
+        session.shutdown();
+    }
+
+    @Benchmark
+    public Object send(Socket socket) {
+        CompletableFuture<Object> sent = socket.expectMessage();
+        session.onMessage(socket, REQUEST);
+        return sent.join();
+    }
+
+    /**
+     * Per-thread {@link WebSocket} that completes a future whenever a message is sent through it.
+     */
+    @State(Scope.Thread)
+    public static class Socket implements WebSocket {
+
+        private volatile CompletableFuture<Object> sent;
+
+        CompletableFuture<Object> expectMessage() {
+            sent = new CompletableFuture<>();
+            return sent;
+        }
+
+        @Override
+        public Request request() {
+            return null;
+        }
+
+        @Override
+        public long queueSize() {
+            return 0;
+        }
+
+        @Override
+        public boolean send(String text) {
+            return sent.complete(text);
+        }
+
+        @Override
+        public boolean send(ByteString bytes) {
+            return sent.complete(bytes);
+        }
+
+        @Override
+        public boolean close(int code, String reason) {
+            return true;
+        }
+
+        @Override
+        public void cancel() {
+        }
+    }
+}
@@ -17,19 +17,36 @@
 package io.fabric8.mockwebserver;
 
 import io.fabric8.mockwebserver.dsl.MockServerExpectation;
+import io.fabric8.mockwebserver.internal.BulkExpectations;
 import io.fabric8.mockwebserver.internal.MockDispatcher;
 import io.fabric8.mockwebserver.internal.MockSSLContextFactory;
 import io.fabric8.mockwebserver.internal.MockServerExpectationImpl;
+import io.fabric8.mockwebserver.internal.ServerExecutors;
+import io.fabric8.mockwebserver.internal.StreamingServerSocketFactory;
+import io.fabric8.mockwebserver.journal.RecordingDispatcher;
+import io.fabric8.mockwebserver.journal.RequestJournal;
+import io.fabric8.mockwebserver.journal.RequestLog;
+import io.fabric8.mockwebserver.journal.RequestRecorder;
+import io.fabric8.mockwebserver.replay.HarLoader;
+import io.fabric8.mockwebserver.transport.MockWebServerTransport;
+import io.fabric8.mockwebserver.transport.Transport;
+import okhttp3.Protocol;
 import okhttp3.mockwebserver.Dispatcher;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
 
+import javax.net.ssl.SSLContext;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.Proxy;
-import java.util.HashMap;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -39,20 +56,33 @@ public class DefaultMockServer implements MockServer {
 
   private final Context context;
   private final boolean useHttps;
+  private final Transport transport;
   private final MockWebServer server;
   private final Map<ServerRequest, Queue<ServerResponse>> responses;
+  private final Dispatcher dispatcher;
   private final AtomicInteger lastRequestCount;
   private final AtomicReference<RecordedRequest> lastRequest;
+  private volatile RequestJournal requestJournal;
+  private volatile RequestLog requestLog;
+  private volatile boolean useVirtualThreads;
+  private volatile ServerExecutors.PublishingDispatcher executorDispatcher;
+  private volatile ExecutorService replacedExecutor;
+  private volatile SSLContext sslContext;
+  private volatile List<Protocol> protocols;
 
   private final AtomicBoolean initialized = new AtomicBoolean();
   private final AtomicBoolean shutdown = new AtomicBoolean();
 
   public DefaultMockServer() {
-    this(new Context(), new MockWebServer(), new HashMap<>(), false);
+    this(false);
   }
 
   public DefaultMockServer(boolean useHttps) {
-    this(new Context(), new MockWebServer(), new HashMap<>(), useHttps);
+    this(new ConcurrentHashMap<>(), useHttps);
+  }
+
+  private DefaultMockServer(Map<ServerRequest, Queue<ServerResponse>> responses, boolean useHttps) {
+    this(new Context(), newMockWebServer(responses), responses, useHttps);
   }
 
   public DefaultMockServer(MockWebServer server, Map<ServerRequest, Queue<ServerResponse>> responses, boolean useHttps) {
@@ -64,25 +94,174 @@ public class DefaultMockServer implements MockServer {
   }
 
   public DefaultMockServer(Context context, MockWebServer server, Map<ServerRequest, Queue<ServerResponse>> responses, Dispatcher dispatcher, boolean useHttps) {
+    this(context, new MockWebServerTransport(server), responses, dispatcher, useHttps);
+  }
+
+  /**
+   * Serves the expectations over the provided transport, for example a {@link io.fabric8.mockwebserver.transport.NioTransport}.
+   *
+   * @param transport the transport, not started.
+   */
+  public DefaultMockServer(Transport transport) {
+    this(new Context(), transport, new ConcurrentHashMap<>(), false);
+  }
+
+  public DefaultMockServer(Context context, Transport transport, Map<ServerRequest, Queue<ServerResponse>> responses, boolean useHttps) {
+    this(context, transport, responses, new MockDispatcher(responses), useHttps);
+  }
+
+  public DefaultMockServer(Context context, Transport transport, Map<ServerRequest, Queue<ServerResponse>> responses, Dispatcher dispatcher, boolean useHttps) {
     this.context = context;
     this.useHttps = useHttps;
-    this.server = server;
+    this.transport = transport;
+    this.server = transport instanceof MockWebServerTransport ? ((MockWebServerTransport) transport).getServer() : null;
     this.responses = responses;
+    this.dispatcher = dispatcher;
     this.lastRequest = new AtomicReference<>();
     this.lastRequestCount = new AtomicInteger(0);
-    this.server.setDispatcher(dispatcher);
+    if (useHttps) {
+      mockWebServer("HTTPS");
+    }
+    this.transport.setDispatcher(dispatcher);
+  }
+
+  private static MockWebServer newMockWebServer(Map<ServerRequest, Queue<ServerResponse>> responses) {
+    MockWebServer server = new MockWebServer();
+    server.setServerSocketFactory(new StreamingServerSocketFactory(responses));
+    return server;
+  }
+
+
+  /**
+   * Records the received requests in the provided {@link RequestJournal} instead of the unbounded
+   * {@link MockWebServer} request queue. Must be invoked before the server is started.
+   *
+   * <p> The journal is not closed when the server is shut down, so that it can still be inspected.
+   *
+   * @param requestJournal the journal where requests are recorded.
+   */
+  public void useRequestJournal(RequestJournal requestJournal) {
+    assertNotStarted();
+    this.requestJournal = requestJournal;
+    updateDispatcher();
+  }
+
+  /**
+   * Appends every received request to the provided {@link RequestLog}, so that all of them can be replayed or
+   * inspected afterwards without retaining them in the heap. Must be invoked before the server is started.
+   *
+   * <p> Unless a {@link RequestJournal} is also in use, {@link #takeRequest()} reads the requests back from the log.
+   * The log is not closed when the server is shut down.
+   *
+   * @param requestLog the log where requests are appended.
+   */
+  public void useRequestLog(RequestLog requestLog) {
+    assertNotStarted();
+    this.requestLog = requestLog;
+    updateDispatcher();
   }
 
+  /**
+   * Serves the connections, and so the response delays and throttling, on virtual threads instead of a platform
+   * thread per connection. Must be invoked before the server is started.
+   *
+   * <p> Virtual threads require Java 21+, on older versions the server keeps using platform threads. Transports other
+   * than {@link MockWebServer} don't serve a thread per connection and are left unchanged.
+   *
+   * @return true if virtual threads will be used, false if they aren't supported by the running JVM or the transport.
+   * @throws MockServerException if virtual threads are supported but the executor of the OkHttp version in use can't be
+   * replaced.
+   */
+  public boolean useVirtualThreads() {
+    assertNotStarted();
+    if (server == null || !ServerExecutors.isVirtualThreadSupported()) {
+      return false;
+    }
+    ServerExecutors.assertReplaceable();
+    useVirtualThreads = true;
+    updateDispatcher();
+    return true;
+  }
+
+  /**
+   * Serves HTTPS with the provided context instead of the shared one created from the bundled certificate
+   * ({@link MockSSLContextFactory#getDefault()}). Must be invoked before the server is started.
+   *
+   * @param sslContext the pre-built context.
+   */
+  public void useSslContext(SSLContext sslContext) {
+    assertNotStarted();
+    mockWebServer("HTTPS");
+    this.sslContext = sslContext;
+  }
+
+  /**
+   * Restricts the protocols the server speaks. Must be invoked before the server is started.
+   *
+   * <p> Over HTTPS the protocols are negotiated with ALPN, by default {@link Protocol#HTTP_2} and
+   * {@link Protocol#HTTP_1_1}. {@link Protocol#H2_PRIOR_KNOWLEDGE} serves cleartext HTTP/2 (h2c) without an upgrade, so
+   * that concurrent requests are multiplexed over a single connection, but it can't be combined with other protocols
+   * nor with HTTPS.
+   *
+   * @param protocols the protocols, in order of preference.
+   */
+  public void useProtocols(Protocol... protocols) {
+    assertNotStarted();
+    List<Protocol> list = Arrays.asList(protocols);
+    // Validates the combination
+    mockWebServer("Protocol selection").setProtocols(list);
+    this.protocols = list;
+  }
+
+  private MockWebServer mockWebServer(String feature) {
+    if (server == null) {
+      throw new IllegalStateException(feature + " is only supported by the MockWebServer transport");
+    }
+    return server;
+  }
+
+  private void assertNotStarted() {
+    if (initialized.get()) {
+      throw new IllegalStateException("The server must be configured before it's started");
+    }
+  }
+
+  private void updateDispatcher() {
+    List<RequestRecorder> recorders = new ArrayList<>();
+    if (requestJournal != null) {
+      recorders.add(requestJournal);
+    }
+    if (requestLog != null) {
+      recorders.add(requestLog);
+    }
+    Dispatcher served = recorders.isEmpty() ? dispatcher : new RecordingDispatcher(dispatcher, transport, recorders);
+    if (useVirtualThreads) {
+      executorDispatcher = new ServerExecutors.PublishingDispatcher(served);
+      served = executorDispatcher;
+    }
+    transport.setDispatcher(served);
+  }
 
   private void startInternal() {
+    if ((useHttps || sslContext != null) && protocols != null && protocols.contains(Protocol.H2_PRIOR_KNOWLEDGE)) {
+      throw new IllegalStateException("HTTP/2 with prior knowledge is only served over cleartext connections");
+    }
     if (initialized.compareAndSet(false, true)) {
-      if (useHttps) {
-        server.useHttps(MockSSLContextFactory.create().getSocketFactory(), false);
+      if (sslContext != null) {
+        server.useHttps(sslContext.getSocketFactory(), false);
+      } else if (useHttps) {
+        server.useHttps(MockSSLContextFactory.getDefault().getSocketFactory(), false);
       }
       onStart();
     }
   }
 
+  private void afterStart() {
+    if (executorDispatcher != null) {
+      replacedExecutor = executorDispatcher.replace(server, ServerExecutors.newVirtualThreadExecutor());
+    }
+  }
+
   private void shutdownInternal() {
     if (shutdown.compareAndSet(false, true)) {
       onShutdown();
@@ -92,7 +271,8 @@ public class DefaultMockServer implements MockServer {
   public final void start()  {
     try {
       startInternal();
-      server.start();
+      transport.start(InetAddress.getByName("localhost"), 0);
+      afterStart();
     } catch (IOException e) {
       throw new MockServerException("Exception when starting DefaultMockServer", e);
     }
@@ -101,7 +281,8 @@ public class DefaultMockServer implements MockServer {
   public final void start(int port)  {
     try {
       startInternal();
-      server.start(port);
+      transport.start(InetAddress.getByName("localhost"), port);
+      afterStart();
     } catch (IOException e) {
       throw new MockServerException("Exception when starting DefaultMockServer with port", e);
     }
@@ -110,7 +291,8 @@ public class DefaultMockServer implements MockServer {
   public final void start(InetAddress inetAddress, int port) {
     try {
       startInternal();
-      server.start(inetAddress, port);
+      transport.start(inetAddress, port);
+      afterStart();
     } catch (IOException e) {
       throw new MockServerException("Exception when starting DefaultMockServer with InetAddress and port", e);
     }
@@ -118,10 +300,14 @@ public class DefaultMockServer implements MockServer {
 
   public final void shutdown() {
     try {
-      server.shutdown();
+      transport.shutdown();
     } catch (IOException e) {
       throw new MockServerException("Exception when stopping DefaultMockServer", e);
     } finally {
+      if (replacedExecutor != null) {
+        // Only runs the (already finished) connection acceptor once the executor is replaced
+        replacedExecutor.shutdown();
+      }
       shutdownInternal();
     }
   }
@@ -131,7 +317,7 @@ public class DefaultMockServer implements MockServer {
    */
   @Override
   public String url(String path) {
-    return server.url(path).toString();
+    return transport.url(path).toString();
   }
 
   /**
@@ -139,7 +325,7 @@ public class DefaultMockServer implements MockServer {
    */
   @Override
   public int getPort() {
-    return server.getPort();
+    return transport.getPort();
   }
 
   /**
@@ -147,7 +333,7 @@ public class DefaultMockServer implements MockServer {
    */
   @Override
   public String getHostName() {
-    return server.getHostName();
+    return transport.getHostName();
   }
 
   /**
@@ -155,7 +341,7 @@ public class DefaultMockServer implements MockServer {
    */
   @Override
   public Proxy toProxyAddress() {
-    return server.toProxyAddress();
+    return transport.toProxyAddress();
   }
   /**
    * {@inheritDoc}
@@ -165,12 +351,35 @@ public class DefaultMockServer implements MockServer {
     return new MockServerExpectationImpl(responses, context);
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int expectAll(Iterable<ExpectationSpec> specs) {
+    return new BulkExpectations(context, responses).register(specs);
+  }
+
+  /**
+   * Adds the entries of the provided HAR file as expectations, each recorded response is served once.
+   *
+   * @param har the recorded traffic.
+   * @return the number of loaded entries.
+   * @see HarLoader
+   */
+  public int replay(Path har) {
+    try {
+      return new HarLoader().load(har, responses);
+    } catch (IOException e) {
+      throw new MockServerException("Exception when loading the HAR file " + har, e);
+    }
+  }
+
   /**
    * {@inheritDoc}
    */
   @Override
   public int getRequestCount() {
-    return server.getRequestCount();
+    return transport.getRequestCount();
   }
 
   /**
@@ -178,7 +387,13 @@ public class DefaultMockServer implements MockServer {
    */
   @Override
   public RecordedRequest takeRequest() throws InterruptedException {
-    return server.takeRequest();
+    if (requestJournal != null) {
+      return requestJournal.take();
+    }
+    if (requestLog != null) {
+      return requestLog.take();
+    }
+    return transport.takeRequest();
   }
 
   /**
@@ -186,14 +401,46 @@ public class DefaultMockServer implements MockServer {
    */
   @Override
   public RecordedRequest takeRequest(long timeout, TimeUnit unit) throws InterruptedException {
-    return server.takeRequest(timeout, unit);
+    if (requestJournal != null) {
+      return requestJournal.take(timeout, unit);
+    }
+    if (requestLog != null) {
+      return requestLog.take(timeout, unit);
+    }
+    return transport.takeRequest(timeout, unit);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public RecordedRequest getLastRequest() throws InterruptedException {
+    if (requestJournal != null) {
+      return requestJournal.getLastRequest();
+    }
+    if (requestLog != null) {
+      return requestLog.getLastRequest();
+    }
+    return getLastQueuedRequest();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public RequestJournal getRequestJournal() {
+    return requestJournal;
   }
 
   /**
    * {@inheritDoc}
    */
   @Override
-  public synchronized RecordedRequest getLastRequest() throws InterruptedException {
+  public RequestLog getRequestLog() {
+    return requestLog;
+  }
+
+  private synchronized RecordedRequest getLastQueuedRequest() throws InterruptedException {
     if (lastRequest.get() != null && getRequestCount() == lastRequestCount.get()) {
       return lastRequest.get();
     }
@@ -0,0 +1,209 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver;
+
+import io.fabric8.mockwebserver.dsl.DelayPathable;
+import io.fabric8.mockwebserver.dsl.HttpMethod;
+import io.fabric8.mockwebserver.dsl.MockServerExpectation;
+import io.fabric8.mockwebserver.dsl.ReturnOrWebsocketable;
+import io.fabric8.mockwebserver.dsl.TimesOnceableOrHttpHeaderable;
+import io.fabric8.mockwebserver.shaping.ShapingProfile;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plain description of an expectation, to register large sets of expectations at once with
+ * {@link MockServer#expectAll(Iterable)}.
+ *
+ * <p> Unlike the {@link MockServerExpectation} DSL, the optional settings modify and return the same instance.
+ * By default the expectation is met once.
+ */
+public final class ExpectationSpec {
+
+  private static final String[] NO_HEADERS = new String[0];
+
+  private final HttpMethod method;
+  private final String path;
+  private final int statusCode;
+  private final Object body;
+  private final Object[] chunks;
+  private boolean pathTemplate;
+  private String[] headers = NO_HEADERS;
+  private long delay;
+  private TimeUnit delayUnit = TimeUnit.MILLISECONDS;
+  private ShapingProfile shaping;
+  private int times = 1;
+  private boolean always;
+
+  private ExpectationSpec(HttpMethod method, String path, int statusCode, Object body, Object[] chunks) {
+    this.method = method;
+    this.path = path;
+    this.statusCode = statusCode;
+    this.body = body;
+    this.chunks = chunks;
+  }
+
+  /**
+   * Creates a spec responding with the provided body, Strings are used verbatim and other objects are serialized.
+   */
+  public static ExpectationSpec of(HttpMethod method, String path, int statusCode, Object body) {
+    return new ExpectationSpec(method, path, statusCode, body, null);
+  }
+
+  /**
+   * Creates a spec responding with a chunked body, Strings are used verbatim and other objects are serialized.
+   */
+  public static ExpectationSpec chunked(HttpMethod method, String path, int statusCode, Object... chunks) {
+    return new ExpectationSpec(method, path, statusCode, null, chunks);
+  }
+
+  /**
+   * The path is a template, see {@link io.fabric8.mockwebserver.dsl.Pathable#withPathTemplate(String)}.
+   */
+  public ExpectationSpec withPathTemplate() {
+    this.pathTemplate = true;
+    return this;
+  }
+
+  public ExpectationSpec withHeader(String name, String value) {
+    final String[] namesAndValues = Arrays.copyOf(headers, headers.length + 2);
+    namesAndValues[headers.length] = name;
+    namesAndValues[headers.length + 1] = value;
+    this.headers = namesAndValues;
+    return this;
+  }
+
+  public ExpectationSpec delay(long delay, TimeUnit delayUnit) {
+    this.delay = delay;
+    this.delayUnit = delayUnit;
+    return this;
+  }
+
+  public ExpectationSpec shape(ShapingProfile shaping) {
+    this.shaping = shaping;
+    return this;
+  }
+
+  public ExpectationSpec times(int times) {
+    this.times = times;
+    this.always = false;
+    return this;
+  }
+
+  public ExpectationSpec always() {
+    this.always = true;
+    return this;
+  }
+
+  public HttpMethod getMethod() {
+    return method;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public boolean isPathTemplate() {
+    return pathTemplate;
+  }
+
+  public int getStatusCode() {
+    return statusCode;
+  }
+
+  public Object getBody() {
+    return body;
+  }
+
+  public Object[] getChunks() {
+    return chunks;
+  }
+
+  public boolean isChunked() {
+    return chunks != null;
+  }
+
+  /**
+   * @return the response header names and values, alternated.
+   */
+  public String[] getHeaders() {
+    return headers;
+  }
+
+  public long getDelay() {
+    return delay;
+  }
+
+  public TimeUnit getDelayUnit() {
+    return delayUnit;
+  }
+
+  public ShapingProfile getShaping() {
+    return shaping;
+  }
+
+  public int getTimes() {
+    return times;
+  }
+
+  public boolean isAlways() {
+    return always;
+  }
+
+  /**
+   * Registers this spec through the DSL.
+   *
+   * <p> The delay is converted to milliseconds since that's the unit the DSL keeps once headers are added.
+   */
+  void applyTo(MockServerExpectation expectation) {
+    final ReturnOrWebsocketable<TimesOnceableOrHttpHeaderable<Void>> pathable;
+    if (pathTemplate) {
+      pathable = methodOf(expectation).shape(shaping).delay(delayUnit.toMillis(delay)).withPathTemplate(path);
+    } else {
+      pathable = methodOf(expectation).shape(shaping).delay(delayUnit.toMillis(delay)).withPath(path);
+    }
+    TimesOnceableOrHttpHeaderable<Void> returnable = isChunked() ?
+      pathable.andReturnChunked(statusCode, chunks) : pathable.andReturn(statusCode, body);
+    for (int i = 0; i < headers.length; i += 2) {
+      returnable = returnable.withHeader(headers[i], headers[i + 1]);
+    }
+    if (always) {
+      returnable.always();
+    } else {
+      returnable.times(times);
+    }
+  }
+
+  private DelayPathable<ReturnOrWebsocketable<TimesOnceableOrHttpHeaderable<Void>>> methodOf(MockServerExpectation expectation) {
+    switch (method) {
+      case GET:
+        return expectation.get();
+      case POST:
+        return expectation.post();
+      case PUT:
+        return expectation.put();
+      case PATCH:
+        return expectation.patch();
+      case DELETE:
+        return expectation.delete();
+      case ANY:
+        return expectation.any();
+      default:
+        throw new IllegalArgumentException("Method " + method + " is not supported by the expectation DSL");
+    }
+  }
+}
@@ -16,10 +16,13 @@
 package io.fabric8.mockwebserver;
 
 import io.fabric8.mockwebserver.dsl.MockServerExpectation;
+import io.fabric8.mockwebserver.journal.RequestJournal;
+import io.fabric8.mockwebserver.journal.RequestLog;
 import okhttp3.mockwebserver.RecordedRequest;
 
 import java.net.Proxy;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 public interface MockServer {
 
@@ -69,6 +72,35 @@ public interface MockServer {
    */
   MockServerExpectation expect();
 
+  /**
+   * Registers all the provided expectations.
+   *
+   * <p> The default implementation goes through the {@link #expect()} DSL for each spec, implementations are
+   * encouraged to register them directly.
+   *
+   * @param specs the expectations to register.
+   * @return the number of registered specs.
+   */
+  default int expectAll(Iterable<ExpectationSpec> specs) {
+    int count = 0;
+    for (ExpectationSpec spec : specs) {
+      spec.applyTo(expect());
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * Registers all the provided expectations.
+   *
+   * @param specs the expectations to register.
+   * @return the number of registered specs.
+   * @see #expectAll(Iterable)
+   */
+  default int expectAll(Stream<ExpectationSpec> specs) {
+    return expectAll(specs::iterator);
+  }
+
   /**
    * Returns the number of HTTP requests received thus far by this server. This may exceed the
    * number of HTTP connections when connection reuse is in practice.
@@ -98,9 +130,27 @@ public interface MockServer {
   /**
    * Returns the last (most recent) HTTP request processed by the {@link okhttp3.mockwebserver.MockWebServer}.
    *
-   * n.b. This method clears the request queue.
+   * n.b. This method clears the request queue, unless a {@link RequestJournal} is in use.
    *
    * @return the most recent RecordedRequest or null if none was processed.
    */
   RecordedRequest getLastRequest() throws InterruptedException;
+
+  /**
+   * Returns the {@link RequestJournal} where the received requests are recorded.
+   *
+   * @return the request journal or null if requests are kept in the MockWebServer request queue.
+   */
+  default RequestJournal getRequestJournal() {
+    return null;
+  }
+
+  /**
+   * Returns the {@link RequestLog} where the received requests are appended.
+   *
+   * @return the request log or null if the recording mode is not enabled.
+   */
+  default RequestLog getRequestLog() {
+    return null;
+  }
 }
@@ -22,5 +22,19 @@ public interface ServerResponse {
 
     boolean isRepeatable();
 
+    /**
+     * Consumes one of the uses of a non-repeatable response.
+     *
+     * <p> Responses that can be served several times (e.g. {@code times(int)} expectations) keep their own
+     * count, so a single instance is enqueued instead of one per use. The default implementation can be
+     * served once.
+     *
+     * @return the number of uses left after this one, 0 if this was the last one, or a negative number if the
+     * response was already exhausted.
+     */
+    default int consume() {
+        return 0;
+    }
+
     MockResponse toMockResponse(RecordedRequest recordedRequest);
 }
@@ -0,0 +1,128 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.cluster;
+
+import io.fabric8.mockwebserver.DefaultMockServer;
+import io.fabric8.mockwebserver.shaping.ShapingProfile;
+
+/**
+ * A server of a {@link MockServerCluster}, serving the shared expectations and store with its own network conditions
+ * and faults, which can be changed at any time.
+ */
+public class ClusterNode {
+
+    private final int index;
+    private final DefaultMockServer server;
+    private final NodeDispatcher dispatcher;
+
+    ClusterNode(int index, DefaultMockServer server, NodeDispatcher dispatcher) {
+        this.index = index;
+        this.server = server;
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * @return the position of the node in the cluster.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return the server of the node, to inspect the requests it received.
+     */
+    public DefaultMockServer getServer() {
+        return server;
+    }
+
+    public String url(String path) {
+        return server.url(path);
+    }
+
+    public int getPort() {
+        return server.getPort();
+    }
+
+    /**
+     * @return the number of requests received by the node, including the ones answered with an injected fault.
+     */
+    public int getRequestCount() {
+        return dispatcher.getRequestCount();
+    }
+
+    /**
+     * Shapes every response of the node, for example to simulate a slower node of the cluster.
+     *
+     * @param shaping the latency and throttle of the responses, null for none.
+     * @return this node.
+     */
+    public synchronized ClusterNode shape(ShapingProfile shaping) {
+        final NodeDispatcher.Faults current = dispatcher.getFaults();
+        dispatcher.setFaults(new NodeDispatcher.Faults(shaping, current.errorRate, current.disconnectRate, current.errorStatusCode));
+        return this;
+    }
+
+    /**
+     * Answers the provided fraction of the requests with an error instead of the expected response.
+     *
+     * @param rate the fraction of the requests, between 0 and 1.
+     * @param statusCode the status code of the errors.
+     * @return this node.
+     */
+    public synchronized ClusterNode failWith(double rate, int statusCode) {
+        final NodeDispatcher.Faults current = dispatcher.getFaults();
+        dispatcher.setFaults(new NodeDispatcher.Faults(current.shaping, checkRate(rate), current.disconnectRate, statusCode));
+        return this;
+    }
+
+    /**
+     * Closes the connection of the provided fraction of the requests without answering them.
+     *
+     * @param rate the fraction of the requests, between 0 and 1.
+     * @return this node.
+     */
+    public synchronized ClusterNode disconnect(double rate) {
+        final NodeDispatcher.Faults current = dispatcher.getFaults();
+        dispatcher.setFaults(new NodeDispatcher.Faults(current.shaping, current.errorRate, checkRate(rate), current.errorStatusCode));
+        return this;
+    }
+
+    /**
+     * Closes the connection of every request, as a node which is down but still accepts connections.
+     *
+     * @return this node.
+     */
+    public ClusterNode down() {
+        return disconnect(1);
+    }
+
+    /**
+     * Removes the shaping and the faults of the node.
+     *
+     * @return this node.
+     */
+    public synchronized ClusterNode heal() {
+        dispatcher.setFaults(NodeDispatcher.HEALTHY);
+        return this;
+    }
+
+    private static double checkRate(double rate) {
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException("The rate must be between 0 and 1: " + rate);
+        }
+        return rate;
+    }
+}
@@ -0,0 +1,186 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.cluster;
+
+import io.fabric8.mockwebserver.Context;
+import io.fabric8.mockwebserver.DefaultMockServer;
+import io.fabric8.mockwebserver.ExpectationSpec;
+import io.fabric8.mockwebserver.ServerRequest;
+import io.fabric8.mockwebserver.ServerResponse;
+import io.fabric8.mockwebserver.dsl.MockServerExpectation;
+import io.fabric8.mockwebserver.internal.BulkExpectations;
+import io.fabric8.mockwebserver.internal.MockDispatcher;
+import io.fabric8.mockwebserver.internal.MockServerExpectationImpl;
+import io.fabric8.mockwebserver.internal.StreamingServerSocketFactory;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockWebServer;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Several servers on local ports serving the same expectations, as the nodes of a highly available API. With a
+ * shared {@link io.fabric8.mockwebserver.crud.CrudDispatcher} the nodes serve the same store instead.
+ *
+ * <p> An expectation is served by whichever node receives the request, a response expected once is served once by
+ * the whole cluster. Each node has its own latency and faults ({@link ClusterNode}), to test the load balancing and
+ * the failover of clients.
+ */
+public class MockServerCluster implements Closeable {
+
+    private final Context context;
+    private final Map<ServerRequest, Queue<ServerResponse>> responses;
+    private final Dispatcher dispatcher;
+    private final List<ClusterNode> nodes;
+    private final AtomicBoolean shutdown = new AtomicBoolean();
+
+    public MockServerCluster(int size) {
+        this(size, new Context(), new ConcurrentHashMap<>());
+    }
+
+    /**
+     * @param size the number of nodes.
+     * @param context the context of the expectations.
+     * @param dispatcher the dispatcher shared by all the nodes, it's invoked concurrently.
+     */
+    public MockServerCluster(int size, Context context, Dispatcher dispatcher) {
+        this(size, context, new ConcurrentHashMap<>(), dispatcher);
+    }
+
+    private MockServerCluster(int size, Context context, Map<ServerRequest, Queue<ServerResponse>> responses) {
+        this(size, context, responses, new MockDispatcher(responses));
+    }
+
+    private MockServerCluster(int size, Context context, Map<ServerRequest, Queue<ServerResponse>> responses, Dispatcher dispatcher) {
+        if (size < 1) {
+            throw new IllegalArgumentException("A cluster needs at least one node: " + size);
+        }
+        this.context = context;
+        this.responses = responses;
+        this.dispatcher = dispatcher;
+        final List<ClusterNode> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            final MockWebServer server = new MockWebServer();
+            server.setServerSocketFactory(new StreamingServerSocketFactory(responses));
+            final NodeDispatcher nodeDispatcher = new NodeDispatcher(dispatcher);
+            list.add(new ClusterNode(i, new DefaultMockServer(context, server, responses, nodeDispatcher, false), nodeDispatcher));
+        }
+        this.nodes = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Serves the connections of all the nodes on virtual threads, see {@link DefaultMockServer#useVirtualThreads()}.
+     *
+     * @return true if virtual threads will be used, false if they aren't supported by the running JVM.
+     */
+    public boolean useVirtualThreads() {
+        boolean virtual = false;
+        for (ClusterNode node : nodes) {
+            virtual = node.getServer().useVirtualThreads();
+        }
+        return virtual;
+    }
+
+    /**
+     * Starts all the nodes on free local ports.
+     */
+    public void start() {
+        try {
+            for (ClusterNode node : nodes) {
+                node.getServer().start();
+            }
+        } catch (RuntimeException e) {
+            shutdown();
+            throw e;
+        }
+    }
+
+    /**
+     * Shuts all the nodes down, then the shared dispatcher.
+     */
+    public void shutdown() {
+        if (shutdown.compareAndSet(false, true)) {
+            try {
+                for (ClusterNode node : nodes) {
+                    node.getServer().shutdown();
+                }
+            } finally {
+                dispatcher.shutdown();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        shutdown();
+    }
+
+    /**
+     * Registers an expectation served by all the nodes.
+     */
+    public MockServerExpectation expect() {
+        return new MockServerExpectationImpl(responses, context);
+    }
+
+    /**
+     * Registers the expectations, served by all the nodes, at once.
+     *
+     * @return the number of registered expectations.
+     */
+    public int expectAll(Iterable<ExpectationSpec> specs) {
+        return new BulkExpectations(context, responses).register(specs);
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    public ClusterNode getNode(int index) {
+        return nodes.get(index);
+    }
+
+    public List<ClusterNode> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return the URL of the provided path on every node, in the order of the nodes.
+     */
+    public List<String> urls(String path) {
+        final List<String> urls = new ArrayList<>(nodes.size());
+        for (ClusterNode node : nodes) {
+            urls.add(node.url(path));
+        }
+        return urls;
+    }
+
+    /**
+     * @return the number of requests received by all the nodes.
+     */
+    public int getRequestCount() {
+        int count = 0;
+        for (ClusterNode node : nodes) {
+            count += node.getRequestCount();
+        }
+        return count;
+    }
+}
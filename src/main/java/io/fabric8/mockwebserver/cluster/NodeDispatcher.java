@@ -0,0 +1,102 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.cluster;
+
+import io.fabric8.mockwebserver.shaping.ShapingProfile;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link Dispatcher} of a single {@link ClusterNode}, injecting the node faults before delegating to the dispatcher
+ * shared by the whole cluster.
+ */
+class NodeDispatcher extends Dispatcher {
+
+    static final Faults HEALTHY = new Faults(null, 0, 0, 503);
+
+    private final Dispatcher delegate;
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private volatile Faults faults = HEALTHY;
+
+    NodeDispatcher(Dispatcher delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        requestCount.incrementAndGet();
+        final Faults current = faults;
+        final MockResponse response;
+        if (roll(current.disconnectRate)) {
+            response = new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST);
+        } else if (roll(current.errorRate)) {
+            response = new MockResponse().setResponseCode(current.errorStatusCode);
+        } else {
+            response = delegate.dispatch(request);
+        }
+        return current.shaping == null ? response : current.shaping.applyTo(response);
+    }
+
+    @Override
+    public MockResponse peek() {
+        return delegate.peek();
+    }
+
+    /**
+     * The shared dispatcher is shut down by the cluster, once all the nodes are.
+     */
+    @Override
+    public void shutdown() {
+    }
+
+    int getRequestCount() {
+        return requestCount.get();
+    }
+
+    Faults getFaults() {
+        return faults;
+    }
+
+    void setFaults(Faults faults) {
+        this.faults = faults;
+    }
+
+    private static boolean roll(double rate) {
+        return rate > 0 && (rate >= 1 || ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    /**
+     * Immutable snapshot of the faults of a node, so that a request sees a consistent configuration.
+     */
+    static final class Faults {
+        final ShapingProfile shaping;
+        final double errorRate;
+        final double disconnectRate;
+        final int errorStatusCode;
+
+        Faults(ShapingProfile shaping, double errorRate, double disconnectRate, int errorStatusCode) {
+            this.shaping = shaping;
+            this.errorRate = errorRate;
+            this.disconnectRate = disconnectRate;
+            this.errorStatusCode = errorStatusCode;
+        }
+    }
+}
@@ -15,10 +15,40 @@
  */
 package io.fabric8.mockwebserver.crud;
 
+import java.nio.charset.StandardCharsets;
+
 public interface AttributeExtractor {
 
     AttributeSet fromPath(String path);
 
     AttributeSet fromResource(String resource);
 
+    /**
+     * Extracts the attributes of a UTF-8 encoded resource.
+     *
+     * <p> The default implementation decodes the resource and delegates to {@link #fromResource(String)}, as it
+     * can't tell how the String form is parsed. Implementations can override it to parse the attributes straight
+     * from the bytes and avoid building a String copy of large resources, {@link JsonAttributeExtractor} does so
+     * for attributes located by JSON Pointers.
+     *
+     * @param resource the UTF-8 encoded resource, it must not be modified.
+     * @return the attributes of the resource.
+     */
+    default AttributeSet fromResource(byte[] resource) {
+        return fromResource(new String(resource, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Checks whether modifying the resource at the provided location might change its attributes.
+     *
+     * <p> Used to skip the attribute extraction when patching resources. The default implementation
+     * conservatively returns true for every location.
+     *
+     * @param jsonPointer the <a href="https://tools.ietf.org/html/rfc6901">JSON Pointer</a> of the modified value.
+     * @return false if the attributes of the resource don't depend on the value at the location.
+     */
+    default boolean isAttributePath(String jsonPointer) {
+        return true;
+    }
+
 }
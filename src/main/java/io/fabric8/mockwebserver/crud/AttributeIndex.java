@@ -0,0 +1,186 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.crud;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Inverted index from each {@link Key} and {@link Value} pair to the {@link AttributeSet} entries containing it.
+ *
+ * <p> Only WITH, IN and EXISTS attributes can be resolved through the index, the rest of the query attributes
+ * (WITHOUT, NOT_IN, NOT_EXISTS) must be evaluated on the returned candidates.
+ *
+ * <p> This class is not thread-safe.
+ */
+class AttributeIndex {
+
+    private static final Value ANY = new Value("*");
+
+    private final Map<Key, Map<Value, Set<AttributeSet>>> postings = new HashMap<>();
+    private final Map<Key, Set<AttributeSet>> keys = new HashMap<>();
+    private final Map<AttributeSet, Long> sequence = new HashMap<>();
+    private long nextSequence;
+
+    void add(AttributeSet entry) {
+        if (sequence.putIfAbsent(entry, nextSequence) != null) {
+            return;
+        }
+        nextSequence++;
+        for (Attribute attribute : attributesOf(entry)) {
+            keys.computeIfAbsent(attribute.getKey(), k -> new HashSet<>()).add(entry);
+            Map<Value, Set<AttributeSet>> values = postings.computeIfAbsent(attribute.getKey(), k -> new HashMap<>());
+            for (Value value : attribute.getValues()) {
+                values.computeIfAbsent(value, v -> new HashSet<>()).add(entry);
+            }
+        }
+    }
+
+    void remove(AttributeSet entry) {
+        if (sequence.remove(entry) == null) {
+            return;
+        }
+        for (Attribute attribute : attributesOf(entry)) {
+            removeFrom(keys, attribute.getKey(), entry);
+            Map<Value, Set<AttributeSet>> values = postings.get(attribute.getKey());
+            if (values != null) {
+                for (Value value : attribute.getValues()) {
+                    removeFrom(values, value, entry);
+                }
+                if (values.isEmpty()) {
+                    postings.remove(attribute.getKey());
+                }
+            }
+        }
+    }
+
+    void clear() {
+        postings.clear();
+        keys.clear();
+        sequence.clear();
+    }
+
+    /**
+     * Returns the entries that might match the provided query, in insertion order.
+     *
+     * <p> The returned entries are a superset of the matching ones, they still need to be checked with
+     * {@link AttributeSet#matches(AttributeSet)}.
+     *
+     * @param query the attributes to look up.
+     * @return the candidate entries, or null if the query has no attributes that can be resolved through the index.
+     */
+    List<AttributeSet> candidates(AttributeSet query) {
+        List<Set<AttributeSet>> narrowing = new ArrayList<>();
+        for (Attribute attribute : attributesOf(query)) {
+            Set<AttributeSet> posting = postingFor(attribute);
+            if (posting == null) {
+                continue;
+            }
+            if (posting.isEmpty()) {
+                return Collections.emptyList();
+            }
+            narrowing.add(posting);
+        }
+        if (narrowing.isEmpty()) {
+            return null;
+        }
+        narrowing.sort(Comparator.comparingInt(Set::size));
+        List<AttributeSet> result = new ArrayList<>();
+        for (AttributeSet candidate : narrowing.get(0)) {
+            if (containedInAll(candidate, narrowing)) {
+                result.add(candidate);
+            }
+        }
+        result.sort(Comparator.comparing(sequence::get));
+        return result;
+    }
+
+    private Set<AttributeSet> postingFor(Attribute attribute) {
+        switch (attribute.getType()) {
+            case EXISTS:
+                return keys.getOrDefault(attribute.getKey(), Collections.emptySet());
+            case WITH:
+                if (attribute.getValues().isEmpty() || isWildcard(attribute)) {
+                    return keys.getOrDefault(attribute.getKey(), Collections.emptySet());
+                }
+                return posting(attribute.getKey(), attribute.getValues().get(0));
+            case IN: {
+                if (isWildcard(attribute)) {
+                    return keys.getOrDefault(attribute.getKey(), Collections.emptySet());
+                }
+                Set<AttributeSet> union = new HashSet<>();
+                for (Value value : attribute.getValues()) {
+                    union.addAll(posting(attribute.getKey(), value));
+                }
+                return union;
+            }
+            default:
+                return null;
+        }
+    }
+
+    private Set<AttributeSet> posting(Key key, Value value) {
+        return postings.getOrDefault(key, Collections.emptyMap()).getOrDefault(value, Collections.emptySet());
+    }
+
+    /**
+     * {@link Value} equality is not consistent with its hash code for the "*" wildcard, so attributes
+     * involving it can only be narrowed down by key.
+     */
+    private boolean isWildcard(Attribute attribute) {
+        if (postings.getOrDefault(attribute.getKey(), Collections.emptyMap()).containsKey(ANY)) {
+            return true;
+        }
+        for (Value value : attribute.getValues()) {
+            if (ANY.toString().equals(value.toString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean containedInAll(AttributeSet candidate, List<Set<AttributeSet>> narrowing) {
+        for (int i = 1; i < narrowing.size(); i++) {
+            if (!narrowing.get(i).contains(candidate)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static <K> void removeFrom(Map<K, Set<AttributeSet>> map, K key, AttributeSet entry) {
+        Set<AttributeSet> entries = map.get(key);
+        if (entries != null) {
+            entries.remove(entry);
+            if (entries.isEmpty()) {
+                map.remove(key);
+            }
+        }
+    }
+
+    private static Iterable<Attribute> attributesOf(AttributeSet attributeSet) {
+        if (attributeSet == null || attributeSet.attributes == null) {
+            return Collections.emptyList();
+        }
+        return attributeSet.attributes.values();
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.crud;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Insertion-ordered map of {@link AttributeSet} entries that keeps an {@link AttributeIndex} up to date with
+ * every modification, regardless of it being performed through the map, its views or their iterators.
+ *
+ * <p> This class is not thread-safe.
+ *
+ * @param <V> the type of the stored resources.
+ */
+class AttributeIndexedMap<V> extends AbstractMap<AttributeSet, V> {
+
+    private final Map<AttributeSet, V> entries = new LinkedHashMap<>();
+    private final AttributeIndex index = new AttributeIndex();
+    private final Set<Entry<AttributeSet, V>> entrySet = new EntrySet();
+
+    /**
+     * Returns the keys of the entries matching the provided query in insertion order.
+     *
+     * @param query the attributes to match.
+     * @return the matching keys.
+     */
+    List<AttributeSet> find(AttributeSet query) {
+        Iterable<AttributeSet> candidates = index.candidates(query);
+        if (candidates == null) {
+            candidates = entries.keySet();
+        }
+        List<AttributeSet> result = new ArrayList<>();
+        for (AttributeSet candidate : candidates) {
+            if (candidate.matches(query)) {
+                result.add(candidate);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public V get(Object key) {
+        return entries.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return entries.containsKey(key);
+    }
+
+    @Override
+    public V put(AttributeSet key, V value) {
+        index.add(key);
+        return entries.put(key, value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        if (!entries.containsKey(key)) {
+            return null;
+        }
+        index.remove((AttributeSet) key);
+        return entries.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        index.clear();
+        entries.clear();
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public Set<Entry<AttributeSet, V>> entrySet() {
+        return entrySet;
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<AttributeSet, V>> {
+
+        @Override
+        public Iterator<Entry<AttributeSet, V>> iterator() {
+            final Iterator<Entry<AttributeSet, V>> it = entries.entrySet().iterator();
+            return new Iterator<Entry<AttributeSet, V>>() {
+                private Entry<AttributeSet, V> current;
+
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public Entry<AttributeSet, V> next() {
+                    current = it.next();
+                    return current;
+                }
+
+                @Override
+                public void remove() {
+                    it.remove();
+                    index.remove(current.getKey());
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return entries.size();
+        }
+
+        @Override
+        public void clear() {
+            AttributeIndexedMap.this.clear();
+        }
+    }
+}
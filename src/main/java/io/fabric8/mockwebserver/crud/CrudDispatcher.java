@@ -18,15 +18,15 @@ package io.fabric8.mockwebserver.crud;
 import com.fasterxml.jackson.databind.JsonNode;
 import io.fabric8.mockwebserver.Context;
 import io.fabric8.mockwebserver.MockServerException;
-import io.fabric8.zjsonpatch.JsonPatch;
 import okhttp3.mockwebserver.Dispatcher;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
 
 import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.LinkedHashMap;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -37,17 +37,34 @@ public class CrudDispatcher extends Dispatcher {
     private static final String PATCH = "PATCH";
     private static final String GET = "GET";
     private static final String DELETE = "DELETE";
+    private static final int PARSED_RESOURCE_CACHE_SIZE = 1024;
 
-    protected final Map<AttributeSet, String> map = Collections.synchronizedMap(new LinkedHashMap<>());
+    protected final CrudStore store;
+    protected final Map<AttributeSet, String> map;
 
     protected final Context context;
     protected final AttributeExtractor attributeExtractor;
     protected final ResponseComposer responseComposer;
 
+    private final ParsedResourceCache parsedResources = new ParsedResourceCache(PARSED_RESOURCE_CACHE_SIZE);
+
+    // Subclasses overriding the String handlers keep receiving the requests through them
+    private final boolean stringCreate = overrides("handleCreate", String.class, String.class);
+    private final boolean bytesCreate = overrides("handleCreate", String.class, byte[].class);
+    private final boolean stringUpdate = overrides("handleUpdate", String.class, String.class);
+    private final boolean stringPatch = overrides("handlePatch", String.class, String.class);
+    private final boolean stringPatchWithContentType = overrides("handlePatch", String.class, String.class, String.class);
+
     public CrudDispatcher(Context context, AttributeExtractor attributeExtractor, ResponseComposer responseComposer) {
+        this(context, attributeExtractor, responseComposer, new ReadWriteLockCrudStore());
+    }
+
+    public CrudDispatcher(Context context, AttributeExtractor attributeExtractor, ResponseComposer responseComposer, CrudStore store) {
         this.context = context;
         this.attributeExtractor = attributeExtractor;
         this.responseComposer = responseComposer;
+        this.store = store;
+        this.map = store.asMap();
     }
 
     @Override
@@ -69,30 +86,76 @@ public class CrudDispatcher extends Dispatcher {
         }
     }
 
+    /**
+     * Adds the object of the request body to the in-memory db.
+     *
+     * <p> The body is handled as bytes by {@link #handleCreate(String, byte[])}, unless a subclass overrides
+     * {@link #handleCreate(String, String)}.
+     *
+     * @param request the request.
+     * @return a MockResponse to be dispatched.
+     */
     public MockResponse handleCreate(RecordedRequest request) {
-        return handleCreate(request.getPath(), request.getBody().readUtf8());
+        return create(request.getPath(), request.getBody().readByteArray());
     }
 
     /**
      * Adds the specified object to the in-memory db.
      *
+     * <p> When overridden, it's also called by {@link #handleUpdate(String, byte[])} while holding the store's write
+     * lock, so that a PUT is atomic: the override shouldn't block or wait for other threads accessing the store.
+     *
      * @param path for the request.
      * @param body Request body as String (UTF-8).
      * @return a MockResponse to be dispatched.
      */
     public MockResponse handleCreate(String path, String body) {
+        return handleCreate(path, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Adds the specified object to the in-memory db.
+     *
+     * <p> The bytes are stored as they are, they must not be modified afterwards.
+     *
+     * <p> When overridden, it's also called by {@link #handleUpdate(String, byte[])} while holding the store's write
+     * lock, so that a PUT is atomic: the override shouldn't block or wait for other threads accessing the store.
+     *
+     * @param path for the request.
+     * @param body Request body as UTF-8 encoded bytes.
+     * @return a MockResponse to be dispatched.
+     */
+    public MockResponse handleCreate(String path, byte[] body) {
         MockResponse response = new MockResponse();
         AttributeSet features = AttributeSet.merge(attributeExtractor.fromPath(path), attributeExtractor.fromResource(body));
-        synchronized (map) {
-            map.put(features, body);
-        }
-        response.setBody(body);
+        store.put(features, body);
+        response.setBody(new Buffer().write(body));
         response.setResponseCode(202);
         return response;
     }
 
+    /**
+     * Patches the object matching the request path with the request body.
+     *
+     * <p> The body is parsed straight from the request, unless a subclass overrides
+     * {@link #handlePatch(String, String)} or {@link #handlePatch(String, String, String)}.
+     *
+     * @param request the request.
+     * @return a MockResponse to be dispatched.
+     */
     public MockResponse handlePatch(RecordedRequest request) {
-        return handlePatch(request.getPath(), request.getBody().readUtf8());
+        if (stringPatch) {
+            return handlePatch(request.getPath(), request.getBody().readUtf8());
+        } else if (stringPatchWithContentType) {
+            return handlePatch(request.getPath(), request.getHeader("Content-Type"), request.getBody().readUtf8());
+        }
+        final JsonNode patch;
+        try {
+            patch = context.getMapper().readTree(request.getBody().inputStream());
+        } catch (Exception e) {
+            throw new MockServerException("Exception when handling CRUD patch", e);
+        }
+        return doPatch(request.getPath(), PatchType.of(request.getHeader("Content-Type"), patch), patch);
     }
 
     /**
@@ -103,33 +166,43 @@ public class CrudDispatcher extends Dispatcher {
      * @return a MockResponse to be dispatched.
      */
     public MockResponse handlePatch(String path, String body) {
-        MockResponse response = new MockResponse();
-        String existingObjectBody = doGet(path);
-        if (existingObjectBody == null) {
-            response.setResponseCode(404);
-        } else {
-            try {
-                JsonNode patch = context.getMapper().readTree(body);
-                JsonNode source = context.getMapper().readTree(existingObjectBody);
-                JsonNode updated = JsonPatch.apply(patch, source);
-                String updatedAsString = context.getMapper().writeValueAsString(updated);
-                AttributeSet features = AttributeSet.merge(attributeExtractor.fromPath(path),
-                        attributeExtractor.fromResource(updatedAsString));
-                synchronized (map) {
-                    map.put(features, updatedAsString);
-                }
-                response.setResponseCode(202);
-                response.setBody(updatedAsString);
-            } catch (Exception e) {
-                throw new MockServerException("Exception when handling CRUD patch", e);
-            }
+        return handlePatch(path, null, body);
+    }
 
+    /**
+     * Patches the specified object to the in-memory db.
+     *
+     * <p> The patch format is resolved with {@link PatchType#of(String, JsonNode)}.
+     *
+     * @param path for the request.
+     * @param contentType the content type of the request, might be null.
+     * @param body Request body as String (UTF-8).
+     * @return a MockResponse to be dispatched.
+     */
+    public MockResponse handlePatch(String path, String contentType, String body) {
+        final JsonNode patch;
+        try {
+            patch = context.getMapper().readTree(body);
+        } catch (Exception e) {
+            throw new MockServerException("Exception when handling CRUD patch", e);
         }
-        return response;
+        return doPatch(path, PatchType.of(contentType, patch), patch);
     }
 
+    /**
+     * Updates the object matching the request path with the request body.
+     *
+     * <p> The body is handled as bytes by {@link #handleUpdate(String, byte[])}, unless a subclass overrides
+     * {@link #handleUpdate(String, String)}.
+     *
+     * @param request the request.
+     * @return a MockResponse to be dispatched.
+     */
     public MockResponse handleUpdate(RecordedRequest request) {
-        return handleUpdate(request.getPath(), request.getBody().readUtf8());
+        if (stringUpdate) {
+            return handleUpdate(request.getPath(), request.getBody().readUtf8());
+        }
+        return handleUpdate(request.getPath(), request.getBody().readByteArray());
     }
 
     /**
@@ -140,12 +213,36 @@ public class CrudDispatcher extends Dispatcher {
      * @return a MockResponse to be dispatched.
      */
     public MockResponse handleUpdate(String path, String body) {
-        final String currentItem = doGet(path);
-        final MockResponse response = handleCreate(path, body);
-        if (currentItem == null) {
-            response.setResponseCode(HttpURLConnection.HTTP_CREATED);
+        return handleUpdate(path, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Updates the specified object to the in-memory db.
+     *
+     * <p> The attributes of the resource are extracted before taking the store's write lock, which is only held to
+     * replace the existing resources, unless {@code handleCreate} is overridden.
+     *
+     * @param path for the request.
+     * @param body Request body as UTF-8 encoded bytes.
+     * @return a MockResponse to be dispatched.
+     */
+    public MockResponse handleUpdate(String path, byte[] body) {
+        final AttributeSet query = attributeExtractor.fromPath(path);
+        if (stringCreate || bytesCreate) {
+            return store.update(query, existing -> {
+                final MockResponse response = create(path, body);
+                if (existing.isEmpty()) {
+                    response.setResponseCode(HttpURLConnection.HTTP_CREATED);
+                }
+                return response;
+            });
         }
-        return response;
+        final AttributeSet features = AttributeSet.merge(query, attributeExtractor.fromResource(body));
+        final int responseCode = store.update(query, existing -> {
+            store.put(features, body);
+            return existing.isEmpty() ? HttpURLConnection.HTTP_CREATED : 202;
+        });
+        return new MockResponse().setResponseCode(responseCode).setBody(new Buffer().write(body));
     }
 
     /**
@@ -157,12 +254,12 @@ public class CrudDispatcher extends Dispatcher {
     public MockResponse handleGet(String path) {
         MockResponse response = new MockResponse();
 
-        String body = doGet(path);
+        byte[] body = doGet(path);
         if (body == null) {
             response.setResponseCode(404);
         } else {
             response.setResponseCode(200);
-            response.setBody(body);
+            response.setBody(new Buffer().write(body));
         }
         return response;
     }
@@ -176,23 +273,12 @@ public class CrudDispatcher extends Dispatcher {
      */
     public MockResponse handleDelete(String path) {
         MockResponse response = new MockResponse();
-        List<AttributeSet> items = new ArrayList<>();
         AttributeSet query = attributeExtractor.fromPath(path);
 
-        synchronized (map) {
-            for (Map.Entry<AttributeSet, String> entry : map.entrySet()) {
-                if (entry.getKey().matches(query)) {
-                    items.add(entry.getKey());
-                }
-            }
-            if (!items.isEmpty()) {
-                for (AttributeSet item : items) {
-                    map.remove(item);
-                }
-                response.setResponseCode(200);
-            } else {
-                response.setResponseCode(404);
-            }
+        if (store.delete(query) > 0) {
+            response.setResponseCode(200);
+        } else {
+            response.setResponseCode(404);
         }
         return response;
     }
@@ -201,6 +287,10 @@ public class CrudDispatcher extends Dispatcher {
         return map;
     }
 
+    public CrudStore getStore() {
+        return store;
+    }
+
     public AttributeExtractor getAttributeExtractor() {
         return attributeExtractor;
     }
@@ -210,23 +300,102 @@ public class CrudDispatcher extends Dispatcher {
     }
 
 
-    private String doGet(String path) {
-        List<String> items = new ArrayList<>();
-        AttributeSet query = attributeExtractor.fromPath(path);
-        synchronized (map) {
-            for (Map.Entry<AttributeSet, String> entry : map.entrySet()) {
-                if (entry.getKey().matches(query)) {
-                    items.add(entry.getValue());
-                }
+    /**
+     * Applies the patch to the resources matching the path, in a single atomic store update so concurrent patches
+     * of the same resource don't overwrite each other.
+     */
+    private MockResponse doPatch(String path, PatchType type, JsonNode patch) {
+        return store.update(attributeExtractor.fromPath(path), existing -> {
+            if (existing.isEmpty()) {
+                return new MockResponse().setResponseCode(404);
+            }
+            try {
+                return doPatch(path, type, patch, existing);
+            } catch (Exception e) {
+                throw new MockServerException("Exception when handling CRUD patch", e);
+            }
+        });
+    }
+
+    /**
+     * Applies the patch to the existing resources.
+     *
+     * <p> When a single resource matches, its parsed tree is taken from (and put back into) the cache and patched in
+     * place, and its attributes are only extracted again if the patch modifies an attribute path.
+     * Several matching resources are composed and the freshly parsed composition is patched in place with the same
+     * engine, so a patch behaves the same whatever the number of matching resources.
+     */
+    private MockResponse doPatch(String path, PatchType type, JsonNode patch, Map<AttributeSet, byte[]> existing) throws Exception {
+        MockResponse response = new MockResponse();
+        byte[] updatedBytes;
+        if (existing.size() == 1) {
+            Map.Entry<AttributeSet, byte[]> entry = existing.entrySet().iterator().next();
+            ParsedResourceCache.Entry cached = parsedResources.take(entry.getKey(), entry.getValue());
+            JsonNode source = cached != null ? cached.tree : context.getMapper().readTree(entry.getValue());
+            JsonNode updated = type.applyInPlace(patch, source);
+            updatedBytes = context.getMapper().writeValueAsBytes(updated);
+            AttributeSet resourceAttributes = cached != null && !modifiesAttributes(type.paths(patch))
+                    ? cached.attributes : attributeExtractor.fromResource(updatedBytes);
+            AttributeSet features = AttributeSet.merge(attributeExtractor.fromPath(path), resourceAttributes);
+            store.put(features, updatedBytes);
+            parsedResources.put(features, new ParsedResourceCache.Entry(updatedBytes, updated, resourceAttributes));
+        } else {
+            JsonNode source = context.getMapper().readTree(compose(existing.values()));
+            JsonNode updated = type.applyInPlace(patch, source);
+            updatedBytes = context.getMapper().writeValueAsBytes(updated);
+            AttributeSet features = AttributeSet.merge(attributeExtractor.fromPath(path),
+                    attributeExtractor.fromResource(updatedBytes));
+            store.put(features, updatedBytes);
+        }
+        response.setResponseCode(202);
+        response.setBody(new Buffer().write(updatedBytes));
+        return response;
+    }
+
+    private MockResponse create(String path, byte[] body) {
+        if (stringCreate) {
+            return handleCreate(path, new String(body, StandardCharsets.UTF_8));
+        }
+        return handleCreate(path, body);
+    }
+
+    private boolean overrides(String name, Class<?>... parameterTypes) {
+        try {
+            return getClass().getMethod(name, parameterTypes).getDeclaringClass() != CrudDispatcher.class;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private boolean modifiesAttributes(List<String> paths) {
+        for (String pointer : paths) {
+            if (attributeExtractor.isAttributePath(pointer)) {
+                return true;
             }
         }
+        return false;
+    }
 
+    /**
+     * Returns the UTF-8 encoded resource matching the path, or the composition of the resources if several
+     * of them match.
+     */
+    private byte[] doGet(String path) {
+        List<byte[]> items = store.findBytes(attributeExtractor.fromPath(path));
         if (items.isEmpty()) {
             return null;
         } else if (items.size() == 1) {
             return items.get(0);
         } else {
-            return responseComposer.compose(items);
+            return compose(items);
+        }
+    }
+
+    private byte[] compose(Collection<byte[]> items) {
+        List<String> decoded = new ArrayList<>(items.size());
+        for (byte[] item : items) {
+            decoded.add(new String(item, StandardCharsets.UTF_8));
         }
+        return responseComposer.compose(decoded).getBytes(StandardCharsets.UTF_8);
     }
 }
@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.crud;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Storage backend for the resources handled by a {@link CrudDispatcher}.
+ *
+ * <p> Implementations must be thread-safe, each operation has to be atomic with respect to the others.
+ */
+public interface CrudStore {
+
+    /**
+     * Returns the resources whose attributes match the provided query.
+     *
+     * @param query the attributes to match.
+     * @return the matching resources in insertion order.
+     */
+    List<String> find(AttributeSet query);
+
+    /**
+     * Returns the UTF-8 encoded resources whose attributes match the provided query.
+     *
+     * <p> The default implementation encodes the result of {@link #find(AttributeSet)}, stores keeping their
+     * resources as bytes should override it to return them without any conversion.
+     *
+     * @param query the attributes to match.
+     * @return the matching resources in insertion order, the returned arrays must not be modified.
+     */
+    default List<byte[]> findBytes(AttributeSet query) {
+        List<byte[]> result = new ArrayList<>();
+        for (String resource : find(query)) {
+            result.add(resource.getBytes(StandardCharsets.UTF_8));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the UTF-8 encoded resources whose attributes match the provided query, along with the attributes
+     * they are stored with.
+     *
+     * <p> The default implementation filters a snapshot of {@link #asMap()}.
+     *
+     * @param query the attributes to match.
+     * @return the matching entries in insertion order, the returned arrays must not be modified.
+     */
+    default Map<AttributeSet, byte[]> findEntries(AttributeSet query) {
+        Map<AttributeSet, byte[]> result = new LinkedHashMap<>();
+        for (Map.Entry<AttributeSet, String> entry : asMap().entrySet()) {
+            if (entry.getKey().matches(query)) {
+                result.put(entry.getKey(), entry.getValue().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Stores the resource, replacing any resource previously stored with the same attributes.
+     *
+     * @param attributes the attributes of the resource.
+     * @param resource the resource.
+     */
+    void put(AttributeSet attributes, String resource);
+
+    /**
+     * Stores the UTF-8 encoded resource, replacing any resource previously stored with the same attributes.
+     *
+     * <p> The default implementation decodes the resource and delegates to {@link #put(AttributeSet, String)}.
+     *
+     * @param attributes the attributes of the resource.
+     * @param resource the UTF-8 encoded resource, it must not be modified once stored.
+     */
+    default void put(AttributeSet attributes, byte[] resource) {
+        put(attributes, new String(resource, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Atomically reads and modifies the resources matching the provided query.
+     *
+     * <p> The operation receives the matching entries and runs while no other operation can access the store.
+     * It can call this store from the same thread (typically to put the modified resources), those calls are part
+     * of the same atomic step. Used to make read-modify-write requests such as PATCH and PUT linearizable.
+     *
+     * @param query the attributes to match.
+     * @param operation the operation, receiving the matching entries in insertion order (empty if there are none).
+     * @param <T> the type of the result of the operation.
+     * @return the result of the operation.
+     */
+    <T> T update(AttributeSet query, Function<Map<AttributeSet, byte[]>, T> operation);
+
+    /**
+     * Removes the resources whose attributes match the provided query.
+     *
+     * @param query the attributes to match.
+     * @return the number of removed resources.
+     */
+    int delete(AttributeSet query);
+
+    /**
+     * Returns a live {@link Map} view of the store.
+     *
+     * <p> Single operations on the view are thread-safe, iteration is performed over a snapshot of the store.
+     *
+     * @return the Map view.
+     */
+    Map<AttributeSet, String> asMap();
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.crud;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.fabric8.mockwebserver.MockServerException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link AttributeExtractor} taking the attributes of JSON resources from the scalar values at the provided
+ * <a href="https://tools.ietf.org/html/rfc6901">JSON Pointers</a>.
+ *
+ * <p> Resources are scanned with a streaming parser straight from their UTF-8 bytes: no String copy of the
+ * resource nor tree is built, objects outside the pointers are skipped and the scan stops once every attribute
+ * is found. Pointers can't go through arrays.
+ *
+ * <p> Subclasses provide the attributes of the request paths.
+ */
+public abstract class JsonAttributeExtractor implements AttributeExtractor {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private final Map<String, String> keysByPointer = new HashMap<>();
+    private final Set<String> parents = new HashSet<>();
+
+    /**
+     * @param pointers the JSON Pointer of each attribute, by attribute key.
+     */
+    protected JsonAttributeExtractor(Map<String, String> pointers) {
+        for (Map.Entry<String, String> entry : pointers.entrySet()) {
+            final String pointer = entry.getValue();
+            if (!pointer.startsWith("/")) {
+                throw new IllegalArgumentException("Invalid JSON Pointer " + pointer);
+            }
+            keysByPointer.put(pointer, entry.getKey());
+            for (int index = pointer.indexOf('/', 1); index > 0; index = pointer.indexOf('/', index + 1)) {
+                parents.add(pointer.substring(0, index));
+            }
+        }
+    }
+
+    @Override
+    public AttributeSet fromResource(String resource) {
+        try (JsonParser parser = FACTORY.createParser(resource)) {
+            return extract(parser);
+        } catch (IOException e) {
+            throw new MockServerException("Exception when extracting the resource attributes", e);
+        }
+    }
+
+    @Override
+    public AttributeSet fromResource(byte[] resource) {
+        try (JsonParser parser = FACTORY.createParser(resource)) {
+            return extract(parser);
+        } catch (IOException e) {
+            throw new MockServerException("Exception when extracting the resource attributes", e);
+        }
+    }
+
+    /**
+     * Only the attribute pointers, their parents and their children can modify the attributes.
+     */
+    @Override
+    public boolean isAttributePath(String jsonPointer) {
+        if (jsonPointer.isEmpty() || keysByPointer.containsKey(jsonPointer) || parents.contains(jsonPointer)) {
+            return true;
+        }
+        for (String pointer : keysByPointer.keySet()) {
+            if (jsonPointer.startsWith(pointer + "/")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private AttributeSet extract(JsonParser parser) throws IOException {
+        final Map<String, String> found = new LinkedHashMap<>();
+        if (parser.nextToken() == JsonToken.START_OBJECT) {
+            extract(parser, "", found);
+        }
+        final List<Attribute> attributes = new ArrayList<>(found.size());
+        for (Map.Entry<String, String> entry : found.entrySet()) {
+            attributes.add(new Attribute(entry.getKey(), entry.getValue()));
+        }
+        return new AttributeSet(attributes);
+    }
+
+    /**
+     * Scans the fields of the object the parser is at, returning early once every attribute is found.
+     *
+     * @return true if every attribute was found.
+     */
+    private boolean extract(JsonParser parser, String pointer, Map<String, String> found) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String child = pointer + "/" + parser.getCurrentName().replace("~", "~0").replace("/", "~1");
+            final JsonToken value = parser.nextToken();
+            final String key = keysByPointer.get(child);
+            if (key != null && value.isScalarValue()) {
+                found.put(key, parser.getText());
+                if (found.size() == keysByPointer.size()) {
+                    return true;
+                }
+            } else if (value == JsonToken.START_OBJECT && parents.contains(child)) {
+                if (extract(parser, child, found)) {
+                    return true;
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,211 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.crud;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Applies <a href="https://tools.ietf.org/html/rfc6902">JSON Patch</a> documents modifying the target tree in place,
+ * instead of working on a deep copy of it like {@link io.fabric8.zjsonpatch.JsonPatch#apply(JsonNode, JsonNode)}.
+ *
+ * <p> Values taken from the patch are deep copied, so the patched tree never shares nodes with the patch.
+ * If an operation fails the target is left partially patched, callers must discard it.
+ */
+final class JsonPatches {
+
+    private JsonPatches() {
+    }
+
+    /**
+     * Applies the patch to the target.
+     *
+     * @param patch the JSON Patch document (an array of operations).
+     * @param target the tree to patch, it is modified in place.
+     * @return the patched tree, which is the target unless an operation replaced the whole document.
+     * @throws IllegalArgumentException if the patch is invalid or can't be applied to the target.
+     */
+    static JsonNode applyInPlace(JsonNode patch, JsonNode target) {
+        if (!patch.isArray()) {
+            throw new IllegalArgumentException("Invalid JSON Patch, an array of operations is expected");
+        }
+        JsonNode root = target;
+        for (JsonNode operation : patch) {
+            String op = text(operation, "op");
+            List<String> path = parsePointer(text(operation, "path"));
+            switch (op) {
+                case "add":
+                    root = add(root, path, value(operation).deepCopy());
+                    break;
+                case "remove":
+                    root = remove(root, path);
+                    break;
+                case "replace":
+                    root = replace(root, path, value(operation).deepCopy());
+                    break;
+                case "move": {
+                    List<String> from = parsePointer(text(operation, "from"));
+                    JsonNode moved = get(root, from);
+                    root = add(remove(root, from), path, moved);
+                    break;
+                }
+                case "copy":
+                    root = add(root, path, get(root, parsePointer(text(operation, "from"))).deepCopy());
+                    break;
+                case "test":
+                    if (!get(root, path).equals(value(operation))) {
+                        throw new IllegalArgumentException("Test operation failed for path " + operation.get("path").asText());
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported JSON Patch operation " + op);
+            }
+        }
+        return root;
+    }
+
+    /**
+     * Returns the paths (and from paths for move and copy operations) modified or read by the patch operations.
+     */
+    static List<String> paths(JsonNode patch) {
+        List<String> paths = new ArrayList<>();
+        for (JsonNode operation : patch) {
+            if (operation.hasNonNull("path")) {
+                paths.add(operation.get("path").asText());
+            }
+            if (operation.hasNonNull("from")) {
+                paths.add(operation.get("from").asText());
+            }
+        }
+        return paths;
+    }
+
+    static List<String> parsePointer(String pointer) {
+        List<String> tokens = new ArrayList<>();
+        if (pointer.isEmpty()) {
+            return tokens;
+        }
+        if (pointer.charAt(0) != '/') {
+            throw new IllegalArgumentException("Invalid JSON Pointer " + pointer);
+        }
+        for (String token : pointer.substring(1).split("/", -1)) {
+            tokens.add(token.replace("~1", "/").replace("~0", "~"));
+        }
+        return tokens;
+    }
+
+    private static JsonNode add(JsonNode root, List<String> path, JsonNode value) {
+        if (path.isEmpty()) {
+            return value;
+        }
+        JsonNode parent = get(root, path.subList(0, path.size() - 1));
+        String token = path.get(path.size() - 1);
+        if (parent.isObject()) {
+            ((ObjectNode) parent).set(token, value);
+        } else if (parent.isArray()) {
+            ArrayNode array = (ArrayNode) parent;
+            if (token.equals("-")) {
+                array.add(value);
+            } else {
+                array.insert(index(token, array.size() + 1), value);
+            }
+        } else {
+            throw new IllegalArgumentException("Can't add a value to a non container node at " + token);
+        }
+        return root;
+    }
+
+    private static JsonNode replace(JsonNode root, List<String> path, JsonNode value) {
+        if (path.isEmpty()) {
+            return value;
+        }
+        JsonNode parent = get(root, path.subList(0, path.size() - 1));
+        String token = path.get(path.size() - 1);
+        if (parent.isObject() && parent.has(token)) {
+            ((ObjectNode) parent).replace(token, value);
+        } else if (parent.isArray()) {
+            ((ArrayNode) parent).set(index(token, parent.size()), value);
+        } else {
+            throw new IllegalArgumentException("Missing value at " + token);
+        }
+        return root;
+    }
+
+    private static JsonNode remove(JsonNode root, List<String> path) {
+        if (path.isEmpty()) {
+            throw new IllegalArgumentException("Can't remove the whole document");
+        }
+        JsonNode parent = get(root, path.subList(0, path.size() - 1));
+        String token = path.get(path.size() - 1);
+        if (parent.isObject() && parent.has(token)) {
+            ((ObjectNode) parent).remove(token);
+        } else if (parent.isArray()) {
+            ArrayNode array = (ArrayNode) parent;
+            array.remove(index(token, array.size()));
+        } else {
+            throw new IllegalArgumentException("Missing value at " + token);
+        }
+        return root;
+    }
+
+    private static JsonNode get(JsonNode root, List<String> path) {
+        JsonNode current = root;
+        for (String token : path) {
+            if (current.isObject()) {
+                current = current.get(token);
+            } else if (current.isArray()) {
+                current = current.get(index(token, current.size()));
+            } else {
+                current = null;
+            }
+            if (current == null) {
+                throw new IllegalArgumentException("Missing value at " + token);
+            }
+        }
+        return current;
+    }
+
+    private static int index(String token, int bound) {
+        try {
+            int index = Integer.parseInt(token);
+            if (index >= 0 && index < bound && (index == 0 || token.charAt(0) != '0')) {
+                return index;
+            }
+        } catch (NumberFormatException e) {
+            // Handled below
+        }
+        throw new IllegalArgumentException("Invalid array index " + token);
+    }
+
+    private static String text(JsonNode operation, String field) {
+        JsonNode node = operation.get(field);
+        if (node == null || !node.isTextual()) {
+            throw new IllegalArgumentException("Invalid JSON Patch operation, missing " + field + ": " + operation);
+        }
+        return node.asText();
+    }
+
+    private static JsonNode value(JsonNode operation) {
+        if (!operation.has("value")) {
+            throw new IllegalArgumentException("Invalid JSON Patch operation, missing value: " + operation);
+        }
+        return operation.get("value");
+    }
+}
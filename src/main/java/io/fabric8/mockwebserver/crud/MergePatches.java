@@ -0,0 +1,164 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.crud;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies <a href="https://tools.ietf.org/html/rfc7386">JSON Merge Patch</a> and Kubernetes-like strategic merge
+ * patch documents, modifying the target tree in place.
+ *
+ * <p> Strategic merge patches are approximated without any schema: lists of objects having a {@code name} field
+ * are merged by name, any other list is replaced. The {@code $patch} directive is supported with the
+ * {@code delete} (for list items and objects) and {@code replace} (for objects and lists) values.
+ *
+ * <p> Values taken from the patch are deep copied, so the patched tree never shares nodes with the patch.
+ * If the patch can't be applied the target is left partially patched, callers must discard it.
+ */
+final class MergePatches {
+
+    static final String MERGE_KEY = "name";
+    private static final String DIRECTIVE = "$patch";
+    private static final String DELETE = "delete";
+    private static final String REPLACE = "replace";
+
+    private MergePatches() {
+    }
+
+    /**
+     * Merges the patch into the target.
+     *
+     * @param patch the merge patch document.
+     * @param target the tree to patch, it is modified in place.
+     * @param strategic whether the patch is a strategic merge patch.
+     * @return the patched tree, which is the target unless the patch replaced the whole document.
+     */
+    static JsonNode applyInPlace(JsonNode patch, JsonNode target, boolean strategic) {
+        return merge(target, patch, strategic);
+    }
+
+    /**
+     * Returns the JSON Pointers of the values modified by the patch.
+     */
+    static List<String> paths(JsonNode patch) {
+        List<String> paths = new ArrayList<>();
+        collectPaths("", patch, paths);
+        return paths;
+    }
+
+    private static JsonNode merge(JsonNode target, JsonNode patch, boolean strategic) {
+        if (!patch.isObject()) {
+            return strategic && patch.isArray() ? mergeList(null, (ArrayNode) patch) : patch.deepCopy();
+        }
+        if (strategic && REPLACE.equals(patch.path(DIRECTIVE).asText())) {
+            target = null;
+        }
+        ObjectNode result = target != null && target.isObject() ? (ObjectNode) target : JsonNodeFactory.instance.objectNode();
+        Iterator<Map.Entry<String, JsonNode>> fields = patch.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            JsonNode value = field.getValue();
+            if (strategic && field.getKey().startsWith("$")) {
+                continue;
+            }
+            if (value.isNull() || (strategic && DELETE.equals(value.path(DIRECTIVE).asText()))) {
+                result.remove(field.getKey());
+            } else if (strategic && value.isArray()) {
+                result.set(field.getKey(), mergeList(result.get(field.getKey()), (ArrayNode) value));
+            } else {
+                result.set(field.getKey(), merge(result.get(field.getKey()), value, strategic));
+            }
+        }
+        return result;
+    }
+
+    private static JsonNode mergeList(JsonNode target, ArrayNode patch) {
+        boolean replace = false;
+        boolean byKey = true;
+        for (JsonNode item : patch) {
+            if (item.isObject() && REPLACE.equals(item.path(DIRECTIVE).asText()) && !item.has(MERGE_KEY)) {
+                replace = true;
+            } else if (!item.isObject() || !item.hasNonNull(MERGE_KEY)) {
+                byKey = false;
+            }
+        }
+        if (replace || !byKey || target == null || !target.isArray() || !hasMergeKeys(target)) {
+            ArrayNode result = JsonNodeFactory.instance.arrayNode(patch.size());
+            for (JsonNode item : patch) {
+                if (!isDirective(item, REPLACE) && !isDirective(item, DELETE)) {
+                    result.add(merge(null, item, true));
+                }
+            }
+            return result;
+        }
+        ArrayNode result = (ArrayNode) target;
+        for (JsonNode item : patch) {
+            int index = indexOf(result, item.get(MERGE_KEY));
+            if (isDirective(item, DELETE)) {
+                if (index >= 0) {
+                    result.remove(index);
+                }
+            } else if (index >= 0) {
+                result.set(index, merge(result.get(index), item, true));
+            } else {
+                result.add(merge(null, item, true));
+            }
+        }
+        return result;
+    }
+
+    private static boolean hasMergeKeys(JsonNode list) {
+        for (JsonNode item : list) {
+            if (!item.isObject() || !item.hasNonNull(MERGE_KEY)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(ArrayNode list, JsonNode key) {
+        for (int i = 0; i < list.size(); i++) {
+            if (key.equals(list.get(i).get(MERGE_KEY))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isDirective(JsonNode item, String directive) {
+        return item.isObject() && directive.equals(item.path(DIRECTIVE).asText());
+    }
+
+    private static void collectPaths(String pointer, JsonNode patch, List<String> paths) {
+        if (!patch.isObject() || patch.size() == 0 || patch.has(DIRECTIVE)) {
+            paths.add(pointer);
+            return;
+        }
+        Iterator<Map.Entry<String, JsonNode>> fields = patch.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            collectPaths(pointer + "/" + field.getKey().replace("~", "~0").replace("/", "~1"), field.getValue(), paths);
+        }
+    }
+}
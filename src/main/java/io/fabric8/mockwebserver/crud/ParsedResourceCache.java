@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.crud;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of the parsed trees of stored resources, so patching the same resource repeatedly
+ * doesn't parse its serialized form again.
+ *
+ * <p> Entries are validated against the identity of the stored bytes: if the resource was replaced in the
+ * {@link CrudStore} in the meantime, the cached tree is ignored.
+ */
+class ParsedResourceCache {
+
+    private final Map<AttributeSet, Entry> entries;
+
+    ParsedResourceCache(final int capacity) {
+        this.entries = new LinkedHashMap<AttributeSet, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<AttributeSet, ParsedResourceCache.Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns (and removes) the cached entry for the resource, the caller is expected to modify the tree and put
+     * it back once the modified resource is stored.
+     *
+     * @param key the attributes the resource is stored with.
+     * @param source the stored resource.
+     * @return the cached entry, or null if there is none or it doesn't correspond to the stored resource.
+     */
+    synchronized Entry take(AttributeSet key, byte[] source) {
+        Entry entry = entries.remove(key);
+        return entry != null && entry.source == source ? entry : null;
+    }
+
+    synchronized void put(AttributeSet key, Entry entry) {
+        entries.put(key, entry);
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    static final class Entry {
+
+        final byte[] source;
+        final JsonNode tree;
+        final AttributeSet attributes;
+
+        /**
+         * @param source the stored resource.
+         * @param tree the parsed resource.
+         * @param attributes the attributes extracted from the resource (not including the path ones).
+         */
+        Entry(byte[] source, JsonNode tree, AttributeSet attributes) {
+            this.source = source;
+            this.tree = tree;
+            this.attributes = attributes;
+        }
+    }
+}
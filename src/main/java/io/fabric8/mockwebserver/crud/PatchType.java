@@ -0,0 +1,115 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.crud;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The patch formats supported by the {@link CrudDispatcher}, identified by the request content type.
+ */
+public enum PatchType {
+
+    /**
+     * <a href="https://tools.ietf.org/html/rfc6902">JSON Patch</a>.
+     */
+    JSON("application/json-patch+json") {
+        @Override
+        JsonNode applyInPlace(JsonNode patch, JsonNode target) {
+            return JsonPatches.applyInPlace(patch, target);
+        }
+
+        @Override
+        List<String> paths(JsonNode patch) {
+            return JsonPatches.paths(patch);
+        }
+    },
+    /**
+     * <a href="https://tools.ietf.org/html/rfc7386">JSON Merge Patch</a>.
+     */
+    MERGE("application/merge-patch+json") {
+        @Override
+        JsonNode applyInPlace(JsonNode patch, JsonNode target) {
+            return MergePatches.applyInPlace(patch, target, false);
+        }
+
+        @Override
+        List<String> paths(JsonNode patch) {
+            return MergePatches.paths(patch);
+        }
+    },
+    /**
+     * Kubernetes strategic merge patch, approximated without schema information (lists of objects are merged
+     * by their {@code name} field).
+     */
+    STRATEGIC_MERGE("application/strategic-merge-patch+json") {
+        @Override
+        JsonNode applyInPlace(JsonNode patch, JsonNode target) {
+            return MergePatches.applyInPlace(patch, target, true);
+        }
+
+        @Override
+        List<String> paths(JsonNode patch) {
+            return MergePatches.paths(patch);
+        }
+    };
+
+    private final String contentType;
+
+    PatchType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Applies the patch modifying the target tree in place.
+     *
+     * @return the patched tree, which is the target unless the patch replaced the whole document.
+     */
+    abstract JsonNode applyInPlace(JsonNode patch, JsonNode target);
+
+    /**
+     * Returns the JSON Pointers of the values modified by the patch.
+     */
+    abstract List<String> paths(JsonNode patch);
+
+    /**
+     * Resolves the type of a patch.
+     *
+     * <p> Arrays are always JSON Patches, whatever the content type says (some clients send them as strategic
+     * merge patches). Objects are JSON Patches or strategic merge patches if the content type says so, JSON Merge
+     * Patches otherwise.
+     *
+     * @param contentType the content type of the request, might be null.
+     * @param patch the patch document.
+     * @return the patch type.
+     */
+    public static PatchType of(String contentType, JsonNode patch) {
+        String type = contentType != null ? contentType.toLowerCase(Locale.ROOT) : "";
+        if (patch.isArray() || type.startsWith(JSON.contentType)) {
+            return JSON;
+        }
+        if (type.startsWith(STRATEGIC_MERGE.contentType)) {
+            return STRATEGIC_MERGE;
+        }
+        return MERGE;
+    }
+}
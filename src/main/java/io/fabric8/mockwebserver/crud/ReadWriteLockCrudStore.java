@@ -0,0 +1,243 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.crud;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * {@link CrudStore} guarded by a {@link ReadWriteLock}.
+ *
+ * <p> Lookups share the read lock and can run in parallel, modifications are serialized through the write lock.
+ * Resources are kept as UTF-8 encoded bytes, which halves the footprint of mostly ASCII JSON resources compared
+ * to Strings.
+ */
+public class ReadWriteLockCrudStore implements CrudStore {
+
+    private final AttributeIndexedMap<byte[]> entries = new AttributeIndexedMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<AttributeSet, String> view = new MapView();
+
+    @Override
+    public List<String> find(AttributeSet query) {
+        List<String> result = new ArrayList<>();
+        for (byte[] resource : findBytes(query)) {
+            result.add(decode(resource));
+        }
+        return result;
+    }
+
+    @Override
+    public List<byte[]> findBytes(AttributeSet query) {
+        return read(() -> {
+            List<byte[]> result = new ArrayList<>();
+            for (AttributeSet key : entries.find(query)) {
+                result.add(entries.get(key));
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public Map<AttributeSet, byte[]> findEntries(AttributeSet query) {
+        return read(() -> entriesMatching(query));
+    }
+
+    @Override
+    public void put(AttributeSet attributes, String resource) {
+        put(attributes, encode(resource));
+    }
+
+    @Override
+    public void put(AttributeSet attributes, byte[] resource) {
+        write(() -> entries.put(attributes, resource));
+    }
+
+    /**
+     * Runs the operation holding the write lock, which the operation can reenter to read or modify the store.
+     */
+    @Override
+    public <T> T update(AttributeSet query, Function<Map<AttributeSet, byte[]>, T> operation) {
+        return write(() -> operation.apply(entriesMatching(query)));
+    }
+
+    @Override
+    public int delete(AttributeSet query) {
+        return write(() -> {
+            List<AttributeSet> keys = entries.find(query);
+            for (AttributeSet key : keys) {
+                entries.remove(key);
+            }
+            return keys.size();
+        });
+    }
+
+    @Override
+    public Map<AttributeSet, String> asMap() {
+        return view;
+    }
+
+    private Map<AttributeSet, byte[]> entriesMatching(AttributeSet query) {
+        Map<AttributeSet, byte[]> result = new LinkedHashMap<>();
+        for (AttributeSet key : entries.find(query)) {
+            result.put(key, entries.get(key));
+        }
+        return result;
+    }
+
+    private <T> T read(Supplier<T> operation) {
+        return locked(lock.readLock(), operation);
+    }
+
+    private <T> T write(Supplier<T> operation) {
+        return locked(lock.writeLock(), operation);
+    }
+
+    private static byte[] encode(String resource) {
+        return resource == null ? null : resource.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String decode(byte[] resource) {
+        return resource == null ? null : new String(resource, StandardCharsets.UTF_8);
+    }
+
+    private static <T> T locked(Lock lock, Supplier<T> operation) {
+        lock.lock();
+        try {
+            return operation.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private final class MapView extends AbstractMap<AttributeSet, String> {
+
+        private final Set<Entry<AttributeSet, String>> entrySet = new EntrySet();
+
+        @Override
+        public String get(Object key) {
+            return decode(read(() -> entries.get(key)));
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return read(() -> entries.containsKey(key));
+        }
+
+        @Override
+        public String put(AttributeSet key, String value) {
+            byte[] encoded = encode(value);
+            return decode(write(() -> entries.put(key, encoded)));
+        }
+
+        @Override
+        public String remove(Object key) {
+            return decode(write(() -> entries.remove(key)));
+        }
+
+        @Override
+        public void clear() {
+            write(() -> {
+                entries.clear();
+                return null;
+            });
+        }
+
+        @Override
+        public int size() {
+            return read(entries::size);
+        }
+
+        @Override
+        public Set<Entry<AttributeSet, String>> entrySet() {
+            return entrySet;
+        }
+    }
+
+    private final class EntrySet extends AbstractSet<Map.Entry<AttributeSet, String>> {
+
+        @Override
+        public Iterator<Map.Entry<AttributeSet, String>> iterator() {
+            final Iterator<Map.Entry<AttributeSet, String>> snapshot = read(() -> {
+                List<Map.Entry<AttributeSet, String>> copy = new ArrayList<>(entries.size());
+                for (Map.Entry<AttributeSet, byte[]> entry : entries.entrySet()) {
+                    copy.add(new ViewEntry(entry.getKey(), decode(entry.getValue())));
+                }
+                return copy;
+            }).iterator();
+            return new Iterator<Map.Entry<AttributeSet, String>>() {
+                private Map.Entry<AttributeSet, String> current;
+
+                @Override
+                public boolean hasNext() {
+                    return snapshot.hasNext();
+                }
+
+                @Override
+                public Map.Entry<AttributeSet, String> next() {
+                    current = snapshot.next();
+                    return current;
+                }
+
+                @Override
+                public void remove() {
+                    if (current == null) {
+                        throw new IllegalStateException();
+                    }
+                    view.remove(current.getKey());
+                    current = null;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return view.size();
+        }
+
+        @Override
+        public void clear() {
+            view.clear();
+        }
+    }
+
+    private final class ViewEntry extends AbstractMap.SimpleEntry<AttributeSet, String> {
+
+        private static final long serialVersionUID = 1L;
+
+        private ViewEntry(AttributeSet key, String value) {
+            super(key, value);
+        }
+
+        @Override
+        public String setValue(String value) {
+            view.put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+}
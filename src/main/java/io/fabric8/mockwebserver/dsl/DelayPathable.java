@@ -15,7 +15,7 @@
  */
 package io.fabric8.mockwebserver.dsl;
 
-public interface DelayPathable<T> extends Delayable<Pathable<T>>,
+public interface DelayPathable<T> extends Delayable<Pathable<T>>, Shapeable<DelayPathable<T>>,
         Pathable<T> {
 
 }
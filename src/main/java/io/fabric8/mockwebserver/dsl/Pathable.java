@@ -20,4 +20,16 @@ public interface Pathable<T> {
 
   T withPath(String path);
 
+  /**
+   * Matches the requests whose path matches the provided template, regardless of their query string.
+   *
+   * <p> Template segments can be literals, {@code {param}} placeholders or {@code *} wildcards matching any single
+   * segment, or a trailing {@code **} wildcard matching any number of remaining segments.
+   * Expectations set with {@link #withPath(String)} for the exact request path take precedence.
+   *
+   * @param template the path template, e.g. {@code /api/v1/namespaces/{namespace}/pods/*}.
+   * @return the next step of the expectation.
+   */
+  T withPathTemplate(String template);
+
 }
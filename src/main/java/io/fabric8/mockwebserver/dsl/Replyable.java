@@ -16,8 +16,11 @@
 
 package io.fabric8.mockwebserver.dsl;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+import io.fabric8.mockwebserver.events.EventStream;
 import io.fabric8.mockwebserver.utils.BodyProvider;
 import io.fabric8.mockwebserver.utils.ResponseProvider;
 
@@ -31,4 +34,40 @@ public interface Replyable<T> {
 
   T andReplyChunked(ResponseProvider<List<Object>> content);
 
+  /**
+   * Replies with a chunked response whose chunks are pulled from the provided iterator while the body is written,
+   * so that they don't need to be held in memory at once. Only plain text HTTP/1.1 connections stream; elsewhere (TLS,
+   * HTTP/2, a server socket factory or transport not streaming) the chunks are buffered, and the response fails with a
+   * {@link io.fabric8.mockwebserver.MockServerException} beyond
+   * {@link io.fabric8.mockwebserver.internal.StreamingChunkedResponse#MAX_BUFFERED_SIZE} bytes.
+   *
+   * @param statusCode the response status code.
+   * @param content provides, for every request, the iterator of the chunks to send.
+   * @return the next step of the expectation.
+   */
+  T andStreamChunked(int statusCode, BodyProvider<? extends Iterator<?>> content);
+
+  /**
+   * Keeps the response open and sends the events of the provided stream as they are published, until it's closed.
+   *
+   * @param statusCode the response status code.
+   * @param events the stream the test publishes the events to.
+   * @return the next step of the expectation.
+   */
+  T andStreamEvents(int statusCode, EventStream events);
+
+  /**
+   * Keeps the response open and sends the events of the provided stream as they are published, until it's closed.
+   *
+   * <p> Where the events can't be streamed (TLS, HTTP/2) each request is a long poll, completed with the events
+   * published while it waited or, if none is, after the provided timeout.
+   *
+   * @param statusCode the response status code.
+   * @param events the stream the test publishes the events to.
+   * @param longPollTimeout how long a long poll waits for events.
+   * @param unit the unit of the timeout.
+   * @return the next step of the expectation.
+   */
+  T andStreamEvents(int statusCode, EventStream events, long longPollTimeout, TimeUnit unit);
+
 }
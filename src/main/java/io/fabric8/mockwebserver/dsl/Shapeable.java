@@ -0,0 +1,30 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.dsl;
+
+import io.fabric8.mockwebserver.shaping.ShapingProfile;
+
+public interface Shapeable<T> {
+
+  /**
+   * Shapes the responses with the provided profile (latency, throttling and chunk pacing).
+   *
+   * @param profile the network conditions to simulate.
+   * @return the next step of the DSL.
+   */
+  T shape(ShapingProfile profile);
+
+}
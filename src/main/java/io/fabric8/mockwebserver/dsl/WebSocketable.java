@@ -23,10 +23,13 @@ public interface WebSocketable<T> {
   T andUpgradeToWebSocket();
 
   /**
-   * @deprecated the provided ScheduledExecutorService is not used, use {@link #andUpgradeToWebSocket()} instead.
-   * The ExecutorService is handled internally by WebSocketSession, external executors are no longer allowed.
+   * Upgrades to a WebSocket session whose messages are scheduled on the provided executor instead of the
+   * scheduler shared by all sessions.
+   *
+   * <p> The executor is not shut down by the server, its lifecycle is managed by the caller.
+   *
+   * @param executor the executor used to send the session messages.
    */
-  @Deprecated
   T andUpgradeToWebSocket(ScheduledExecutorService executor);
 
 }
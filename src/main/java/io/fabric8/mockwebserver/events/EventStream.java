@@ -0,0 +1,410 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.events;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import io.fabric8.mockwebserver.Context;
+import io.fabric8.mockwebserver.MockServerException;
+
+import okio.Buffer;
+
+/**
+ * A stream of events pushed by the test, from any thread, to every open watch connection.
+ *
+ * <p> Every event is encoded once into a chunk frame shared by all the watchers, which copy the frames published since
+ * their last write straight to their connection: publishing an event neither allocates nor wakes anything per watcher
+ * besides a single signal, and a watcher woken after several events writes all of them at once.
+ *
+ * <p> The most recent events are kept in a ring buffer of the configured capacity, a watcher that falls behind by more
+ * than that is disconnected. Watchers only receive the events published after they connected, see
+ * {@link #awaitWatchers(int, long, TimeUnit)}.
+ */
+public class EventStream implements Closeable {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * Wire format of the events.
+     */
+    public enum Format {
+        /**
+         * Each event on its own line, as Kubernetes watch streams.
+         */
+        WATCH,
+        /**
+         * <a href="https://html.spec.whatwg.org/multipage/server-sent-events.html">Server-Sent Events</a>
+         * ({@code text/event-stream}).
+         */
+        SERVER_SENT_EVENTS
+    }
+
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes();
+
+    private final Format format;
+    private final Context context;
+    private final int capacity;
+    private final AtomicReferenceArray<Frame> frames;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final AtomicInteger watcherCount = new AtomicInteger();
+    private volatile long tail;
+    private volatile boolean closed;
+
+    public EventStream() {
+        this(Format.WATCH);
+    }
+
+    public EventStream(Format format) {
+        this(format, new Context(), DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param format the wire format of the events.
+     * @param context the context whose mapper serializes the non String events.
+     * @param capacity the number of events a watcher can fall behind before it's disconnected.
+     */
+    public EventStream(Format format, Context context, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity must be positive");
+        }
+        this.format = format;
+        this.context = context;
+        this.capacity = capacity;
+        this.frames = new AtomicReferenceArray<>(capacity);
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    /**
+     * Sends the event to the open watchers.
+     *
+     * @param event the event, Strings are sent as is, other objects are serialized.
+     */
+    public void send(Object event) {
+        send(null, event);
+    }
+
+    /**
+     * Sends the event with the provided type (the {@code event} field of Server-Sent Events, ignored by watch streams).
+     *
+     * @param type the event type.
+     * @param event the event, Strings are sent as is, other objects are serialized.
+     */
+    public void send(String type, Object event) {
+        publish(Collections.singletonList(encode(type, event)));
+    }
+
+    /**
+     * Sends all the events at once, the watchers are woken once for the whole batch.
+     *
+     * @param events the events, Strings are sent as is, other objects are serialized.
+     */
+    public void sendAll(Iterable<?> events) {
+        final List<Frame> batch = new ArrayList<>();
+        for (Object event : events) {
+            batch.add(encode(null, event));
+        }
+        publish(batch);
+    }
+
+    /**
+     * Completes the responses of all the watchers once they've written the pending events.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public int getWatcherCount() {
+        return watcherCount.get();
+    }
+
+    /**
+     * Waits until at least the provided number of watchers are connected, so that they receive the next events.
+     *
+     * @return true if the watchers are connected, false if the timeout elapsed.
+     */
+    public boolean awaitWatchers(int count, long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (watcherCount.get() < count) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = changed.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Registers a watcher, which will receive the events published from now on.
+     */
+    public Watcher watch() {
+        lock.lock();
+        try {
+            watcherCount.incrementAndGet();
+            changed.signalAll();
+            return new Watcher(tail);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Frame encode(String type, Object event) {
+        final String data = toString(event);
+        final Buffer payload = new Buffer();
+        if (format == Format.SERVER_SENT_EVENTS) {
+            if (type != null) {
+                payload.writeUtf8("event: ").writeUtf8(type).writeByte('\n');
+            }
+            for (String line : data.split("\r\n|\r|\n", -1)) {
+                payload.writeUtf8("data: ").writeUtf8(line).writeByte('\n');
+            }
+            payload.writeByte('\n');
+        } else {
+            payload.writeUtf8(data);
+            if (!data.endsWith("\n")) {
+                payload.writeByte('\n');
+            }
+        }
+        final Buffer frame = new Buffer();
+        frame.writeHexadecimalUnsignedLong(payload.size()).writeUtf8("\r\n");
+        final int payloadOffset = (int) frame.size();
+        final int payloadLength = (int) payload.size();
+        frame.write(payload, payload.size());
+        frame.writeUtf8("\r\n");
+        return new Frame(frame.readByteArray(), payloadOffset, payloadLength);
+    }
+
+    private String toString(Object event) {
+        if (event instanceof String) {
+            return (String) event;
+        }
+        try {
+            return context.getMapper().writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new MockServerException("Exception when mapping Object to String", e);
+        }
+    }
+
+    private void publish(List<Frame> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("The event stream is closed");
+            }
+            long seq = tail;
+            for (Frame frame : batch) {
+                frame.seq = seq;
+                frames.set((int) (seq % capacity), frame);
+                seq++;
+            }
+            tail = seq;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until an event after the provided sequence is published, the stream is closed, the watcher is closed or
+     * the timeout elapses.
+     *
+     * @return false if the timeout elapsed.
+     */
+    private boolean await(Watcher watcher, long nanos) throws InterruptedException {
+        lock.lock();
+        try {
+            long remaining = nanos;
+            while (tail == watcher.cursor && !closed && !watcher.closed) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = changed.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class Frame {
+        private final byte[] bytes;
+        private final int payloadOffset;
+        private final int payloadLength;
+        // Set before the frame is published
+        private long seq;
+
+        private Frame(byte[] bytes, int payloadOffset, int payloadLength) {
+            this.bytes = bytes;
+            this.payloadOffset = payloadOffset;
+            this.payloadLength = payloadLength;
+        }
+    }
+
+    /**
+     * A connection watching the stream.
+     */
+    public final class Watcher implements Closeable {
+
+        private long cursor;
+        private volatile boolean closed;
+
+        private Watcher(long cursor) {
+            this.cursor = cursor;
+        }
+
+        /**
+         * Writes the chunk framed events as they are published, until the stream or the watcher is closed.
+         *
+         * <p> A client that disconnects is only noticed when the next events are written, see
+         * {@link #writeTo(OutputStream, long, TimeUnit, BooleanSupplier)}.
+         *
+         * @param out the connection, after the response headers.
+         * @throws IOException if the connection fails or the watcher fell behind by more than the stream capacity.
+         */
+        public void writeTo(OutputStream out) throws IOException {
+            writeTo(out, Long.MAX_VALUE, TimeUnit.NANOSECONDS, () -> false);
+        }
+
+        /**
+         * Writes the chunk framed events as they are published, until the stream or the watcher is closed or the client
+         * disconnects.
+         *
+         * <p> Nothing is written while no event is published, so a disconnected client would keep its watcher (and
+         * the thread writing to it) until the next event. Instead, the connection is checked whenever no event was
+         * published for the provided interval.
+         *
+         * @param out the connection, after the response headers.
+         * @param checkInterval the time without events after which the connection is checked.
+         * @param unit the unit of the interval.
+         * @param disconnected returns true if the client disconnected, the watcher is then closed.
+         * @throws IOException if the connection fails or the watcher fell behind by more than the stream capacity.
+         */
+        public void writeTo(OutputStream out, long checkInterval, TimeUnit unit, BooleanSupplier disconnected) throws IOException {
+            final long checkIntervalNanos = unit.toNanos(checkInterval);
+            final OutputStream buffered = new BufferedOutputStream(out, 8192);
+            try {
+                while (true) {
+                    if (!await(this, checkIntervalNanos)) {
+                        if (disconnected.getAsBoolean()) {
+                            return;
+                        }
+                        continue;
+                    }
+                    final long end = tail;
+                    for (; cursor < end; cursor++) {
+                        final Frame frame = frame(cursor);
+                        buffered.write(frame.bytes);
+                    }
+                    if (EventStream.this.closed && cursor == tail) {
+                        buffered.write(LAST_CHUNK);
+                        buffered.flush();
+                        return;
+                    }
+                    if (closed) {
+                        return;
+                    }
+                    buffered.flush();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while watching the event stream");
+            } finally {
+                close();
+            }
+        }
+
+        /**
+         * Long polls the stream: waits for the next events and returns them, without chunk framing.
+         *
+         * @return the events published since the last poll, empty if none was published before the timeout.
+         * @throws IOException if the watcher fell behind by more than the stream capacity.
+         */
+        public Buffer poll(long timeout, TimeUnit unit) throws IOException, InterruptedException {
+            await(this, unit.toNanos(timeout));
+            final Buffer events = new Buffer();
+            final long end = tail;
+            for (; cursor < end; cursor++) {
+                final Frame frame = frame(cursor);
+                events.write(frame.bytes, frame.payloadOffset, frame.payloadLength);
+            }
+            return events;
+        }
+
+        private Frame frame(long seq) throws IOException {
+            final Frame frame = frames.get((int) (seq % capacity));
+            if (frame == null || frame.seq != seq) {
+                throw new IOException("The watcher fell behind the event stream by more than " + capacity + " events");
+            }
+            return frame;
+        }
+
+        /**
+         * Stops watching, a pending {@link #writeTo(OutputStream)} returns without completing the response.
+         */
+        @Override
+        public void close() {
+            if (!closed) {
+                lock.lock();
+                try {
+                    if (!closed) {
+                        closed = true;
+                        watcherCount.decrementAndGet();
+                        changed.signalAll();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+}
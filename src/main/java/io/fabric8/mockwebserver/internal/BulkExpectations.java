@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.internal;
+
+import io.fabric8.mockwebserver.Context;
+import io.fabric8.mockwebserver.ExpectationSpec;
+import io.fabric8.mockwebserver.ServerRequest;
+import io.fabric8.mockwebserver.ServerResponse;
+import io.fabric8.mockwebserver.utils.ResponseProvider;
+import io.fabric8.mockwebserver.utils.ResponseProviders;
+import okhttp3.Headers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Registers {@link ExpectationSpec} instances directly in the responses map, creating the same requests and
+ * responses as the {@link MockServerExpectationImpl} DSL without its intermediate builders.
+ */
+public class BulkExpectations {
+
+  private final Context context;
+  private final Map<ServerRequest, Queue<ServerResponse>> responses;
+
+  public BulkExpectations(Context context, Map<ServerRequest, Queue<ServerResponse>> responses) {
+    this.context = context;
+    this.responses = responses;
+  }
+
+  /**
+   * Registers the provided specs in a single pass.
+   *
+   * @param specs the expectations to register.
+   * @return the number of registered specs.
+   */
+  public int register(Iterable<ExpectationSpec> specs) {
+    int count = 0;
+    for (ExpectationSpec spec : specs) {
+      count++;
+      if (!spec.isAlways() && spec.getTimes() <= 0) {
+        continue;
+      }
+      final ServerRequest request = spec.isPathTemplate() ?
+        new PathTemplateRequest(spec.getMethod(), spec.getPath()) : new SimpleRequest(spec.getMethod(), spec.getPath());
+      MockDispatcher.register(responses, request, toResponse(spec));
+    }
+    return count;
+  }
+
+  private ServerResponse toResponse(ExpectationSpec spec) {
+    final Headers headers = spec.getHeaders().length == 0 ? Headers.of() : Headers.of(spec.getHeaders());
+    if (spec.isChunked()) {
+      final List<String> chunks = new ArrayList<>(spec.getChunks().length);
+      for (Object chunk : spec.getChunks()) {
+        chunks.add(MockServerExpectationImpl.toString(context, chunk));
+      }
+      final ResponseProvider<List<String>> provider = ResponseProviders.of(spec.getStatusCode(), chunks);
+      provider.setHeaders(headers);
+      return new ChunkedResponse(spec.isAlways(), spec.getTimes(), spec.getDelay(), spec.getDelayUnit(), spec.getShaping(), provider);
+    }
+    final String body = spec.getBody() == null ? "" : MockServerExpectationImpl.toString(context, spec.getBody());
+    final ResponseProvider<String> provider = ResponseProviders.of(spec.getStatusCode(), body);
+    provider.setHeaders(headers);
+    return new SimpleResponse(spec.isAlways(), spec.getTimes(), provider, null, spec.getDelay(), spec.getDelayUnit(), spec.getShaping());
+  }
+}
@@ -15,15 +15,20 @@
  */
 package io.fabric8.mockwebserver.internal;
 
+import java.io.InterruptedIOException;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import io.fabric8.mockwebserver.ServerResponse;
+import io.fabric8.mockwebserver.shaping.PacedChunks;
+import io.fabric8.mockwebserver.shaping.ShapingProfile;
 import io.fabric8.mockwebserver.utils.ResponseProvider;
 import io.fabric8.mockwebserver.utils.ResponseProviders;
 
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
 
 public class ChunkedResponse implements ServerResponse {
 
@@ -32,6 +37,10 @@ public class ChunkedResponse implements ServerResponse {
     private final boolean repeatable;
     private final long responseDelay;
     private final TimeUnit responseDelayUnit;
+    private final ShapingProfile shaping;
+    private final AtomicInteger remaining;
+    private volatile Buffer framedBody;
+    private volatile PacedChunks pacedChunks;
 
     public ChunkedResponse(boolean repeatable, int statusCode, String... body) {
         this(repeatable, ResponseProviders.ofAll(statusCode, body));
@@ -46,10 +55,20 @@ public class ChunkedResponse implements ServerResponse {
     }
 
     public ChunkedResponse(boolean repeatable, long responseDelay, TimeUnit responseDelayUnit, ResponseProvider<List<String>> bodyProvider) {
+        this(repeatable, 1, responseDelay, responseDelayUnit, bodyProvider);
+    }
+
+    public ChunkedResponse(boolean repeatable, int times, long responseDelay, TimeUnit responseDelayUnit, ResponseProvider<List<String>> bodyProvider) {
+        this(repeatable, times, responseDelay, responseDelayUnit, null, bodyProvider);
+    }
+
+    public ChunkedResponse(boolean repeatable, int times, long responseDelay, TimeUnit responseDelayUnit, ShapingProfile shaping, ResponseProvider<List<String>> bodyProvider) {
         this.bodyProvider = bodyProvider;
         this.repeatable = repeatable;
         this.responseDelay = responseDelay;
         this.responseDelayUnit = responseDelayUnit;
+        this.shaping = shaping;
+        this.remaining = new AtomicInteger(times);
     }
 
     public ResponseProvider<List<String>> getBodyProvider() {
@@ -60,8 +79,32 @@ public class ChunkedResponse implements ServerResponse {
     public MockResponse toMockResponse(RecordedRequest request) {
         MockResponse mockResponse = new MockResponse();
         mockResponse.setHeaders(bodyProvider.getHeaders());
-        mockResponse.setChunkedBody(concatBody(request), DEFAULT_MAX_CHUNK_SIZE);
         mockResponse.setResponseCode(bodyProvider.getStatusCode(request));
+        if (shaping != null) {
+            shaping.applyTo(mockResponse);
+        }
+        if (isChunkPaced()) {
+            final PacedChunks paced = pacedChunks(request);
+            final StreamingSocket socket = StreamingSocket.current();
+            if (socket != null && request.getTlsVersion() == null && request.getHeader(":scheme") == null) {
+                // Each frame is written on its own, the body delay is applied before the first one
+                final long delayNanos = responseDelayUnit.toNanos(responseDelay);
+                mockResponse.removeHeader("Content-Length");
+                mockResponse.addHeader("Transfer-encoding: chunked");
+                socket.writeAfterHeaders(out -> {
+                    sleep(delayNanos);
+                    paced.writeTo(out);
+                });
+                return mockResponse;
+            }
+            paced.applyTo(mockResponse);
+        } else if (ResponseProviders.isFixed(bodyProvider)) {
+            mockResponse.setBody(framedBody(request));
+            mockResponse.removeHeader("Content-Length");
+            mockResponse.addHeader("Transfer-encoding: chunked");
+        } else {
+            mockResponse.setChunkedBody(concatBody(request), DEFAULT_MAX_CHUNK_SIZE);
+        }
 
         if (responseDelay > 0) {
             mockResponse.setBodyDelay(responseDelay, responseDelayUnit);
@@ -70,6 +113,60 @@ public class ChunkedResponse implements ServerResponse {
         return mockResponse;
     }
 
+    /**
+     * Returns the chunk framed body of a fixed provider, concatenating and framing it on first use only
+     * (equivalent to {@link MockResponse#setChunkedBody(Buffer, int)}).
+     */
+    private Buffer framedBody(RecordedRequest request) {
+        Buffer framed = framedBody;
+        if (framed == null) {
+            Buffer body = new Buffer().writeUtf8(concatBody(request));
+            framed = new Buffer();
+            while (!body.exhausted()) {
+                long chunkSize = Math.min(body.size(), DEFAULT_MAX_CHUNK_SIZE);
+                framed.writeHexadecimalUnsignedLong(chunkSize);
+                framed.writeUtf8("\r\n");
+                framed.write(body, chunkSize);
+                framed.writeUtf8("\r\n");
+            }
+            framed.writeUtf8("0\r\n\r\n");
+            framedBody = framed;
+        }
+        return framed;
+    }
+
+    /**
+     * Returns the body framed with one chunk per provided chunk, cached for fixed providers.
+     */
+    private PacedChunks pacedChunks(RecordedRequest request) {
+        PacedChunks paced = pacedChunks;
+        if (paced == null) {
+            paced = PacedChunks.frame(bodyProvider.getBody(request), shaping.getChunkPeriod(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+            if (ResponseProviders.isFixed(bodyProvider)) {
+                pacedChunks = paced;
+            }
+        }
+        return paced;
+    }
+
+    /**
+     * Returns true if the chunks are sent one period apart, see {@link ShapingProfile#withChunkPacing(long, TimeUnit)}.
+     */
+    boolean isChunkPaced() {
+        return shaping != null && shaping.isChunkPaced();
+    }
+
+    private static void sleep(long nanos) throws InterruptedIOException {
+        if (nanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(nanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while delaying the response chunks");
+            }
+        }
+    }
+
     private String concatBody(RecordedRequest request) {
         StringBuilder sb = new StringBuilder();
         for (String s : bodyProvider.getBody(request)) {
@@ -82,4 +179,9 @@ public class ChunkedResponse implements ServerResponse {
     public boolean isRepeatable() {
         return repeatable;
     }
+
+    @Override
+    public int consume() {
+        return remaining.getAndUpdate(r -> r > 0 ? r - 1 : r) - 1;
+    }
 }
@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.internal;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.fabric8.mockwebserver.MockServerException;
+import io.fabric8.mockwebserver.ServerResponse;
+import io.fabric8.mockwebserver.events.EventStream;
+import io.fabric8.mockwebserver.utils.ResponseProvider;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Response that keeps the connection open and sends the events of an {@link EventStream} as they are published.
+ *
+ * <p> On plain text HTTP/1.1 connections accepted by a {@link StreamingServerSocketFactory} every event is sent as a
+ * chunk until the stream is closed, or the client disconnects. Otherwise (TLS, HTTP/2 or a different server socket
+ * factory) the response is a long poll, completed with the events published while it waited (30 seconds by default).
+ */
+public class EventStreamResponse implements ServerResponse {
+
+    public static final long DEFAULT_LONG_POLL_TIMEOUT_SECONDS = 30;
+    /**
+     * Time without events after which a streaming connection is checked, so that watchers whose client disconnected
+     * are closed.
+     */
+    private static final long DISCONNECT_CHECK_INTERVAL_MILLIS = 500;
+
+    private final ResponseProvider<EventStream> bodyProvider;
+    private final boolean repeatable;
+    private final long responseDelay;
+    private final TimeUnit responseDelayUnit;
+    private final long longPollTimeout;
+    private final TimeUnit longPollTimeoutUnit;
+    private final AtomicInteger remaining;
+
+    public EventStreamResponse(boolean repeatable, int times, long responseDelay, TimeUnit responseDelayUnit, ResponseProvider<EventStream> bodyProvider) {
+        this(repeatable, times, responseDelay, responseDelayUnit, DEFAULT_LONG_POLL_TIMEOUT_SECONDS, TimeUnit.SECONDS, bodyProvider);
+    }
+
+    /**
+     * @param longPollTimeout how long a long poll waits for events before it's completed without any.
+     * @param longPollTimeoutUnit the unit of the long poll timeout.
+     */
+    public EventStreamResponse(boolean repeatable, int times, long responseDelay, TimeUnit responseDelayUnit, long longPollTimeout, TimeUnit longPollTimeoutUnit, ResponseProvider<EventStream> bodyProvider) {
+        this.bodyProvider = bodyProvider;
+        this.repeatable = repeatable;
+        this.responseDelay = responseDelay;
+        this.responseDelayUnit = responseDelayUnit;
+        this.longPollTimeout = longPollTimeout;
+        this.longPollTimeoutUnit = longPollTimeoutUnit;
+        this.remaining = new AtomicInteger(times);
+    }
+
+    public ResponseProvider<EventStream> getBodyProvider() {
+        return bodyProvider;
+    }
+
+    public long getLongPollTimeout(TimeUnit unit) {
+        return unit.convert(longPollTimeout, longPollTimeoutUnit);
+    }
+
+    @Override
+    public MockResponse toMockResponse(RecordedRequest request) {
+        final EventStream events = bodyProvider.getBody(request);
+        final MockResponse mockResponse = new MockResponse();
+        mockResponse.setHeaders(bodyProvider.getHeaders());
+        mockResponse.setResponseCode(bodyProvider.getStatusCode(request));
+        if (events.getFormat() == EventStream.Format.SERVER_SENT_EVENTS && mockResponse.getHeaders().get("Content-Type") == null) {
+            mockResponse.addHeader("Content-Type", "text/event-stream");
+            mockResponse.addHeader("Cache-Control", "no-cache");
+        }
+        if (responseDelay > 0) {
+            mockResponse.setHeadersDelay(responseDelay, responseDelayUnit);
+        }
+
+        // Registered before the response is sent, so that no event published from now on is missed
+        final EventStream.Watcher watcher = events.watch();
+        final StreamingSocket socket = StreamingSocket.current();
+        if (socket != null && request.getTlsVersion() == null && request.getHeader(":scheme") == null) {
+            mockResponse.removeHeader("Content-Length");
+            mockResponse.addHeader("Transfer-encoding: chunked");
+            socket.onClose(watcher::close);
+            socket.writeAfterHeaders(out -> watcher.writeTo(out, DISCONNECT_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS, socket::isPeerClosed));
+            return mockResponse;
+        }
+        try {
+            mockResponse.setBody(watcher.poll(longPollTimeout, longPollTimeoutUnit));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MockServerException("Interrupted while polling the event stream", e);
+        } catch (IOException e) {
+            throw new MockServerException("Exception when polling the event stream", e);
+        } finally {
+            watcher.close();
+        }
+        return mockResponse;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return repeatable;
+    }
+
+    @Override
+    public int consume() {
+        return remaining.getAndUpdate(r -> r > 0 ? r - 1 : r) - 1;
+    }
+}
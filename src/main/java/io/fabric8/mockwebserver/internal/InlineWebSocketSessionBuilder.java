@@ -26,35 +26,41 @@ import io.fabric8.mockwebserver.dsl.Function;
 import io.fabric8.mockwebserver.dsl.TimesOrOnceable;
 import io.fabric8.mockwebserver.dsl.WebSocketSessionBuilder;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
 
 public class InlineWebSocketSessionBuilder<T> implements WebSocketSessionBuilder<T>, EventDoneable<T> {
 
     private static final ObjectMapper MAPPER = new ObjectMapper();
 
     private final Context context;
+    private final ScheduledExecutorService executor;
     private final Function<WebSocketSession, T> function;
     private WebSocketSession session;
 
     public InlineWebSocketSessionBuilder(Context context, Function<WebSocketSession, T> function) {
+        this(context, WebSocketSession.sharedExecutor(), function);
+    }
+
+    public InlineWebSocketSessionBuilder(Context context, ScheduledExecutorService executor, Function<WebSocketSession, T> function) {
         this.context = context;
+        this.executor = executor;
         this.function = function;
     }
 
     @Override
     public EventDoneable<T> open(Object... response) {
-        this.session = new WebSocketSession(toWebSocketMessages(response), null, null);
+        this.session = new WebSocketSession(toWebSocketMessages(response), null, null, executor);
         return this;
     }
 
 
     @Override
     public T failure(Object response, Exception e) {
-        return function.apply(new WebSocketSession(Collections.emptyList(), toWebSocketMessage(response), e));
+        return function.apply(new WebSocketSession(Collections.emptyList(), toWebSocketMessage(response), e, executor));
     }
 
     @Override
@@ -79,8 +85,8 @@ public class InlineWebSocketSessionBuilder<T> implements WebSocketSessionBuilder
 
             @Override
             public EventDoneable<T> times(int times) {
-                for (int i = 0; i < times; i++) {
-                    enqueue(in, toWebSocketMessage(event, true));
+                if (times > 0) {
+                    enqueue(in, toWebSocketMessage(event, times));
                 }
                 return InlineWebSocketSessionBuilder.this;
             }
@@ -104,8 +110,8 @@ public class InlineWebSocketSessionBuilder<T> implements WebSocketSessionBuilder
 
             @Override
             public EventDoneable<T> times(int times) {
-                for (int i = 0; i < times; i++) {
-                    enqueueSimpleRequest(new SimpleRequest(path), toWebSocketMessage(event, true));
+                if (times > 0) {
+                    enqueueSimpleRequest(new SimpleRequest(path), toWebSocketMessage(event, times));
                 }
                 return InlineWebSocketSessionBuilder.this;
             }
@@ -129,8 +135,8 @@ public class InlineWebSocketSessionBuilder<T> implements WebSocketSessionBuilder
 
             @Override
             public EventDoneable<T> times(int times) {
-                for (int i = 0; i < times; i++) {
-                    enqueueForSentWebSocketMessage(in, toWebSocketMessage(event, true));
+                if (times > 0) {
+                    enqueueForSentWebSocketMessage(in, toWebSocketMessage(event, times));
                 }
                 return InlineWebSocketSessionBuilder.this;
             }
@@ -170,6 +176,11 @@ public class InlineWebSocketSessionBuilder<T> implements WebSocketSessionBuilder
         return toWebSocketMessage(0L, content, toBeRemoved);
     }
 
+    private WebSocketMessage toWebSocketMessage(Object content, int times) {
+        WebSocketMessage message = toWebSocketMessage(content, true);
+        return new WebSocketMessage(message.getDelay(), message.getByteString(), true, message.isBinary(), times);
+    }
+
     private WebSocketMessage toWebSocketMessage(Long delay, Object content, Boolean toBeRemoved) {
         if (content instanceof String) {
             return new WebSocketMessage(delay, (String) content, toBeRemoved);
@@ -185,30 +196,15 @@ public class InlineWebSocketSessionBuilder<T> implements WebSocketSessionBuilder
     }
 
     private void enqueue(Object req, WebSocketMessage resp) {
-        Queue<WebSocketMessage> queuedResponses = session.getRequestEvents().get(req);
-        if (queuedResponses == null) {
-            queuedResponses = new ArrayDeque<>();
-            session.getRequestEvents().put(req, queuedResponses);
-        }
-        queuedResponses.add(resp);
+        session.getRequestEvents().computeIfAbsent(req, k -> new ConcurrentLinkedQueue<>()).add(resp);
     }
 
     private void enqueueForSentWebSocketMessage(Object req, WebSocketMessage resp) {
-        Queue<WebSocketMessage> queuedResponses = session.getSentWebSocketMessagesRequestEvents().get(req);
-        if (queuedResponses == null) {
-            queuedResponses = new ArrayDeque<>();
-            session.getSentWebSocketMessagesRequestEvents().put(req, queuedResponses);
-        }
-        queuedResponses.add(resp);
+        session.getSentWebSocketMessagesRequestEvents().computeIfAbsent(req, k -> new ConcurrentLinkedQueue<>()).add(resp);
     }
 
     private void enqueueSimpleRequest(SimpleRequest req, WebSocketMessage resp) {
-        Queue<WebSocketMessage> queuedResponses = session.getHttpRequestEvents().get(req);
-        if (queuedResponses == null) {
-            queuedResponses = new ArrayDeque<>();
-            session.getHttpRequestEvents().put(req, queuedResponses);
-        }
-        queuedResponses.add(resp);
+        session.getHttpRequestEvents().computeIfAbsent(req, k -> new ConcurrentLinkedQueue<>()).add(resp);
     }
 
 }
@@ -23,18 +23,29 @@ import okhttp3.mockwebserver.Dispatcher;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.RecordedRequest;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
+/**
+ * Dispatches requests to the expectations registered in the responses map.
+ *
+ * <p> Requests are first matched by their exact path and then by the {@link PathTemplateRequest} routes, which are
+ * only picked up when registered through the expectation builders ({@code expect()}, {@code expectAll(...)}).
+ */
 public class MockDispatcher extends Dispatcher {
 
     private final Map<ServerRequest, Queue<ServerResponse>> responses;
+    // Compiled routes older than the template registrations of the map are recompiled
+    private final Registrations registrations;
     private final Collection<WebSocketSession> webSocketSessions = new ConcurrentLinkedQueue<>();
+    private volatile PathTemplateTrie routes = PathTemplateTrie.EMPTY;
 
     public MockDispatcher(Map<ServerRequest, Queue<ServerResponse>> responses) {
         this.responses = responses;
+        this.registrations = Registrations.of(responses);
     }
 
     @Override
@@ -45,23 +56,93 @@ public class MockDispatcher extends Dispatcher {
 
         HttpMethod method = HttpMethod.valueOf(request.getMethod());
         String path = request.getPath();
-        SimpleRequest key = new SimpleRequest(method, path);
-        SimpleRequest keyForAnyMethod = new SimpleRequest(path);
-        if (responses.containsKey(key)) {
-            Queue<ServerResponse> queue = responses.get(key);
-            return handleResponse(queue.peek(), queue, request);
-        } else if (responses.containsKey(keyForAnyMethod)) {
-            Queue<ServerResponse> queue = responses.get(keyForAnyMethod);
-            return handleResponse(queue.peek(), queue, request);
+        Queue<ServerResponse> queue = responses.get(new SimpleRequest(method, path));
+        if (queue == null) {
+            queue = responses.get(new SimpleRequest(path));
+        }
+        if (queue == null) {
+            PathTemplateRequest route = routes().find(method, path);
+            queue = route != null ? responses.get(route) : null;
+        }
+        if (queue != null) {
+            return handleResponse(claim(queue), request);
         }
         return new MockResponse().setResponseCode(404);
     }
 
-    private MockResponse handleResponse(ServerResponse response, Queue<ServerResponse> queue, RecordedRequest request) {
+    /**
+     * Adds the response to the queue of the request, the way every expectation builder registers expectations.
+     *
+     * <p> Registering a {@link PathTemplateRequest} marks the compiled routes of the dispatchers of the map as stale,
+     * so they are only recompiled when templates are added to it and not for every registered expectation. Likewise,
+     * registering a streamed response lets the {@link StreamingServerSocketFactory} of the map know it might have to
+     * stream.
+     */
+    static void register(Map<ServerRequest, Queue<ServerResponse>> responses, ServerRequest request, ServerResponse response) {
+        responses.computeIfAbsent(request, k -> new ConcurrentLinkedQueue<>()).add(response);
+        if (request instanceof PathTemplateRequest) {
+            Registrations.of(responses).templateRegistered();
+        }
+        if (isStreamed(response)) {
+            Registrations.of(responses).streamRegistered();
+        }
+    }
+
+    /**
+     * Returns true if the response body is written straight to the socket when possible, streamed or paced chunk by
+     * chunk.
+     */
+    static boolean isStreamed(ServerResponse response) {
+        return response instanceof StreamingChunkedResponse || response instanceof EventStreamResponse
+            || (response instanceof ChunkedResponse && ((ChunkedResponse) response).isChunkPaced());
+    }
+
+    /**
+     * Returns the compiled path template routes, recompiling them if templates were registered since the last
+     * compilation.
+     *
+     * <p> The registration counter is read before taking the snapshot of the requests, a template registered
+     * concurrently is either part of the snapshot or bumps the counter again.
+     */
+    private PathTemplateTrie routes() {
+        PathTemplateTrie current = routes;
+        long templates = registrations.getTemplateRegistrations();
+        if (current.getVersion() != templates) {
+            synchronized (this) {
+                current = routes;
+                if (current.getVersion() != templates) {
+                    current = PathTemplateTrie.compile(new ArrayList<>(responses.keySet()), templates);
+                    routes = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Returns the response to serve from the provided queue, consuming one of its uses and removing it from the
+     * queue once exhausted.
+     *
+     * <p> Several connections might peek the same head concurrently, only those that manage to consume one of
+     * its uses serve it, the rest retry with the next response once the exhausted one has been removed.
+     */
+    private static ServerResponse claim(Queue<ServerResponse> queue) {
+        while (true) {
+            ServerResponse response = queue.peek();
+            if (response == null || response.isRepeatable()) {
+                return response;
+            }
+            int remaining = response.consume();
+            if (remaining > 0 || (remaining == 0 && queue.remove(response))) {
+                return response;
+            }
+            Thread.yield();
+        }
+    }
+
+    private MockResponse handleResponse(ServerResponse response, RecordedRequest request) {
         if (response == null) {
             return new MockResponse().setResponseCode(404);
-        } else if (!response.isRepeatable()) {
-            queue.remove();
         }
         if (response instanceof SimpleResponse) {
             SimpleResponse simpleResponse = (SimpleResponse) response;
@@ -25,9 +25,56 @@ import javax.net.ssl.SSLContext;
 
 public class MockSSLContextFactory {
 
+  /**
+   * Number of server sessions kept for resumption by the default context.
+   */
+  public static final int DEFAULT_SESSION_CACHE_SIZE = 1024;
+
+  /**
+   * Lifetime, in seconds, of the server sessions (and TLS 1.3 session tickets) of the default context.
+   */
+  public static final int DEFAULT_SESSION_TIMEOUT_SECONDS = 3600;
+
+  private static volatile SSLContext defaultContext;
+
   private MockSSLContextFactory() {
   }
 
+  /**
+   * Returns the process-wide context shared by all the servers in HTTPS mode, creating it on first use only.
+   *
+   * <p> Sharing the context avoids decoding the certificate and building the key store for every server, and allows
+   * clients to resume their TLS sessions across servers.
+   */
+  public static SSLContext getDefault() {
+    SSLContext context = defaultContext;
+    if (context == null) {
+      synchronized (MockSSLContextFactory.class) {
+        context = defaultContext;
+        if (context == null) {
+          context = SSLUtils.configureSessions(create(), DEFAULT_SESSION_CACHE_SIZE, DEFAULT_SESSION_TIMEOUT_SECONDS);
+          defaultContext = context;
+        }
+      }
+    }
+    return context;
+  }
+
+  /**
+   * Replaces the process-wide context, e.g. with a pre-built one or to reload the certificate. Servers that are
+   * already started keep the previous context.
+   *
+   * @param context the new default context, or null to create it again from the bundled certificate on next use.
+   */
+  public static void setDefault(SSLContext context) {
+    synchronized (MockSSLContextFactory.class) {
+      defaultContext = context;
+    }
+  }
+
+  /**
+   * Creates a new context from the bundled certificate.
+   */
   public static SSLContext create() {
     try {
       KeyManager[] keyManagers = SSLUtils.keyManagers(MockSSLContextFactory.class.getResourceAsStream("/ssl/fabric8.crt"),
@@ -16,9 +16,9 @@
 
 package io.fabric8.mockwebserver.internal;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
@@ -39,6 +39,8 @@ import io.fabric8.mockwebserver.dsl.Pathable;
 import io.fabric8.mockwebserver.dsl.ReturnOrWebsocketable;
 import io.fabric8.mockwebserver.dsl.TimesOnceableOrHttpHeaderable;
 import io.fabric8.mockwebserver.dsl.WebSocketSessionBuilder;
+import io.fabric8.mockwebserver.events.EventStream;
+import io.fabric8.mockwebserver.shaping.ShapingProfile;
 import io.fabric8.mockwebserver.utils.BodyProvider;
 import io.fabric8.mockwebserver.utils.ResponseProvider;
 import io.fabric8.mockwebserver.utils.ResponseProviders;
@@ -58,6 +60,7 @@ public class MockServerExpectationImpl implements MockServerExpectation {
   private final long delay;
   private final TimeUnit delayUnit;
   private final int times;
+  private final Options options;
 
   private final Map<ServerRequest, Queue<ServerResponse>> responses;
 
@@ -70,6 +73,10 @@ public class MockServerExpectationImpl implements MockServerExpectation {
   }
 
   public MockServerExpectationImpl(Context context, HttpMethod method, String path, ResponseProvider<String> bodyProvider, ResponseProvider<List<String>> chunksProvider, long delay, TimeUnit delayUnit, int times, Map<ServerRequest, Queue<ServerResponse>> responses) {
+    this(context, method, path, bodyProvider, chunksProvider, delay, delayUnit, times, responses, Options.DEFAULT);
+  }
+
+  private MockServerExpectationImpl(Context context, HttpMethod method, String path, ResponseProvider<String> bodyProvider, ResponseProvider<List<String>> chunksProvider, long delay, TimeUnit delayUnit, int times, Map<ServerRequest, Queue<ServerResponse>> responses, Options options) {
     this.context = context;
     this.method = method;
     this.path = path;
@@ -79,46 +86,52 @@ public class MockServerExpectationImpl implements MockServerExpectation {
     this.delayUnit = delayUnit;
     this.times = times;
     this.responses = responses;
+    this.options = options;
   }
 
   @Override
   public DelayPathable<ReturnOrWebsocketable<TimesOnceableOrHttpHeaderable<Void>>> any() {
-    return new MockServerExpectationImpl(context, HttpMethod.ANY, path, bodyProvider, chunksProvider, delay, delayUnit, times, responses);
+    return new MockServerExpectationImpl(context, HttpMethod.ANY, path, bodyProvider, chunksProvider, delay, delayUnit, times, responses, options);
   }
 
   @Override
   public DelayPathable<ReturnOrWebsocketable<TimesOnceableOrHttpHeaderable<Void>>> post() {
-    return new MockServerExpectationImpl(context, HttpMethod.POST, path, bodyProvider, chunksProvider, delay, delayUnit, times, responses);
+    return new MockServerExpectationImpl(context, HttpMethod.POST, path, bodyProvider, chunksProvider, delay, delayUnit, times, responses, options);
   }
 
   @Override
   public DelayPathable<ReturnOrWebsocketable<TimesOnceableOrHttpHeaderable<Void>>> get() {
-    return new MockServerExpectationImpl(context, HttpMethod.GET, path, bodyProvider, chunksProvider, delay, delayUnit, times, responses);
+    return new MockServerExpectationImpl(context, HttpMethod.GET, path, bodyProvider, chunksProvider, delay, delayUnit, times, responses, options);
   }
 
   @Override
   public DelayPathable<ReturnOrWebsocketable<TimesOnceableOrHttpHeaderable<Void>>> put() {
-    return new MockServerExpectationImpl(context, HttpMethod.PUT, path, bodyProvider, chunksProvider, delay, delayUnit, times, responses);
+    return new MockServerExpectationImpl(context, HttpMethod.PUT, path, bodyProvider, chunksProvider, delay, delayUnit, times, responses, options);
   }
 
   @Override
   public DelayPathable<ReturnOrWebsocketable<TimesOnceableOrHttpHeaderable<Void>>> delete() {
-    return new MockServerExpectationImpl(context, HttpMethod.DELETE, path, bodyProvider, chunksProvider, delay, delayUnit, times, responses);
+    return new MockServerExpectationImpl(context, HttpMethod.DELETE, path, bodyProvider, chunksProvider, delay, delayUnit, times, responses, options);
   }
 
   @Override
   public DelayPathable<ReturnOrWebsocketable<TimesOnceableOrHttpHeaderable<Void>>> patch() {
-    return new MockServerExpectationImpl(context, HttpMethod.PATCH, path, bodyProvider, chunksProvider, delay, delayUnit, times, responses);
+    return new MockServerExpectationImpl(context, HttpMethod.PATCH, path, bodyProvider, chunksProvider, delay, delayUnit, times, responses, options);
   }
 
   @Override
   public ReturnOrWebsocketable<TimesOnceableOrHttpHeaderable<Void>> withPath(String path) {
-    return new MockServerExpectationImpl(context, method, path, bodyProvider, chunksProvider, delay, delayUnit, times, responses);
+    return new MockServerExpectationImpl(context, method, path, bodyProvider, chunksProvider, delay, delayUnit, times, responses, options.withPathTemplate(false));
+  }
+
+  @Override
+  public ReturnOrWebsocketable<TimesOnceableOrHttpHeaderable<Void>> withPathTemplate(String template) {
+    return new MockServerExpectationImpl(context, method, template, bodyProvider, chunksProvider, delay, delayUnit, times, responses, options.withPathTemplate(true));
   }
 
   @Override
   public TimesOnceableOrHttpHeaderable<Void> andReturn(int statusCode, Object content) {
-    return new MockServerExpectationImpl(context, method, path, ResponseProviders.of(statusCode, toString(content)), chunksProvider, delay, delayUnit, times, responses);
+    return new MockServerExpectationImpl(context, method, path, ResponseProviders.of(statusCode, toString(content)), chunksProvider, delay, delayUnit, times, responses, options);
   }
 
   @Override
@@ -128,12 +141,12 @@ public class MockServerExpectationImpl implements MockServerExpectation {
 
   @Override
   public TimesOnceableOrHttpHeaderable<Void> andReply(ResponseProvider<Object> content) {
-    return new MockServerExpectationImpl(context, method, path, toString(content), chunksProvider, delay, delayUnit, times, responses);
+    return new MockServerExpectationImpl(context, method, path, toString(content), chunksProvider, delay, delayUnit, times, responses, options);
   }
 
   @Override
   public TimesOnceableOrHttpHeaderable<Void> andReturnChunked(int statusCode, Object... contents) {
-    return new MockServerExpectationImpl(context, method, path, bodyProvider, ResponseProviders.of(statusCode, toString(contents)), delay, delayUnit, times, responses);
+    return new MockServerExpectationImpl(context, method, path, bodyProvider, ResponseProviders.of(statusCode, toString(contents)), delay, delayUnit, times, responses, options.withStreams(null, null));
   }
 
   @Override
@@ -143,37 +156,58 @@ public class MockServerExpectationImpl implements MockServerExpectation {
 
   @Override
   public TimesOnceableOrHttpHeaderable<Void> andReplyChunked(ResponseProvider<List<Object>> contents) {
-    return new MockServerExpectationImpl(context, method, path, bodyProvider, listToString(contents), delay, delayUnit, times, responses);
+    return new MockServerExpectationImpl(context, method, path, bodyProvider, listToString(contents), delay, delayUnit, times, responses, options.withStreams(null, null));
+  }
+
+  @Override
+  public TimesOnceableOrHttpHeaderable<Void> andStreamChunked(int statusCode, BodyProvider<? extends Iterator<?>> contents) {
+    return new MockServerExpectationImpl(context, method, path, bodyProvider, null, delay, delayUnit, times, responses, options.withStreams(iteratorToString(ResponseProviders.of(statusCode, contents)), null));
+  }
+
+  @Override
+  public TimesOnceableOrHttpHeaderable<Void> andStreamEvents(int statusCode, EventStream events) {
+    return andStreamEvents(statusCode, events, EventStreamResponse.DEFAULT_LONG_POLL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+  }
+
+  @Override
+  public TimesOnceableOrHttpHeaderable<Void> andStreamEvents(int statusCode, EventStream events, long longPollTimeout, TimeUnit unit) {
+    return new MockServerExpectationImpl(context, method, path, bodyProvider, null, delay, delayUnit, times, responses,
+      options.withStreams(null, ResponseProviders.of(statusCode, events)).withLongPollTimeout(unit.toNanos(longPollTimeout)));
   }
 
   @Override
   public Void always() {
-    enqueue(new SimpleRequest(method, path), createResponse(true, delay, delayUnit));
+    enqueue(createRequest(), createResponse(true, 1, delay, delayUnit));
     return null;//Void
   }
 
   @Override
   public Void once() {
-    enqueue(new SimpleRequest(method, path), createResponse(false, delay, delayUnit));
+    enqueue(createRequest(), createResponse(false, 1, delay, delayUnit));
     return null;//Void
   }
 
   @Override
   public Void times(int times) {
-    for (int i = 0; i < times; i++) {
-      once();
+    if (times > 0) {
+      enqueue(createRequest(), createResponse(false, times, delay, delayUnit));
     }
     return null;//Void
   }
 
   @Override
   public Pathable<ReturnOrWebsocketable<TimesOnceableOrHttpHeaderable<Void>>> delay(long delay, TimeUnit delayUnit) {
-    return new MockServerExpectationImpl(context, method, path, bodyProvider, chunksProvider, delay, delayUnit, times, responses);
+    return new MockServerExpectationImpl(context, method, path, bodyProvider, chunksProvider, delay, delayUnit, times, responses, options);
   }
 
   @Override
   public Pathable<ReturnOrWebsocketable<TimesOnceableOrHttpHeaderable<Void>>> delay(long delayInMilliseconds) {
-    return new MockServerExpectationImpl(context, method, path, bodyProvider, chunksProvider, delayInMilliseconds, TimeUnit.MILLISECONDS, times, responses);
+    return new MockServerExpectationImpl(context, method, path, bodyProvider, chunksProvider, delayInMilliseconds, TimeUnit.MILLISECONDS, times, responses, options);
+  }
+
+  @Override
+  public DelayPathable<ReturnOrWebsocketable<TimesOnceableOrHttpHeaderable<Void>>> shape(ShapingProfile profile) {
+    return new MockServerExpectationImpl(context, method, path, bodyProvider, chunksProvider, delay, delayUnit, times, responses, options.withShaping(profile));
   }
 
   @Override
@@ -186,31 +220,58 @@ public class MockServerExpectationImpl implements MockServerExpectation {
    */
   @Override
   public WebSocketSessionBuilder<TimesOnceableOrHttpHeaderable<Void>> andUpgradeToWebSocket(ScheduledExecutorService executor) {
-    return new InlineWebSocketSessionBuilder<>(context, new WebSocketSessionConverter(this));
+    return new InlineWebSocketSessionBuilder<>(context, executor, new WebSocketSessionConverter(this));
   }
 
   @Override
   public TimesOnceableOrHttpHeaderable<Void> withHeader(String header) {
-    bodyProvider.setHeaders(bodyProvider.getHeaders().newBuilder().add(header).build());
-    return new MockServerExpectationImpl(context, method, path, bodyProvider, chunksProvider, delay, TimeUnit.MILLISECONDS, times, responses);
+    final ResponseProvider<?> provider = responseProvider();
+    provider.setHeaders(provider.getHeaders().newBuilder().add(header).build());
+    return new MockServerExpectationImpl(context, method, path, bodyProvider, chunksProvider, delay, TimeUnit.MILLISECONDS, times, responses, options);
   }
 
   @Override
   public TimesOnceableOrHttpHeaderable<Void> withHeader(String name, String value) {
-    bodyProvider.setHeaders(bodyProvider.getHeaders().newBuilder().add(name, value).build());
-    return new MockServerExpectationImpl(context, method, path, bodyProvider, chunksProvider, delay, TimeUnit.MILLISECONDS, times, responses);
+    final ResponseProvider<?> provider = responseProvider();
+    provider.setHeaders(provider.getHeaders().newBuilder().add(name, value).build());
+    return new MockServerExpectationImpl(context, method, path, bodyProvider, chunksProvider, delay, TimeUnit.MILLISECONDS, times, responses, options);
+  }
+
+  /**
+   * Returns the provider of the response {@link #createResponse} will build, the one headers must be added to.
+   */
+  private ResponseProvider<?> responseProvider() {
+    if (options.eventsProvider != null) {
+      return options.eventsProvider;
+    } else if (options.streamProvider != null) {
+      return options.streamProvider;
+    } else if (chunksProvider != null) {
+      return chunksProvider;
+    }
+    return bodyProvider;
   }
 
 
   private void enqueue(ServerRequest req, ServerResponse resp) {
-    responses.computeIfAbsent(req, k -> new ArrayDeque<>()).add(resp);
+    MockDispatcher.register(responses, req, resp);
+  }
+
+  private ServerRequest createRequest() {
+    if (options.pathTemplate) {
+      return new PathTemplateRequest(method, path);
+    }
+    return new SimpleRequest(method, path);
   }
 
-  private ServerResponse createResponse(boolean repeatable, long delay, TimeUnit delayUnit) {
-    if (chunksProvider != null) {
-      return new ChunkedResponse(repeatable, delay, delayUnit, chunksProvider);
+  private ServerResponse createResponse(boolean repeatable, int times, long delay, TimeUnit delayUnit) {
+    if (options.eventsProvider != null) {
+      return new EventStreamResponse(repeatable, times, delay, delayUnit, options.longPollTimeoutNanos, TimeUnit.NANOSECONDS, options.eventsProvider);
+    } else if (options.streamProvider != null) {
+      return new StreamingChunkedResponse(repeatable, times, delay, delayUnit, options.shaping, options.streamProvider);
+    } else if (chunksProvider != null) {
+      return new ChunkedResponse(repeatable, times, delay, delayUnit, options.shaping, chunksProvider);
     } else {
-      return new SimpleResponse(repeatable, bodyProvider, null, delay, delayUnit);
+      return new SimpleResponse(repeatable, times, bodyProvider, null, delay, delayUnit, options.shaping);
     }
   }
 
@@ -268,7 +329,46 @@ public class MockServerExpectationImpl implements MockServerExpectation {
     };
   }
 
+  private ResponseProvider<Iterator<String>> iteratorToString(final ResponseProvider<? extends Iterator<?>> provider) {
+    return new ResponseProvider<Iterator<String>>() {
+      @Override
+      public Iterator<String> getBody(RecordedRequest request) {
+        final Iterator<?> objects = provider.getBody(request);
+        return new Iterator<String>() {
+          @Override
+          public boolean hasNext() {
+            return objects.hasNext();
+          }
+
+          @Override
+          public String next() {
+            return MockServerExpectationImpl.this.toString(objects.next());
+          }
+        };
+      }
+
+      @Override
+      public int getStatusCode(RecordedRequest request) {
+        return provider.getStatusCode(request);
+      }
+
+      @Override
+      public Headers getHeaders() {
+        return provider.getHeaders();
+      }
+
+      @Override
+      public void setHeaders(Headers headers) {
+        provider.setHeaders(headers);
+      }
+    };
+  }
+
   private String toString(Object object) {
+    return toString(context, object);
+  }
+
+  static String toString(Context context, Object object) {
     if (object instanceof String) {
       return (String) object;
     } else {
@@ -286,6 +386,45 @@ public class MockServerExpectationImpl implements MockServerExpectation {
       .collect(Collectors.toList());
   }
 
+  /**
+   * Expectation settings added on top of the original constructor arguments, kept together so new settings don't
+   * grow the constructor chain.
+   */
+  private static final class Options {
+
+    private static final Options DEFAULT = new Options(false, null, null, TimeUnit.SECONDS.toNanos(EventStreamResponse.DEFAULT_LONG_POLL_TIMEOUT_SECONDS), null);
+
+    private final boolean pathTemplate;
+    private final ResponseProvider<Iterator<String>> streamProvider;
+    private final ResponseProvider<EventStream> eventsProvider;
+    private final long longPollTimeoutNanos;
+    private final ShapingProfile shaping;
+
+    private Options(boolean pathTemplate, ResponseProvider<Iterator<String>> streamProvider, ResponseProvider<EventStream> eventsProvider, long longPollTimeoutNanos, ShapingProfile shaping) {
+      this.pathTemplate = pathTemplate;
+      this.streamProvider = streamProvider;
+      this.eventsProvider = eventsProvider;
+      this.longPollTimeoutNanos = longPollTimeoutNanos;
+      this.shaping = shaping;
+    }
+
+    private Options withPathTemplate(boolean pathTemplate) {
+      return new Options(pathTemplate, streamProvider, eventsProvider, longPollTimeoutNanos, shaping);
+    }
+
+    private Options withStreams(ResponseProvider<Iterator<String>> streamProvider, ResponseProvider<EventStream> eventsProvider) {
+      return new Options(pathTemplate, streamProvider, eventsProvider, longPollTimeoutNanos, shaping);
+    }
+
+    private Options withLongPollTimeout(long longPollTimeoutNanos) {
+      return new Options(pathTemplate, streamProvider, eventsProvider, longPollTimeoutNanos, shaping);
+    }
+
+    private Options withShaping(ShapingProfile shaping) {
+      return new Options(pathTemplate, streamProvider, eventsProvider, longPollTimeoutNanos, shaping);
+    }
+  }
+
   private static final class WebSocketSessionConverter
     implements Function<WebSocketSession, TimesOnceableOrHttpHeaderable<Void>> {
 
@@ -304,20 +443,20 @@ public class MockServerExpectationImpl implements MockServerExpectation {
       return new TimesOnceableOrHttpHeaderable<Void>() {
         @Override
         public Void always() {
-          mse.enqueue(new SimpleRequest(mse.method, mse.path), new SimpleResponse(true, ResponseProviders.of(101, "", headers), webSocketSession));
+          mse.enqueue(mse.createRequest(), new SimpleResponse(true, ResponseProviders.of(101, "", headers), webSocketSession));
           return null;//Void
         }
 
         @Override
         public Void once() {
-          mse.enqueue(new SimpleRequest(mse.method, mse.path), new SimpleResponse(false, ResponseProviders.of(101, "", headers), webSocketSession));
+          mse.enqueue(mse.createRequest(), new SimpleResponse(false, ResponseProviders.of(101, "", headers), webSocketSession));
           return null;//Void
         }
 
         @Override
         public Void times(int times) {
-          for (int i = 0; i < times; i++) {
-            once();
+          if (times > 0) {
+            mse.enqueue(mse.createRequest(), new SimpleResponse(false, times, ResponseProviders.of(101, "", headers), webSocketSession, 0, TimeUnit.MILLISECONDS));
           }
           return null;//Void
         }
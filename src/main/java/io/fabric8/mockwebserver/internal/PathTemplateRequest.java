@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.internal;
+
+import io.fabric8.mockwebserver.ServerRequest;
+import io.fabric8.mockwebserver.dsl.HttpMethod;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A request matched by a path template instead of by the exact path.
+ *
+ * <p> Templates are composed of '/' separated segments, where each segment is either:
+ * <ul>
+ *   <li>A literal, which must match the request path segment exactly.</li>
+ *   <li>A {@code {param}} placeholder or a {@code *} wildcard, which match any single segment.</li>
+ *   <li>A trailing {@code **} wildcard, which matches any number of remaining segments (including none).</li>
+ * </ul>
+ * The query string of the request is ignored when matching templates.
+ */
+public class PathTemplateRequest implements ServerRequest {
+
+  static final String PARAMETER = "*";
+  static final String REMAINDER = "**";
+
+  private final HttpMethod method;
+  private final String template;
+  private final List<String> segments;
+
+  public PathTemplateRequest(String template) {
+    this(HttpMethod.ANY, template);
+  }
+
+  public PathTemplateRequest(HttpMethod method, String template) {
+    if (template == null || template.indexOf('?') >= 0) {
+      throw new IllegalArgumentException("Invalid path template " + template + ", templates can't contain a query string");
+    }
+    this.method = method;
+    this.template = template;
+    this.segments = compile(template);
+  }
+
+  public HttpMethod getMethod() {
+    return method;
+  }
+
+  public String getTemplate() {
+    return template;
+  }
+
+  /**
+   * @return the template segments, with placeholders normalized to {@code *}.
+   */
+  List<String> getSegments() {
+    return segments;
+  }
+
+  /**
+   * Splits the path of the provided request target into its segments, ignoring the query string.
+   */
+  static List<String> segments(String path) {
+    List<String> segments = new ArrayList<>();
+    int end = path.indexOf('?');
+    if (end < 0) {
+      end = path.length();
+    }
+    int start = 0;
+    while (start < end && path.charAt(start) == '/') {
+      start++;
+    }
+    while (start < end) {
+      int next = path.indexOf('/', start);
+      if (next < 0 || next > end) {
+        next = end;
+      }
+      segments.add(path.substring(start, next));
+      start = next + 1;
+    }
+    return segments;
+  }
+
+  private static List<String> compile(String template) {
+    List<String> segments = segments(template);
+    for (int i = 0; i < segments.size(); i++) {
+      String segment = segments.get(i);
+      if (segment.startsWith("{") && segment.endsWith("}")) {
+        segments.set(i, PARAMETER);
+      } else if (REMAINDER.equals(segment) && i != segments.size() - 1) {
+        throw new IllegalArgumentException("Invalid path template " + template + ", ** is only allowed as the last segment");
+      }
+    }
+    return Collections.unmodifiableList(segments);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+
+    PathTemplateRequest that = (PathTemplateRequest) o;
+
+    if (method != that.method) return false;
+    return segments.equals(that.segments);
+  }
+
+  @Override
+  public int hashCode() {
+    int result = method != null ? method.hashCode() : 0;
+    result = 31 * result + segments.hashCode();
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return method + " " + template;
+  }
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.internal;
+
+import io.fabric8.mockwebserver.ServerRequest;
+import io.fabric8.mockwebserver.dsl.HttpMethod;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable segment trie of {@link PathTemplateRequest} routes.
+ *
+ * <p> Lookups walk the trie one path segment at a time, so their cost depends on the number of segments of the
+ * request path and not on the number of registered templates. Literal segments take precedence over
+ * single segment wildcards, which take precedence over trailing {@code **} wildcards. A route registered for the
+ * request method takes precedence over a route registered for {@link HttpMethod#ANY}.
+ */
+class PathTemplateTrie {
+
+  static final PathTemplateTrie EMPTY = new PathTemplateTrie(-1);
+
+  private final Node root = new Node();
+  private final long version;
+  private boolean empty = true;
+
+  private PathTemplateTrie(long version) {
+    this.version = version;
+  }
+
+  /**
+   * Compiles the {@link PathTemplateRequest} entries of the provided requests into a trie.
+   *
+   * @param requests the registered requests, any request other than a PathTemplateRequest is ignored.
+   * @param version the template registration count the requests were taken at, used to detect staleness.
+   * @return the compiled trie.
+   */
+  static PathTemplateTrie compile(Collection<ServerRequest> requests, long version) {
+    PathTemplateTrie trie = new PathTemplateTrie(version);
+    for (ServerRequest request : requests) {
+      if (request instanceof PathTemplateRequest) {
+        trie.add((PathTemplateRequest) request);
+      }
+    }
+    return trie;
+  }
+
+  long getVersion() {
+    return version;
+  }
+
+  /**
+   * Finds the most specific route matching the provided method and path.
+   *
+   * @param method the request method.
+   * @param path the request path, the query string (if any) is ignored.
+   * @return the matching route or null if there is none.
+   */
+  PathTemplateRequest find(HttpMethod method, String path) {
+    if (empty) {
+      return null;
+    }
+    return find(root, PathTemplateRequest.segments(path), 0, method);
+  }
+
+  private void add(PathTemplateRequest request) {
+    Node node = root;
+    for (String segment : request.getSegments()) {
+      if (PathTemplateRequest.REMAINDER.equals(segment)) {
+        if (node.remainder == null) {
+          node.remainder = new Node();
+        }
+        node = node.remainder;
+      } else if (PathTemplateRequest.PARAMETER.equals(segment)) {
+        if (node.parameter == null) {
+          node.parameter = new Node();
+        }
+        node = node.parameter;
+      } else {
+        node = node.literals.computeIfAbsent(segment, s -> new Node());
+      }
+    }
+    node.routes.put(request.getMethod(), request);
+    empty = false;
+  }
+
+  private static PathTemplateRequest find(Node node, List<String> segments, int index, HttpMethod method) {
+    if (index == segments.size()) {
+      PathTemplateRequest route = node.route(method);
+      if (route == null && node.remainder != null) {
+        route = node.remainder.route(method);
+      }
+      return route;
+    }
+    Node literal = node.literals.get(segments.get(index));
+    if (literal != null) {
+      PathTemplateRequest route = find(literal, segments, index + 1, method);
+      if (route != null) {
+        return route;
+      }
+    }
+    if (node.parameter != null) {
+      PathTemplateRequest route = find(node.parameter, segments, index + 1, method);
+      if (route != null) {
+        return route;
+      }
+    }
+    return node.remainder != null ? node.remainder.route(method) : null;
+  }
+
+  private static final class Node {
+
+    private final Map<String, Node> literals = new HashMap<>();
+    private final Map<HttpMethod, PathTemplateRequest> routes = new EnumMap<>(HttpMethod.class);
+    private Node parameter;
+    private Node remainder;
+
+    private PathTemplateRequest route(HttpMethod method) {
+      PathTemplateRequest route = routes.get(method);
+      return route != null ? route : routes.get(HttpMethod.ANY);
+    }
+  }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.internal;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the expectations registered in a responses map through the expectation builders, so that the components
+ * serving the map only scan it again when an expectation they depend on was registered.
+ *
+ * <p> The counters are shared by everything using the same map (expectation builders, dispatchers, server socket
+ * factories) and isolated from other maps: registering an expectation on a server never makes the servers that don't
+ * share its map scan their expectations. They are looked up by the identity of the map and dropped once the map is garbage collected.
+ */
+final class Registrations {
+
+    private static final ReferenceQueue<Object> COLLECTED = new ReferenceQueue<>();
+    private static final Map<MapReference, Registrations> REGISTRATIONS = new ConcurrentHashMap<>();
+
+    private final AtomicLong templates = new AtomicLong();
+    private final AtomicLong streams = new AtomicLong();
+
+    private Registrations() {
+    }
+
+    /**
+     * Returns the registrations of the provided responses map.
+     */
+    static Registrations of(Map<?, ?> responses) {
+        Reference<?> collected;
+        while ((collected = COLLECTED.poll()) != null) {
+            REGISTRATIONS.remove(collected);
+        }
+        return REGISTRATIONS.computeIfAbsent(new MapReference(responses), k -> new Registrations());
+    }
+
+    void templateRegistered() {
+        templates.incrementAndGet();
+    }
+
+    /**
+     * Returns the number of path template expectations registered so far.
+     */
+    long getTemplateRegistrations() {
+        return templates.get();
+    }
+
+    void streamRegistered() {
+        streams.incrementAndGet();
+    }
+
+    /**
+     * Returns the number of streamed (or chunk paced) expectations registered so far.
+     */
+    long getStreamRegistrations() {
+        return streams.get();
+    }
+
+    /**
+     * Weak reference to a responses map, equal to the other references to the same map (maps holding the same
+     * entries are equal).
+     */
+    private static final class MapReference extends WeakReference<Map<?, ?>> {
+
+        private final int hash;
+
+        private MapReference(Map<?, ?> responses) {
+            super(responses, COLLECTED);
+            this.hash = System.identityHashCode(responses);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof MapReference)) return false;
+            final Map<?, ?> responses = get();
+            return responses != null && responses == ((MapReference) o).get();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.internal;
+
+import io.fabric8.mockwebserver.MockServerException;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Replaces the executor {@link MockWebServer} uses to serve its connections.
+ *
+ * <p> MockWebServer serves each connection on a thread of its own, response delays and throttling are implemented by
+ * sleeping on that thread. Serving connections on virtual threads (Java 21+) allows to simulate thousands of slow
+ * concurrent responses without as many platform threads. The virtual thread API is looked up reflectively, so this
+ * class can be loaded on Java 8.
+ */
+public final class ServerExecutors {
+
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = virtualThreadFactoryMethod();
+
+    private ServerExecutors() {
+    }
+
+    /**
+     * @return true if the running JVM supports virtual threads.
+     */
+    public static boolean isVirtualThreadSupported() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * Creates an executor starting a new virtual thread for each task.
+     *
+     * @return the new executor, or null if virtual threads are not supported.
+     */
+    public static ExecutorService newVirtualThreadExecutor() {
+        if (NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR == null) {
+            return null;
+        }
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new MockServerException("Exception when creating a virtual thread executor", e);
+        }
+    }
+
+    /**
+     * Checks that the executor of {@link MockWebServer} can be replaced.
+     *
+     * @throws MockServerException if the OkHttp version in use doesn't declare the replaced field.
+     */
+    public static void assertReplaceable() {
+        executorField();
+    }
+
+    /**
+     * Replaces the executor of a started server, connections accepted from now on are served by the provided one.
+     *
+     * <p> MockWebServer creates its executor when it's started and keeps it in a private field, there's no way to
+     * provide one, so the field is written reflectively. Replacing it fails if the field is missing (e.g. it's renamed
+     * by a newer OkHttp version), connections are never silently served by the replaced executor.
+     *
+     * <p> The field is not volatile and the thread accepting the connections reads it without any lock, that thread
+     * is only guaranteed to see the new executor once it synchronizes with the caller. Use
+     * {@link PublishingDispatcher#replace(MockWebServer, ExecutorService)} so that it does before serving every
+     * connection.
+     *
+     * <p> The server accepts connections on a thread of the replaced executor, so it must not be shut down until the
+     * server is. When the server is shut down the provided executor is shut down as well.
+     *
+     * @param server the started server.
+     * @param executor the executor serving the new connections.
+     * @return the replaced executor.
+     */
+    public static ExecutorService replace(MockWebServer server, ExecutorService executor) {
+        final Field field = executorField();
+        try {
+            synchronized (server) {
+                final ExecutorService replaced = (ExecutorService) field.get(server);
+                if (replaced == null) {
+                    throw new IllegalStateException("The server must be started before its executor is replaced");
+                }
+                field.set(server, executor);
+                return replaced;
+            }
+        } catch (IllegalAccessException e) {
+            throw new MockServerException("Exception when replacing the MockWebServer executor", e);
+        }
+    }
+
+    private static Field executorField() {
+        final Field field;
+        try {
+            field = MockWebServer.class.getDeclaredField("executor");
+            field.setAccessible(true);
+        } catch (NoSuchFieldException | RuntimeException e) {
+            throw new MockServerException("The MockWebServer executor can't be replaced in this OkHttp version", e);
+        }
+        if (field.getType() != ExecutorService.class) {
+            throw new MockServerException("The MockWebServer executor can't be replaced in this OkHttp version");
+        }
+        return field;
+    }
+
+    private static Method virtualThreadFactoryMethod() {
+        try {
+            final Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            // Preview API in Java 19 and 20, it throws UnsupportedOperationException unless enabled
+            ((ExecutorService) method.invoke(null)).shutdown();
+            return method;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * {@link Dispatcher} publishing a replaced executor to the thread accepting the connections.
+     *
+     * <p> MockWebServer invokes {@link #peek()} on that thread after accepting each connection, before handing it to
+     * the executor, and {@link #shutdown()} before shutting the executor down. Both read the volatile field written
+     * after the executor is replaced, so the acceptor sees the new executor for every connection accepted once
+     * {@link #replace(MockWebServer, ExecutorService)} returns.
+     */
+    public static final class PublishingDispatcher extends Dispatcher {
+
+        private final Dispatcher delegate;
+        private volatile ExecutorService executor;
+
+        public PublishingDispatcher(Dispatcher delegate) {
+            this.delegate = delegate;
+        }
+
+        /**
+         * Replaces the executor of the started server this dispatcher is installed in.
+         *
+         * @see ServerExecutors#replace(MockWebServer, ExecutorService)
+         */
+        public ExecutorService replace(MockWebServer server, ExecutorService executor) {
+            final ExecutorService replaced = ServerExecutors.replace(server, executor);
+            this.executor = executor;
+            return replaced;
+        }
+
+        public ExecutorService getExecutor() {
+            return executor;
+        }
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+            return delegate.dispatch(request);
+        }
+
+        @Override
+        public MockResponse peek() {
+            // Reading the volatile field makes the executor written before it visible to the acceptor thread
+            getExecutor();
+            return delegate.peek();
+        }
+
+        @Override
+        public void shutdown() {
+            // The acceptor shuts the executor down next, it must see the new one
+            getExecutor();
+            delegate.shutdown();
+        }
+    }
+}
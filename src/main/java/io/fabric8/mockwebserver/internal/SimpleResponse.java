@@ -18,13 +18,16 @@ package io.fabric8.mockwebserver.internal;
 
 import java.util.Objects;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import io.fabric8.mockwebserver.ServerResponse;
+import io.fabric8.mockwebserver.shaping.ShapingProfile;
 import io.fabric8.mockwebserver.utils.ResponseProvider;
 import io.fabric8.mockwebserver.utils.ResponseProviders;
 
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
 
 public class SimpleResponse implements ServerResponse {
 
@@ -36,6 +39,9 @@ public class SimpleResponse implements ServerResponse {
   private final boolean repeatable;
   private final long responseDelay;
   private final TimeUnit responseDelayUnit;
+  private final ShapingProfile shaping;
+  private final AtomicInteger remaining;
+  private volatile Buffer encodedBody;
 
   public SimpleResponse(boolean repeatable, int statusCode, String body, WebSocketSession webSocketSession) {
     this(repeatable, ResponseProviders.of(statusCode, body), webSocketSession);
@@ -50,11 +56,21 @@ public class SimpleResponse implements ServerResponse {
   }
 
   public SimpleResponse(boolean repeatable, ResponseProvider<String> bodyProvider, WebSocketSession webSocketSession, long responseDelay, TimeUnit responseDelayUnit) {
+    this(repeatable, 1, bodyProvider, webSocketSession, responseDelay, responseDelayUnit);
+  }
+
+  public SimpleResponse(boolean repeatable, int times, ResponseProvider<String> bodyProvider, WebSocketSession webSocketSession, long responseDelay, TimeUnit responseDelayUnit) {
+    this(repeatable, times, bodyProvider, webSocketSession, responseDelay, responseDelayUnit, null);
+  }
+
+  public SimpleResponse(boolean repeatable, int times, ResponseProvider<String> bodyProvider, WebSocketSession webSocketSession, long responseDelay, TimeUnit responseDelayUnit, ShapingProfile shaping) {
     this.bodyProvider = bodyProvider;
     this.webSocketSession = webSocketSession;
     this.repeatable = repeatable;
     this.responseDelay = responseDelay;
     this.responseDelayUnit = responseDelayUnit;
+    this.shaping = shaping;
+    this.remaining = new AtomicInteger(times);
   }
 
   public ResponseProvider<String> getBodyProvider() {
@@ -77,6 +93,8 @@ public class SimpleResponse implements ServerResponse {
         && mockResponse.getHeaders().get(HTTP_HEADER_SEC_WEBSOCKET_PROTOCOL) == null) {
         mockResponse.addHeader(HTTP_HEADER_SEC_WEBSOCKET_PROTOCOL, requestWebsocketProtocol);
       }
+    } else if (ResponseProviders.isFixed(bodyProvider)) {
+      mockResponse.setBody(encodedBody(request));
     } else {
       mockResponse.setBody(bodyProvider.getBody(request));
     }
@@ -84,10 +102,27 @@ public class SimpleResponse implements ServerResponse {
     if (responseDelay > 0) {
       mockResponse.setBodyDelay(responseDelay, responseDelayUnit);
     }
+    if (shaping != null) {
+      shaping.applyTo(mockResponse);
+    }
 
     return mockResponse;
   }
 
+  /**
+   * Returns the UTF-8 encoded body of a fixed provider, encoding it on first use only.
+   *
+   * <p> MockResponse clones the buffer (sharing its segments) so the cached one is never consumed.
+   */
+  private Buffer encodedBody(RecordedRequest request) {
+    Buffer body = encodedBody;
+    if (body == null) {
+      body = new Buffer().writeUtf8(bodyProvider.getBody(request));
+      encodedBody = body;
+    }
+    return body;
+  }
+
   public WebSocketSession getWebSocketSession() {
     return webSocketSession;
   }
@@ -97,16 +132,21 @@ public class SimpleResponse implements ServerResponse {
     return repeatable;
   }
 
+  @Override
+  public int consume() {
+    return remaining.getAndUpdate(r -> r > 0 ? r - 1 : r) - 1;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
     if (o == null || getClass() != o.getClass()) return false;
     SimpleResponse that = (SimpleResponse) o;
-    return repeatable == that.repeatable && responseDelay == that.responseDelay && Objects.equals(bodyProvider, that.bodyProvider) && Objects.equals(webSocketSession, that.webSocketSession) && responseDelayUnit == that.responseDelayUnit;
+    return repeatable == that.repeatable && responseDelay == that.responseDelay && Objects.equals(bodyProvider, that.bodyProvider) && Objects.equals(webSocketSession, that.webSocketSession) && responseDelayUnit == that.responseDelayUnit && Objects.equals(shaping, that.shaping);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(bodyProvider, webSocketSession, repeatable, responseDelay, responseDelayUnit);
+    return Objects.hash(bodyProvider, webSocketSession, repeatable, responseDelay, responseDelayUnit, shaping);
   }
 }
@@ -0,0 +1,228 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.internal;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.fabric8.mockwebserver.MockServerException;
+import io.fabric8.mockwebserver.ServerResponse;
+import io.fabric8.mockwebserver.shaping.ShapingProfile;
+import io.fabric8.mockwebserver.utils.ResponseProvider;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+/**
+ * Chunked response whose chunks are pulled from a lazy producer while the body is written.
+ *
+ * <p> On plain text HTTP/1.1 connections accepted by a {@link StreamingServerSocketFactory} once the expectation was
+ * registered, every chunk is written to the socket as soon as it's produced, so that only one chunk is held in memory.
+ * Otherwise (TLS, HTTP/2, a different server socket factory or transport, or a connection accepted earlier) the chunks
+ * are framed into a buffered body, as {@link ChunkedResponse} does, up to {@link #MAX_BUFFERED_SIZE} bytes: beyond
+ * it the response fails with a {@link MockServerException} instead of draining an unbounded producer into memory. A
+ * producer that waits for data that never comes can't be detected, it should only be served on streaming connections.
+ *
+ * <p> Streamed bodies are delayed, paced and throttled like buffered ones.
+ */
+public class StreamingChunkedResponse implements ServerResponse {
+
+    /**
+     * Maximum size, in bytes, of the chunks buffered on connections that can't stream.
+     */
+    public static final long MAX_BUFFERED_SIZE = 16L * 1024 * 1024;
+
+    private final ResponseProvider<Iterator<String>> bodyProvider;
+    private final boolean repeatable;
+    private final long responseDelay;
+    private final TimeUnit responseDelayUnit;
+    private final ShapingProfile shaping;
+    private final AtomicInteger remaining;
+
+    public StreamingChunkedResponse(boolean repeatable, int times, long responseDelay, TimeUnit responseDelayUnit, ShapingProfile shaping, ResponseProvider<Iterator<String>> bodyProvider) {
+        this.bodyProvider = bodyProvider;
+        this.repeatable = repeatable;
+        this.responseDelay = responseDelay;
+        this.responseDelayUnit = responseDelayUnit;
+        this.shaping = shaping;
+        this.remaining = new AtomicInteger(times);
+    }
+
+    public ResponseProvider<Iterator<String>> getBodyProvider() {
+        return bodyProvider;
+    }
+
+    @Override
+    public MockResponse toMockResponse(RecordedRequest request) {
+        MockResponse mockResponse = new MockResponse();
+        mockResponse.setHeaders(bodyProvider.getHeaders());
+        mockResponse.setResponseCode(bodyProvider.getStatusCode(request));
+        if (shaping != null) {
+            shaping.applyTo(mockResponse);
+        }
+
+        final Iterator<String> chunks = bodyProvider.getBody(request);
+        final StreamingSocket socket = StreamingSocket.current();
+        if (request.getHeader(":scheme") != null) {
+            // HTTP/2 streams are framed by the connection
+            mockResponse.setBody(concat(chunks));
+        } else {
+            mockResponse.removeHeader("Content-Length");
+            mockResponse.addHeader("Transfer-encoding: chunked");
+            if (socket != null && request.getTlsVersion() == null) {
+                socket.writeAfterHeaders(out -> stream(chunks, out));
+                return mockResponse;
+            }
+            mockResponse.setBody(frame(chunks));
+        }
+        if (responseDelay > 0) {
+            mockResponse.setBodyDelay(responseDelay, responseDelayUnit);
+        }
+        return mockResponse;
+    }
+
+    /**
+     * Writes the chunks as they are produced, applying the same shaping as MockWebServer applies to buffered bodies:
+     * the body delay before the first chunk, then either the chunk pacing or the throttle.
+     */
+    private void stream(Iterator<String> chunks, OutputStream out) throws IOException {
+        final long chunkPeriod = shaping != null && shaping.isChunkPaced() ? shaping.getChunkPeriod(TimeUnit.NANOSECONDS) : 0;
+        final Throttle throttle = shaping != null && !shaping.isChunkPaced() && shaping.getThrottleBytesPerPeriod() > 0 ?
+            new Throttle(shaping.getThrottleBytesPerPeriod(), shaping.getThrottlePeriod(TimeUnit.NANOSECONDS)) : null;
+        sleep(responseDelayUnit.toNanos(responseDelay));
+        final Buffer frame = new Buffer();
+        boolean first = true;
+        try {
+            while (chunks.hasNext()) {
+                final String chunk = chunks.next();
+                // A zero-size chunk would terminate the body
+                if (chunk == null || chunk.isEmpty()) {
+                    continue;
+                }
+                if (!first) {
+                    sleep(chunkPeriod);
+                }
+                first = false;
+                writeChunk(frame, chunk);
+                write(frame, out, throttle);
+            }
+        } catch (RuntimeException e) {
+            // The headers are already sent, failing the connection lets the client know the body is incomplete
+            throw new IOException("Exception when producing the response chunks", e);
+        }
+        frame.writeUtf8("0\r\n\r\n");
+        write(frame, out, throttle);
+    }
+
+    private static void write(Buffer frame, OutputStream out, Throttle throttle) throws IOException {
+        if (throttle == null) {
+            frame.writeTo(out);
+            out.flush();
+            return;
+        }
+        while (!frame.exhausted()) {
+            final long bytes = Math.min(frame.size(), throttle.bytesPerPeriod - throttle.written);
+            frame.writeTo(out, bytes);
+            out.flush();
+            throttle.written += bytes;
+            if (throttle.written == throttle.bytesPerPeriod) {
+                throttle.written = 0;
+                sleep(throttle.periodNanos);
+            }
+        }
+    }
+
+    private static Buffer frame(Iterator<String> chunks) {
+        final Buffer framed = new Buffer();
+        while (chunks.hasNext()) {
+            final String chunk = chunks.next();
+            if (chunk != null && !chunk.isEmpty()) {
+                writeChunk(framed, chunk);
+                checkBuffered(framed);
+            }
+        }
+        return framed.writeUtf8("0\r\n\r\n");
+    }
+
+    private static Buffer concat(Iterator<String> chunks) {
+        final Buffer body = new Buffer();
+        while (chunks.hasNext()) {
+            final String chunk = chunks.next();
+            if (chunk != null) {
+                body.writeUtf8(chunk);
+                checkBuffered(body);
+            }
+        }
+        return body;
+    }
+
+    private static void checkBuffered(Buffer body) {
+        if (body.size() > MAX_BUFFERED_SIZE) {
+            throw new MockServerException("Streamed chunks exceeding " + MAX_BUFFERED_SIZE + " bytes on a connection"
+                + " that can't stream, they are only streamed on plain text HTTP/1.1 connections accepted by a"
+                + " StreamingServerSocketFactory once the streamed expectation is registered");
+        }
+    }
+
+    private static void writeChunk(Buffer sink, String chunk) {
+        final Buffer data = new Buffer().writeUtf8(chunk);
+        sink.writeHexadecimalUnsignedLong(data.size()).writeUtf8("\r\n");
+        sink.write(data, data.size());
+        sink.writeUtf8("\r\n");
+    }
+
+    private static void sleep(long nanos) throws InterruptedIOException {
+        if (nanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(nanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while streaming the response chunks");
+            }
+        }
+    }
+
+    /**
+     * Bandwidth limit of a streamed body, {@code bytesPerPeriod} bytes are written and then the stream sleeps for a
+     * period, as {@link MockResponse#throttleBody(long, long, TimeUnit)} does.
+     */
+    private static final class Throttle {
+
+        private final long bytesPerPeriod;
+        private final long periodNanos;
+        private long written;
+
+        private Throttle(long bytesPerPeriod, long periodNanos) {
+            this.bytesPerPeriod = bytesPerPeriod;
+            this.periodNanos = periodNanos;
+        }
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return repeatable;
+    }
+
+    @Override
+    public int consume() {
+        return remaining.getAndUpdate(r -> r > 0 ? r - 1 : r) - 1;
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.internal;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Map;
+import java.util.Queue;
+
+import javax.net.ServerSocketFactory;
+
+import io.fabric8.mockwebserver.ServerRequest;
+import io.fabric8.mockwebserver.ServerResponse;
+
+/**
+ * {@link ServerSocketFactory} for {@link okhttp3.mockwebserver.MockWebServer} which allows streamed responses
+ * ({@link StreamingChunkedResponse}, {@link EventStreamResponse}) to be written to the plain text connections as they
+ * are produced, and the chunks of paced {@link ChunkedResponse}s to be written one at a time.
+ *
+ * <p> Streaming relies on two implementation details of MockWebServer: a request is dispatched on the thread that
+ * read it, and the response headers are flushed before the body is written. So that servers which never stream don't
+ * depend on them, a factory created for a responses map only accepts streaming connections once a streamed
+ * expectation has been registered in the map (connections accepted before are served as usual, streamed bodies are
+ * buffered on them). The {@link io.fabric8.mockwebserver.DefaultMockServer} instances that create their own
+ * {@link okhttp3.mockwebserver.MockWebServer} use such a factory.
+ */
+public class StreamingServerSocketFactory extends ServerSocketFactory {
+
+    private final Map<ServerRequest, Queue<ServerResponse>> responses;
+    private final Registrations registrations;
+    private boolean streaming;
+    private long checkedRegistrations;
+
+    /**
+     * Creates a factory whose connections can always be streamed, it can be set on any
+     * {@link okhttp3.mockwebserver.MockWebServer} before it's started.
+     */
+    public StreamingServerSocketFactory() {
+        this(null);
+    }
+
+    /**
+     * Creates a factory whose connections can be streamed once the provided map holds a streamed expectation.
+     *
+     * @param responses the expectations of the server, streamed ones must be registered through the expectation
+     * builders ({@code expect()}, {@code expectAll(...)}).
+     */
+    public StreamingServerSocketFactory(Map<ServerRequest, Queue<ServerResponse>> responses) {
+        this.responses = responses;
+        this.registrations = responses != null ? Registrations.of(responses) : null;
+        this.streaming = responses == null;
+    }
+
+    @Override
+    public ServerSocket createServerSocket() throws IOException {
+        return new StreamingServerSocket();
+    }
+
+    @Override
+    public ServerSocket createServerSocket(int port) throws IOException {
+        return createServerSocket(port, 50, null);
+    }
+
+    @Override
+    public ServerSocket createServerSocket(int port, int backlog) throws IOException {
+        return createServerSocket(port, backlog, null);
+    }
+
+    @Override
+    public ServerSocket createServerSocket(int port, int backlog, InetAddress bindAddress) throws IOException {
+        ServerSocket serverSocket = new StreamingServerSocket();
+        serverSocket.bind(new InetSocketAddress(bindAddress, port), backlog);
+        return serverSocket;
+    }
+
+    /**
+     * Returns true if the next accepted connection must be able to stream. The expectations are only scanned when
+     * streamed responses were registered in the map since the last scan, the registration counter is read before scanning so
+     * that a concurrent registration triggers another scan.
+     */
+    private synchronized boolean isStreaming() {
+        if (streaming) {
+            return true;
+        }
+        final long streams = registrations.getStreamRegistrations();
+        if (streams != checkedRegistrations) {
+            checkedRegistrations = streams;
+            streaming = responses.values().stream().flatMap(Queue::stream).anyMatch(MockDispatcher::isStreamed);
+        }
+        return streaming;
+    }
+
+    private final class StreamingServerSocket extends ServerSocket {
+
+        private StreamingServerSocket() throws IOException {
+            super();
+        }
+
+        @Override
+        public Socket accept() throws IOException {
+            if (isClosed()) {
+                throw new SocketException("Socket is closed");
+            }
+            if (!isBound()) {
+                throw new SocketException("Socket is not bound yet");
+            }
+            StreamingSocket socket = new StreamingSocket();
+            implAccept(socket);
+            // Decided once accepted, expectations registered while waiting for the connection are taken into account
+            socket.setStreaming(isStreaming());
+            // The headers and the body (or HTTP/2 frames) are flushed separately, with Nagle's algorithm the second
+            // write would wait for the delayed ACK of the client
+            socket.setTcpNoDelay(true);
+            return socket;
+        }
+    }
+}
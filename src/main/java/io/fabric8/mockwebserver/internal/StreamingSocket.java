@@ -0,0 +1,188 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.internal;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+/**
+ * Accepted connection of a {@link StreamingServerSocketFactory}, which can write a response body straight to the
+ * socket once {@link okhttp3.mockwebserver.MockWebServer} has flushed the response headers.
+ *
+ * <p> The socket serving the current thread is tracked on every read, so that it can be retrieved while the request
+ * is dispatched (dispatching happens on the thread that read the request). The pending body is written on the first
+ * flush after it's set, which MockWebServer performs right after the response headers and before the (empty) body.
+ */
+final class StreamingSocket extends Socket {
+
+    private static final ThreadLocal<StreamingSocket> CURRENT = new ThreadLocal<>();
+
+    private boolean streaming = true;
+    private volatile BodyWriter pendingBody;
+    private volatile Runnable closeListener;
+    // A byte read while checking the connection, returned by the next read
+    private int pushback = -1;
+    private InputStream inputStream;
+    private OutputStream outputStream;
+
+    /**
+     * Returns the socket that last read data on the current thread, or null if there is none (e.g. HTTP/2 streams
+     * are dispatched on a different thread).
+     */
+    static StreamingSocket current() {
+        StreamingSocket socket = CURRENT.get();
+        return socket != null && !socket.isClosed() ? socket : null;
+    }
+
+    /**
+     * Sets whether this socket can stream, a socket that can't is a plain socket. Must be invoked before its streams
+     * are retrieved.
+     */
+    void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * Writes the body with the provided writer on the next flush, i.e. right after the response headers.
+     */
+    void writeAfterHeaders(BodyWriter writer) {
+        pendingBody = writer;
+    }
+
+    /**
+     * Runs the provided listener when the socket is closed, e.g. to stop a body writer waiting for data.
+     */
+    void onClose(Runnable listener) {
+        closeListener = listener;
+    }
+
+    /**
+     * Returns true if the client closed the connection (or it failed), waiting at most a millisecond for data.
+     *
+     * <p> Must be invoked on the thread serving the connection while it doesn't read it, e.g. while writing a response
+     * body. Data sent by the client in the meantime is not lost, the next read returns it.
+     */
+    boolean isPeerClosed() {
+        if (isClosed()) {
+            return true;
+        }
+        if (pushback >= 0) {
+            return false;
+        }
+        try {
+            final int timeout = getSoTimeout();
+            setSoTimeout(1);
+            try {
+                final int read = super.getInputStream().read();
+                if (read < 0) {
+                    return true;
+                }
+                pushback = read;
+                return false;
+            } finally {
+                setSoTimeout(timeout);
+            }
+        } catch (SocketTimeoutException e) {
+            return false;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    @Override
+    public synchronized InputStream getInputStream() throws IOException {
+        if (!streaming) {
+            return super.getInputStream();
+        }
+        if (inputStream == null) {
+            inputStream = new FilterInputStream(super.getInputStream()) {
+                @Override
+                public int read() throws IOException {
+                    CURRENT.set(StreamingSocket.this);
+                    final int read = pushback;
+                    if (read >= 0) {
+                        pushback = -1;
+                        return read;
+                    }
+                    return super.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    CURRENT.set(StreamingSocket.this);
+                    if (pushback >= 0 && len > 0) {
+                        b[off] = (byte) pushback;
+                        pushback = -1;
+                        return 1;
+                    }
+                    return super.read(b, off, len);
+                }
+            };
+        }
+        return inputStream;
+    }
+
+    @Override
+    public synchronized OutputStream getOutputStream() throws IOException {
+        if (!streaming) {
+            return super.getOutputStream();
+        }
+        if (outputStream == null) {
+            outputStream = new FilterOutputStream(super.getOutputStream()) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    out.flush();
+                    BodyWriter writer = pendingBody;
+                    if (writer != null) {
+                        pendingBody = null;
+                        writer.writeTo(out);
+                        out.flush();
+                    }
+                }
+            };
+        }
+        return outputStream;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        pendingBody = null;
+        if (CURRENT.get() == this) {
+            CURRENT.remove();
+        }
+        super.close();
+        Runnable listener = closeListener;
+        if (listener != null) {
+            closeListener = null;
+            listener.run();
+        }
+    }
+
+    @FunctionalInterface
+    interface BodyWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+}
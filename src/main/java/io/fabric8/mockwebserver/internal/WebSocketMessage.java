@@ -15,14 +15,23 @@
  */
 package io.fabric8.mockwebserver.internal;
 
-import java.nio.charset.StandardCharsets;
+import okio.ByteString;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A message sent through a WebSocket session.
+ *
+ * <p> The body is kept as an immutable {@link ByteString} (whose UTF-8 text form is decoded once and cached), so
+ * sending a message performs no copy nor charset conversion.
+ */
 public class WebSocketMessage {
 
     private final Long delay;
-    private final byte[] body;
+    private final ByteString body;
     private final boolean toBeRemoved;
     private final boolean binary;
+    private final AtomicInteger remaining;
 
     public WebSocketMessage(String body) {
         this(0L, body, true);
@@ -33,7 +42,7 @@ public class WebSocketMessage {
     }
 
     public WebSocketMessage(String body, boolean toBeRemoved) {
-        this(0L, body.getBytes(StandardCharsets.UTF_8), toBeRemoved, false);
+        this(0L, body, toBeRemoved, false);
     }
 
     public WebSocketMessage(byte[] body, boolean toBeRemoved) {
@@ -41,7 +50,7 @@ public class WebSocketMessage {
     }
 
     public WebSocketMessage(Long delay, String body, boolean toBeRemoved) {
-        this(delay, body.getBytes(StandardCharsets.UTF_8), toBeRemoved, false);
+        this(delay, body, toBeRemoved, false);
     }
 
     public WebSocketMessage(Long delay, byte[] body, boolean toBeRemoved) {
@@ -49,29 +58,54 @@ public class WebSocketMessage {
     }
 
     public WebSocketMessage(Long delay, String body, boolean toBeRemoved, boolean binary) {
-        this(delay, body.getBytes(StandardCharsets.UTF_8), toBeRemoved, binary);
+        this(delay, ByteString.encodeUtf8(body), toBeRemoved, binary, 1);
     }
 
     public WebSocketMessage(Long delay, byte[] body, boolean toBeRemoved, boolean binary) {
+        this(delay, ByteString.of(body), toBeRemoved, binary, 1);
+    }
+
+    public WebSocketMessage(Long delay, ByteString body, boolean toBeRemoved, boolean binary, int times) {
         this.delay = delay;
         this.body = body;
         this.toBeRemoved = toBeRemoved;
         this.binary = binary;
+        this.remaining = new AtomicInteger(times);
     }
 
     public Long getDelay() {
         return delay;
     }
 
+    /**
+     * Returns the body decoded as UTF-8, the decoded text is cached by the underlying {@link ByteString}.
+     */
     public String getBody() {
-        return new String(body);
+        return body.utf8();
     }
 
     public boolean isToBeRemoved() {
         return toBeRemoved;
     }
 
+    /**
+     * Consumes one of the uses of a message that is to be removed.
+     *
+     * @return the number of uses left after this one, 0 if this was the last one, or a negative number if the
+     * message was already exhausted.
+     */
+    public int consume() {
+        return remaining.getAndUpdate(r -> r > 0 ? r - 1 : r) - 1;
+    }
+
+    /**
+     * Returns a copy of the body bytes, prefer {@link #getByteString()} to avoid the copy.
+     */
     public byte[] getBytes() {
+        return body.toByteArray();
+    }
+
+    public ByteString getByteString() {
         return body;
     }
 
@@ -26,15 +26,17 @@ import okio.ByteString;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Queue;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class WebSocketSession extends WebSocketListener {
 
@@ -44,18 +46,42 @@ public class WebSocketSession extends WebSocketListener {
 
     private final Collection<WebSocket> activeSockets = ConcurrentHashMap.newKeySet();
     private final Collection<UUID> pendingMessages = ConcurrentHashMap.newKeySet();
-    private final Map<Object, Queue<WebSocketMessage>> requestEvents = new HashMap<>();
-    private final Map<Object, Queue<WebSocketMessage>> sentWebSocketMessagesRequestEvents = new HashMap<>();
-    private final Map<SimpleRequest, Queue<WebSocketMessage>> httpRequestEvents = new HashMap<>();
+    private final Map<UUID, ScheduledFuture<?>> scheduledMessages = new ConcurrentHashMap<>();
+    private final Map<Object, Queue<WebSocketMessage>> requestEvents = new ConcurrentHashMap<>();
+    private final Map<Object, Queue<WebSocketMessage>> sentWebSocketMessagesRequestEvents = new ConcurrentHashMap<>();
+    private final Map<SimpleRequest, Queue<WebSocketMessage>> httpRequestEvents = new ConcurrentHashMap<>();
     private final List<WebSocketMessage> timedEvents = new ArrayList<>();
+    // Guarded by itself
+    private final PriorityQueue<ScheduledMessage> outbox = new PriorityQueue<>();
+    private long sequence;
 
     private final ScheduledExecutorService executor;
 
     public WebSocketSession(List<WebSocketMessage> open, WebSocketMessage failure, Exception cause) {
+        this(open, failure, cause, SharedExecutor.INSTANCE);
+    }
+
+    /**
+     * Creates a session that schedules its messages on the provided executor.
+     *
+     * <p> The executor is not owned by the session, {@link #shutdown()} only waits for the messages of this session
+     * and never shuts the executor down. It may run timers on several threads, the messages are still sent in order.
+     */
+    public WebSocketSession(List<WebSocketMessage> open, WebSocketMessage failure, Exception cause, ScheduledExecutorService executor) {
         this.open = open;
         this.failure = failure;
         this.cause = cause;
-        this.executor = Executors.newScheduledThreadPool(1);
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the executor shared by all the sessions created without an explicit one.
+     *
+     * <p> It is sized to the available processors and uses daemon threads, so creating a session costs no
+     * threads and the executor never needs to be shut down.
+     */
+    public static ScheduledExecutorService sharedExecutor() {
+        return SharedExecutor.INSTANCE;
     }
 
     @Override
@@ -65,14 +91,16 @@ public class WebSocketSession extends WebSocketListener {
 
     @Override
     public void onOpen(WebSocket webSocket, Response response) {
-        activeSockets.add(webSocket);
-        //Schedule all timed events
-        for (WebSocketMessage msg : open) {
-            send(webSocket, msg);
-        }
+        // Schedule all timed events, those that are already due wait for the others to be pending
+        synchronized (outbox) {
+            activeSockets.add(webSocket);
+            for (WebSocketMessage msg : open) {
+                send(webSocket, msg);
+            }
 
-        for (WebSocketMessage msg : timedEvents) {
-            send(webSocket, msg);
+            for (WebSocketMessage msg : timedEvents) {
+                send(webSocket, msg);
+            }
         }
         closeActiveSocketsIfApplicable();
     }
@@ -94,20 +122,38 @@ public class WebSocketSession extends WebSocketListener {
     }
 
     private void send(WebSocket ws, Queue<WebSocketMessage> queue, String in) {
-        if (queue != null && !queue.isEmpty()) {
-            WebSocketMessage msg = queue.peek();
+        WebSocketMessage msg = queue != null ? claim(queue) : null;
+        if (msg != null) {
             send(ws, msg);
-            if (msg.isToBeRemoved()) {
-                queue.remove();
-            }
             checkIfShouldSendAgain(ws, msg);
         } else {
             ws.close(1002, "Unexpected message:" + in);
         }
     }
 
+    /**
+     * Returns the message to send from the provided queue, consuming one of its uses and removing it from the
+     * queue once exhausted.
+     *
+     * <p> Several sockets might peek the same head concurrently, only those that manage to consume one of its uses
+     * send it, the rest retry with the next message once the exhausted one has been removed.
+     */
+    private static WebSocketMessage claim(Queue<WebSocketMessage> queue) {
+        while (true) {
+            WebSocketMessage msg = queue.peek();
+            if (msg == null || !msg.isToBeRemoved()) {
+                return msg;
+            }
+            int remaining = msg.consume();
+            if (remaining > 0 || (remaining == 0 && queue.remove(msg))) {
+                return msg;
+            }
+            Thread.yield();
+        }
+    }
+
     private void checkIfShouldSendAgain(WebSocket ws, WebSocketMessage msg) {
-        String text = msg.isBinary() ? ByteString.of(msg.getBytes()).utf8() : msg.getBody();
+        String text = msg.getBody();
         if (sentWebSocketMessagesRequestEvents.containsKey(text)) {
             Queue<WebSocketMessage> queue = sentWebSocketMessagesRequestEvents.get(text);
             send(ws, queue, text);
@@ -156,37 +202,127 @@ public class WebSocketSession extends WebSocketListener {
         return httpRequestEvents;
     }
 
+    /**
+     * Schedules the message on the executor, which only fires its timer: the message is added to the outbox of the
+     * session and sent from there, so messages due at the same time are sent in the order they were scheduled even
+     * if the executor fires their timers on several threads.
+     */
     private void send(final WebSocket ws, final WebSocketMessage message) {
         final UUID id = UUID.randomUUID();
         pendingMessages.add(id);
-        executor.schedule(() -> {
-            if (ws != null) {
-                if (message.isBinary()) {
-                    ws.send(ByteString.of(message.getBytes()));
-                } else {
-                    ws.send(message.getBody());
+        final ScheduledMessage scheduled;
+        synchronized (outbox) {
+            scheduled = new ScheduledMessage(id, ws, message, sequence++);
+            outbox.add(scheduled);
+        }
+        ScheduledFuture<?> future = executor.schedule(() -> sendDue(scheduled), message.getDelay(), TimeUnit.MILLISECONDS);
+        scheduledMessages.put(id, future);
+        // The message might have been sent before its future was registered
+        if (!pendingMessages.contains(id)) {
+            scheduledMessages.remove(id);
+        }
+    }
+
+    /**
+     * Sends, in order, the messages of the outbox that are due, up to the provided one at least.
+     */
+    private void sendDue(ScheduledMessage fired) {
+        synchronized (outbox) {
+            final long now = System.nanoTime();
+            ScheduledMessage next;
+            while ((next = outbox.peek()) != null && (next.compareTo(fired) <= 0 || next.due - now <= 0)) {
+                outbox.poll();
+                if (next.ws != null) {
+                    if (next.message.isBinary()) {
+                        next.ws.send(next.message.getByteString());
+                    } else {
+                        next.ws.send(next.message.getBody());
+                    }
+                    pendingMessages.remove(next.id);
                 }
-                pendingMessages.remove(id);
+                scheduledMessages.remove(next.id);
             }
-            closeActiveSocketsIfApplicable();
-        }, message.getDelay(), TimeUnit.MILLISECONDS);
+            if (outbox.isEmpty()) {
+                outbox.notifyAll();
+            }
+        }
+        closeActiveSocketsIfApplicable();
     }
 
     public void closeActiveSocketsIfApplicable() {
-        if (pendingMessages.isEmpty() && requestEvents.isEmpty() && httpRequestEvents.isEmpty()
-          && sentWebSocketMessagesRequestEvents.isEmpty()) {
-            activeSockets.forEach(ws -> ws.close(1000, "Closing..."));
+        synchronized (outbox) {
+            if (pendingMessages.isEmpty() && requestEvents.isEmpty() && httpRequestEvents.isEmpty()
+              && sentWebSocketMessagesRequestEvents.isEmpty()) {
+                activeSockets.forEach(ws -> ws.close(1000, "Closing..."));
+            }
         }
     }
 
+    /**
+     * Waits up to a minute for the messages of this session that are scheduled to be sent, then cancels the rest.
+     */
     public void shutdown() {
         try {
-            executor.shutdown();
-            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
-                executor.shutdownNow();
+            synchronized (outbox) {
+                final long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+                long remaining;
+                while (!outbox.isEmpty() && (remaining = deadline - System.nanoTime()) > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(outbox, remaining);
+                }
+                outbox.clear();
             }
         } catch (InterruptedException e) {
             throw MockServerException.launderThrowable(e);
+        } finally {
+            scheduledMessages.values().forEach(future -> future.cancel(false));
+            scheduledMessages.clear();
+            pendingMessages.clear();
+        }
+    }
+
+    /**
+     * A message waiting in the outbox, ordered by due time and then by scheduling order.
+     */
+    private static final class ScheduledMessage implements Comparable<ScheduledMessage> {
+
+        private final UUID id;
+        private final WebSocket ws;
+        private final WebSocketMessage message;
+        private final long due;
+        private final long sequence;
+
+        private ScheduledMessage(UUID id, WebSocket ws, WebSocketMessage message, long sequence) {
+            this.id = id;
+            this.ws = ws;
+            this.message = message;
+            this.due = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(message.getDelay());
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(ScheduledMessage other) {
+            final long diff = due - other.due;
+            if (diff != 0) {
+                return diff < 0 ? -1 : 1;
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private static final class SharedExecutor {
+
+        private static final ScheduledExecutorService INSTANCE = create();
+
+        private static ScheduledExecutorService create() {
+            final AtomicInteger threads = new AtomicInteger();
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(
+                Runtime.getRuntime().availableProcessors(), r -> {
+                    Thread thread = new Thread(r, "MockWebServer WebSocketSession " + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            executor.setRemoveOnCancelPolicy(true);
+            return executor;
         }
     }
 }
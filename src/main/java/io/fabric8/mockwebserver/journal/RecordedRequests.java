@@ -0,0 +1,150 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.journal;
+
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.ByteString;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary encoding of {@link RecordedRequest} instances used to move them out of the heap.
+ *
+ * <p> The request line, headers, chunk sizes and body are preserved. The TLS handshake is not, and the host and port
+ * of the request URL are restored through a placeholder {@link Socket}, so decoded requests always report an
+ * {@code http} URL.
+ */
+final class RecordedRequests {
+
+    private RecordedRequests() {
+    }
+
+    static void write(DataOutput out, long sequence, RecordedRequest request) throws IOException {
+        out.writeLong(sequence);
+        writeString(out, request.getRequestLine());
+        HttpUrl url = request.getRequestUrl();
+        writeString(out, url == null ? null : url.host());
+        out.writeInt(url == null ? -1 : url.port());
+        Headers headers = request.getHeaders();
+        out.writeInt(headers.size());
+        for (int i = 0; i < headers.size(); i++) {
+            writeString(out, headers.name(i));
+            writeString(out, headers.value(i));
+        }
+        List<Integer> chunkSizes = request.getChunkSizes();
+        out.writeInt(chunkSizes.size());
+        for (Integer chunkSize : chunkSizes) {
+            out.writeInt(chunkSize);
+        }
+        out.writeLong(request.getBodySize());
+        ByteString body = request.getBody().snapshot();
+        out.writeInt(body.size());
+        out.write(body.toByteArray());
+        out.writeInt(request.getSequenceNumber());
+    }
+
+    static RecordedRequest read(DataInput in) throws IOException {
+        in.readLong(); // sequence
+        String requestLine = readString(in);
+        String host = readString(in);
+        int port = in.readInt();
+        Headers.Builder headers = new Headers.Builder();
+        for (int i = in.readInt(); i > 0; i--) {
+            headers.add(readString(in), readString(in));
+        }
+        List<Integer> chunkSizes = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            chunkSizes.add(in.readInt());
+        }
+        long bodySize = in.readLong();
+        byte[] body = new byte[in.readInt()];
+        in.readFully(body);
+        int sequenceNumber = in.readInt();
+        return new RecordedRequest(requestLine, headers.build(), chunkSizes, bodySize, new Buffer().write(body),
+            sequenceNumber, new PlaceholderSocket(host, port));
+    }
+
+    /**
+     * Decodes the request line of the request encoded at the provided position without decoding the rest of it.
+     */
+    static String readRequestLine(ByteBuffer buffer, int position) {
+        int length = buffer.getInt(position + Long.BYTES);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        ByteBuffer source = buffer.duplicate();
+        source.position(position + Long.BYTES + Integer.BYTES);
+        source.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Unconnected socket reporting the local address of the original request, {@link RecordedRequest} builds
+     * the request URL out of it.
+     */
+    private static final class PlaceholderSocket extends Socket {
+
+        private final InetAddress localAddress;
+        private final int localPort;
+
+        private PlaceholderSocket(String host, int port) throws IOException {
+            this.localAddress = InetAddress.getByAddress(host == null ? "localhost" : host, new byte[]{127, 0, 0, 1});
+            this.localPort = port;
+        }
+
+        @Override
+        public InetAddress getLocalAddress() {
+            return localAddress;
+        }
+
+        @Override
+        public int getLocalPort() {
+            return localPort;
+        }
+    }
+}
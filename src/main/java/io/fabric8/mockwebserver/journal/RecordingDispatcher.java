@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.journal;
+
+import io.fabric8.mockwebserver.transport.MockWebServerTransport;
+import io.fabric8.mockwebserver.transport.Transport;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Dispatcher} passing every request to a list of {@link RequestRecorder} instances before delegating it.
+ *
+ * <p> {@link MockWebServer} and the other {@link Transport} implementations queue every request they receive, the queue
+ * is drained completely as requests are dispatched, including the entries queued without being dispatched (failed TLS
+ * handshakes, connections disconnected at start), so that the recorders are the only place where they are retained.
+ */
+public class RecordingDispatcher extends Dispatcher {
+
+    private final Dispatcher delegate;
+    private final Transport transport;
+    private final List<RequestRecorder> recorders;
+
+    public RecordingDispatcher(Dispatcher delegate, MockWebServer server, List<RequestRecorder> recorders) {
+        this(delegate, new MockWebServerTransport(server), recorders);
+    }
+
+    public RecordingDispatcher(Dispatcher delegate, Transport transport, List<RequestRecorder> recorders) {
+        this.delegate = delegate;
+        this.transport = transport;
+        this.recorders = new ArrayList<>(recorders);
+    }
+
+    @Override
+    public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        for (RequestRecorder recorder : recorders) {
+            recorder.record(request);
+        }
+        while (transport.takeRequest(0, TimeUnit.NANOSECONDS) != null) {
+            // Also drops the requests queued without being dispatched, e.g. failed TLS handshakes
+        }
+        return delegate.dispatch(request);
+    }
+
+    @Override
+    public MockResponse peek() {
+        return delegate.peek();
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+}
@@ -0,0 +1,384 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.journal;
+
+import io.fabric8.mockwebserver.MockServerException;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded journal of the requests received by a {@link io.fabric8.mockwebserver.MockServer}.
+ *
+ * <p> Requests are kept in a ring buffer of fixed capacity and indexed by path and by method and path. Once the
+ * capacity is reached the {@link OverflowPolicy} decides what happens to the older requests. The most recent request
+ * is always available, regardless of the policy.
+ *
+ * <p> This class is thread-safe.
+ */
+public class RequestJournal implements RequestRecorder, Closeable {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * What to do with the requests that don't fit in the journal.
+     */
+    public enum OverflowPolicy {
+        /**
+         * The oldest request is discarded to make room for the new one.
+         */
+        DROP_OLDEST,
+        /**
+         * The journal keeps a uniform random sample of all the received requests (reservoir sampling).
+         */
+        SAMPLE,
+        /**
+         * The oldest request is appended to a {@link RequestLog} in the spill directory to make room for the new one.
+         */
+        SPILL_TO_DISK
+    }
+
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final Path spillDirectory;
+    private final Entry[] ring;
+    private final Map<String, ArrayDeque<Entry>> byPath = new HashMap<>();
+    private final Map<String, ArrayDeque<Entry>> byMethodAndPath = new HashMap<>();
+    private volatile RecordedRequest lastRequest;
+    private int head;
+    private int size;
+    private long recorded;
+    private long nextToTake;
+    private RequestLog spill;
+
+    public RequestJournal() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public RequestJournal(int capacity) {
+        this(capacity, OverflowPolicy.DROP_OLDEST);
+    }
+
+    public RequestJournal(int capacity, OverflowPolicy policy) {
+        this(capacity, policy, null);
+    }
+
+    /**
+     * Creates a new journal.
+     *
+     * @param capacity the maximum number of requests kept in memory.
+     * @param policy what to do with the requests exceeding the capacity.
+     * @param spillDirectory where the {@link RequestLog} of the requests spilled with
+     *                       {@link OverflowPolicy#SPILL_TO_DISK} is created, the default temporary directory is used
+     *                       if null.
+     */
+    public RequestJournal(int capacity, OverflowPolicy policy, Path spillDirectory) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Journal capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.policy = policy;
+        this.spillDirectory = spillDirectory;
+        this.ring = new Entry[capacity];
+    }
+
+    /**
+     * Adds the provided request to the journal.
+     *
+     * @param request the received request.
+     */
+    @Override
+    public synchronized void record(RecordedRequest request) {
+        Entry entry = new Entry(recorded++, request);
+        lastRequest = request;
+        if (size == capacity) {
+            switch (policy) {
+                case SAMPLE:
+                    long slot = ThreadLocalRandom.current().nextLong(recorded);
+                    if (slot >= capacity) {
+                        return;
+                    }
+                    unindex(removeAt((int) slot));
+                    break;
+                case SPILL_TO_DISK:
+                    spill(unindex(removeAt(0)));
+                    break;
+                default:
+                    unindex(removeAt(0));
+            }
+        }
+        ring[(head + size++) % capacity] = entry;
+        byPath.computeIfAbsent(request.getPath(), k -> new ArrayDeque<>()).addLast(entry);
+        byMethodAndPath.computeIfAbsent(key(request.getMethod(), request.getPath()), k -> new ArrayDeque<>()).addLast(entry);
+        notifyAll();
+    }
+
+    /**
+     * Returns the most recent request, it's never discarded by the overflow policy.
+     *
+     * @return the most recent request or null if none was recorded.
+     */
+    public RecordedRequest getLastRequest() {
+        return lastRequest;
+    }
+
+    /**
+     * Returns the requests in memory, from oldest to newest.
+     *
+     * @return a snapshot of the requests in the journal.
+     */
+    public synchronized List<RecordedRequest> getRequests() {
+        List<RecordedRequest> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(ring[(head + i) % capacity].request);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the requests in memory for the provided path, from oldest to newest.
+     *
+     * @param path the path, including the query string, as returned by {@link RecordedRequest#getPath()}.
+     * @return a snapshot of the matching requests.
+     */
+    public synchronized List<RecordedRequest> getRequests(String path) {
+        return requestsOf(byPath.get(path));
+    }
+
+    /**
+     * Returns the requests in memory for the provided method and path, from oldest to newest.
+     *
+     * @param method the HTTP method (e.g. GET).
+     * @param path the path, including the query string, as returned by {@link RecordedRequest#getPath()}.
+     * @return a snapshot of the matching requests.
+     */
+    public synchronized List<RecordedRequest> getRequests(String method, String path) {
+        return requestsOf(byMethodAndPath.get(key(method, path)));
+    }
+
+    /**
+     * Returns the requests that were spilled to disk, from oldest to newest.
+     *
+     * <p> Requests are decoded lazily while iterating.
+     *
+     * @return the spilled requests.
+     */
+    public synchronized Iterable<RecordedRequest> getSpilledRequests() {
+        if (spill == null) {
+            return Collections.emptyList();
+        }
+        return spill.find(null, null);
+    }
+
+    /**
+     * Awaits the next request that hasn't been taken yet and returns it.
+     *
+     * <p> Requests discarded or spilled by the overflow policy before being taken are skipped.
+     *
+     * @return the oldest request in memory that hasn't been taken.
+     */
+    public synchronized RecordedRequest take() throws InterruptedException {
+        Entry next;
+        while ((next = nextToTake()) == null) {
+            wait();
+        }
+        nextToTake = next.sequence + 1;
+        return next.request;
+    }
+
+    /**
+     * Awaits (waiting up to the specified time) the next request that hasn't been taken yet and returns it.
+     *
+     * <p> Requests discarded or spilled by the overflow policy before being taken are skipped.
+     *
+     * @param timeout how long to wait before giving up, in units of {@code unit}
+     * @param unit a {@code TimeUnit} determining how to interpret the {@code timeout} parameter
+     * @return the oldest request in memory that hasn't been taken, or null if none arrived in time.
+     */
+    public synchronized RecordedRequest take(long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        final long deadline = System.nanoTime() + remaining;
+        Entry next;
+        while ((next = nextToTake()) == null) {
+            if (remaining <= 0) {
+                return null;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            remaining = deadline - System.nanoTime();
+        }
+        nextToTake = next.sequence + 1;
+        return next.request;
+    }
+
+    /**
+     * @return the number of requests in memory.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of requests recorded since the journal was created or cleared.
+     */
+    public synchronized long getRecordedCount() {
+        return recorded;
+    }
+
+    /**
+     * @return the number of requests spilled to disk.
+     */
+    public synchronized long getSpilledCount() {
+        return spill == null ? 0 : spill.size();
+    }
+
+    /**
+     * Removes all the requests from the journal, including the spilled ones.
+     */
+    public synchronized void clear() {
+        closeSpill();
+        for (int i = 0; i < size; i++) {
+            ring[(head + i) % capacity] = null;
+        }
+        byPath.clear();
+        byMethodAndPath.clear();
+        lastRequest = null;
+        head = 0;
+        size = 0;
+        recorded = 0;
+        nextToTake = 0;
+    }
+
+    /**
+     * Releases and deletes the spilled requests, if any.
+     */
+    @Override
+    public synchronized void close() {
+        closeSpill();
+    }
+
+    private Entry nextToTake() {
+        if (size == 0 || ring[(head + size - 1) % capacity].sequence < nextToTake) {
+            return null;
+        }
+        int low = 0;
+        int high = size - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (ring[(head + middle) % capacity].sequence < nextToTake) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return ring[(head + low) % capacity];
+    }
+
+    private Entry removeAt(int position) {
+        Entry removed = ring[(head + position) % capacity];
+        if (position == 0) {
+            ring[head] = null;
+            head = (head + 1) % capacity;
+        } else {
+            for (int i = position; i < size - 1; i++) {
+                ring[(head + i) % capacity] = ring[(head + i + 1) % capacity];
+            }
+            ring[(head + size - 1) % capacity] = null;
+        }
+        size--;
+        return removed;
+    }
+
+    private Entry unindex(Entry entry) {
+        RecordedRequest request = entry.request;
+        removeFrom(byPath, request.getPath(), entry);
+        removeFrom(byMethodAndPath, key(request.getMethod(), request.getPath()), entry);
+        return entry;
+    }
+
+    private void spill(Entry entry) {
+        if (spill == null) {
+            try {
+                spill = new RequestLog(spillDirectory != null ?
+                    Files.createTempDirectory(spillDirectory, "requests-") :
+                    Files.createTempDirectory("mockwebserver-requests-"));
+            } catch (IOException e) {
+                throw new MockServerException("Exception when creating the request journal spill directory", e);
+            }
+        }
+        spill.record(entry.request);
+    }
+
+    private void closeSpill() {
+        if (spill == null) {
+            return;
+        }
+        try {
+            spill.delete();
+            Files.deleteIfExists(spill.getDirectory());
+        } catch (IOException e) {
+            throw new MockServerException("Exception when deleting the request journal spill directory", e);
+        } finally {
+            spill = null;
+        }
+    }
+
+    private static List<RecordedRequest> requestsOf(ArrayDeque<Entry> entries) {
+        if (entries == null) {
+            return Collections.emptyList();
+        }
+        List<RecordedRequest> result = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            result.add(entry.request);
+        }
+        return result;
+    }
+
+    private static void removeFrom(Map<String, ArrayDeque<Entry>> index, String key, Entry entry) {
+        ArrayDeque<Entry> entries = index.get(key);
+        if (entries != null) {
+            entries.removeFirstOccurrence(entry);
+            if (entries.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    private static String key(String method, String path) {
+        return method + ' ' + path;
+    }
+
+    private static final class Entry {
+
+        private final long sequence;
+        private final RecordedRequest request;
+
+        private Entry(long sequence, RecordedRequest request) {
+            this.sequence = sequence;
+            this.request = request;
+        }
+    }
+}
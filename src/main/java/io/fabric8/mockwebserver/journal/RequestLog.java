@@ -0,0 +1,399 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.journal;
+
+import io.fabric8.mockwebserver.MockServerException;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only log of requests stored in memory-mapped segment files.
+ *
+ * <p> Every request is encoded (request line, headers, chunk sizes and body) and appended to the active segment,
+ * a new segment is started once it's full. Only the active segment is mapped for writing, sealed segments are mapped
+ * again only while they are read, so the heap usage doesn't depend on the number of recorded requests.
+ *
+ * <p> Each entry is stored as its length followed by the encoded request, the unused tail of a segment is zero
+ * filled. Segment files are kept when the log is closed so they can be inspected afterwards, {@link #delete()}
+ * removes them.
+ *
+ * <p> This class is thread-safe.
+ */
+public class RequestLog implements RequestRecorder, Iterable<RecordedRequest>, Closeable {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private static final int MAX_RETAINED_ENCODER_SIZE = 1024 * 1024;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final List<Segment> segments = new ArrayList<>();
+    private final ThreadLocal<Encoder> encoders = ThreadLocal.withInitial(Encoder::new);
+    private volatile RecordedRequest lastRequest;
+    private Segment active;
+    private long count;
+    private long taken;
+    private int takeSegment;
+    private ByteBuffer takeBuffer;
+    private boolean closed;
+
+    public RequestLog(Path directory) {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Creates a new log.
+     *
+     * @param directory where the segment files are created, it must not contain the segments of another log.
+     * @param segmentSize the size in bytes of each segment file, larger requests get a segment of their own.
+     */
+    public RequestLog(Path directory, int segmentSize) {
+        if (segmentSize < 1024) {
+            throw new IllegalArgumentException("Segment size must be at least 1024 bytes: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new MockServerException("Exception when creating the request log directory " + directory, e);
+        }
+    }
+
+    /**
+     * Appends the provided request to the log.
+     *
+     * @param request the received request.
+     */
+    @Override
+    public void record(RecordedRequest request) {
+        Encoder encoder = encoders.get();
+        encoder.reset();
+        try {
+            RecordedRequests.write(encoder.data, 0L, request);
+        } catch (IOException e) {
+            throw new MockServerException("Exception when encoding a request for the request log", e);
+        }
+        append(encoder.buffer(), encoder.size());
+        lastRequest = request;
+        if (encoder.buffer().length > MAX_RETAINED_ENCODER_SIZE) {
+            encoders.remove();
+        }
+    }
+
+    /**
+     * @return the most recent request or null if none was recorded.
+     */
+    public RecordedRequest getLastRequest() {
+        return lastRequest;
+    }
+
+    /**
+     * @return the number of requests in the log.
+     */
+    public synchronized long size() {
+        return count;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns an iterator over the requests recorded so far, from oldest to newest.
+     *
+     * <p> Requests are decoded lazily as the iterator advances, requests recorded afterwards are not included.
+     */
+    @Override
+    public Iterator<RecordedRequest> iterator() {
+        return find(null, null).iterator();
+    }
+
+    /**
+     * Returns the requests recorded so far matching the provided method and path, from oldest to newest.
+     *
+     * <p> Only the request line of non-matching requests is decoded.
+     *
+     * @param method the HTTP method (e.g. GET) or null to match any method.
+     * @param path the path, including the query string, as returned by {@link RecordedRequest#getPath()}, or null
+     *             to match any path.
+     * @return the matching requests.
+     */
+    public Iterable<RecordedRequest> find(String method, String path) {
+        final List<Segment> snapshot;
+        final int[] limits;
+        synchronized (this) {
+            ensureOpen();
+            snapshot = new ArrayList<>(segments);
+            limits = new int[snapshot.size()];
+            for (int i = 0; i < limits.length; i++) {
+                limits[i] = snapshot.get(i).limit;
+            }
+        }
+        return () -> new EntryIterator(snapshot, limits, method, path);
+    }
+
+    /**
+     * Awaits the next request that hasn't been taken yet and returns it.
+     *
+     * @return the oldest request that hasn't been taken.
+     */
+    public synchronized RecordedRequest take() throws InterruptedException {
+        while (taken == count) {
+            wait();
+        }
+        return takeNext();
+    }
+
+    /**
+     * Awaits (waiting up to the specified time) the next request that hasn't been taken yet and returns it.
+     *
+     * @param timeout how long to wait before giving up, in units of {@code unit}
+     * @param unit a {@code TimeUnit} determining how to interpret the {@code timeout} parameter
+     * @return the oldest request that hasn't been taken, or null if none arrived in time.
+     */
+    public synchronized RecordedRequest take(long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        final long deadline = System.nanoTime() + remaining;
+        while (taken == count) {
+            if (remaining <= 0) {
+                return null;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            remaining = deadline - System.nanoTime();
+        }
+        return takeNext();
+    }
+
+    /**
+     * Releases the mapped segments, the segment files are kept.
+     */
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            if (active != null) {
+                active.buffer.force();
+                active.buffer = null;
+            }
+            takeBuffer = null;
+        }
+    }
+
+    /**
+     * Closes the log and deletes its segment files.
+     */
+    public synchronized void delete() {
+        close();
+        try {
+            for (Segment segment : segments) {
+                Files.deleteIfExists(segment.path);
+            }
+        } catch (IOException e) {
+            throw new MockServerException("Exception when deleting the request log segments", e);
+        }
+        segments.clear();
+    }
+
+    private synchronized void append(byte[] entry, int length) {
+        ensureOpen();
+        if (active == null || active.buffer.remaining() < Integer.BYTES + length) {
+            roll(length);
+        }
+        final MappedByteBuffer buffer = active.buffer;
+        final int position = buffer.position();
+        buffer.putInt(length).put(entry, 0, length);
+        buffer.putLong(position + Integer.BYTES, count);
+        active.limit = buffer.position();
+        count++;
+        notifyAll();
+    }
+
+    private void roll(int length) {
+        if (active != null) {
+            active.buffer.force();
+            active.buffer = null;
+        }
+        Path path = directory.resolve(String.format("requests-%06d.log", segments.size()));
+        int size = Math.max(segmentSize, Integer.BYTES + length);
+        try (FileChannel channel = FileChannel.open(path,
+            StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            active = new Segment(path, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        } catch (IOException e) {
+            throw new MockServerException("Exception when creating the request log segment " + path, e);
+        }
+        segments.add(active);
+    }
+
+    private RecordedRequest takeNext() {
+        if (takeBuffer == null) {
+            takeBuffer = read(segments.get(takeSegment), Integer.MAX_VALUE);
+        }
+        // The active segment keeps growing, its limit must be refreshed
+        takeBuffer.limit(segments.get(takeSegment).limit);
+        if (!takeBuffer.hasRemaining()) {
+            takeBuffer = read(segments.get(++takeSegment), Integer.MAX_VALUE);
+        }
+        int length = takeBuffer.getInt();
+        int position = takeBuffer.position();
+        takeBuffer.position(position + length);
+        taken++;
+        return decode(takeBuffer, position, length);
+    }
+
+    private ByteBuffer read(Segment segment, int limit) {
+        int end = Math.min(limit, segment.limit);
+        MappedByteBuffer buffer = segment.buffer;
+        if (buffer != null) {
+            ByteBuffer view = buffer.duplicate();
+            view.position(0);
+            view.limit(end);
+            return view;
+        }
+        try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+        } catch (IOException e) {
+            throw new MockServerException("Exception when reading the request log segment " + segment.path, e);
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Request log is closed");
+        }
+    }
+
+    private static RecordedRequest decode(ByteBuffer buffer, int position, int length) {
+        byte[] entry = new byte[length];
+        ByteBuffer source = buffer.duplicate();
+        source.position(position);
+        source.get(entry);
+        try {
+            return RecordedRequests.read(new DataInputStream(new ByteArrayInputStream(entry)));
+        } catch (IOException e) {
+            throw new MockServerException("Corrupted request log entry", e);
+        }
+    }
+
+    private static boolean matches(String requestLine, String method, String path) {
+        if (method == null && path == null) {
+            return true;
+        }
+        if (requestLine == null) {
+            return false;
+        }
+        int methodEnd = requestLine.indexOf(' ');
+        int pathEnd = requestLine.indexOf(' ', methodEnd + 1);
+        if (methodEnd < 0 || pathEnd < 0) {
+            return false;
+        }
+        return (method == null || requestLine.regionMatches(0, method, 0, methodEnd) && method.length() == methodEnd)
+            && (path == null || requestLine.substring(methodEnd + 1, pathEnd).equals(path));
+    }
+
+    private final class EntryIterator implements Iterator<RecordedRequest> {
+
+        private final List<Segment> snapshot;
+        private final int[] limits;
+        private final String method;
+        private final String path;
+        private int segment = -1;
+        private ByteBuffer buffer;
+        private RecordedRequest next;
+
+        private EntryIterator(List<Segment> snapshot, int[] limits, String method, String path) {
+            this.snapshot = snapshot;
+            this.limits = limits;
+            this.method = method;
+            this.path = path;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = advance();
+            }
+            return next != null;
+        }
+
+        @Override
+        public RecordedRequest next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            RecordedRequest result = next;
+            next = null;
+            return result;
+        }
+
+        private RecordedRequest advance() {
+            while (true) {
+                if (buffer == null || !buffer.hasRemaining()) {
+                    if (++segment >= snapshot.size()) {
+                        buffer = null;
+                        return null;
+                    }
+                    buffer = read(snapshot.get(segment), limits[segment]);
+                    continue;
+                }
+                int length = buffer.getInt();
+                int position = buffer.position();
+                buffer.position(position + length);
+                if (matches(RecordedRequests.readRequestLine(buffer, position), method, path)) {
+                    return decode(buffer, position, length);
+                }
+            }
+        }
+    }
+
+    private static final class Segment {
+
+        private final Path path;
+        private volatile MappedByteBuffer buffer;
+        private volatile int limit;
+
+        private Segment(Path path, MappedByteBuffer buffer) {
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+
+    private static final class Encoder extends ByteArrayOutputStream {
+
+        private final DataOutputStream data = new DataOutputStream(this);
+
+        private byte[] buffer() {
+            return buf;
+        }
+    }
+}
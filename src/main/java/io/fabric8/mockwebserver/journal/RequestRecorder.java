@@ -0,0 +1,33 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.journal;
+
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Destination of the requests received by a {@link io.fabric8.mockwebserver.MockServer}.
+ */
+public interface RequestRecorder {
+
+    /**
+     * Records the provided request.
+     *
+     * <p> Invoked by the server threads, implementations must be thread-safe.
+     *
+     * @param request the received request.
+     */
+    void record(RecordedRequest request);
+}
@@ -0,0 +1,368 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.replay;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.fabric8.mockwebserver.ServerRequest;
+import io.fabric8.mockwebserver.ServerResponse;
+import io.fabric8.mockwebserver.dsl.HttpMethod;
+import io.fabric8.mockwebserver.internal.SimpleRequest;
+import okhttp3.Headers;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.ByteString;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads the entries of a recorded <a href="http://www.softwareishard.com/blog/har-12-spec/">HAR</a> file as
+ * expectations.
+ *
+ * <p> The file is read in a single streaming pass. Each entry becomes a response served once, in the recorded
+ * order, for its method and path (including the query string). Consecutive identical responses for the same request
+ * are merged into a single response served as many times. Responses recorded with chunked transfer encoding are
+ * replayed as a single chunk.
+ *
+ * <p> Entries with methods not supported by {@link HttpMethod} (e.g. HEAD) are ignored. Base64 encoded bodies are
+ * replayed as the decoded bytes, so binary content is kept intact.
+ */
+public class HarLoader {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    /**
+     * Headers describing the recorded message framing, they're computed again when the response is served.
+     */
+    private static final Set<String> FRAMING_HEADERS = new HashSet<>(Arrays.asList(
+        "content-length", "transfer-encoding", "content-encoding", "connection", "keep-alive"));
+
+    /**
+     * Adds the entries of the provided HAR file to the responses map.
+     *
+     * @param har the HAR file.
+     * @param responses the map where expectations are added.
+     * @return the number of loaded entries.
+     */
+    public int load(Path har, Map<ServerRequest, Queue<ServerResponse>> responses) throws IOException {
+        try (InputStream in = Files.newInputStream(har)) {
+            return load(in, responses);
+        }
+    }
+
+    /**
+     * Adds the entries of the provided HAR document to the responses map.
+     *
+     * <p> Entries are grouped by request while parsing and added to the map once the whole document has been read,
+     * after any existing expectation for the same request.
+     *
+     * @param har the HAR document, it's not closed.
+     * @param responses the map where expectations are added.
+     * @return the number of loaded entries.
+     */
+    public int load(InputStream har, Map<ServerRequest, Queue<ServerResponse>> responses) throws IOException {
+        final Map<ServerRequest, Pending> loaded = new HashMap<>();
+        int count = 0;
+        try (JsonParser parser = JSON_FACTORY.createParser(har)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                parser.nextToken();
+                if ("log".equals(parser.getCurrentName())) {
+                    count += readLog(parser, loaded);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        for (Map.Entry<ServerRequest, Pending> entry : loaded.entrySet()) {
+            Queue<ServerResponse> queue = entry.getValue().flush().queue;
+            Queue<ServerResponse> existing = responses.putIfAbsent(entry.getKey(), queue);
+            if (existing != null) {
+                existing.addAll(queue);
+            }
+        }
+        return count;
+    }
+
+    private static int readLog(JsonParser parser, Map<ServerRequest, Pending> loaded) throws IOException {
+        expect(parser, parser.currentToken(), JsonToken.START_OBJECT);
+        int count = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            parser.nextToken();
+            if ("entries".equals(parser.getCurrentName())) {
+                expect(parser, parser.currentToken(), JsonToken.START_ARRAY);
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    if (readEntry(parser, loaded)) {
+                        count++;
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return count;
+    }
+
+    private static boolean readEntry(JsonParser parser, Map<ServerRequest, Pending> loaded) throws IOException {
+        final Recorded recorded = new Recorded();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            parser.nextToken();
+            switch (parser.getCurrentName()) {
+                case "request":
+                    readRequest(parser, recorded);
+                    break;
+                case "response":
+                    readResponse(parser, recorded);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        final HttpMethod method = methodOf(recorded.method);
+        if (method == null || recorded.url == null) {
+            return false;
+        }
+        loaded.computeIfAbsent(new SimpleRequest(method, pathOf(recorded.url)), k -> new Pending()).add(recorded);
+        return true;
+    }
+
+    private static void readRequest(JsonParser parser, Recorded recorded) throws IOException {
+        expect(parser, parser.currentToken(), JsonToken.START_OBJECT);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            parser.nextToken();
+            switch (parser.getCurrentName()) {
+                case "method":
+                    recorded.method = parser.getValueAsString();
+                    break;
+                case "url":
+                    recorded.url = parser.getValueAsString();
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+    }
+
+    private static void readResponse(JsonParser parser, Recorded recorded) throws IOException {
+        expect(parser, parser.currentToken(), JsonToken.START_OBJECT);
+        final Headers.Builder headers = new Headers.Builder();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            parser.nextToken();
+            switch (parser.getCurrentName()) {
+                case "status":
+                    recorded.status = parser.getValueAsInt();
+                    break;
+                case "headers":
+                    readHeaders(parser, headers, recorded);
+                    break;
+                case "content":
+                    readContent(parser, recorded);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        recorded.headers = headers.build();
+    }
+
+    private static void readHeaders(JsonParser parser, Headers.Builder headers, Recorded recorded) throws IOException {
+        expect(parser, parser.currentToken(), JsonToken.START_ARRAY);
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String name = null;
+            String value = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                parser.nextToken();
+                if ("name".equals(parser.getCurrentName())) {
+                    name = parser.getValueAsString();
+                } else if ("value".equals(parser.getCurrentName())) {
+                    value = parser.getValueAsString();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (name == null || value == null) {
+                continue;
+            }
+            final String lowerCaseName = name.toLowerCase(Locale.ROOT);
+            if (lowerCaseName.equals("transfer-encoding") && value.toLowerCase(Locale.ROOT).contains("chunked")) {
+                recorded.chunked = true;
+            }
+            if (!FRAMING_HEADERS.contains(lowerCaseName)) {
+                headers.addUnsafeNonAscii(name, value);
+            }
+        }
+    }
+
+    private static void readContent(JsonParser parser, Recorded recorded) throws IOException {
+        expect(parser, parser.currentToken(), JsonToken.START_OBJECT);
+        String text = null;
+        String encoding = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            parser.nextToken();
+            if ("text".equals(parser.getCurrentName())) {
+                text = parser.getValueAsString();
+            } else if ("encoding".equals(parser.getCurrentName())) {
+                encoding = parser.getValueAsString();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (text == null) {
+            return;
+        }
+        recorded.body = "base64".equalsIgnoreCase(encoding) ?
+            ByteString.of(Base64.getMimeDecoder().decode(text)) : ByteString.encodeUtf8(text);
+    }
+
+    private static HttpMethod methodOf(String method) {
+        if (method == null) {
+            return null;
+        }
+        try {
+            return HttpMethod.valueOf(method.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the path and query of the provided URL, as they appear in the request line.
+     */
+    static String pathOf(String url) {
+        int start = url.indexOf("://");
+        start = start < 0 ? 0 : url.indexOf('/', start + 3);
+        if (start < 0) {
+            return "/";
+        }
+        int end = url.indexOf('#', start);
+        return end < 0 ? url.substring(start) : url.substring(start, end);
+    }
+
+    private static void expect(JsonParser parser, JsonToken actual, JsonToken expected) throws JsonParseException {
+        if (actual != expected) {
+            throw new JsonParseException(parser, "Invalid HAR document, expected " + expected + " but was " + actual);
+        }
+    }
+
+    /**
+     * A single recorded entry.
+     */
+    private static final class Recorded {
+
+        private String method;
+        private String url;
+        private int status = 200;
+        private Headers headers = Headers.of();
+        private ByteString body = ByteString.EMPTY;
+        private boolean chunked;
+
+        private boolean sameResponse(Recorded other) {
+            return status == other.status && chunked == other.chunked && body.equals(other.body)
+                && headers.equals(other.headers);
+        }
+    }
+
+    /**
+     * The responses loaded for a single request, the last one is kept apart until a different one is found so that
+     * runs of identical responses are merged.
+     */
+    private static final class Pending {
+
+        private final Queue<ServerResponse> queue = new ConcurrentLinkedQueue<>();
+        private Recorded last;
+        private int times;
+
+        private void add(Recorded recorded) {
+            if (last != null && last.sameResponse(recorded)) {
+                times++;
+                return;
+            }
+            flush();
+            last = recorded;
+            times = 1;
+        }
+
+        private Pending flush() {
+            if (last != null) {
+                queue.add(toResponse(last, times));
+                last = null;
+            }
+            return this;
+        }
+
+        private static ServerResponse toResponse(Recorded recorded, int times) {
+            return new RecordedResponse(recorded, times);
+        }
+    }
+
+    /**
+     * Serves the recorded status, headers and body bytes, as many times as they were recorded in a row.
+     */
+    private static final class RecordedResponse implements ServerResponse {
+
+        private final int status;
+        private final Headers headers;
+        private final Buffer body;
+        private final boolean chunked;
+        private final AtomicInteger remaining;
+
+        private RecordedResponse(Recorded recorded, int times) {
+            this.status = recorded.status;
+            this.headers = recorded.headers;
+            this.body = new Buffer().write(recorded.body);
+            this.chunked = recorded.chunked;
+            this.remaining = new AtomicInteger(times);
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return false;
+        }
+
+        @Override
+        public int consume() {
+            return remaining.getAndUpdate(r -> r > 0 ? r - 1 : r) - 1;
+        }
+
+        /**
+         * MockResponse clones the body buffer (sharing its segments), chunking consumes it so a clone is passed.
+         */
+        @Override
+        public MockResponse toMockResponse(RecordedRequest request) {
+            final MockResponse response = new MockResponse().setResponseCode(status).setHeaders(headers);
+            if (chunked) {
+                return response.setChunkedBody(body.clone(), (int) Math.max(1, body.size()));
+            }
+            return response.setBody(body);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.shaping;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Useful methods for creating latency distributions.
+ */
+public class LatencyDistributions {
+
+    private LatencyDistributions() {
+    }
+
+    public static LatencyDistribution fixed(long latency, TimeUnit unit) {
+        final long nanos = unit.toNanos(latency);
+        requireNonNegative(nanos);
+        return () -> nanos;
+    }
+
+    /**
+     * Latencies uniformly distributed between the provided bounds (both inclusive).
+     */
+    public static LatencyDistribution uniform(long min, long max, TimeUnit unit) {
+        final long minNanos = unit.toNanos(min);
+        final long maxNanos = unit.toNanos(max);
+        requireNonNegative(minNanos);
+        if (maxNanos < minNanos) {
+            throw new IllegalArgumentException("Maximum latency must not be lower than the minimum one");
+        }
+        return () -> ThreadLocalRandom.current().nextLong(minNanos, maxNanos + 1);
+    }
+
+    /**
+     * Normally distributed latencies, negative samples are truncated to zero.
+     */
+    public static LatencyDistribution normal(long mean, long standardDeviation, TimeUnit unit) {
+        final long meanNanos = unit.toNanos(mean);
+        final long standardDeviationNanos = unit.toNanos(standardDeviation);
+        requireNonNegative(meanNanos);
+        requireNonNegative(standardDeviationNanos);
+        return () -> Math.max(0L, meanNanos + (long) (ThreadLocalRandom.current().nextGaussian() * standardDeviationNanos));
+    }
+
+    /**
+     * Latencies following the provided percentile table (e.g. p50 = 20ms, p90 = 80ms, p99 = 300ms).
+     *
+     * <p> Latencies between two percentiles are linearly interpolated, below the first and above the last percentile
+     * the first and last latencies are used.
+     *
+     * @param unit the unit of the latencies.
+     * @param percentiles the percentiles, in increasing order and within (0, 100].
+     * @param latencies the latency of each percentile, in non decreasing order.
+     * @return the distribution.
+     */
+    public static LatencyDistribution percentiles(TimeUnit unit, double[] percentiles, long[] latencies) {
+        if (percentiles.length == 0 || percentiles.length != latencies.length) {
+            throw new IllegalArgumentException("Each percentile must have exactly one latency");
+        }
+        final double[] points = percentiles.clone();
+        final long[] nanos = new long[latencies.length];
+        for (int i = 0; i < points.length; i++) {
+            nanos[i] = unit.toNanos(latencies[i]);
+            requireNonNegative(nanos[i]);
+            if (points[i] <= 0 || points[i] > 100 || i > 0 && (points[i] <= points[i - 1] || nanos[i] < nanos[i - 1])) {
+                throw new IllegalArgumentException("Invalid percentile table " + Arrays.toString(percentiles));
+            }
+        }
+        return () -> interpolate(points, nanos, ThreadLocalRandom.current().nextDouble(100));
+    }
+
+    static long interpolate(double[] points, long[] nanos, double percentile) {
+        int index = Arrays.binarySearch(points, percentile);
+        if (index >= 0) {
+            return nanos[index];
+        }
+        final int upper = -index - 1;
+        if (upper == 0) {
+            return nanos[0];
+        }
+        if (upper == points.length) {
+            return nanos[points.length - 1];
+        }
+        final double ratio = (percentile - points[upper - 1]) / (points[upper] - points[upper - 1]);
+        return nanos[upper - 1] + (long) (ratio * (nanos[upper] - nanos[upper - 1]));
+    }
+
+    private static void requireNonNegative(long nanos) {
+        if (nanos < 0) {
+            throw new IllegalArgumentException("Latencies must not be negative");
+        }
+    }
+}
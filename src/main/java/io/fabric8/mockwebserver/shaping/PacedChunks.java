@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.shaping;
+
+import okhttp3.mockwebserver.MockResponse;
+import okio.Buffer;
+import okio.ByteString;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Body of a chunked response paced with {@link ShapingProfile#withChunkPacing(long, TimeUnit)}: one frame per chunk,
+ * each frame sent one period after the previous one. The last frame includes the terminating zero-size chunk.
+ *
+ * <p> {@link MockResponse} can only throttle a body by a fixed number of bytes per period, so
+ * {@link #applyTo(MockResponse)} throttles the framed body by the average frame length: the body takes as long as
+ * the paced chunks would, but the periods don't match the chunk boundaries. The frames are attached to the response,
+ * connections able to write each frame on its own retrieve them with {@link #of(MockResponse)} and pace them exactly.
+ */
+public final class PacedChunks {
+
+    private static final ByteString CRLF = ByteString.encodeUtf8("\r\n");
+    private static final ByteString LAST_CHUNK = ByteString.encodeUtf8("0\r\n\r\n");
+    // MockResponse doesn't override equals, responses are compared by identity
+    private static final Map<MockResponse, PacedChunks> ATTACHED = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final List<ByteString> frames;
+    private final long size;
+    private final long periodNanos;
+
+    private PacedChunks(List<ByteString> frames, long size, long periodNanos) {
+        this.frames = Collections.unmodifiableList(frames);
+        this.size = size;
+        this.periodNanos = periodNanos;
+    }
+
+    /**
+     * Frames the provided chunks, empty chunks are skipped since a zero-size chunk would terminate the body.
+     */
+    public static PacedChunks frame(List<String> chunks, long period, TimeUnit unit) {
+        final List<ByteString> frames = new ArrayList<>(chunks.size());
+        final Buffer frame = new Buffer();
+        long size = 0;
+        for (String chunk : chunks) {
+            if (chunk == null || chunk.isEmpty()) {
+                continue;
+            }
+            if (frame.size() > 0) {
+                size += frame.size();
+                frames.add(frame.readByteString());
+            }
+            final ByteString data = ByteString.encodeUtf8(chunk);
+            frame.writeHexadecimalUnsignedLong(data.size()).write(CRLF).write(data).write(CRLF);
+        }
+        frame.write(LAST_CHUNK);
+        size += frame.size();
+        frames.add(frame.readByteString());
+        return new PacedChunks(frames, size, unit.toNanos(period));
+    }
+
+    /**
+     * Returns the paced chunks attached to the provided response, or null if it's not paced.
+     */
+    public static PacedChunks of(MockResponse response) {
+        return ATTACHED.get(response);
+    }
+
+    /**
+     * Sets the framed body on the provided response, throttled by the average frame length, and attaches the frames
+     * to it.
+     *
+     * @param response the response to pace.
+     * @return the provided response.
+     */
+    public MockResponse applyTo(MockResponse response) {
+        final Buffer body = new Buffer();
+        for (ByteString frame : frames) {
+            body.write(frame);
+        }
+        response.setBody(body);
+        response.removeHeader("Content-Length");
+        response.addHeader("Transfer-encoding: chunked");
+        response.throttleBody((size + frames.size() - 1) / frames.size(), periodNanos, TimeUnit.NANOSECONDS);
+        ATTACHED.put(response, this);
+        return response;
+    }
+
+    public List<ByteString> getFrames() {
+        return frames;
+    }
+
+    public long getPeriod(TimeUnit unit) {
+        return unit.convert(periodNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Writes the frames to the provided stream one period apart, sleeping on the calling thread in between.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        for (int i = 0; i < frames.size(); i++) {
+            if (i > 0 && periodNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(periodNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while pacing the response chunks");
+                }
+            }
+            frames.get(i).write(out);
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.shaping;
+
+import okhttp3.mockwebserver.MockResponse;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Network conditions simulated when serving a response: latency before the response headers, bandwidth of the
+ * response body and, for chunked responses, the pace at which chunks are sent.
+ *
+ * <p> The {@link io.fabric8.mockwebserver.transport.NioTransport} schedules the delays, so shaped responses in flight
+ * don't hold any thread. MockWebServer (the default transport) implements them by sleeping on the connection thread,
+ * so each shaped response in flight holds a thread for its whole duration: use
+ * {@link io.fabric8.mockwebserver.DefaultMockServer#useVirtualThreads()} to make those threads cheap, they are still
+ * one per response.
+ *
+ * <p> Instances are immutable, the {@code with} methods return a modified copy.
+ */
+public final class ShapingProfile {
+
+    private static final ShapingProfile NONE = new ShapingProfile(null, 0, 0, 0);
+
+    private final LatencyDistribution latency;
+    private final long throttleBytesPerPeriod;
+    private final long throttlePeriodNanos;
+    private final long chunkPeriodNanos;
+
+    private ShapingProfile(LatencyDistribution latency, long throttleBytesPerPeriod, long throttlePeriodNanos, long chunkPeriodNanos) {
+        this.latency = latency;
+        this.throttleBytesPerPeriod = throttleBytesPerPeriod;
+        this.throttlePeriodNanos = throttlePeriodNanos;
+        this.chunkPeriodNanos = chunkPeriodNanos;
+    }
+
+    /**
+     * @return a profile that doesn't shape the responses.
+     */
+    public static ShapingProfile create() {
+        return NONE;
+    }
+
+    /**
+     * Delays the response headers by a latency taken from the provided distribution for each response.
+     */
+    public ShapingProfile withLatency(LatencyDistribution latency) {
+        return new ShapingProfile(latency, throttleBytesPerPeriod, throttlePeriodNanos, chunkPeriodNanos);
+    }
+
+    /**
+     * Limits the response body bandwidth, the body is sent {@code bytesPerPeriod} bytes at a time.
+     */
+    public ShapingProfile withThrottle(long bytesPerPeriod, long period, TimeUnit unit) {
+        if (bytesPerPeriod <= 0) {
+            throw new IllegalArgumentException("Throttled bytes per period must be positive: " + bytesPerPeriod);
+        }
+        return new ShapingProfile(latency, bytesPerPeriod, unit.toNanos(period), chunkPeriodNanos);
+    }
+
+    /**
+     * Sends each chunk of a chunked response one period after the previous one, overriding the throttle.
+     *
+     * @see PacedChunks
+     */
+    public ShapingProfile withChunkPacing(long period, TimeUnit unit) {
+        return new ShapingProfile(latency, throttleBytesPerPeriod, throttlePeriodNanos, unit.toNanos(period));
+    }
+
+    public LatencyDistribution getLatency() {
+        return latency;
+    }
+
+    public long getThrottleBytesPerPeriod() {
+        return throttleBytesPerPeriod;
+    }
+
+    public long getThrottlePeriod(TimeUnit unit) {
+        return unit.convert(throttlePeriodNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getChunkPeriod(TimeUnit unit) {
+        return unit.convert(chunkPeriodNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public boolean isChunkPaced() {
+        return chunkPeriodNanos > 0;
+    }
+
+    /**
+     * Applies the latency and throttle of this profile to the provided response.
+     *
+     * @param response the response to shape.
+     * @return the provided response.
+     */
+    public MockResponse applyTo(MockResponse response) {
+        if (latency != null) {
+            response.setHeadersDelay(latency.nextNanos(), TimeUnit.NANOSECONDS);
+        }
+        if (throttleBytesPerPeriod > 0) {
+            response.throttleBody(throttleBytesPerPeriod, throttlePeriodNanos, TimeUnit.NANOSECONDS);
+        }
+        return response;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ShapingProfile that = (ShapingProfile) o;
+        return throttleBytesPerPeriod == that.throttleBytesPerPeriod && throttlePeriodNanos == that.throttlePeriodNanos
+            && chunkPeriodNanos == that.chunkPeriodNanos && Objects.equals(latency, that.latency);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(latency, throttleBytesPerPeriod, throttlePeriodNanos, chunkPeriodNanos);
+    }
+}
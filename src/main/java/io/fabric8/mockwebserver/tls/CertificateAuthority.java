@@ -0,0 +1,221 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.tls;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.security.spec.ECGenParameterSpec;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+
+import io.fabric8.mockwebserver.MockServerException;
+
+/**
+ * In-process certificate authority which issues ECDSA (P-256) server certificates for any host name, so that a
+ * single HTTPS server can stand in for many virtual hosts.
+ *
+ * <p> Certificates are built with the JDK APIs only. All the issued certificates share the same key pair, so issuing a
+ * certificate costs a single signature.
+ */
+public class CertificateAuthority {
+
+    public static final String DEFAULT_COMMON_NAME = "fabric8 mockwebserver CA";
+
+    private static final String KEY_ALGORITHM = "EC";
+    private static final String SIGNATURE_ALGORITHM = "SHA256withECDSA";
+    private static final String ECDSA_WITH_SHA256 = "1.2.840.10045.4.3.2";
+    private static final String COMMON_NAME = "2.5.4.3";
+    private static final String KEY_USAGE = "2.5.29.15";
+    private static final String SUBJECT_ALT_NAME = "2.5.29.17";
+    private static final String BASIC_CONSTRAINTS = "2.5.29.19";
+    private static final String EXTENDED_KEY_USAGE = "2.5.29.37";
+    private static final String SERVER_AUTH = "1.3.6.1.5.5.7.3.1";
+    private static final long CA_VALIDITY_DAYS = 3650;
+    private static final long VALIDITY_DAYS = 365;
+
+    private final SecureRandom random = new SecureRandom();
+    private final byte[] name;
+    private final KeyPair keyPair;
+    private final X509Certificate certificate;
+    private final KeyPair issuedKeyPair;
+
+    public CertificateAuthority() {
+        this(DEFAULT_COMMON_NAME);
+    }
+
+    /**
+     * @param commonName the common name of the self-signed authority certificate.
+     */
+    public CertificateAuthority(String commonName) {
+        try {
+            name = name(commonName);
+            keyPair = generateKeyPair();
+            issuedKeyPair = generateKeyPair();
+            final byte[] extensions = Der.sequence(
+                extension(BASIC_CONSTRAINTS, true, Der.sequence(Der.bool(true))),
+                // keyCertSign and cRLSign
+                extension(KEY_USAGE, true, Der.bitString(new byte[] { 0x06 }, 1)));
+            certificate = sign(name, keyPair.getPublic(), TimeUnit.DAYS.toMillis(CA_VALIDITY_DAYS), extensions);
+        } catch (GeneralSecurityException e) {
+            throw new MockServerException("Exception creating the certificate authority", e);
+        }
+    }
+
+    public X509Certificate getCertificate() {
+        return certificate;
+    }
+
+    /**
+     * Returns a trust manager which trusts the certificates issued by this authority, for the clients.
+     */
+    public X509TrustManager getTrustManager() {
+        try {
+            final KeyStore trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
+            trustStore.load(null, null);
+            trustStore.setCertificateEntry("ca", certificate);
+            final TrustManagerFactory factory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            factory.init(trustStore);
+            for (TrustManager trustManager : factory.getTrustManagers()) {
+                if (trustManager instanceof X509TrustManager) {
+                    return (X509TrustManager) trustManager;
+                }
+            }
+            throw new IllegalStateException("No X509TrustManager available");
+        } catch (Exception e) {
+            throw new MockServerException("Exception creating the trust manager", e);
+        }
+    }
+
+    /**
+     * Issues a new server certificate for the provided host name or IP address.
+     *
+     * @param host the host name (wildcards are allowed) or IP address the certificate is valid for.
+     * @return the private key and the certificate chain (the certificate and the authority certificate).
+     */
+    public KeyStore.PrivateKeyEntry issue(String host) {
+        try {
+            final List<byte[]> alternativeNames = new ArrayList<>();
+            alternativeNames.add(alternativeName(host));
+            if ("localhost".equalsIgnoreCase(host)) {
+                alternativeNames.add(Der.implicit(7, InetAddress.getLoopbackAddress().getAddress()));
+            }
+            final byte[] extensions = Der.sequence(
+                extension(BASIC_CONSTRAINTS, true, Der.sequence()),
+                // digitalSignature
+                extension(KEY_USAGE, true, Der.bitString(new byte[] { (byte) 0x80 }, 7)),
+                extension(EXTENDED_KEY_USAGE, false, Der.sequence(Der.oid(SERVER_AUTH))),
+                extension(SUBJECT_ALT_NAME, false, Der.sequence(alternativeNames.toArray(new byte[0][]))));
+            final X509Certificate issued = sign(name(host), issuedKeyPair.getPublic(), TimeUnit.DAYS.toMillis(VALIDITY_DAYS), extensions);
+            return new KeyStore.PrivateKeyEntry(issuedKeyPair.getPrivate(), new Certificate[] { issued, certificate });
+        } catch (GeneralSecurityException | UnknownHostException e) {
+            throw new MockServerException("Exception issuing a certificate for " + host, e);
+        }
+    }
+
+    /**
+     * Creates a server context which presents a certificate issued for the host name requested by each client
+     * (SNI), caching up to the provided number of certificates.
+     *
+     * @param defaultHost the host name of the certificate presented to the clients which don't send SNI.
+     * @param cacheSize the maximum number of cached certificates.
+     */
+    public SSLContext createSslContext(String defaultHost, int cacheSize) {
+        try {
+            final SSLContext sslContext = SSLContext.getInstance("TLS");
+            sslContext.init(new KeyManager[] { new SniKeyManager(this, defaultHost, cacheSize) }, null, random);
+            return sslContext;
+        } catch (GeneralSecurityException e) {
+            throw new MockServerException("Exception creating SSLContext", e);
+        }
+    }
+
+    /**
+     * Creates a server context which presents a certificate issued for the host name requested by each client
+     * (SNI), {@code localhost} if none.
+     */
+    public SSLContext createSslContext() {
+        return createSslContext("localhost", SniKeyManager.DEFAULT_CACHE_SIZE);
+    }
+
+    private X509Certificate sign(byte[] subject, PublicKey publicKey, long validity, byte[] extensions) throws GeneralSecurityException {
+        final long now = System.currentTimeMillis();
+        final byte[] algorithm = Der.sequence(Der.oid(ECDSA_WITH_SHA256));
+        final byte[] tbsCertificate = Der.sequence(
+            // v3
+            Der.explicit(0, Der.integer(2)),
+            Der.integer(new BigInteger(64, random).add(BigInteger.ONE)),
+            algorithm,
+            name,
+            // Backdated to tolerate clock skews
+            Der.sequence(Der.time(new Date(now - TimeUnit.DAYS.toMillis(1))), Der.time(new Date(now + validity))),
+            subject,
+            publicKey.getEncoded(),
+            Der.explicit(3, extensions));
+        final Signature signature = Signature.getInstance(SIGNATURE_ALGORITHM);
+        signature.initSign(keyPair.getPrivate(), random);
+        signature.update(tbsCertificate);
+        final byte[] encoded = Der.sequence(tbsCertificate, algorithm, Der.bitString(signature.sign(), 0));
+        return (X509Certificate) CertificateFactory.getInstance("X.509").generateCertificate(new ByteArrayInputStream(encoded));
+    }
+
+    private static KeyPair generateKeyPair() throws GeneralSecurityException {
+        final KeyPairGenerator generator = KeyPairGenerator.getInstance(KEY_ALGORITHM);
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        return generator.generateKeyPair();
+    }
+
+    private static byte[] name(String commonName) {
+        return Der.sequence(Der.set(Der.sequence(Der.oid(COMMON_NAME), Der.utf8String(commonName))));
+    }
+
+    private static byte[] extension(String oid, boolean critical, byte[] value) {
+        return critical ?
+            Der.sequence(Der.oid(oid), Der.bool(true), Der.octetString(value)) :
+            Der.sequence(Der.oid(oid), Der.octetString(value));
+    }
+
+    private static byte[] alternativeName(String host) throws UnknownHostException {
+        if (isIpAddress(host)) {
+            return Der.implicit(7, InetAddress.getByName(host).getAddress());
+        }
+        return Der.implicit(2, host.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static boolean isIpAddress(String host) {
+        return host.indexOf(':') >= 0 || host.matches("[0-9.]+");
+    }
+}
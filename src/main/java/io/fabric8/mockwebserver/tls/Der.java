@@ -0,0 +1,161 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.tls;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Minimal DER encoder, limited to the types needed to build X.509 certificates.
+ */
+final class Der {
+
+    static final int BOOLEAN = 0x01;
+    static final int INTEGER = 0x02;
+    static final int BIT_STRING = 0x03;
+    static final int OCTET_STRING = 0x04;
+    static final int OBJECT_IDENTIFIER = 0x06;
+    static final int UTF8_STRING = 0x0C;
+    static final int UTC_TIME = 0x17;
+    static final int GENERALIZED_TIME = 0x18;
+    static final int SEQUENCE = 0x30;
+    static final int SET = 0x31;
+
+    private Der() {
+    }
+
+    static byte[] sequence(byte[]... elements) {
+        return tlv(SEQUENCE, concat(elements));
+    }
+
+    static byte[] set(byte[]... elements) {
+        return tlv(SET, concat(elements));
+    }
+
+    /**
+     * Explicitly tagged, constructed, context-specific element ({@code [tag] EXPLICIT}).
+     */
+    static byte[] explicit(int tag, byte[] element) {
+        return tlv(0xA0 | tag, element);
+    }
+
+    /**
+     * Implicitly tagged, primitive, context-specific element ({@code [tag] IMPLICIT}).
+     */
+    static byte[] implicit(int tag, byte[] content) {
+        return tlv(0x80 | tag, content);
+    }
+
+    static byte[] bool(boolean value) {
+        return tlv(BOOLEAN, new byte[] { value ? (byte) 0xFF : 0 });
+    }
+
+    static byte[] integer(BigInteger value) {
+        return tlv(INTEGER, value.toByteArray());
+    }
+
+    static byte[] integer(long value) {
+        return integer(BigInteger.valueOf(value));
+    }
+
+    /**
+     * @param unusedBits the number of unused bits of the last byte.
+     */
+    static byte[] bitString(byte[] content, int unusedBits) {
+        byte[] value = new byte[content.length + 1];
+        value[0] = (byte) unusedBits;
+        System.arraycopy(content, 0, value, 1, content.length);
+        return tlv(BIT_STRING, value);
+    }
+
+    static byte[] octetString(byte[] content) {
+        return tlv(OCTET_STRING, content);
+    }
+
+    static byte[] utf8String(String value) {
+        return tlv(UTF8_STRING, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static byte[] oid(String oid) {
+        final String[] arcs = oid.split("\\.");
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeBase128(out, Long.parseLong(arcs[0]) * 40 + Long.parseLong(arcs[1]));
+        for (int i = 2; i < arcs.length; i++) {
+            writeBase128(out, Long.parseLong(arcs[i]));
+        }
+        return tlv(OBJECT_IDENTIFIER, out.toByteArray());
+    }
+
+    /**
+     * Encodes the date as UTCTime until 2049 and as GeneralizedTime afterwards (RFC 5280, 4.1.2.5).
+     */
+    static byte[] time(Date date) {
+        final Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"), Locale.ROOT);
+        calendar.setTime(date);
+        final boolean utc = calendar.get(Calendar.YEAR) < 2050;
+        final SimpleDateFormat format = new SimpleDateFormat(utc ? "yyMMddHHmmss'Z'" : "yyyyMMddHHmmss'Z'", Locale.ROOT);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return tlv(utc ? UTC_TIME : GENERALIZED_TIME, format.format(date).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    static byte[] tlv(int tag, byte[] content) {
+        final int length = content.length;
+        final int lengthBytes = length < 0x80 ? 0 : (32 - Integer.numberOfLeadingZeros(length) + 7) / 8;
+        final byte[] encoded = new byte[2 + lengthBytes + length];
+        encoded[0] = (byte) tag;
+        if (lengthBytes == 0) {
+            encoded[1] = (byte) length;
+        } else {
+            encoded[1] = (byte) (0x80 | lengthBytes);
+            for (int i = 0; i < lengthBytes; i++) {
+                encoded[2 + i] = (byte) (length >>> (8 * (lengthBytes - 1 - i)));
+            }
+        }
+        System.arraycopy(content, 0, encoded, 2 + lengthBytes, length);
+        return encoded;
+    }
+
+    private static byte[] concat(byte[]... elements) {
+        int length = 0;
+        for (byte[] element : elements) {
+            length += element.length;
+        }
+        final byte[] content = new byte[length];
+        int position = 0;
+        for (byte[] element : elements) {
+            System.arraycopy(element, 0, content, position, element.length);
+            position += element.length;
+        }
+        return content;
+    }
+
+    private static void writeBase128(ByteArrayOutputStream out, long value) {
+        int groups = 1;
+        while ((value >>> (7 * groups)) != 0) {
+            groups++;
+        }
+        for (int i = groups - 1; i >= 0; i--) {
+            int b = (int) ((value >>> (7 * i)) & 0x7F);
+            out.write(i > 0 ? b | 0x80 : b);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.tls;
+
+import java.net.Socket;
+import java.security.KeyStore;
+import java.security.Principal;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.net.ssl.ExtendedSSLSession;
+import javax.net.ssl.SNIHostName;
+import javax.net.ssl.SNIServerName;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.StandardConstants;
+import javax.net.ssl.X509ExtendedKeyManager;
+
+/**
+ * Server key manager which presents a certificate issued by a {@link CertificateAuthority} for the host name requested
+ * by the client (SNI).
+ *
+ * <p> The host name is used as the alias, the issued certificates are kept in a bounded LRU cache so that each host
+ * name is only issued a certificate once (as long as it's not evicted).
+ */
+public class SniKeyManager extends X509ExtendedKeyManager {
+
+    public static final int DEFAULT_CACHE_SIZE = 256;
+
+    private static final String KEY_TYPE = "EC";
+
+    private final CertificateAuthority authority;
+    private final String defaultHost;
+    private final Map<String, KeyStore.PrivateKeyEntry> cache;
+
+    /**
+     * @param authority the authority issuing the certificates.
+     * @param defaultHost the host name of the certificate presented to the clients which don't send SNI.
+     * @param cacheSize the maximum number of cached certificates.
+     */
+    public SniKeyManager(CertificateAuthority authority, String defaultHost, int cacheSize) {
+        if (cacheSize < 1) {
+            throw new IllegalArgumentException("The cache size must be positive");
+        }
+        this.authority = authority;
+        this.defaultHost = defaultHost.toLowerCase(Locale.ROOT);
+        this.cache = new LinkedHashMap<String, KeyStore.PrivateKeyEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, KeyStore.PrivateKeyEntry> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the certificate and private key for the provided host name, issuing them on first use.
+     */
+    public KeyStore.PrivateKeyEntry getEntry(String host) {
+        synchronized (cache) {
+            return cache.computeIfAbsent(host.toLowerCase(Locale.ROOT), authority::issue);
+        }
+    }
+
+    /**
+     * Returns the number of cached certificates.
+     */
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    @Override
+    public String chooseServerAlias(String keyType, Principal[] issuers, Socket socket) {
+        if (!KEY_TYPE.equals(keyType)) {
+            return null;
+        }
+        return socket instanceof SSLSocket ? alias(((SSLSocket) socket).getHandshakeSession()) : defaultHost;
+    }
+
+    @Override
+    public String chooseEngineServerAlias(String keyType, Principal[] issuers, SSLEngine engine) {
+        if (!KEY_TYPE.equals(keyType)) {
+            return null;
+        }
+        return engine != null ? alias(engine.getHandshakeSession()) : defaultHost;
+    }
+
+    @Override
+    public String[] getServerAliases(String keyType, Principal[] issuers) {
+        return KEY_TYPE.equals(keyType) ? new String[] { defaultHost } : null;
+    }
+
+    @Override
+    public X509Certificate[] getCertificateChain(String alias) {
+        return (X509Certificate[]) getEntry(alias).getCertificateChain();
+    }
+
+    @Override
+    public PrivateKey getPrivateKey(String alias) {
+        return getEntry(alias).getPrivateKey();
+    }
+
+    @Override
+    public String[] getClientAliases(String keyType, Principal[] issuers) {
+        return null;
+    }
+
+    @Override
+    public String chooseClientAlias(String[] keyType, Principal[] issuers, Socket socket) {
+        return null;
+    }
+
+    private String alias(SSLSession handshakeSession) {
+        if (handshakeSession instanceof ExtendedSSLSession) {
+            for (SNIServerName serverName : ((ExtendedSSLSession) handshakeSession).getRequestedServerNames()) {
+                if (serverName.getType() == StandardConstants.SNI_HOST_NAME) {
+                    return ((SNIHostName) serverName).getAsciiName().toLowerCase(Locale.ROOT);
+                }
+            }
+        }
+        return defaultHost;
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.transport;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Proxy;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Transport} backed by a {@link MockWebServer}, the default one.
+ */
+public class MockWebServerTransport implements Transport {
+
+    private final MockWebServer server;
+
+    public MockWebServerTransport(MockWebServer server) {
+        this.server = server;
+    }
+
+    /**
+     * @return the server, to configure the features specific to {@link MockWebServer} before it's started.
+     */
+    public MockWebServer getServer() {
+        return server;
+    }
+
+    @Override
+    public void setDispatcher(Dispatcher dispatcher) {
+        server.setDispatcher(dispatcher);
+    }
+
+    @Override
+    public void start(InetAddress address, int port) throws IOException {
+        server.start(address, port);
+    }
+
+    @Override
+    public void shutdown() throws IOException {
+        server.shutdown();
+    }
+
+    @Override
+    public int getPort() {
+        return server.getPort();
+    }
+
+    @Override
+    public String getHostName() {
+        return server.getHostName();
+    }
+
+    @Override
+    public Proxy toProxyAddress() {
+        return server.toProxyAddress();
+    }
+
+    @Override
+    public HttpUrl url(String path) {
+        return server.url(path);
+    }
+
+    @Override
+    public int getRequestCount() {
+        return server.getRequestCount();
+    }
+
+    @Override
+    public RecordedRequest takeRequest() throws InterruptedException {
+        return server.takeRequest();
+    }
+
+    @Override
+    public RecordedRequest takeRequest(long timeout, TimeUnit unit) throws InterruptedException {
+        return server.takeRequest(timeout, unit);
+    }
+}
@@ -0,0 +1,389 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.transport;
+
+import io.fabric8.mockwebserver.shaping.PacedChunks;
+import okhttp3.Headers;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
+import okio.ByteString;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A connection of the {@link NioTransport}, parsing the requests and writing the responses as the channel is ready.
+ *
+ * <p> Everything but the dispatch runs on the selector thread. The requests of a connection are served one at a
+ * time: the connection stops reading while a request is dispatched and its response written.
+ */
+final class NioConnection {
+
+    private static final Logger LOGGER = Logger.getLogger(NioConnection.class.getName());
+
+    private static final int MAX_HEAD_SIZE = 64 * 1024;
+    private static final ByteString CRLF = ByteString.encodeUtf8("\r\n");
+    private static final ByteString HEAD_END = ByteString.encodeUtf8("\r\n\r\n");
+    private static final byte[] CONTINUE = "HTTP/1.1 100 Continue\r\n\r\n".getBytes();
+
+    private enum State {
+        HEAD, BODY, CHUNK_SIZE, CHUNK_DATA, CHUNK_END, TRAILERS, DISPATCHING, RESPONDING
+    }
+
+    private final NioTransport transport;
+    private final SocketChannel channel;
+    private final Buffer in = new Buffer();
+    private final Deque<Segment> out = new ArrayDeque<>();
+    private SelectionKey key;
+    private State state = State.HEAD;
+    private int sequenceNumber;
+    private boolean waiting;
+    private boolean closeAfterResponse;
+    private boolean closed;
+    // The request being read
+    private String requestLine;
+    private Headers headers;
+    private Buffer body;
+    private List<Integer> chunkSizes;
+    private long remaining;
+
+    NioConnection(NioTransport transport, SocketChannel channel) {
+        this.transport = transport;
+        this.channel = channel;
+    }
+
+    void register(Selector selector) throws IOException {
+        key = channel.register(selector, SelectionKey.OP_READ, this);
+    }
+
+    void onReadable(ByteBuffer readBuffer) {
+        try {
+            readBuffer.clear();
+            if (channel.read(readBuffer) == -1) {
+                close();
+                return;
+            }
+            readBuffer.flip();
+            in.write(readBuffer);
+        } catch (IOException e) {
+            close();
+            return;
+        }
+        parse();
+    }
+
+    void onWritable() {
+        flush();
+    }
+
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Exception when closing a connection", e);
+        }
+        transport.closed(this);
+    }
+
+    private void parse() {
+        try {
+            while (!closed) {
+                switch (state) {
+                    case HEAD:
+                        final long headEnd = in.indexOf(HEAD_END);
+                        if (headEnd == -1) {
+                            if (in.size() > MAX_HEAD_SIZE) {
+                                throw new ProtocolException("Request head larger than " + MAX_HEAD_SIZE + " bytes");
+                            }
+                            return;
+                        }
+                        readHead(headEnd);
+                        break;
+                    case BODY:
+                        if (in.size() < remaining) {
+                            return;
+                        }
+                        body.write(in, remaining);
+                        dispatch();
+                        break;
+                    case CHUNK_SIZE:
+                        final long sizeEnd = in.indexOf(CRLF);
+                        if (sizeEnd == -1) {
+                            return;
+                        }
+                        String size = in.readUtf8(sizeEnd);
+                        in.skip(CRLF.size());
+                        final int extension = size.indexOf(';');
+                        if (extension != -1) {
+                            size = size.substring(0, extension);
+                        }
+                        remaining = Long.parseLong(size.trim(), 16);
+                        if (remaining == 0) {
+                            state = State.TRAILERS;
+                        } else {
+                            chunkSizes.add((int) remaining);
+                            state = State.CHUNK_DATA;
+                        }
+                        break;
+                    case CHUNK_DATA:
+                        final long read = Math.min(remaining, in.size());
+                        body.write(in, read);
+                        remaining -= read;
+                        if (remaining > 0) {
+                            return;
+                        }
+                        state = State.CHUNK_END;
+                        break;
+                    case CHUNK_END:
+                        if (in.size() < CRLF.size()) {
+                            return;
+                        }
+                        in.skip(CRLF.size());
+                        state = State.CHUNK_SIZE;
+                        break;
+                    case TRAILERS:
+                        final long trailerEnd = in.indexOf(CRLF);
+                        if (trailerEnd == -1) {
+                            return;
+                        }
+                        in.skip(trailerEnd + CRLF.size());
+                        if (trailerEnd == 0) {
+                            dispatch();
+                        }
+                        break;
+                    default:
+                        // The pipelined requests are parsed once the response is written
+                        return;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.FINE, "Malformed request, closing the connection", e);
+            close();
+        }
+    }
+
+    private void readHead(long headEnd) throws IOException {
+        final String[] lines = in.readUtf8(headEnd).split("\r\n");
+        in.skip(HEAD_END.size());
+        requestLine = lines[0];
+        if (requestLine.split(" ").length != 3) {
+            throw new ProtocolException("Invalid request line: " + requestLine);
+        }
+        final Headers.Builder builder = new Headers.Builder();
+        for (int i = 1; i < lines.length; i++) {
+            final int colon = lines[i].indexOf(':');
+            if (colon <= 0) {
+                throw new ProtocolException("Invalid header: " + lines[i]);
+            }
+            builder.add(lines[i].substring(0, colon).trim(), lines[i].substring(colon + 1).trim());
+        }
+        headers = builder.build();
+        body = new Buffer();
+        chunkSizes = new ArrayList<>();
+        final String contentLength = headers.get("Content-Length");
+        if ("chunked".equalsIgnoreCase(headers.get("Transfer-Encoding"))) {
+            state = State.CHUNK_SIZE;
+        } else if (contentLength != null && Long.parseLong(contentLength.trim()) > 0) {
+            remaining = Long.parseLong(contentLength.trim());
+            state = State.BODY;
+        } else {
+            dispatch();
+            return;
+        }
+        if ("100-continue".equalsIgnoreCase(headers.get("Expect"))) {
+            out.add(new Segment(CONTINUE, 0));
+            flush();
+        }
+    }
+
+    /**
+     * Dispatches the request that was read, the response is written back on the selector thread.
+     */
+    private void dispatch() {
+        state = State.DISPATCHING;
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+        final String line = requestLine;
+        final Headers requestHeaders = headers;
+        final Buffer requestBody = body;
+        final List<Integer> requestChunkSizes = chunkSizes;
+        final int sequence = sequenceNumber++;
+        final boolean keepAlive = isKeepAlive(line, requestHeaders);
+        final boolean headRequest = line.startsWith("HEAD ");
+        requestLine = null;
+        headers = null;
+        body = null;
+        chunkSizes = null;
+        final boolean dispatched = transport.dispatch(() -> {
+            final Dispatcher dispatcher = transport.getDispatcher();
+            final RecordedRequest request = new RecordedRequest(line, requestHeaders, requestChunkSizes,
+                requestBody.size(), requestBody, sequence, channel.socket());
+            transport.record(request);
+            try {
+                final MockResponse response = dispatcher.dispatch(request);
+                transport.post(() -> respond(response, keepAlive, headRequest));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                transport.post(this::close);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Exception when dispatching " + line, e);
+                transport.post(this::close);
+            }
+        });
+        if (!dispatched) {
+            close();
+        }
+    }
+
+    private void respond(MockResponse response, boolean keepAlive, boolean headRequest) {
+        if (closed) {
+            return;
+        }
+        final SocketPolicy policy = response.getSocketPolicy();
+        if (policy == SocketPolicy.DISCONNECT_AFTER_REQUEST || policy == SocketPolicy.DISCONNECT_AT_START) {
+            close();
+            return;
+        }
+        if (policy == SocketPolicy.NO_RESPONSE) {
+            // Neither reads nor writes anymore, until the client gives up
+            return;
+        }
+        if (response.getWebSocketListener() != null) {
+            response = new MockResponse().setResponseCode(501)
+                .setBody("WebSocket upgrades are only supported by the MockWebServer transport");
+            keepAlive = false;
+        }
+        state = State.RESPONDING;
+        closeAfterResponse = !keepAlive || policy == SocketPolicy.DISCONNECT_AT_END
+            || policy == SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY
+            || "close".equalsIgnoreCase(response.getHeaders().get("Connection"));
+        final Buffer responseHead = new Buffer().writeUtf8(response.getStatus()).writeUtf8("\r\n");
+        final Headers responseHeaders = response.getHeaders();
+        for (int i = 0; i < responseHeaders.size(); i++) {
+            responseHead.writeUtf8(responseHeaders.name(i)).writeUtf8(": ").writeUtf8(responseHeaders.value(i)).writeUtf8("\r\n");
+        }
+        responseHead.writeUtf8("\r\n");
+        out.add(new Segment(responseHead.readByteArray(), response.getHeadersDelay(TimeUnit.NANOSECONDS)));
+        final Buffer responseBody = headRequest ? null : response.getBody();
+        final PacedChunks paced = PacedChunks.of(response);
+        if (responseBody != null && paced != null && policy != SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY) {
+            // Each frame is sent one period after the previous one, instead of throttling by the average frame
+            long delay = response.getBodyDelay(TimeUnit.NANOSECONDS);
+            for (ByteString frame : paced.getFrames()) {
+                out.add(new Segment(frame.toByteArray(), delay));
+                delay = paced.getPeriod(TimeUnit.NANOSECONDS);
+            }
+        } else if (responseBody != null) {
+            long size = responseBody.size();
+            if (policy == SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY) {
+                size /= 2;
+            }
+            final long bytesPerPeriod = response.getThrottleBytesPerPeriod();
+            long delay = response.getBodyDelay(TimeUnit.NANOSECONDS);
+            while (size > 0) {
+                final long length = Math.min(size, bytesPerPeriod);
+                final Buffer part = new Buffer();
+                part.write(responseBody, length);
+                out.add(new Segment(part.readByteArray(), delay));
+                size -= length;
+                delay = response.getThrottlePeriod(TimeUnit.NANOSECONDS);
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Writes the pending segments until the channel is full or a segment is delayed.
+     */
+    private void flush() {
+        if (closed || waiting) {
+            return;
+        }
+        try {
+            Segment segment;
+            while ((segment = out.peek()) != null) {
+                if (segment.delayNanos > 0) {
+                    final long delay = segment.delayNanos;
+                    segment.delayNanos = 0;
+                    waiting = true;
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                    transport.schedule(() -> {
+                        waiting = false;
+                        flush();
+                    }, delay);
+                    return;
+                }
+                channel.write(segment.data);
+                if (segment.data.hasRemaining()) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    return;
+                }
+                out.poll();
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        } catch (IOException e) {
+            close();
+            return;
+        }
+        if (state == State.RESPONDING) {
+            if (closeAfterResponse) {
+                close();
+                return;
+            }
+            state = State.HEAD;
+            key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+            parse();
+        }
+    }
+
+    private static boolean isKeepAlive(String requestLine, Headers headers) {
+        final String connection = headers.get("Connection");
+        if (requestLine.endsWith("HTTP/1.0")) {
+            return "keep-alive".equalsIgnoreCase(connection);
+        }
+        return !"close".equalsIgnoreCase(connection);
+    }
+
+    private static final class Segment {
+        private final ByteBuffer data;
+        private long delayNanos;
+
+        private Segment(byte[] data, long delayNanos) {
+            this.data = ByteBuffer.wrap(data);
+            this.delayNanos = delayNanos;
+        }
+    }
+}
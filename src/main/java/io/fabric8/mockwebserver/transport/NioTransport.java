@@ -0,0 +1,367 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.transport;
+
+import io.fabric8.mockwebserver.MockServerException;
+import io.fabric8.mockwebserver.internal.ServerExecutors;
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.QueueDispatcher;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * HTTP/1.1 {@link Transport} serving all the connections from a single selector thread.
+ *
+ * <p> Idle and keep-alive connections don't hold any thread. The {@link Dispatcher} runs on the dispatch executor, on
+ * virtual threads when the JVM supports them, or else on a cached thread pool, so that a thread is only used while a
+ * dispatcher is running. Response delays, throttling and chunk pacing (see
+ * {@link io.fabric8.mockwebserver.shaping.ShapingProfile}) are scheduled instead of slept, so a shaped response in
+ * flight doesn't hold any thread either.
+ *
+ * <p> Only cleartext HTTP/1.1 is served: HTTPS, HTTP/2 and WebSocket upgrades need the {@link MockWebServerTransport}.
+ * Streamed chunked responses and event streams fall back to their buffered forms. The
+ * {@link SocketPolicy} of the responses is honored for {@code DISCONNECT_AT_START} (checked when the connection is
+ * accepted, before any request is read), {@code DISCONNECT_AFTER_REQUEST}, {@code NO_RESPONSE},
+ * {@code DISCONNECT_DURING_RESPONSE_BODY} and {@code DISCONNECT_AT_END}, the other policies keep the connection open.
+ */
+public class NioTransport implements Transport {
+
+    private static final Logger LOGGER = Logger.getLogger(NioTransport.class.getName());
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int BACKLOG = 1024;
+
+    private final ExecutorService dispatchExecutor;
+    private final BlockingQueue<RecordedRequest> requestQueue = new LinkedBlockingQueue<>();
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    // Only accessed from the selector thread
+    private final Set<NioConnection> connections = new HashSet<>();
+    private volatile Dispatcher dispatcher = new QueueDispatcher();
+    private volatile boolean running;
+    private boolean started;
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private InetSocketAddress address;
+    private ScheduledExecutorService scheduler;
+    private Thread selectorThread;
+
+    public NioTransport() {
+        this(defaultDispatchExecutor());
+    }
+
+    /**
+     * @param dispatchExecutor the executor running the dispatcher, shut down with the transport.
+     */
+    public NioTransport(ExecutorService dispatchExecutor) {
+        this.dispatchExecutor = dispatchExecutor;
+    }
+
+    @Override
+    public void setDispatcher(Dispatcher dispatcher) {
+        if (dispatcher == null) {
+            throw new NullPointerException("dispatcher == null");
+        }
+        this.dispatcher = dispatcher;
+    }
+
+    @Override
+    public synchronized void start(InetAddress address, int port) throws IOException {
+        if (started) {
+            throw new IllegalStateException("start() already called");
+        }
+        started = true;
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.socket().setReuseAddress(port != 0);
+        serverChannel.bind(new InetSocketAddress(address, port), BACKLOG);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        this.address = (InetSocketAddress) serverChannel.getLocalAddress();
+        scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("MockServer NIO scheduler " + getPort()));
+        running = true;
+        selectorThread = daemonThreads("MockServer NIO selector " + getPort()).newThread(this::select);
+        selectorThread.start();
+    }
+
+    @Override
+    public synchronized void shutdown() throws IOException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while shutting the NIO transport down");
+        } finally {
+            scheduler.shutdownNow();
+            dispatchExecutor.shutdownNow();
+            dispatcher.shutdown();
+        }
+        if (selectorThread.isAlive()) {
+            throw new IOException("Gave up waiting for the selector thread to stop");
+        }
+    }
+
+    @Override
+    public int getPort() {
+        before();
+        return address.getPort();
+    }
+
+    @Override
+    public String getHostName() {
+        before();
+        return address.getAddress().getCanonicalHostName();
+    }
+
+    @Override
+    public Proxy toProxyAddress() {
+        before();
+        return new Proxy(Proxy.Type.HTTP, new InetSocketAddress(address.getAddress().getCanonicalHostName(), getPort()));
+    }
+
+    @Override
+    public HttpUrl url(String path) {
+        return new HttpUrl.Builder().scheme("http").host(getHostName()).port(getPort()).build().resolve(path);
+    }
+
+    @Override
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    @Override
+    public RecordedRequest takeRequest() throws InterruptedException {
+        return requestQueue.take();
+    }
+
+    @Override
+    public RecordedRequest takeRequest(long timeout, TimeUnit unit) throws InterruptedException {
+        return requestQueue.poll(timeout, unit);
+    }
+
+    /**
+     * Starts the transport on a free port of the loopback interface if it isn't started yet, like
+     * {@link okhttp3.mockwebserver.MockWebServer}.
+     */
+    private synchronized void before() {
+        if (started) {
+            return;
+        }
+        try {
+            start(InetAddress.getByName("localhost"), 0);
+        } catch (IOException e) {
+            throw new MockServerException("Exception when starting the NIO transport", e);
+        }
+    }
+
+    Dispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    void record(RecordedRequest request) {
+        requestCount.incrementAndGet();
+        requestQueue.add(request);
+    }
+
+    /**
+     * Runs the task on the dispatch executor.
+     *
+     * @return false if the transport is shut down.
+     */
+    boolean dispatch(Runnable task) {
+        try {
+            dispatchExecutor.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Runs the task on the selector thread.
+     */
+    void post(Runnable task) {
+        tasks.add(task);
+        try {
+            selector.wakeup();
+        } catch (ClosedSelectorException e) {
+            // Shut down, the connection is closed anyway
+        }
+    }
+
+    /**
+     * Runs the task on the selector thread once the delay elapses.
+     */
+    void schedule(Runnable task, long delayNanos) {
+        try {
+            scheduler.schedule(() -> post(task), delayNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shut down, the connection is closed anyway
+        }
+    }
+
+    void closed(NioConnection connection) {
+        connections.remove(connection);
+    }
+
+    private void select() {
+        final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        try {
+            while (running) {
+                selector.select();
+                runTasks();
+                final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    final NioConnection connection = (NioConnection) key.attachment();
+                    if (key.isReadable()) {
+                        connection.onReadable(readBuffer);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        connection.onWritable();
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running) {
+                LOGGER.log(Level.WARNING, "NIO transport selector failed", e);
+            }
+        } finally {
+            running = false;
+            for (NioConnection connection : new ArrayList<>(connections)) {
+                connection.close();
+            }
+            closeQuietly();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            if (disconnectAtStart(channel)) {
+                continue;
+            }
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            final NioConnection connection = new NioConnection(this, channel);
+            connection.register(selector);
+            connections.add(connection);
+        }
+    }
+
+    /**
+     * Closes the accepted channel before reading any request if the next response disconnects at start, as
+     * MockWebServer does. A bookkeeping request is dispatched so that the dispatcher consumes that response.
+     */
+    private boolean disconnectAtStart(SocketChannel channel) throws IOException {
+        final Dispatcher current = dispatcher;
+        if (current.peek().getSocketPolicy() != SocketPolicy.DISCONNECT_AT_START) {
+            return false;
+        }
+        final RecordedRequest request = new RecordedRequest(null, null, null, -1, null, 0, channel.socket());
+        requestCount.incrementAndGet();
+        try {
+            current.dispatch(request);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Exception when dispatching a disconnect at start", e);
+        } finally {
+            channel.close();
+        }
+        return true;
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "NIO transport task failed", e);
+            }
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Exception when closing the server channel", e);
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Exception when closing the selector", e);
+        }
+    }
+
+    private static ExecutorService defaultDispatchExecutor() {
+        final ExecutorService virtual = ServerExecutors.newVirtualThreadExecutor();
+        return virtual != null ? virtual : Executors.newCachedThreadPool(daemonThreads("MockServer NIO dispatcher"));
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            final Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
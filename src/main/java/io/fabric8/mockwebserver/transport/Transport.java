@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.transport;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Proxy;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The network side of a {@link io.fabric8.mockwebserver.DefaultMockServer}: accepts the connections, reads the
+ * requests and writes the {@link okhttp3.mockwebserver.MockResponse} returned by the {@link Dispatcher} for each of
+ * them, so that the same dispatchers run on any transport.
+ *
+ * <p> {@link MockWebServerTransport} serves every connection on a thread of its own and supports every feature of
+ * {@link okhttp3.mockwebserver.MockWebServer}, {@link NioTransport} serves many more connections with a few threads.
+ */
+public interface Transport {
+
+    /**
+     * Sets the dispatcher of the requests, before the transport is started.
+     */
+    void setDispatcher(Dispatcher dispatcher);
+
+    /**
+     * Starts accepting connections.
+     *
+     * @param address the local address to listen on.
+     * @param port the port to listen on, 0 for a free one.
+     */
+    void start(InetAddress address, int port) throws IOException;
+
+    /**
+     * Closes all the connections and stops accepting new ones, then shuts the dispatcher down.
+     */
+    void shutdown() throws IOException;
+
+    int getPort();
+
+    String getHostName();
+
+    /**
+     * @return a proxy pointing to this transport.
+     */
+    Proxy toProxyAddress();
+
+    /**
+     * @return the URL of the provided path on this transport.
+     */
+    HttpUrl url(String path);
+
+    /**
+     * @return the number of requests received by this transport.
+     */
+    int getRequestCount();
+
+    /**
+     * Waits for the next received request and removes it from the queue.
+     */
+    RecordedRequest takeRequest() throws InterruptedException;
+
+    /**
+     * Waits at most the provided time for the next received request and removes it from the queue.
+     *
+     * @return the request, or null if none was received before the timeout.
+     */
+    RecordedRequest takeRequest(long timeout, TimeUnit unit) throws InterruptedException;
+}
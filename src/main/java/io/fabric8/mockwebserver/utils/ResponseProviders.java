@@ -51,6 +51,17 @@ public class ResponseProviders {
         return null;
     }
 
+    /**
+     * Checks whether the provided response provider always returns the same status code and body, i.e. it was
+     * created from a fixed element and not from a {@link BodyProvider}.
+     *
+     * @param provider the response provider to check.
+     * @return true if the body and status code of the provider can be computed once and reused.
+     */
+    public static boolean isFixed(ResponseProvider<?> provider) {
+        return provider instanceof FixedResponseProvider;
+    }
+
     public static <R> ResponseProvider<R> of(final int statusCode, final BodyProvider<R> bodyProvider) {
         if (bodyProvider != null) {
             return new ResponseProvider<R>() {
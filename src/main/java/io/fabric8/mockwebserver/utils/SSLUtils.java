@@ -18,6 +18,7 @@ package io.fabric8.mockwebserver.utils;
 import javax.net.ssl.KeyManager;
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 import java.io.IOException;
@@ -58,6 +59,26 @@ public final class SSLUtils {
         return sslContext;
     }
 
+    /**
+     * Configures the session resumption of the server side of the provided context.
+     *
+     * <p> Whether TLS 1.3 sessions are resumed with stateless tickets instead of the cache is a JVM wide setting
+     * ({@code jdk.tls.server.enableSessionTicketExtension}), the timeout applies to both.
+     *
+     * @param sslContext the context to configure.
+     * @param cacheSize the maximum number of cached sessions, 0 for no limit.
+     * @param timeoutSeconds the lifetime of the sessions, 0 for no limit.
+     * @return the provided context.
+     */
+    public static SSLContext configureSessions(SSLContext sslContext, int cacheSize, int timeoutSeconds) {
+        SSLSessionContext sessionContext = sslContext.getServerSessionContext();
+        if (sessionContext != null) {
+            sessionContext.setSessionCacheSize(cacheSize);
+            sessionContext.setSessionTimeout(timeoutSeconds);
+        }
+        return sslContext;
+    }
+
     public static KeyManager[] keyManagers(InputStream certInputStream, InputStream keyInputStream, String algo, String passphrase) throws UnrecoverableKeyException, NoSuchAlgorithmException, KeyStoreException, CertificateException, InvalidKeySpecException, IOException {
         KeyStore keyStore = createKeyStore(certInputStream, keyInputStream, algo, passphrase.toCharArray());
         KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
@@ -19,6 +19,7 @@ import com.fasterxml.jackson.databind.ObjectMapper
 import io.fabric8.mockwebserver.crud.CrudDispatcher
 import okhttp3.MediaType
 import okhttp3.OkHttpClient
+import okhttp3.Protocol
 import okhttp3.Request
 import okhttp3.RequestBody
 import okhttp3.mockwebserver.MockWebServer
@@ -139,4 +140,29 @@ class DefaultMockServerCrudTest extends Specification {
     def item = client.newCall(new Request.Builder().url(server.url("/1")).build()).execute()
     assert item.body().string() == "{\"id\":1,\"username\":\"user-replaced\",\"enabled\":true}"
   }
+
+  def "post and get, over h2c, should share the store between multiplexed streams"() {
+    given:
+    def h2c = new DefaultMockServer(new Context(), new MockWebServer(), new HashMap<>(),
+        new CrudDispatcher(new Context(), new UserAttributeExtractor(), new JsonResponseComposer()), false)
+    h2c.useProtocols(Protocol.H2_PRIOR_KNOWLEDGE)
+    h2c.start()
+    def h2cClient = client.newBuilder().protocols([Protocol.H2_PRIOR_KNOWLEDGE]).build()
+
+    when:
+    def created = h2cClient.newCall(new Request.Builder().url(h2c.url("/")).post(
+        RequestBody.create(MediaType.parse("application/json"),
+            mapper.writeValueAsString(new User(1L, "user", true)))).build()).
+        execute()
+    def item = h2cClient.newCall(new Request.Builder().url(h2c.url("/1")).build()).execute()
+
+    then:
+    assert created.protocol() == Protocol.H2_PRIOR_KNOWLEDGE
+    assert created.code() == 202
+    assert item.protocol() == Protocol.H2_PRIOR_KNOWLEDGE
+    assert item.body().string() == "{\"id\":1,\"username\":\"user\",\"enabled\":true}"
+
+    cleanup:
+    h2c.shutdown()
+  }
 }
@@ -15,10 +15,23 @@
  */
 package io.fabric8.mockwebserver
 
+import io.fabric8.mockwebserver.events.EventStream
+import io.fabric8.mockwebserver.internal.MockSSLContextFactory
+import io.fabric8.mockwebserver.utils.SSLUtils
+import io.fabric8.mockwebserver.tls.CertificateAuthority
+import okhttp3.Dns
 import okhttp3.OkHttpClient
+import okhttp3.Protocol
+import okhttp3.Request
 import spock.lang.Shared
 import spock.lang.Specification
 
+import javax.net.ssl.TrustManager
+import javax.net.ssl.X509TrustManager
+import java.security.cert.X509Certificate
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+
 class DefaultMockServerHttpsTest extends Specification {
 
   DefaultMockServer server
@@ -42,4 +55,167 @@ class DefaultMockServerHttpsTest extends Specification {
     then:
     assert result.startsWith("https://")
   }
+
+  def "andStreamChunked, over TLS, should send the buffered chunks"() {
+    given:
+    server.expect().get().withPath("/api/v1/stream").andStreamChunked(200, { request -> ["a", "b", "c"].iterator() }).once()
+
+    when:
+    def response = httpsClient().newCall(new Request.Builder().url(server.url("/api/v1/stream")).get().build()).execute()
+
+    then:
+    assert response.body().string() == "abc"
+  }
+
+  def "andStreamChunked, over TLS, with an unbounded producer, should fail instead of buffering it"() {
+    given:
+    def chunk = "x" * 65536
+    server.expect().get().withPath("/api/v1/watch").andStreamChunked(200, { request ->
+      [hasNext: { true }, next: { chunk }] as Iterator<String>
+    }).once()
+
+    when:
+    httpsClient().newCall(new Request.Builder().url(server.url("/api/v1/watch")).get().build()).execute().body().string()
+
+    then:
+    thrown(IOException)
+  }
+
+  def "andStreamEvents, over TLS, should long poll the events"() {
+    given:
+    def events = new EventStream()
+    server.expect().get().withPath("/api/v1/pods?watch=true").andStreamEvents(200, events).once()
+
+    when:
+    def call = CompletableFuture.supplyAsync {
+      httpsClient().newCall(new Request.Builder().url(server.url("/api/v1/pods?watch=true")).get().build()).execute().body().string()
+    }
+    assert events.awaitWatchers(1, 10, TimeUnit.SECONDS)
+    events.sendAll(["first", "second"])
+
+    then:
+    assert call.get(10, TimeUnit.SECONDS) == "first\nsecond\n"
+  }
+
+  def "useSslContext, should serve HTTPS with the provided context"() {
+    given:
+    def context = MockSSLContextFactory.create()
+    def plainServer = new DefaultMockServer(false)
+    plainServer.useSslContext(context)
+    plainServer.start()
+    plainServer.expect().get().withPath("/api/v1/users").andReturn(200, "admin").once()
+
+    when:
+    def response = httpsClient().newCall(new Request.Builder().url(plainServer.url("/api/v1/users")).get().build()).execute()
+
+    then:
+    assert plainServer.url("/").startsWith("https://")
+    assert response.body().string() == "admin"
+    assert response.handshake() != null
+
+    cleanup:
+    plainServer.shutdown()
+  }
+
+  def "start, with several servers, should share the default context"() {
+    given:
+    def other = new DefaultMockServer(true)
+    other.start()
+    server.expect().get().withPath("/").andReturn(200, "first").once()
+    other.expect().get().withPath("/").andReturn(200, "second").once()
+
+    when:
+    def client = httpsClient()
+    def first = client.newCall(new Request.Builder().url(server.url("/")).get().build()).execute()
+    def second = client.newCall(new Request.Builder().url(other.url("/")).get().build()).execute()
+
+    then:
+    assert first.body().string() == "first"
+    assert second.body().string() == "second"
+    assert first.handshake().peerCertificates() == second.handshake().peerCertificates()
+
+    cleanup:
+    other.shutdown()
+  }
+
+  def "useSslContext, with a certificate authority, should present a certificate for each requested host"() {
+    given:
+    def authority = new CertificateAuthority()
+    def virtualHosts = new DefaultMockServer(false)
+    virtualHosts.useSslContext(authority.createSslContext())
+    virtualHosts.start()
+    virtualHosts.expect().get().withPath("/").andReturn(200, "hello").always()
+    def trustManager = authority.trustManager
+    def sniClient = client.newBuilder()
+      .sslSocketFactory(SSLUtils.sslContext(null, [trustManager] as TrustManager[], false).socketFactory, trustManager)
+      .dns({ host -> [InetAddress.getLoopbackAddress()] } as Dns)
+      .build()
+
+    when:
+    def responses = ["api.example.com", "auth.example.org"].collect {
+      sniClient.newCall(new Request.Builder().url("https://$it:${virtualHosts.port}/").get().build()).execute()
+    }
+
+    then:
+    assert responses.every { it.body().string() == "hello" }
+    assert responses.collect { it.handshake().peerCertificates()[0].subjectX500Principal.name } ==
+      ["CN=api.example.com", "CN=auth.example.org"]
+
+    cleanup:
+    virtualHosts.shutdown()
+  }
+
+  def "default protocols, over TLS, should negotiate HTTP/2"() {
+    given:
+    server.expect().get().withPath("/api/v1/users").andReturn(200, "users").once()
+
+    when:
+    def response = httpsClient().newCall(new Request.Builder().url(server.url("/api/v1/users")).get().build()).execute()
+
+    then:
+    assert response.protocol() == Protocol.HTTP_2
+    assert response.body().string() == "users"
+  }
+
+  def "useProtocols, with HTTP/1.1 only, should not negotiate HTTP/2"() {
+    given:
+    def http1 = new DefaultMockServer(true)
+    http1.useProtocols(Protocol.HTTP_1_1)
+    http1.start()
+    http1.expect().get().withPath("/api/v1/users").andReturn(200, "users").once()
+
+    when:
+    def response = httpsClient().newCall(new Request.Builder().url(http1.url("/api/v1/users")).get().build()).execute()
+
+    then:
+    assert response.protocol() == Protocol.HTTP_1_1
+    assert response.body().string() == "users"
+
+    cleanup:
+    http1.shutdown()
+  }
+
+  def "useProtocols, with h2 prior knowledge, should not start over TLS"() {
+    given:
+    def h2c = new DefaultMockServer(true)
+    h2c.useProtocols(Protocol.H2_PRIOR_KNOWLEDGE)
+
+    when:
+    h2c.start()
+
+    then:
+    thrown(IllegalStateException)
+  }
+
+  private OkHttpClient httpsClient() {
+    def trustManager = [
+      checkClientTrusted: { chain, authType -> },
+      checkServerTrusted: { chain, authType -> },
+      getAcceptedIssuers: { new X509Certificate[0] }
+    ] as X509TrustManager
+    return client.newBuilder()
+      .sslSocketFactory(SSLUtils.sslContext(null, [trustManager] as TrustManager[], false).socketFactory, trustManager)
+      .hostnameVerifier({ hostname, session -> true })
+      .build()
+  }
 }
@@ -15,15 +15,28 @@
  */
 package io.fabric8.mockwebserver
 
+import io.fabric8.mockwebserver.dsl.HttpMethod
+import io.fabric8.mockwebserver.events.EventStream
+import io.fabric8.mockwebserver.internal.EventStreamResponse
+import io.fabric8.mockwebserver.internal.SimpleRequest
+import io.fabric8.mockwebserver.journal.RequestJournal
+import io.fabric8.mockwebserver.journal.RequestLog
+import io.fabric8.mockwebserver.shaping.LatencyDistributions
+import io.fabric8.mockwebserver.shaping.ShapingProfile
 import io.fabric8.mockwebserver.utils.ResponseProvider
 import okhttp3.*
+import okhttp3.mockwebserver.MockWebServer
 import okhttp3.mockwebserver.RecordedRequest
 import okio.ByteString
 import spock.lang.Shared
 import spock.lang.Specification
 
+import java.nio.file.Files
 import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicReference
 
@@ -158,6 +171,457 @@ class DefaultMockServerTest extends Specification {
         assert result == null
     }
 
+    def "useRequestJournal, should record requests in the bounded journal instead of the server queue"() {
+        given:
+        def journaled = new DefaultMockServer(false)
+        journaled.useRequestJournal(new RequestJournal(2))
+        journaled.start()
+        journaled.expect().post().withPath("/api/v1/users").andReturn(201, "created").always()
+
+        when:
+        (1..3).each {
+            client.newCall(new Request.Builder().url(journaled.url("/api/v1/users")).post(RequestBody.create(MediaType.get("text/plain"), "user$it")).build()).execute().close()
+        }
+        client.newCall(new Request.Builder().url(journaled.url("/api/v1/groups")).get().build()).execute().close()
+
+        then:
+        assert journaled.getRequestCount() == 4
+        assert journaled.getLastRequest().getPath() == "/api/v1/groups"
+        assert journaled.getRequestJournal().getRequests("POST", "/api/v1/users").size() == 1
+        assert journaled.takeRequest().getUtf8Body() == "user3"
+        assert journaled.takeRequest(1, TimeUnit.MICROSECONDS).getPath() == "/api/v1/groups"
+        assert journaled.takeRequest(1, TimeUnit.MICROSECONDS) == null
+
+        cleanup:
+        journaled.shutdown()
+    }
+
+    def "useRequestLog, should append every request to the log"() {
+        given:
+        def directory = Files.createTempDirectory("request-log")
+        def recording = new DefaultMockServer(false)
+        recording.useRequestLog(new RequestLog(directory, 1024))
+        recording.start()
+        recording.expect().get().withPathTemplate("/api/v1/users/{name}").andReturn(200, "user").always()
+
+        when:
+        (1..50).each {
+            client.newCall(new Request.Builder().url(recording.url("/api/v1/users/user$it")).get().build()).execute().close()
+        }
+
+        then:
+        assert recording.getLastRequest().getPath() == "/api/v1/users/user50"
+        assert recording.getRequestLog().size() == 50
+        assert recording.getRequestLog().find("GET", "/api/v1/users/user42").collect().size() == 1
+        assert recording.takeRequest().getPath() == "/api/v1/users/user1"
+
+        cleanup:
+        recording.shutdown()
+        recording.getRequestLog().delete()
+    }
+
+    def "expectAll, should register all the specs of the stream"() {
+        given:
+        def specs = (1..100).stream().map { ExpectationSpec.of(HttpMethod.GET, "/api/v1/users/$it", 200, new User(it, "user$it", true)) }
+        def count = server.expectAll(java.util.stream.Stream.concat(specs, java.util.stream.Stream.of(
+            ExpectationSpec.of(HttpMethod.POST, "/api/v1/users", 201, "created").withHeader("Location", "/api/v1/users/101").times(2),
+            ExpectationSpec.chunked(HttpMethod.GET, "/api/v1/logs", 200, "line1", "line2").always(),
+            ExpectationSpec.of(HttpMethod.DELETE, "/api/v1/users/{name}", 200, "deleted").withPathTemplate().always())))
+
+        when:
+        def user = client.newCall(new Request.Builder().url(server.url("/api/v1/users/42")).get().build()).execute()
+        def posts = (1..3).collect { client.newCall(new Request.Builder().url(server.url("/api/v1/users")).post(RequestBody.create(null, "")).build()).execute() }
+        def logs = (1..2).collect { client.newCall(new Request.Builder().url(server.url("/api/v1/logs")).get().build()).execute() }
+        def delete = client.newCall(new Request.Builder().url(server.url("/api/v1/users/user7")).delete().build()).execute()
+
+        then:
+        assert count == 103
+        assert user.body().string() == '{"id":42,"username":"user42","enabled":true}'
+        assert posts*.code() == [201, 201, 404]
+        assert posts[0].header("Location") == "/api/v1/users/101"
+        assert logs.collect { it.body().string() } == ["line1line2", "line1line2"]
+        assert delete.body().string() == "deleted"
+
+        cleanup:
+        ([user, delete] + posts + logs)*.close()
+    }
+
+    def "expectAll, through the DSL, should register the same expectations"() {
+        given:
+        ExpectationSpec.of(HttpMethod.POST, "/api/v1/users", 201, "created").withHeader("Location", "/api/v1/users/1")
+            .delay(1, TimeUnit.SECONDS).times(2).applyTo(server.expect())
+        ExpectationSpec.chunked(HttpMethod.GET, "/api/v1/logs", 200, "line1", "line2").withPathTemplate().always().applyTo(server.expect())
+
+        when:
+        def posts = (1..3).collect { client.newCall(new Request.Builder().url(server.url("/api/v1/users")).post(RequestBody.create(null, "")).build()).execute() }
+        def logs = client.newCall(new Request.Builder().url(server.url("/api/v1/logs?follow=true")).get().build()).execute()
+
+        then:
+        assert posts*.code() == [201, 201, 404]
+        assert posts[0].header("Location") == "/api/v1/users/1"
+        assert logs.body().string() == "line1line2"
+
+        cleanup:
+        (posts + logs)*.close()
+    }
+
+    def "expectAll, should serve chunked specs with headers #registration"() {
+        given:
+        def spec = ExpectationSpec.chunked(HttpMethod.GET, "/api/v1/logs", 200, "line1", "line2")
+            .withHeader("Content-Type", "text/plain").withHeader("X-Log", "app")
+        register(server, spec)
+
+        when:
+        def logs = client.newCall(new Request.Builder().url(server.url("/api/v1/logs")).get().build()).execute()
+
+        then:
+        assert logs.header("Content-Type") == "text/plain"
+        assert logs.header("X-Log") == "app"
+        assert logs.header("Transfer-Encoding") == "chunked"
+        assert logs.body().string() == "line1line2"
+
+        cleanup:
+        logs.close()
+
+        where:
+        registration          | register
+        "in bulk"             | { DefaultMockServer s, ExpectationSpec e -> s.expectAll([e]) }
+        "through the DSL"     | { DefaultMockServer s, ExpectationSpec e -> e.applyTo(s.expect()) }
+    }
+
+    def "useVirtualThreads, should serve delayed responses concurrently"() {
+        given:
+        def concurrent = new DefaultMockServer(false)
+        def virtual = concurrent.useVirtualThreads()
+        concurrent.start()
+        concurrent.expect().get().delay(500, TimeUnit.MILLISECONDS).withPath("/api/v1/slow")
+            .andReply(200, { req -> Thread.currentThread().toString() }).always()
+        def executor = Executors.newFixedThreadPool(20)
+
+        when:
+        def start = System.nanoTime()
+        def threads = executor.invokeAll((1..20).collect {
+            { -> client.newCall(new Request.Builder().url(concurrent.url("/api/v1/slow")).get().build()).execute().withCloseable { it.body().string() } } as Callable<String>
+        })*.get()
+        def elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+
+        then:
+        assert virtual == io.fabric8.mockwebserver.internal.ServerExecutors.isVirtualThreadSupported()
+        assert threads.every { it.startsWith("VirtualThread") == virtual }
+        assert elapsed < 5000
+
+        cleanup:
+        executor.shutdownNow()
+        concurrent.shutdown()
+    }
+
+    def "useProtocols, with h2 prior knowledge, should multiplex concurrent requests over one connection"() {
+        given:
+        def h2c = new DefaultMockServer(false)
+        h2c.useProtocols(Protocol.H2_PRIOR_KNOWLEDGE)
+        h2c.start()
+        h2c.expect().get().delay(200, TimeUnit.MILLISECONDS).withPath("/api/v1/users")
+            .andReply(200, { req -> req.getRequestLine() }).always()
+        def h2cClient = client.newBuilder().protocols([Protocol.H2_PRIOR_KNOWLEDGE]).connectionPool(new ConnectionPool()).build()
+        def executor = Executors.newFixedThreadPool(10)
+
+        when:
+        def responses = executor.invokeAll((1..10).collect {
+            { -> h2cClient.newCall(new Request.Builder().url(h2c.url("/api/v1/users")).get().build()).execute().withCloseable { [it.protocol(), it.body().string()] } } as Callable<List>
+        })*.get()
+
+        then:
+        assert responses.every { it[0] == Protocol.H2_PRIOR_KNOWLEDGE && it[1] == "GET /api/v1/users HTTP/1.1" }
+        assert h2cClient.connectionPool().connectionCount() == 1
+
+        cleanup:
+        executor.shutdownNow()
+        h2c.shutdown()
+    }
+
+    def "useProtocols, after start, should throw"() {
+        when:
+        server.useProtocols(Protocol.H2_PRIOR_KNOWLEDGE)
+
+        then:
+        thrown(IllegalStateException)
+    }
+
+    def "shape, with latency and throttle, should delay the headers and limit the body bandwidth"() {
+        given:
+        server.expect().get().shape(ShapingProfile.create()
+            .withLatency(LatencyDistributions.fixed(300, TimeUnit.MILLISECONDS))
+            .withThrottle(100, 50, TimeUnit.MILLISECONDS))
+            .withPath("/api/v1/shaped").andReturn(200, "x" * 1000).once()
+
+        when:
+        def start = System.nanoTime()
+        def response = client.newCall(new Request.Builder().url(server.url("/api/v1/shaped")).get().build()).execute()
+        def headersElapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+        def body = response.body().string()
+        def elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+
+        then:
+        assert headersElapsed >= 300
+        assert body.length() == 1000
+        assert elapsed >= 300 + 9 * 50
+    }
+
+    def "shape, with chunk pacing, should send one chunk per period"() {
+        given:
+        server.expect().get().shape(ShapingProfile.create().withChunkPacing(200, TimeUnit.MILLISECONDS))
+            .withPath("/api/v1/paced").andReturnChunked(200, "a", "bb" * 100, "", "ccc").always()
+
+        when:
+        def start = System.nanoTime()
+        def response = client.newCall(new Request.Builder().url(server.url("/api/v1/paced")).get().build()).execute()
+        def source = response.body().source()
+        def reads = []
+        def buffer = new okio.Buffer()
+        while (source.read(buffer, 8192) != -1) {
+            reads << [TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), buffer.readUtf8()]
+        }
+
+        then:
+        assert response.header("Transfer-encoding") == "chunked"
+        assert reads.collect { it[1] }.join() == "a" + "bb" * 100 + "ccc"
+        assert reads.find { it[1] == "ccc" }[0] >= 350
+        assert reads.find { it[1].startsWith("b") }[0] >= 150
+
+        cleanup:
+        response.close()
+    }
+
+    def "shape, with chunk pacing, should frame the chunks as they are #connections"() {
+        given:
+        def paced = streaming ? server : new DefaultMockServer(new MockWebServer(), new ConcurrentHashMap<>(), false)
+        if (!streaming) {
+            paced.start()
+        }
+        paced.expect().get().shape(ShapingProfile.create().withChunkPacing(100, TimeUnit.MILLISECONDS))
+            .withPath("/api/v1/paced").andReturnChunked(200, "a", "b" * 1000, "ccc").always()
+        def socket = new Socket(paced.getHostName(), paced.getPort())
+        socket.setSoTimeout(10_000)
+
+        when:
+        def start = System.nanoTime()
+        socket.getOutputStream().write("GET /api/v1/paced HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes("UTF-8"))
+        socket.shutdownOutput()
+        def response = socket.getInputStream().getText("UTF-8")
+        def elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+
+        then:
+        assert response.substring(response.indexOf("\r\n\r\n") + 4) ==
+            "1\r\na\r\n3e8\r\n" + "b" * 1000 + "\r\n3\r\nccc\r\n0\r\n\r\n"
+        assert elapsed >= 150
+
+        cleanup:
+        socket?.close()
+        if (!streaming) {
+            paced.shutdown()
+        }
+
+        where:
+        streaming << [true, false]
+        connections = streaming ? "on streaming connections" : "on a provided MockWebServer"
+    }
+
+    def "andStreamChunked, should send every chunk as soon as it's produced"() {
+        given:
+        def received = new CountDownLatch(1)
+        server.expect().get().withPath("/api/v1/stream").andStreamChunked(200, { request ->
+            def count = 0
+            [
+                hasNext: { count < 2 },
+                next   : {
+                    if (count++ == 0) {
+                        return "first"
+                    }
+                    // Only produced once the client got the first chunk, a buffered response would time out here
+                    assert received.await(10, TimeUnit.SECONDS)
+                    return [id: 2]
+                }
+            ] as Iterator
+        }).once()
+
+        when:
+        def response = client.newCall(new Request.Builder().url(server.url("/api/v1/stream")).get().build()).execute()
+        def source = response.body().source()
+        def first = source.readUtf8(5)
+        received.countDown()
+        def rest = source.readUtf8()
+
+        then:
+        assert response.code() == 200
+        assert response.header("Transfer-encoding") == "chunked"
+        assert first == "first"
+        assert rest == "{\"id\":2}"
+    }
+
+    def "andStreamChunked, should stream a large body and keep the connection alive"() {
+        given:
+        server.expect().get().withPath("/api/v1/stream").andStreamChunked(200, { request ->
+            (1..10_000).stream().map { "x" * 1024 }.iterator()
+        }).times(2)
+
+        when:
+        def bodies = (1..2).collect {
+            client.newCall(new Request.Builder().url(server.url("/api/v1/stream")).get().build()).execute().body().string()
+        }
+
+        then:
+        assert bodies.every { it.length() == 10_000 * 1024 }
+        assert server.takeRequest().sequenceNumber == 0
+        assert server.takeRequest().sequenceNumber == 1
+    }
+
+    def "andStreamChunked, with a delay and a throttle, should delay and throttle the streamed body"() {
+        given:
+        server.expect().get().shape(ShapingProfile.create().withThrottle(100, 50, TimeUnit.MILLISECONDS))
+            .delay(300, TimeUnit.MILLISECONDS).withPath("/api/v1/stream").andStreamChunked(200, { request ->
+            (1..10).stream().map { "x" * 100 }.iterator()
+        }).once()
+
+        when:
+        def start = System.nanoTime()
+        def response = client.newCall(new Request.Builder().url(server.url("/api/v1/stream")).get().build()).execute()
+        def source = response.body().source()
+        def first = source.readUtf8(1)
+        def firstElapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+        def rest = source.readUtf8()
+        def elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+
+        then:
+        assert response.header("Transfer-encoding") == "chunked"
+        assert first + rest == "x" * 1000
+        assert firstElapsed >= 300
+        // Every 100 bytes chunk is framed with 6 more bytes, the 1065 bytes body takes at least 10 periods
+        assert elapsed >= 300 + 10 * 50
+
+        cleanup:
+        response.close()
+    }
+
+    def "andStreamChunked, with a failing producer, should fail the response body"() {
+        given:
+        server.expect().get().withPath("/api/v1/stream").andStreamChunked(200, { request ->
+            ["first", null].stream().map { it.toUpperCase() }.iterator()
+        }).once()
+
+        when:
+        client.newCall(new Request.Builder().url(server.url("/api/v1/stream")).get().build()).execute().body().string()
+
+        then:
+        thrown(IOException)
+    }
+
+    def "andStreamEvents, should push the events to every open watch connection"() {
+        given:
+        def events = new EventStream()
+        server.expect().get().withPath("/api/v1/pods?watch=true").andStreamEvents(200, events).always()
+        def watches = (1..3).collect {
+            client.newCall(new Request.Builder().url(server.url("/api/v1/pods?watch=true")).get().build()).execute()
+        }
+        assert events.awaitWatchers(3, 10, TimeUnit.SECONDS)
+
+        when:
+        events.send([type: "ADDED", object: [name: "pod-1"]])
+        def first = watches.collect { it.body().source().readUtf8Line() }
+        events.sendAll(["{\"type\":\"DELETED\"}", "{\"type\":\"BOOKMARK\"}"])
+        events.close()
+
+        then:
+        assert watches.every { it.header("Transfer-encoding") == "chunked" }
+        assert first.every { it == "{\"type\":\"ADDED\",\"object\":{\"name\":\"pod-1\"}}" }
+        assert watches.every { it.body().string() == "{\"type\":\"DELETED\"}\n{\"type\":\"BOOKMARK\"}\n" }
+        assert events.watcherCount == 0
+    }
+
+    def "andStreamEvents, with server sent events, should send an event stream"() {
+        given:
+        def events = new EventStream(EventStream.Format.SERVER_SENT_EVENTS)
+        server.expect().get().withPath("/api/v1/events").andStreamEvents(200, events).once()
+        def response = client.newCall(new Request.Builder().url(server.url("/api/v1/events")).get().build()).execute()
+        assert events.awaitWatchers(1, 10, TimeUnit.SECONDS)
+
+        when:
+        events.send("update", "hello")
+        events.close()
+
+        then:
+        assert response.header("Content-Type") == "text/event-stream"
+        assert response.body().string() == "event: update\ndata: hello\n\n"
+    }
+
+    def "andStreamEvents, should close the watchers of disconnected clients without waiting for an event"() {
+        given:
+        def events = new EventStream()
+        server.expect().get().withPath("/api/v1/pods?watch=true").andStreamEvents(200, events).always()
+        def watch = client.newCall(new Request.Builder().url(server.url("/api/v1/pods?watch=true")).get().build()).execute()
+        assert events.awaitWatchers(1, 10, TimeUnit.SECONDS)
+
+        when:
+        watch.close()
+        def deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10)
+        while (events.watcherCount > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(50)
+        }
+
+        then:
+        assert events.watcherCount == 0
+    }
+
+    def "andStreamEvents, when checking the connection, should keep the data sent by the client"() {
+        given:
+        def events = new EventStream()
+        server.expect().get().withPath("/api/v1/pods?watch=true").andStreamEvents(200, events).once()
+        server.expect().get().withPath("/api/v1/pods").andReturn(200, "pods").once()
+        def socket = new Socket(server.getHostName(), server.getPort())
+        socket.setSoTimeout(10_000)
+
+        when:
+        socket.getOutputStream().write("GET /api/v1/pods?watch=true HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes("UTF-8"))
+        assert events.awaitWatchers(1, 10, TimeUnit.SECONDS)
+        socket.getOutputStream().write("GET /api/v1/pods HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes("UTF-8"))
+        socket.shutdownOutput()
+        // Lets the watcher check the connection while the second request is pending
+        Thread.sleep(1500)
+        events.close()
+        def responses = socket.getInputStream().getText("UTF-8")
+
+        then:
+        assert responses.count("HTTP/1.1 200 OK") == 2
+        assert responses.endsWith("\r\n\r\npods")
+
+        cleanup:
+        socket.close()
+    }
+
+    def "andStreamEvents, with a long poll timeout, should complete long polls without events after the timeout"() {
+        given:
+        def events = new EventStream()
+        // A MockWebServer provided by the caller can't stream, every request is a long poll
+        def polled = new DefaultMockServer(new MockWebServer(), new ConcurrentHashMap<>(), false)
+        polled.start()
+        polled.expect().get().withPath("/api/v1/pods?watch=true").andStreamEvents(200, events, 300, TimeUnit.MILLISECONDS).always()
+
+        when:
+        def start = System.nanoTime()
+        def response = client.newCall(new Request.Builder().url(polled.url("/api/v1/pods?watch=true")).get().build()).execute()
+        def body = response.body().string()
+        def elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+
+        then:
+        assert response.code() == 200
+        assert body == ""
+        assert elapsed >= 300
+        assert elapsed < TimeUnit.SECONDS.toMillis(EventStreamResponse.DEFAULT_LONG_POLL_TIMEOUT_SECONDS)
+        assert events.watcherCount == 0
+
+        cleanup:
+        polled.shutdown()
+    }
+
     def "when setting an expectation with once it should be met only the first time"() {
         given:
         server.expect().get().withPath("/api/v1/users").andReturn(200, "admin").once()
@@ -204,6 +668,62 @@ class DefaultMockServerTest extends Specification {
         response4.close()
     }
 
+    def "when setting an expectation with n-th times it should be met exactly n-th times by concurrent clients"() {
+        given:
+        server.expect().get().withPath("/api/v1/users").andReturn(200, "admin").times(20)
+        def executor = Executors.newFixedThreadPool(16)
+
+        when:
+        def codes = (1..64).collect {
+            executor.submit({
+                Response response = client.newCall(new Request.Builder().url(server.url("/api/v1/users")).get().build()).execute()
+                response.close()
+                response.code()
+            } as Callable<Integer>)
+        }.collect { it.get(10, TimeUnit.SECONDS) }
+
+        then:
+        assert codes.count { it == 200 } == 20
+        assert codes.count { it == 404 } == 44
+
+        cleanup:
+        executor.shutdownNow()
+    }
+
+    def "when setting an expectation with n-th times a single counted response should be enqueued"() {
+        given:
+        Map<ServerRequest, Queue<ServerResponse>> responses = new HashMap<>()
+        DefaultMockServer counted = new DefaultMockServer(new Context(), new MockWebServer(), responses, false)
+        WebSocket ws = Mock(WebSocket)
+
+        when:
+        counted.expect().get().withPath("/api/v1/users").andReturn(200, "admin").times(1_000_000)
+        counted.expect().get().withPath("/api/v1/users/watch")
+                .andUpgradeToWebSocket()
+                .open()
+                    .expect("ping").andEmit("pong").times(2)
+                .done()
+                .times(1_000)
+        def session = responses.get(new SimpleRequest(HttpMethod.GET, "/api/v1/users/watch")).peek().webSocketSession
+        session.onMessage(ws, "ping")
+        session.onMessage(ws, "ping")
+
+        then:
+        assert responses.get(new SimpleRequest(HttpMethod.GET, "/api/v1/users")).size() == 1
+        assert responses.get(new SimpleRequest(HttpMethod.GET, "/api/v1/users/watch")).size() == 1
+        assert session.requestEvents.get("ping").isEmpty()
+        0 * ws.close(_, _)
+
+        when:
+        session.onMessage(ws, "ping")
+
+        then:
+        1 * ws.close(1002, "Unexpected message:ping")
+
+        cleanup:
+        session?.shutdown()
+    }
+
     def "when setting an expectation with always it should be met only always"() {
         given:
         server.expect().get().withPath("/api/v1/users").andReturn(200, "admin").always()
@@ -232,6 +752,123 @@ class DefaultMockServerTest extends Specification {
         response4.close()
     }
 
+    def "when setting a fixed expectation with always its cached body should be served every time"() {
+        given:
+        server.expect().get().withPath("/api/v1/users").andReturn(200, "admin").withHeader("X-Custom", "value").always()
+        server.expect().get().withPath("/api/v1/groups").andReturnChunked(200, "admins", "-", "users").always()
+
+        when:
+        List<Response> responses = (1..3).collectMany {
+            [
+                client.newCall(new Request.Builder().url(server.url("/api/v1/users")).get().build()).execute(),
+                client.newCall(new Request.Builder().url(server.url("/api/v1/groups")).get().build()).execute()
+            ]
+        }
+
+        then:
+        responses.eachWithIndex { Response response, int i ->
+            if (i % 2 == 0) {
+                assert response.body().string() == "admin"
+                assert response.header("Content-Length") == "5"
+                assert response.header("X-Custom") == "value"
+            } else {
+                assert response.body().string() == "admins-users"
+                assert response.header("Content-Length") == null
+                assert response.header("Transfer-encoding") == "chunked"
+            }
+        }
+
+        cleanup:
+        responses*.close()
+    }
+
+    def "when setting an expectation with a path template it should match any value of the placeholders"() {
+        given:
+        server.expect().get().withPathTemplate("/api/v1/namespaces/{namespace}/users/{name}").andReturn(200, "user").always()
+
+        when:
+        Response response1 = client.newCall(new Request.Builder().url(server.url("/api/v1/namespaces/ns1/users/admin")).get().build()).execute()
+        Response response2 = client.newCall(new Request.Builder().url(server.url("/api/v1/namespaces/ns2/users/root?watch=true")).get().build()).execute()
+        Response response3 = client.newCall(new Request.Builder().url(server.url("/api/v1/namespaces/ns1/users")).get().build()).execute()
+        Response response4 = client.newCall(new Request.Builder().url(server.url("/api/v1/namespaces/ns1/users/admin")).delete().build()).execute()
+
+        then:
+        assert response1.code() == 200
+        assert response1.body().string() == "user"
+        assert response2.code() == 200
+        assert response2.body().string() == "user"
+        assert response3.code() == 404
+        assert response4.code() == 404
+
+        cleanup:
+        response1.close()
+        response2.close()
+        response3.close()
+        response4.close()
+    }
+
+    def "when setting a path template expectation after serving requests it should be matched"() {
+        given:
+        server.expect().get().withPathTemplate("/api/v1/users/{name}").andReturn(200, "user").always()
+        Response before = client.newCall(new Request.Builder().url(server.url("/api/v1/groups/admins")).get().build()).execute()
+        (1..100).each { server.expect().get().withPath("/api/v1/items/$it").andReturn(200, "item").always() }
+        server.expect().get().withPathTemplate("/api/v1/groups/{name}").andReturn(200, "group").always()
+
+        when:
+        Response group = client.newCall(new Request.Builder().url(server.url("/api/v1/groups/admins")).get().build()).execute()
+        Response user = client.newCall(new Request.Builder().url(server.url("/api/v1/users/admin")).get().build()).execute()
+
+        then:
+        assert before.code() == 404
+        assert group.body().string() == "group"
+        assert user.body().string() == "user"
+
+        cleanup:
+        [before, group, user]*.close()
+    }
+
+    def "when setting a path template expectation on another server the routes should not be recompiled"() {
+        given:
+        def other = new DefaultMockServer()
+        server.expect().get().withPathTemplate("/api/v1/users/{name}").andReturn(200, "user").always()
+        client.newCall(new Request.Builder().url(server.url("/api/v1/users/admin")).get().build()).execute().close()
+        def routes = server.@dispatcher.@routes
+
+        when:
+        other.expect().get().withPathTemplate("/api/v1/groups/{name}").andReturn(200, "group").always()
+        Response user = client.newCall(new Request.Builder().url(server.url("/api/v1/users/admin")).get().build()).execute()
+
+        then:
+        assert user.body().string() == "user"
+        assert server.@dispatcher.@routes.is(routes)
+    }
+
+    def "when setting path template expectations the most specific one should be met"() {
+        given:
+        server.expect().get().withPathTemplate("/api/**").andReturn(200, "api").always()
+        server.expect().get().withPathTemplate("/api/v1/users/*").andReturn(200, "user").always()
+        server.expect().get().withPathTemplate("/api/v1/users/root").andReturn(200, "root template").always()
+        server.expect().get().withPath("/api/v1/users/root?exact=true").andReturn(200, "root exact").always()
+
+        when:
+        Response response1 = client.newCall(new Request.Builder().url(server.url("/api/v1/users/admin")).get().build()).execute()
+        Response response2 = client.newCall(new Request.Builder().url(server.url("/api/v1/users/root")).get().build()).execute()
+        Response response3 = client.newCall(new Request.Builder().url(server.url("/api/v1/users/root?exact=true")).get().build()).execute()
+        Response response4 = client.newCall(new Request.Builder().url(server.url("/api/v2/groups/admins/members")).get().build()).execute()
+
+        then:
+        assert response1.body().string() == "user"
+        assert response2.body().string() == "root template"
+        assert response3.body().string() == "root exact"
+        assert response4.body().string() == "api"
+
+        cleanup:
+        response1.close()
+        response2.close()
+        response3.close()
+        response4.close()
+    }
+
     def "when setting an expectation as an object it should be serialized to json"() {
         given:
         User root = new User(0, "root", true)
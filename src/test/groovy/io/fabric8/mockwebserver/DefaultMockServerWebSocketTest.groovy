@@ -15,16 +15,22 @@
  */
 package io.fabric8.mockwebserver
 
+import io.fabric8.mockwebserver.internal.WebSocketMessage
+import io.fabric8.mockwebserver.internal.WebSocketSession
 import okhttp3.OkHttpClient
 import okhttp3.Request
 import okhttp3.Response
 import okhttp3.WebSocket
 import okhttp3.WebSocketListener
+import okio.ByteString
 import spock.lang.Shared
 import spock.lang.Specification
 
 import java.util.concurrent.CompletableFuture
 import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.ScheduledThreadPoolExecutor
 import java.util.concurrent.TimeUnit
 import java.util.stream.Collectors
 import java.util.stream.IntStream
@@ -164,4 +170,124 @@ class DefaultMockServerWebSocketTest extends Specification {
     cleanup:
     ws.close(1000, "Test finished")
   }
+
+  def "andUpgradeToWebSocket, with provided executor, should emit events from the provided executor"() {
+    given:
+    def executor = Executors.newSingleThreadScheduledExecutor({ r -> new Thread(r, "custom-executor") })
+    def scheduledOn = new CompletableFuture()
+    def wrapped = new ScheduledThreadPoolExecutor(1) {
+      @Override
+      ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return executor.schedule({
+          scheduledOn.complete(Thread.currentThread().name)
+          command.run()
+        } as Runnable, delay, unit)
+      }
+    }
+    server.expect()
+        .withPath("/websocket")
+        .andUpgradeToWebSocket(wrapped).open().waitFor(10L).andEmit("A text message").done().always()
+    def future = new CompletableFuture()
+    when:
+    def ws = client.newWebSocket(new Request.Builder().url(server.url("/websocket")).build(), new WebSocketListener() {
+      @Override
+      void onMessage(WebSocket webSocket, String text) {
+        future.complete(text)
+      }
+    })
+    then:
+    assert future.get(1000L, TimeUnit.MILLISECONDS) == "A text message"
+    assert scheduledOn.get(1000L, TimeUnit.MILLISECONDS) == "custom-executor"
+    cleanup:
+    ws.close(1000, "Test finished")
+    wrapped.shutdownNow()
+    executor.shutdownNow()
+  }
+
+  def "andUpgradeToWebSocket, with many expectations, should not create a thread per session"() {
+    given:
+    def threadsBefore = Thread.activeCount()
+    when:
+    IntStream.range(0, 1000).forEach(i ->
+        server.expect()
+            .withPath("/websocket/" + i)
+            .andUpgradeToWebSocket().open().waitFor(10L).andEmit("A text message").done().always()
+    )
+    then:
+    assert Thread.activeCount() - threadsBefore < Runtime.getRuntime().availableProcessors() + 1
+  }
+
+  def "WebSocketSession, with binary message, should send the message ByteString without copying it"() {
+    given:
+    def body = ByteString.encodeUtf8("A binary message")
+    def message = new WebSocketMessage(0L, body, true, true, 1)
+    def session = new WebSocketSession([message], null, null)
+    def sent = new CompletableFuture()
+    def ws = Stub(WebSocket) {
+      send(_ as ByteString) >> { ByteString bytes -> sent.complete(bytes); true }
+    }
+    when:
+    session.onOpen(ws, null)
+    then:
+    assert sent.get(1000L, TimeUnit.MILLISECONDS).is(body)
+    assert message.getBody() == "A binary message"
+    cleanup:
+    session.shutdown()
+  }
+
+  def "andUpgradeToWebSocket, with several open messages, should emit them in order"() {
+    given:
+    def messages = IntStream.range(0, 100).mapToObj(i -> "message " + i).collect(Collectors.toList())
+    server.expect()
+        .withPath("/websocket")
+        .andUpgradeToWebSocket().open(messages.toArray()).done().always()
+    def received = Collections.synchronizedList([])
+    def done = new CountDownLatch(messages.size())
+    when:
+    def ws = client.newWebSocket(new Request.Builder().url(server.url("/websocket")).build(), new WebSocketListener() {
+      @Override
+      void onMessage(WebSocket webSocket, String text) {
+        received.add(text)
+        done.countDown()
+      }
+    })
+    then:
+    assert done.await(10L, TimeUnit.SECONDS)
+    assert received == messages
+    cleanup:
+    ws.close(1000, "Test finished")
+  }
+
+  def "WebSocketSession, with zero delay messages on a multi-threaded executor, should send them in order"() {
+    given:
+    def executor = new ScheduledThreadPoolExecutor(8)
+    def messages = IntStream.range(0, 1000).mapToObj(i -> new WebSocketMessage(0L, "message " + i, true))
+        .collect(Collectors.toList())
+    def session = new WebSocketSession(messages, null, null, executor)
+    def sent = Collections.synchronizedList([])
+    def ws = Stub(WebSocket) {
+      send(_ as String) >> { String text -> sent.add(text); true }
+    }
+    when:
+    session.onOpen(ws, null)
+    session.shutdown()
+    then:
+    assert sent == messages.collect { it.getBody() }
+    cleanup:
+    executor.shutdownNow()
+  }
+
+  def "WebSocketSession, shutdown, should wait for the scheduled messages to be sent"() {
+    given:
+    def session = new WebSocketSession([new WebSocketMessage(200L, "delayed", true)], null, null)
+    def sent = new CompletableFuture()
+    def ws = Stub(WebSocket) {
+      send(_ as String) >> { String text -> sent.complete(text); true }
+    }
+    when:
+    session.onOpen(ws, null)
+    session.shutdown()
+    then:
+    assert sent.getNow(null) == "delayed"
+  }
 }
@@ -15,6 +15,8 @@
  */
 package io.fabric8.mockwebserver
 
+import com.fasterxml.jackson.core.JsonParser
+import com.fasterxml.jackson.core.JsonToken
 import com.fasterxml.jackson.databind.ObjectMapper
 import io.fabric8.mockwebserver.crud.Attribute
 import io.fabric8.mockwebserver.crud.AttributeExtractor
@@ -37,4 +39,21 @@ class UserAttributeExtractor implements AttributeExtractor {
     def user = mapper.readValue(resource, User)
     return new AttributeSet(new Attribute("id", user.getId().toString()))
   }
+
+  @Override
+  AttributeSet fromResource(byte[] resource) {
+    // Streams through the top level fields without binding the whole resource
+    try (JsonParser parser = mapper.getFactory().createParser(resource)) {
+      parser.nextToken()
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName()
+        parser.nextToken()
+        if (field == "id") {
+          return new AttributeSet(new Attribute("id", parser.getText()))
+        }
+        parser.skipChildren()
+      }
+    }
+    return new AttributeSet()
+  }
 }
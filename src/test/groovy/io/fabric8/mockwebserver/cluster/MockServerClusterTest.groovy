@@ -0,0 +1,186 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.cluster
+
+import io.fabric8.mockwebserver.Context
+import io.fabric8.mockwebserver.JsonResponseComposer
+import io.fabric8.mockwebserver.UserAttributeExtractor
+import io.fabric8.mockwebserver.crud.CrudDispatcher
+import io.fabric8.mockwebserver.shaping.LatencyDistributions
+import io.fabric8.mockwebserver.shaping.ShapingProfile
+import okhttp3.MediaType
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.RequestBody
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class MockServerClusterTest extends Specification {
+
+    @Shared
+    OkHttpClient client = new OkHttpClient.Builder().retryOnConnectionFailure(false).build()
+
+    MockServerCluster cluster
+
+    def cleanup() {
+        cluster?.shutdown()
+    }
+
+    def "expect, once, should be served by a single node of the cluster"() {
+        given:
+        cluster = new MockServerCluster(3)
+        cluster.start()
+        cluster.expect().get().withPath("/api/v1/leader").andReturn(200, "leader").once()
+
+        when:
+        def codes = cluster.urls("/api/v1/leader").collect { get(it).code() }
+
+        then:
+        assert codes == [200, 404, 404]
+        assert cluster.getNodes().collect { it.getRequestCount() } == [1, 1, 1]
+        assert cluster.getRequestCount() == 3
+    }
+
+    def "expect, always, should be served by every node on its own port"() {
+        given:
+        cluster = new MockServerCluster(3)
+        cluster.start()
+        cluster.expect().get().withPath("/api/v1/users").andReturn(200, "users").always()
+
+        when:
+        def bodies = cluster.urls("/api/v1/users").collect { get(it).body().string() }
+
+        then:
+        assert bodies == ["users"] * 3
+        assert cluster.getNodes().collect { it.getPort() }.unique().size() == 3
+    }
+
+    def "shared CrudDispatcher, should serve the same store from every node"() {
+        given:
+        cluster = new MockServerCluster(3, new Context(),
+            new CrudDispatcher(new Context(), new UserAttributeExtractor(), new JsonResponseComposer()))
+        cluster.start()
+
+        when:
+        def created = client.newCall(new Request.Builder().url(cluster.getNode(0).url("/")).post(
+            RequestBody.create(MediaType.parse("application/json"), "{\"id\":1,\"username\":\"user\",\"enabled\":true}")).build()).execute()
+        def item = get(cluster.getNode(2).url("/1"))
+
+        then:
+        assert created.code() == 202
+        assert item.code() == 200
+        assert item.body().string() == "{\"id\":1,\"username\":\"user\",\"enabled\":true}"
+    }
+
+    def "failWith, should answer the requests of the node with the error until healed"() {
+        given:
+        cluster = new MockServerCluster(2)
+        cluster.start()
+        cluster.expect().get().withPath("/api/v1/users").andReturn(200, "users").always()
+        cluster.getNode(1).failWith(1, 503)
+
+        when:
+        def codes = cluster.urls("/api/v1/users").collect { get(it).code() }
+        cluster.getNode(1).heal()
+        def healed = get(cluster.getNode(1).url("/api/v1/users")).code()
+
+        then:
+        assert codes == [200, 503]
+        assert healed == 200
+    }
+
+    def "failWith, with a rate, should fail a fraction of the requests"() {
+        given:
+        cluster = new MockServerCluster(1)
+        cluster.start()
+        cluster.expect().get().withPath("/api/v1/users").andReturn(200, "users").always()
+        cluster.getNode(0).failWith(0.5, 500)
+
+        when:
+        def failures = (1..200).count { get(cluster.getNode(0).url("/api/v1/users")).code() == 500 }
+
+        then:
+        assert failures > 50
+        assert failures < 150
+    }
+
+    def "down, should close the connections so that clients fail over to the next node"() {
+        given:
+        cluster = new MockServerCluster(3)
+        cluster.start()
+        cluster.expect().get().withPath("/api/v1/users").andReturn(200, "users").always()
+        cluster.getNode(0).down()
+
+        when:
+        def failed = []
+        def body = cluster.urls("/api/v1/users").findResult { url ->
+            try {
+                return get(url).body().string()
+            } catch (IOException e) {
+                failed << url
+                return null
+            }
+        }
+
+        then:
+        assert body == "users"
+        assert failed == [cluster.getNode(0).url("/api/v1/users")]
+    }
+
+    def "shape, should only delay the responses of the node"() {
+        given:
+        cluster = new MockServerCluster(2)
+        cluster.start()
+        cluster.expect().get().withPath("/api/v1/users").andReturn(200, "users").always()
+        cluster.getNode(1).shape(ShapingProfile.create().withLatency(LatencyDistributions.fixed(300, TimeUnit.MILLISECONDS)))
+
+        when:
+        def elapsed = cluster.urls("/api/v1/users").collect { url ->
+            def start = System.nanoTime()
+            get(url).body().string()
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+        }
+
+        then:
+        assert elapsed[0] < 300
+        assert elapsed[1] >= 300
+    }
+
+    def "failWith, with an invalid rate, should throw"() {
+        given:
+        cluster = new MockServerCluster(1)
+
+        when:
+        cluster.getNode(0).failWith(1.5, 503)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "constructor, without nodes, should throw"() {
+        when:
+        new MockServerCluster(0)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    private def get(String url) {
+        return client.newCall(new Request.Builder().url(url).get().build()).execute()
+    }
+}
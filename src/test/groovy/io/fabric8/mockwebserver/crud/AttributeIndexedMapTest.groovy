@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.crud
+
+import spock.lang.Specification
+
+class AttributeIndexedMapTest extends Specification {
+
+    def "when querying WITH attributes should return matching entries in insertion order"() {
+        given:
+        AttributeIndexedMap<String> map = new AttributeIndexedMap<>()
+        AttributeSet third = new AttributeSet(new Attribute("namespace", "ns1"), new Attribute("name", "c"))
+        AttributeSet first = new AttributeSet(new Attribute("namespace", "ns1"), new Attribute("name", "a"))
+        AttributeSet other = new AttributeSet(new Attribute("namespace", "ns2"), new Attribute("name", "b"))
+        when:
+        map.put(third, "c")
+        map.put(other, "b")
+        map.put(first, "a")
+        then:
+        assert map.find(new AttributeSet(new Attribute("namespace", "ns1"))) == [third, first]
+        assert map.find(new AttributeSet(new Attribute("namespace", "ns1"), new Attribute("name", "a"))) == [first]
+        assert map.find(new AttributeSet(new Attribute("namespace", "ns3"))).isEmpty()
+        assert map.find(new AttributeSet()) == [third, other, first]
+    }
+
+    def "when querying IN and EXISTS attributes should intersect the postings"() {
+        given:
+        AttributeIndexedMap<String> map = new AttributeIndexedMap<>()
+        AttributeSet a = new AttributeSet(new Attribute("name", "a"), new Attribute("label", "x"))
+        AttributeSet b = new AttributeSet(new Attribute("name", "b"))
+        AttributeSet c = new AttributeSet(new Attribute("name", "c"), new Attribute("label", "y"))
+        map.put(a, "a")
+        map.put(b, "b")
+        map.put(c, "c")
+        when:
+        AttributeSet in = new AttributeSet(new Attribute("name", Arrays.asList("a", "b", "c"), AttributeType.IN))
+        AttributeSet inAndExists = in.add(new Attribute("label", "", AttributeType.EXISTS))
+        then:
+        assert map.find(in) == [a, b, c]
+        assert map.find(inAndExists) == [a, c]
+    }
+
+    def "when querying WITHOUT and NOT_EXISTS attributes should scan the candidates"() {
+        given:
+        AttributeIndexedMap<String> map = new AttributeIndexedMap<>()
+        AttributeSet a = new AttributeSet(new Attribute("namespace", "ns1"), new Attribute("label", "x"))
+        AttributeSet b = new AttributeSet(new Attribute("namespace", "ns1"))
+        AttributeSet c = new AttributeSet(new Attribute("namespace", "ns2"), new Attribute("label", "y"))
+        map.put(a, "a")
+        map.put(b, "b")
+        map.put(c, "c")
+        when:
+        AttributeSet without = new AttributeSet(new Attribute("namespace", "ns1", AttributeType.WITHOUT))
+        AttributeSet notExists = new AttributeSet(new Attribute("namespace", "ns1"), new Attribute("label", "", AttributeType.NOT_EXISTS))
+        then:
+        assert map.find(without) == [c]
+        assert map.find(notExists) == [b]
+    }
+
+    def "when querying with a wildcard value should match any value of the key"() {
+        given:
+        AttributeIndexedMap<String> map = new AttributeIndexedMap<>()
+        AttributeSet a = new AttributeSet(new Attribute("name", "a"))
+        AttributeSet b = new AttributeSet(new Attribute("name", "b"))
+        map.put(a, "a")
+        map.put(b, "b")
+        expect:
+        assert map.find(new AttributeSet(new Attribute("name", "*"))) == [a, b]
+    }
+
+    def "when entries are removed through the map views the index should be updated"() {
+        given:
+        AttributeIndexedMap<String> map = new AttributeIndexedMap<>()
+        AttributeSet a = new AttributeSet(new Attribute("name", "a"))
+        AttributeSet b = new AttributeSet(new Attribute("name", "b"))
+        map.put(a, "a")
+        map.put(b, "b")
+        when:
+        map.entrySet().removeIf({ e -> e.value == "a" })
+        map.remove(b)
+        map.put(b, "b2")
+        then:
+        assert map.find(new AttributeSet(new Attribute("name", "a"))).isEmpty()
+        assert map.find(new AttributeSet(new Attribute("name", "b"))) == [b]
+        assert map.get(b) == "b2"
+        assert map.size() == 1
+    }
+}
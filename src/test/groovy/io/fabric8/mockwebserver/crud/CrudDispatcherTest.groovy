@@ -24,9 +24,17 @@ import okhttp3.Request
 import okhttp3.Response
 import okhttp3.RequestBody
 import okhttp3.MediaType
+import okhttp3.mockwebserver.MockResponse
 import okhttp3.mockwebserver.MockWebServer
 import spock.lang.Specification
 import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.ObjectMapper
+
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.TimeUnit
 
 class CrudDispatcherTest extends Specification {
 
@@ -87,6 +95,191 @@ class CrudDispatcherTest extends Specification {
         expected == responseJson
     }
 
+    def "should be able to get after a merge patch"() {
+        given:
+        Context context = new Context()
+        DefaultMockServer server = new DefaultMockServer(context, new MockWebServer(), new HashMap<ServerRequest, Queue<ServerResponse>>(), new CrudDispatcher(context, extractor, composer), false)
+        String startingJson = """{"foo":{"bar":"startingValue","baz":"keepThis","qux":"removeThis"}}"""
+        String patch = """{"foo":{"bar":"canary","qux":null}}"""
+        when:
+        server.start()
+        then:
+        OkHttpClient client = new OkHttpClient()
+        Request post = new Request.Builder().post(RequestBody.create(MediaType.parse("application/json"), startingJson)).url(server.url("/namespace/test/name/one")).build()
+        client.newCall(post).execute()
+
+        Request patchRequest = new Request.Builder().patch(RequestBody.create(MediaType.parse("application/merge-patch+json"), patch)).url(server.url("/namespace/test/name/one")).build()
+        client.newCall(patchRequest).execute()
+
+        Request get = new Request.Builder().get().url(server.url("/namespace/test/name/one")).build()
+        Response response = client.newCall(get).execute()
+        assert context.getMapper().readTree(response.body().string()) == context.mapper.readTree("""{"foo":{"bar":"canary","baz":"keepThis"}}""")
+    }
+
+    def "should only extract attributes again when a patch modifies an attribute path"() {
+        given:
+        int extractions = 0
+        AttributeExtractor labelExtractor = new AttributeExtractor() {
+            @Override
+            AttributeSet fromPath(String path) {
+                return extractor.fromPath(path)
+            }
+
+            @Override
+            AttributeSet fromResource(String resource) {
+                extractions++
+                return new AttributeSet(new Attribute("app", new ObjectMapper().readTree(resource).path("app").asText()))
+            }
+
+            @Override
+            boolean isAttributePath(String jsonPointer) {
+                return jsonPointer.startsWith("/app")
+            }
+        }
+        CrudDispatcher dispatcher = new CrudDispatcher(new Context(), labelExtractor, composer)
+        dispatcher.handleCreate("/namespace/test/name/one", """{"app":"a","status":{"count":0}}""")
+
+        when:
+        (1..3).each {
+            dispatcher.handlePatch("/namespace/test/name/one", """[{"op":"replace","path":"/status/count","value":${it}}]""")
+        }
+
+        then:
+        assert extractions == 2
+        assert dispatcher.handleGet("/namespace/test/name/one").getBody().readUtf8() == """{"app":"a","status":{"count":3}}"""
+        assert dispatcher.getStore().find(new AttributeSet(new Attribute("app", "a"))).size() == 1
+
+        when:
+        dispatcher.handlePatch("/namespace/test/name/one", """[{"op":"replace","path":"/app","value":"b"}]""")
+
+        then:
+        assert extractions == 3
+        assert dispatcher.getStore().find(new AttributeSet(new Attribute("app", "b"))) == ["""{"app":"b","status":{"count":3}}"""]
+    }
+
+    def "should not lose updates when patching the same resource concurrently"() {
+        given:
+        CrudDispatcher dispatcher = new CrudDispatcher(new Context(), extractor, composer)
+        dispatcher.handleCreate("/namespace/test/name/one", """{"items":[]}""")
+        ExecutorService executor = Executors.newFixedThreadPool(8)
+
+        when:
+        List<Future<?>> patches = (1..200).collect { item ->
+            executor.submit({
+                dispatcher.handlePatch("/namespace/test/name/one", """[{"op":"add","path":"/items/-","value":${item}}]""")
+            } as Runnable)
+        }
+        patches*.get(30, TimeUnit.SECONDS)
+
+        then:
+        JsonNode patched = new ObjectMapper().readTree(dispatcher.handleGet("/namespace/test/name/one").getBody().readUtf8())
+        assert patched.get("items").collect { it.asInt() }.sort() == (1..200).toList()
+
+        cleanup:
+        executor.shutdownNow()
+    }
+
+    def "should create a resource only once when putting it concurrently"() {
+        given:
+        CrudDispatcher dispatcher = new CrudDispatcher(new Context(), extractor, composer)
+        ExecutorService executor = Executors.newFixedThreadPool(8)
+
+        when:
+        List<Future<String>> puts = (1..50).collect { item ->
+            executor.submit({
+                dispatcher.handleUpdate("/namespace/test/name/item" + (item % 5), "value").getStatus()
+            } as Callable<String>)
+        }
+        List<String> statuses = puts*.get(30, TimeUnit.SECONDS)
+
+        then:
+        assert statuses.count { it.contains("201") } == 5
+        assert statuses.count { it.contains("202") } == 45
+
+        cleanup:
+        executor.shutdownNow()
+    }
+
+    def "should extract the attributes of a put resource outside of the store update"() {
+        given:
+        boolean updating = false
+        List<Boolean> extractedWhileUpdating = []
+        CrudStore store = new ReadWriteLockCrudStore() {
+            @Override
+            def <T> T update(AttributeSet query, java.util.function.Function<Map<AttributeSet, byte[]>, T> operation) {
+                return super.update(query, { existing ->
+                    updating = true
+                    try {
+                        return operation.apply(existing)
+                    } finally {
+                        updating = false
+                    }
+                } as java.util.function.Function<Map<AttributeSet, byte[]>, T>)
+            }
+        }
+        AttributeExtractor recordingExtractor = new AttributeExtractor() {
+            @Override
+            AttributeSet fromPath(String path) {
+                return extractor.fromPath(path)
+            }
+
+            @Override
+            AttributeSet fromResource(String resource) {
+                extractedWhileUpdating.add(updating)
+                return new AttributeSet()
+            }
+        }
+        CrudDispatcher dispatcher = new CrudDispatcher(new Context(), recordingExtractor, composer, store)
+
+        when:
+        MockResponse created = dispatcher.handleUpdate("/namespace/test/name/one", "first")
+        MockResponse replaced = dispatcher.handleUpdate("/namespace/test/name/one", "second")
+
+        then:
+        assert created.getStatus().contains("201")
+        assert replaced.getStatus().contains("202")
+        assert replaced.getBody().readUtf8() == "second"
+        assert extractedWhileUpdating == [false, false]
+        assert dispatcher.handleGet("/namespace/test/name/one").getBody().readUtf8() == "second"
+    }
+
+    def "should dispatch requests through the String handlers overridden by subclasses"() {
+        given:
+        Context context = new Context()
+        List<String> handled = Collections.synchronizedList([])
+        CrudDispatcher dispatcher = new CrudDispatcher(context, extractor, composer) {
+            @Override
+            MockResponse handleCreate(String path, String body) {
+                handled.add("create " + body)
+                return super.handleCreate(path, body)
+            }
+
+            @Override
+            MockResponse handlePatch(String path, String body) {
+                handled.add("patch " + body)
+                return super.handlePatch(path, body)
+            }
+        }
+        DefaultMockServer server = new DefaultMockServer(context, new MockWebServer(), new HashMap<ServerRequest, Queue<ServerResponse>>(), dispatcher, false)
+        server.start()
+        OkHttpClient client = new OkHttpClient()
+
+        when:
+        client.newCall(new Request.Builder().post(RequestBody.create(MediaType.parse("application/json"), """{"a":1}"""))
+            .url(server.url("/namespace/test/name/one")).build()).execute().close()
+        client.newCall(new Request.Builder().put(RequestBody.create(MediaType.parse("application/json"), """{"a":2}"""))
+            .url(server.url("/namespace/test/name/one")).build()).execute().close()
+        client.newCall(new Request.Builder().patch(RequestBody.create(MediaType.parse("application/json-patch+json"), """[{"op":"replace","path":"/a","value":3}]"""))
+            .url(server.url("/namespace/test/name/one")).build()).execute().close()
+
+        then:
+        assert handled == ["create {\"a\":1}", "create {\"a\":2}", "patch [{\"op\":\"replace\",\"path\":\"/a\",\"value\":3}]"]
+        assert dispatcher.handleGet("/namespace/test/name/one").getBody().readUtf8() == """{"a":3}"""
+
+        cleanup:
+        server.shutdown()
+    }
+
     def "should be able to get after a post"() {
         given:
         Context context = new Context()
@@ -102,6 +295,22 @@ class CrudDispatcherTest extends Specification {
         assert response.body().string().equals("one")
     }
 
+    def "should keep non ASCII resources intact after a post"() {
+        given:
+        Context context = new Context()
+        DefaultMockServer server = new DefaultMockServer(context, new MockWebServer(), new HashMap<ServerRequest, Queue<ServerResponse>>(), new CrudDispatcher(context, extractor, composer), false)
+        String resource = """{"name":"\u00fcber-\u4e2d\u6587-\ud83d\ude80"}"""
+        when:
+        server.start()
+        then:
+        OkHttpClient client = new OkHttpClient()
+        Request post = new Request.Builder().post(RequestBody.create(MediaType.parse("application/json; charset=utf-8"), resource)).url(server.url("/namespace/test/name/one")).build()
+        client.newCall(post).execute()
+        Request get = new Request.Builder().get().url(server.url("/namespace/test/name/one")).build()
+        Response response = client.newCall(get).execute()
+        assert response.body().bytes() == resource.getBytes("UTF-8")
+    }
+
     def "should be able to delete after a post"() {
         given:
         Context context = new Context()
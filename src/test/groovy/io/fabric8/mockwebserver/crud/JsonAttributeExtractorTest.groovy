@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.crud
+
+import io.fabric8.mockwebserver.MockServerException
+import spock.lang.Specification
+
+class JsonAttributeExtractorTest extends Specification {
+
+    JsonAttributeExtractor extractor = new JsonAttributeExtractor(["name": "/metadata/name", "namespace": "/metadata/namespace", "kind": "/kind"]) {
+        @Override
+        AttributeSet fromPath(String path) {
+            return new AttributeSet()
+        }
+    }
+
+    def "fromResource, should take the attributes from the values at the pointers"() {
+        given:
+        String resource = """{"kind":"Pod","spec":{"metadata":{"name":"ignored"},"containers":[{"name":"c"}]},"metadata":{"labels":{"app":"a"},"name":"püd","namespace":"ns"}}"""
+
+        expect:
+        assert extractor.fromResource(resource.getBytes("UTF-8")) == new AttributeSet(
+            new Attribute("kind", "Pod"), new Attribute("name", "püd"), new Attribute("namespace", "ns"))
+        assert extractor.fromResource(resource) == extractor.fromResource(resource.getBytes("UTF-8"))
+    }
+
+    def "fromResource, with missing or non scalar values, should skip the attributes"() {
+        expect:
+        assert extractor.fromResource("""{"kind":{"name":"Pod"},"metadata":{"name":"p"}}""".getBytes("UTF-8")) ==
+            new AttributeSet(new Attribute("name", "p"))
+        assert extractor.fromResource("[]".getBytes("UTF-8")) == new AttributeSet()
+    }
+
+    def "fromResource, with invalid JSON, should throw an exception"() {
+        when:
+        extractor.fromResource("""{"kind":""".getBytes("UTF-8"))
+
+        then:
+        thrown(MockServerException)
+    }
+
+    def "isAttributePath, should only match the pointers, their parents and their children"() {
+        expect:
+        assert extractor.isAttributePath(pointer) == expected
+
+        where:
+        pointer                 | expected
+        ""                      | true
+        "/metadata"             | true
+        "/metadata/name"        | true
+        "/kind/nested"          | true
+        "/metadata/labels/app"  | false
+        "/spec"                 | false
+        "/kinds"                | false
+    }
+}
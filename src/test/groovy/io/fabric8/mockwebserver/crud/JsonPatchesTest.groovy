@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.crud
+
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.ObjectMapper
+import spock.lang.Specification
+
+class JsonPatchesTest extends Specification {
+
+    ObjectMapper mapper = new ObjectMapper()
+
+    def "when applying a patch it should modify the target in place"() {
+        given:
+        JsonNode target = json("""{"metadata":{"name":"one","labels":{"app":"a"}},"items":[1,2,3]}""")
+        JsonNode patch = json("""[
+            {"op":"test","path":"/metadata/name","value":"one"},
+            {"op":"add","path":"/metadata/labels/tier","value":"web"},
+            {"op":"replace","path":"/metadata/labels/app","value":"b"},
+            {"op":"remove","path":"/items/0"},
+            {"op":"add","path":"/items/-","value":4},
+            {"op":"add","path":"/items/0","value":0},
+            {"op":"copy","from":"/metadata/name","path":"/alias"},
+            {"op":"move","from":"/metadata/labels/tier","path":"/tier"}
+        ]""")
+
+        when:
+        JsonNode result = JsonPatches.applyInPlace(patch, target)
+
+        then:
+        assert result.is(target)
+        assert result == json("""{"metadata":{"name":"one","labels":{"app":"b"}},"items":[0,2,3,4],"alias":"one","tier":"web"}""")
+    }
+
+    def "when applying a patch it should not share nodes with the patch"() {
+        given:
+        JsonNode target = json("""{"metadata":{"name":"one"}}""")
+        JsonNode patch = json("""[{"op":"add","path":"/metadata/labels","value":{"app":"a"}}]""")
+
+        when:
+        JsonNode patched = JsonPatches.applyInPlace(patch, target)
+        patch.get(0).get("value").put("app", "modified")
+
+        then:
+        assert patched == json("""{"metadata":{"name":"one","labels":{"app":"a"}}}""")
+    }
+
+    def "when replacing the whole document it should return the new document"() {
+        when:
+        JsonNode result = JsonPatches.applyInPlace(json("""[{"op":"replace","path":"","value":{"a":1}}]"""), json("""{"b":2}"""))
+
+        then:
+        assert result == json("""{"a":1}""")
+    }
+
+    def "when a patch operation can't be applied it should fail"() {
+        when:
+        JsonPatches.applyInPlace(json(patch), json("""{"a":{"b":[1]},"c~/d":1}"""))
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        patch << [
+            """[{"op":"remove","path":"/missing"}]""",
+            """[{"op":"replace","path":"/a/b/1","value":2}]""",
+            """[{"op":"add","path":"/a/b/01","value":2}]""",
+            """[{"op":"test","path":"/c~0~1d","value":2}]""",
+            """[{"op":"unknown","path":"/a"}]""",
+            """{"op":"remove","path":"/a"}"""
+        ]
+    }
+
+    def "when listing the paths of a patch it should include from paths"() {
+        expect:
+        JsonPatches.paths(json("""[{"op":"move","from":"/a","path":"/b"},{"op":"remove","path":"/c"}]""")) == ["/b", "/a", "/c"]
+    }
+
+    private JsonNode json(String json) {
+        return mapper.readTree(json)
+    }
+}
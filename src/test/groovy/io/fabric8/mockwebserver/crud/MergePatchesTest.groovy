@@ -0,0 +1,102 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.crud
+
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.ObjectMapper
+import spock.lang.Specification
+
+class MergePatchesTest extends Specification {
+
+    ObjectMapper mapper = new ObjectMapper()
+
+    def "when applying a merge patch it should follow RFC 7386"() {
+        given:
+        JsonNode target = json("""{"a":"b","c":{"d":"e","f":"g"},"list":[{"name":"x"},{"name":"y"}]}""")
+
+        when:
+        JsonNode result = MergePatches.applyInPlace(json("""{"a":"z","c":{"f":null,"h":{"i":null,"j":1}},"list":[{"name":"z"}]}"""), target, false)
+
+        then:
+        assert result.is(target)
+        assert result == json("""{"a":"z","c":{"d":"e","h":{"j":1}},"list":[{"name":"z"}]}""")
+    }
+
+    def "when applying a non object merge patch it should replace the document"() {
+        expect:
+        MergePatches.applyInPlace(json("""["a"]"""), json("""{"a":"b"}"""), false) == json("""["a"]""")
+    }
+
+    def "when applying a merge patch it should not share nodes with the patch"() {
+        given:
+        JsonNode patch = json("""{"spec":{"ports":[80]}}""")
+
+        when:
+        JsonNode patched = MergePatches.applyInPlace(patch, json("""{"spec":{}}"""), false)
+        patch.get("spec").get("ports").add(443)
+
+        then:
+        assert patched == json("""{"spec":{"ports":[80]}}""")
+    }
+
+    def "when applying a strategic merge patch it should merge lists of objects by name"() {
+        given:
+        JsonNode target = json("""{"spec":{"containers":[{"name":"a","image":"a:1","ports":[80]},{"name":"b","image":"b:1"}],"finalizers":["x"]}}""")
+
+        when:
+        JsonNode result = MergePatches.applyInPlace(json("""{"spec":{
+            "containers":[{"name":"a","image":"a:2","ports":[8080]},{"name":"b","\$patch":"delete"},{"name":"c","image":"c:1","env":null}],
+            "finalizers":["y"]
+        }}"""), target, true)
+
+        then:
+        assert result == json("""{"spec":{"containers":[{"name":"a","image":"a:2","ports":[8080]},{"name":"c","image":"c:1"}],"finalizers":["y"]}}""")
+    }
+
+    def "when applying a strategic merge patch with replace and delete directives they should be honored"() {
+        when:
+        JsonNode result = MergePatches.applyInPlace(json("""{
+            "metadata":{"labels":{"\$patch":"replace","new":"label"},"annotations":{"\$patch":"delete"}},
+            "spec":{"containers":[{"\$patch":"replace"},{"name":"only"}]}
+        }"""), json("""{"metadata":{"labels":{"old":"label"},"annotations":{"a":"b"}},"spec":{"containers":[{"name":"a"},{"name":"b"}]}}"""), true)
+
+        then:
+        assert result == json("""{"metadata":{"labels":{"new":"label"}},"spec":{"containers":[{"name":"only"}]}}""")
+    }
+
+    def "when listing the paths of a merge patch it should return the modified values"() {
+        expect:
+        MergePatches.paths(json("""{"metadata":{"labels":{"a/b":"c"}},"status":null,"spec":{"\$patch":"replace"}}""")) ==
+            ["/metadata/labels/a~1b", "/status", "/spec"]
+    }
+
+    def "when resolving the patch type it should use the document and the content type"() {
+        expect:
+        PatchType.of(contentType, json(patch)) == expected
+
+        where:
+        contentType                                              | patch                               || expected
+        "application/strategic-merge-patch+json"                 | """[{"op":"remove","path":"/a"}]""" || PatchType.JSON
+        "application/json-patch+json"                            | """{"a":1}"""                       || PatchType.JSON
+        "application/strategic-merge-patch+json; charset=utf-8"  | """{"a":1}"""                       || PatchType.STRATEGIC_MERGE
+        "application/merge-patch+json"                           | """{"a":1}"""                       || PatchType.MERGE
+        null                                                     | """{"a":1}"""                       || PatchType.MERGE
+    }
+
+    private JsonNode json(String json) {
+        return mapper.readTree(json)
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.crud
+
+import spock.lang.Requires
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.TimeUnit
+
+class ReadWriteLockCrudStoreTest extends Specification {
+
+    def "when storing resources they should be available through the store and its map view"() {
+        given:
+        ReadWriteLockCrudStore store = new ReadWriteLockCrudStore()
+        AttributeSet one = new AttributeSet(new Attribute("name", "one"))
+        AttributeSet two = new AttributeSet(new Attribute("name", "two"))
+        when:
+        store.put(one, "1")
+        store.asMap().put(two, "2")
+        then:
+        assert store.find(new AttributeSet()) == ["1", "2"]
+        assert store.asMap().get(one) == "1"
+        assert store.asMap().size() == 2
+
+        when:
+        store.asMap().entrySet().removeIf({ e -> e.value == "1" })
+        then:
+        assert store.find(new AttributeSet()) == ["2"]
+        assert store.delete(new AttributeSet(new Attribute("name", "two"))) == 1
+        assert store.asMap().isEmpty()
+    }
+
+    def "when storing resources as bytes they should be returned without conversion"() {
+        given:
+        ReadWriteLockCrudStore store = new ReadWriteLockCrudStore()
+        AttributeSet one = new AttributeSet(new Attribute("name", "one"))
+        byte[] resource = "{\"name\":\"\u00fcn\"}".getBytes("UTF-8")
+        when:
+        store.put(one, resource)
+        then:
+        assert store.findBytes(one).size() == 1
+        assert store.findBytes(one)[0].is(resource)
+        assert store.find(one) == ["{\"name\":\"\u00fcn\"}"]
+        assert store.asMap().get(one) == "{\"name\":\"\u00fcn\"}"
+    }
+
+    def "when several readers look up resources they should not block each other"() {
+        given:
+        int readers = 4
+        CountDownLatch inside = new CountDownLatch(readers)
+        ReadWriteLockCrudStore store = new ReadWriteLockCrudStore()
+        store.put(new AttributeSet(new Attribute("name", "blocking")) {
+            @Override
+            boolean matches(AttributeSet candidate) {
+                // Only returns once every reader is evaluating the query at the same time
+                inside.countDown()
+                return inside.await(10, TimeUnit.SECONDS)
+            }
+        }, "value")
+        ExecutorService executor = Executors.newFixedThreadPool(readers)
+
+        when:
+        List<Future<List<String>>> results = (1..readers).collect {
+            executor.submit({ store.find(new AttributeSet(new Attribute("other", "", AttributeType.NOT_EXISTS))) } as java.util.concurrent.Callable)
+        }
+
+        then:
+        results.every { it.get(15, TimeUnit.SECONDS) == ["value"] }
+
+        cleanup:
+        executor.shutdownNow()
+    }
+
+    @Requires({ Runtime.runtime.availableProcessors() >= 4 })
+    def "when GET throughput is measured it should grow with the number of threads"() {
+        given:
+        ReadWriteLockCrudStore store = new ReadWriteLockCrudStore()
+        (1..2000).each { store.put(new AttributeSet(new Attribute("namespace", "ns" + (it % 10)), new Attribute("name", "n" + it)), "value" + it) }
+        AttributeSet query = new AttributeSet(new Attribute("name", "n1", AttributeType.WITHOUT))
+
+        when:
+        long single = throughput(store, query, 1)
+        long multiple = throughput(store, query, 4)
+
+        then:
+        assert multiple > single
+    }
+
+    private static long throughput(ReadWriteLockCrudStore store, AttributeSet query, int threads) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads)
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(500)
+        try {
+            List<Future<Long>> counts = (1..threads).collect {
+                executor.submit({
+                    long count = 0
+                    while (System.nanoTime() < deadline) {
+                        store.find(query)
+                        count++
+                    }
+                    return count
+                } as java.util.concurrent.Callable<Long>)
+            }
+            return counts.sum { it.get() } as long
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.events
+
+import spock.lang.Specification
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+
+class EventStreamTest extends Specification {
+
+    def "watch, should write the events published after the watcher connected as chunks"() {
+        given:
+        def stream = new EventStream()
+        stream.send("ignored")
+        def watcher = stream.watch()
+        def out = new ByteArrayOutputStream()
+
+        when:
+        def writing = CompletableFuture.runAsync { watcher.writeTo(out) }
+        stream.send("first")
+        stream.send([type: "ADDED", object: [name: "pod"]])
+        stream.close()
+        writing.get(10, TimeUnit.SECONDS)
+
+        then:
+        assert out.toString() == "6\r\nfirst\n\r\n29\r\n{\"type\":\"ADDED\",\"object\":{\"name\":\"pod\"}}\n\r\n0\r\n\r\n"
+        assert stream.watcherCount == 0
+    }
+
+    def "watch, with server sent events, should write the event type and every data line"() {
+        given:
+        def stream = new EventStream(EventStream.Format.SERVER_SENT_EVENTS)
+        def watcher = stream.watch()
+
+        when:
+        stream.send("update", "line 1\nline 2")
+        stream.send("ping")
+
+        then:
+        assert watcher.poll(1, TimeUnit.SECONDS).readUtf8() == "event: update\ndata: line 1\ndata: line 2\n\ndata: ping\n\n"
+    }
+
+    def "poll, without events, should return an empty body after the timeout"() {
+        given:
+        def watcher = new EventStream().watch()
+
+        expect:
+        assert watcher.poll(10, TimeUnit.MILLISECONDS).size() == 0
+    }
+
+    def "poll, when the watcher falls behind by more than the capacity, should throw an exception"() {
+        given:
+        def stream = new EventStream(EventStream.Format.WATCH, new io.fabric8.mockwebserver.Context(), 4)
+        def watcher = stream.watch()
+        stream.sendAll((1..5).collect { "event $it".toString() })
+
+        when:
+        watcher.poll(1, TimeUnit.SECONDS)
+
+        then:
+        def e = thrown(IOException)
+        assert e.message == "The watcher fell behind the event stream by more than 4 events"
+    }
+
+    def "awaitWatchers, should wait until the watchers are connected"() {
+        given:
+        def stream = new EventStream()
+
+        when:
+        def connecting = CompletableFuture.runAsync {
+            Thread.sleep(100)
+            stream.watch()
+            stream.watch()
+        }
+
+        then:
+        assert !stream.awaitWatchers(1, 10, TimeUnit.MILLISECONDS)
+        assert stream.awaitWatchers(2, 10, TimeUnit.SECONDS)
+        assert stream.watcherCount == 2
+
+        cleanup:
+        connecting.join()
+    }
+
+    def "close, on a watcher, should stop writing without completing the response"() {
+        given:
+        def stream = new EventStream()
+        def watcher = stream.watch()
+        def out = new ByteArrayOutputStream()
+        def writing = CompletableFuture.runAsync { watcher.writeTo(out) }
+
+        when:
+        watcher.close()
+        writing.get(10, TimeUnit.SECONDS)
+
+        then:
+        assert out.size() == 0
+        assert stream.watcherCount == 0
+        assert !stream.closed
+    }
+
+    def "send, after the stream is closed, should throw an exception"() {
+        given:
+        def stream = new EventStream()
+        stream.close()
+
+        when:
+        stream.send("late")
+
+        then:
+        thrown(IllegalStateException)
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.internal
+
+import spock.lang.Specification
+
+class MockSSLContextFactoryTest extends Specification {
+
+    def cleanup() {
+        MockSSLContextFactory.setDefault(null)
+    }
+
+    def "getDefault, should return the same context with the default session policy"() {
+        when:
+        def context = MockSSLContextFactory.getDefault()
+
+        then:
+        assert MockSSLContextFactory.getDefault().is(context)
+        assert !MockSSLContextFactory.create().is(context)
+        assert context.serverSessionContext.sessionCacheSize == MockSSLContextFactory.DEFAULT_SESSION_CACHE_SIZE
+        assert context.serverSessionContext.sessionTimeout == MockSSLContextFactory.DEFAULT_SESSION_TIMEOUT_SECONDS
+    }
+
+    def "setDefault, should replace the default context"() {
+        given:
+        def previous = MockSSLContextFactory.getDefault()
+        def provided = MockSSLContextFactory.create()
+
+        when:
+        MockSSLContextFactory.setDefault(provided)
+
+        then:
+        assert MockSSLContextFactory.getDefault().is(provided)
+
+        when:
+        MockSSLContextFactory.setDefault(null)
+
+        then:
+        assert !MockSSLContextFactory.getDefault().is(provided)
+        assert !MockSSLContextFactory.getDefault().is(previous)
+    }
+}
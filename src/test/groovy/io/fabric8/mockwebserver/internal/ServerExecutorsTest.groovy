@@ -0,0 +1,158 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.internal
+
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.internal.Version
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import spock.lang.Specification
+
+import java.lang.reflect.Modifier
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class ServerExecutorsTest extends Specification {
+
+    def "replace, should serve the new connections with the provided executor"() {
+        given:
+        def server = new MockWebServer()
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setBody(String.valueOf(Thread.currentThread().getId()))
+            }
+        })
+        server.start()
+        def threads = Collections.synchronizedSet(new HashSet<String>())
+        def executor = Executors.newCachedThreadPool({
+            def thread = new Thread(it)
+            threads.add(String.valueOf(thread.getId()))
+            return thread
+        })
+
+        when:
+        def replaced = ServerExecutors.replace(server, executor)
+        def response = new OkHttpClient().newCall(new Request.Builder().url(server.url("/")).build()).execute()
+
+        then:
+        assert replaced != null
+        assert threads.contains(response.body().string())
+
+        when:
+        server.shutdown()
+        replaced.shutdown()
+
+        then:
+        assert executor.awaitTermination(5, TimeUnit.SECONDS)
+        assert replaced.awaitTermination(5, TimeUnit.SECONDS)
+    }
+
+    def "assertReplaceable, should find the executor field of the OkHttp version in use"() {
+        when:
+        ServerExecutors.assertReplaceable()
+
+        then:
+        noExceptionThrown()
+    }
+
+    def "MockWebServer, should keep the executor replaced reflectively in a single instance field set by start"() {
+        given: "the layout replace relies on, a failure means ServerExecutors must be updated for this OkHttp version"
+        def version = Version.userAgent()
+        def server = new MockWebServer()
+        def executorFields = MockWebServer.class.getDeclaredFields().findAll { ExecutorService.isAssignableFrom(it.getType()) }
+
+        expect:
+        assert executorFields*.getName() == ["executor"], "MockWebServer executor fields changed in " + version
+        def field = executorFields[0]
+        assert field.getType() == ExecutorService, "MockWebServer executor type changed in " + version
+        assert !Modifier.isStatic(field.getModifiers()) && !Modifier.isFinal(field.getModifiers()), "MockWebServer executor modifiers changed in " + version
+        field.setAccessible(true)
+        assert field.get(server) == null, "MockWebServer creates its executor before start in " + version
+
+        when:
+        server.start()
+        def executor = field.get(server) as ExecutorService
+        server.shutdown()
+
+        then:
+        assert executor != null, "MockWebServer doesn't keep its executor in the field once started in " + version
+        assert executor.awaitTermination(5, TimeUnit.SECONDS), "MockWebServer doesn't shut the executor of the field down in " + version
+    }
+
+    def "replace, should fail if the server isn't started"() {
+        when:
+        ServerExecutors.replace(new MockWebServer(), Executors.newSingleThreadExecutor())
+
+        then:
+        thrown(IllegalStateException)
+    }
+
+    def "PublishingDispatcher, should serve the new connections with the provided executor and shut it down"() {
+        given:
+        def server = new MockWebServer()
+        def dispatcher = new ServerExecutors.PublishingDispatcher(new Dispatcher() {
+            @Override
+            MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setBody(String.valueOf(Thread.currentThread().getId()))
+            }
+        })
+        server.setDispatcher(dispatcher)
+        server.start()
+        def threads = Collections.synchronizedSet(new HashSet<String>())
+        def executor = Executors.newCachedThreadPool({
+            def thread = new Thread(it)
+            threads.add(String.valueOf(thread.getId()))
+            return thread
+        })
+
+        when:
+        def replaced = dispatcher.replace(server, executor)
+        def client = new OkHttpClient()
+        def bodies = (1..3).collect {
+            client.newCall(new Request.Builder().url(server.url("/")).header("Connection", "close").build()).execute().body().string()
+        }
+
+        then:
+        assert dispatcher.getExecutor() == executor
+        assert bodies.size() == 3
+        assert threads.containsAll(bodies)
+
+        when:
+        server.shutdown()
+        replaced.shutdown()
+
+        then:
+        assert executor.awaitTermination(5, TimeUnit.SECONDS)
+        assert replaced.awaitTermination(5, TimeUnit.SECONDS)
+    }
+
+    def "newVirtualThreadExecutor, should only be available when virtual threads are supported"() {
+        when:
+        def executor = ServerExecutors.newVirtualThreadExecutor()
+
+        then:
+        assert (executor != null) == ServerExecutors.isVirtualThreadSupported()
+        assert ServerExecutors.isVirtualThreadSupported() == ((System.getProperty("java.specification.version").tokenize(".").last() as int) >= 21)
+
+        cleanup:
+        executor?.shutdown()
+    }
+}
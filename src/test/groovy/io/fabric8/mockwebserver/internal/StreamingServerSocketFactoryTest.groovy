@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.internal
+
+import io.fabric8.mockwebserver.ServerRequest
+import io.fabric8.mockwebserver.ServerResponse
+import io.fabric8.mockwebserver.dsl.HttpMethod
+import io.fabric8.mockwebserver.utils.ResponseProviders
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+
+class StreamingServerSocketFactoryTest extends Specification {
+
+    def "MockWebServer, should dispatch on the reading thread and flush the headers before the body"() {
+        given:
+        def server = new MockWebServer()
+        server.setServerSocketFactory(new StreamingServerSocketFactory())
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            MockResponse dispatch(RecordedRequest request) {
+                def socket = StreamingSocket.current()
+                if (socket == null) {
+                    return new MockResponse().setResponseCode(500)
+                }
+                socket.writeAfterHeaders({ out -> out.write("STREAMED".getBytes(StandardCharsets.UTF_8)) } as StreamingSocket.BodyWriter)
+                return new MockResponse().setBody("BODY")
+            }
+        })
+        server.start()
+
+        when:
+        def response = get(server)
+
+        then: "streaming relies on this write order, it must be revisited if a MockWebServer upgrade changes it"
+        assert response.startsWith("HTTP/1.1 200 OK\r\n")
+        assert response.indexOf("\r\n\r\n") == response.length() - "\r\n\r\nSTREAMEDBODY".length()
+
+        cleanup:
+        server.shutdown()
+    }
+
+    def "accept, with a responses map, should only stream once a streamed expectation is registered"() {
+        given:
+        def responses = new ConcurrentHashMap<ServerRequest, Queue<ServerResponse>>()
+        def server = new MockWebServer()
+        server.setServerSocketFactory(new StreamingServerSocketFactory(responses))
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setBody(String.valueOf(StreamingSocket.current() != null))
+            }
+        })
+        server.start()
+        MockDispatcher.register(responses, new SimpleRequest(HttpMethod.GET, "/plain"),
+            new SimpleResponse(true, ResponseProviders.of(200, "plain"), null))
+
+        when:
+        def before = get(server)
+        MockDispatcher.register(responses, new SimpleRequest(HttpMethod.GET, "/stream"),
+            new StreamingChunkedResponse(true, 1, 0, TimeUnit.MILLISECONDS, null, ResponseProviders.of(200, [].iterator())))
+        def after = get(server)
+
+        then:
+        assert before.endsWith("\r\n\r\nfalse")
+        assert after.endsWith("\r\n\r\ntrue")
+
+        cleanup:
+        server.shutdown()
+    }
+
+    def "accept, with a streamed expectation registered in another map, should not scan the responses map"() {
+        given:
+        def scans = 0
+        def responses = new ConcurrentHashMap<ServerRequest, Queue<ServerResponse>>() {
+            @Override
+            Collection<Queue<ServerResponse>> values() {
+                scans++
+                return super.values()
+            }
+        }
+        def server = new MockWebServer()
+        server.setServerSocketFactory(new StreamingServerSocketFactory(responses))
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setBody(String.valueOf(StreamingSocket.current() != null))
+            }
+        })
+        server.start()
+
+        when:
+        MockDispatcher.register(new ConcurrentHashMap<>(), new SimpleRequest(HttpMethod.GET, "/stream"),
+            new StreamingChunkedResponse(true, 1, 0, TimeUnit.MILLISECONDS, null, ResponseProviders.of(200, [].iterator())))
+        def response = get(server)
+
+        then:
+        assert response.endsWith("\r\n\r\nfalse")
+        assert scans == 0
+
+        cleanup:
+        server.shutdown()
+    }
+
+    private static String get(MockWebServer server) {
+        def socket = new Socket(server.getHostName(), server.getPort())
+        try {
+            socket.getOutputStream().write("GET / HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.UTF_8))
+            socket.shutdownOutput()
+            return socket.getInputStream().getText(StandardCharsets.UTF_8.name())
+        } finally {
+            socket.close()
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.internal
+
+import okhttp3.Request
+import okhttp3.WebSocket
+import okio.ByteString
+import spock.lang.Specification
+
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class WebSocketSessionTest extends Specification {
+
+    def "when several sockets consume counted messages each use should be sent exactly once"() {
+        given:
+        def session = new WebSocketSession(Collections.emptyList(), null, null)
+        session.getRequestEvents().computeIfAbsent("ping", { new ConcurrentLinkedQueue<>() })
+            .addAll([new WebSocketMessage(0L, ByteString.encodeUtf8("first"), true, false, 100),
+                     new WebSocketMessage(0L, ByteString.encodeUtf8("second"), true, false, 100)])
+        def sent = new ConcurrentLinkedQueue<String>()
+        def delivered = new CountDownLatch(200)
+        def closed = new ConcurrentLinkedQueue<String>()
+        ExecutorService executor = Executors.newFixedThreadPool(8)
+
+        when:
+        def sockets = (1..8).collect { new RecordingWebSocket(sent, delivered, closed) }
+        (1..200).collect { i -> executor.submit({ session.onMessage(sockets[i % 8], "ping") } as Runnable) }*.get(10, TimeUnit.SECONDS)
+
+        then:
+        assert delivered.await(10, TimeUnit.SECONDS)
+        assert sent.count { it == "first" } == 100
+        assert sent.count { it == "second" } == 100
+        assert closed.isEmpty()
+        assert session.getRequestEvents().get("ping").isEmpty()
+
+        cleanup:
+        executor.shutdownNow()
+        session.shutdown()
+    }
+
+    private static class RecordingWebSocket implements WebSocket {
+
+        private final Queue<String> sent
+        private final CountDownLatch delivered
+        private final Queue<String> closed
+
+        RecordingWebSocket(Queue<String> sent, CountDownLatch delivered, Queue<String> closed) {
+            this.sent = sent
+            this.delivered = delivered
+            this.closed = closed
+        }
+
+        @Override
+        Request request() {
+            return null
+        }
+
+        @Override
+        long queueSize() {
+            return 0
+        }
+
+        @Override
+        boolean send(String text) {
+            sent.add(text)
+            delivered.countDown()
+            return true
+        }
+
+        @Override
+        boolean send(ByteString bytes) {
+            return send(bytes.utf8())
+        }
+
+        @Override
+        boolean close(int code, String reason) {
+            closed.add(reason)
+            return true
+        }
+
+        @Override
+        void cancel() {
+        }
+    }
+}
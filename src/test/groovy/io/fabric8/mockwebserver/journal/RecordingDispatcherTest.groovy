@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.journal
+
+import io.fabric8.mockwebserver.transport.Transport
+import okhttp3.Headers
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.RecordedRequest
+import okio.Buffer
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class RecordingDispatcherTest extends Specification {
+
+    def "dispatch, should drain the requests queued without being dispatched"() {
+        given:
+        def queued = [request("/failed-handshake"), request("/disconnected-at-start"), request("/api/v1/users")]
+        def transport = Mock(Transport)
+        def delegate = new Dispatcher() {
+            @Override
+            MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setBody("users")
+            }
+        }
+        def journal = new RequestJournal(10)
+        def dispatcher = new RecordingDispatcher(delegate, transport, [journal])
+
+        when:
+        def response = dispatcher.dispatch(queued[2])
+
+        then:
+        4 * transport.takeRequest(0, TimeUnit.NANOSECONDS) >>> queued + [null]
+        assert response.getBody().readUtf8() == "users"
+        assert journal.size() == 1
+    }
+
+    private static RecordedRequest request(String path) {
+        return new RecordedRequest("GET " + path + " HTTP/1.1", Headers.of(), [], 0, new Buffer(), 0, new Socket())
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.journal
+
+import okhttp3.Headers
+import okhttp3.mockwebserver.RecordedRequest
+import okio.Buffer
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.util.concurrent.TimeUnit
+
+class RequestJournalTest extends Specification {
+
+    def "record, with DROP_OLDEST policy, should keep the most recent requests"() {
+        given:
+        def journal = new RequestJournal(3, RequestJournal.OverflowPolicy.DROP_OLDEST)
+
+        when:
+        (1..5).each { journal.record(request("GET", "/r$it")) }
+
+        then:
+        assert journal.size() == 3
+        assert journal.getRecordedCount() == 5
+        assert journal.getRequests()*.path == ["/r3", "/r4", "/r5"]
+        assert journal.getLastRequest().path == "/r5"
+    }
+
+    def "getRequests, with method and path, should only return indexed matches"() {
+        given:
+        def journal = new RequestJournal(4)
+        journal.record(request("GET", "/a"))
+        journal.record(request("POST", "/a", "first"))
+        journal.record(request("GET", "/b"))
+        journal.record(request("POST", "/a", "second"))
+        journal.record(request("GET", "/c"))
+
+        expect:
+        assert journal.getRequests("/a")*.method == ["POST", "POST"]
+        assert journal.getRequests("POST", "/a")*.utf8Body == ["first", "second"]
+        assert journal.getRequests("GET", "/a").isEmpty()
+        assert journal.getRequests("DELETE", "/b").isEmpty()
+    }
+
+    def "record, with SAMPLE policy, should keep a bounded ordered sample and the last request"() {
+        given:
+        def journal = new RequestJournal(10, RequestJournal.OverflowPolicy.SAMPLE)
+
+        when:
+        (1..1000).each { journal.record(request("GET", "/r$it")) }
+        def sequences = journal.getRequests()*.path.collect { it.substring(2) as int }
+
+        then:
+        assert journal.size() == 10
+        assert journal.getRecordedCount() == 1000
+        assert sequences == sequences.sort(false)
+        assert journal.getLastRequest().path == "/r1000"
+        assert journal.getRequests().collectMany { journal.getRequests("GET", it.path) }.size() == 10
+    }
+
+    def "record, with SPILL_TO_DISK policy, should move the oldest requests to disk"() {
+        given:
+        def directory = Files.createTempDirectory("journal")
+        def journal = new RequestJournal(2, RequestJournal.OverflowPolicy.SPILL_TO_DISK, directory)
+
+        when:
+        journal.record(request("POST", "/r1", "{\"spilled\":true}", Headers.of("Content-Type", "application/json")))
+        (2..4).each { journal.record(request("GET", "/r$it")) }
+        def spilled = journal.getSpilledRequests()
+
+        then:
+        assert journal.getSpilledCount() == 2
+        assert journal.getRequests()*.path == ["/r3", "/r4"]
+        assert spilled*.path == ["/r1", "/r2"]
+        assert spilled[0].method == "POST"
+        assert spilled[0].utf8Body == "{\"spilled\":true}"
+        assert spilled[0].getHeader("Content-Type") == "application/json"
+
+        when:
+        journal.close()
+
+        then:
+        assert Files.list(directory).count() == 0
+    }
+
+    def "take, should return each request once in order"() {
+        given:
+        def journal = new RequestJournal(4)
+        (1..3).each { journal.record(request("GET", "/r$it")) }
+
+        expect:
+        assert journal.take().path == "/r1"
+        assert journal.take(1, TimeUnit.SECONDS).path == "/r2"
+        assert journal.take().path == "/r3"
+        assert journal.take(10, TimeUnit.MILLISECONDS) == null
+        assert journal.getLastRequest().path == "/r3"
+    }
+
+    def "take, should skip the requests dropped before being taken"() {
+        given:
+        def journal = new RequestJournal(2)
+        (1..5).each { journal.record(request("GET", "/r$it")) }
+
+        expect:
+        assert journal.take().path == "/r4"
+        assert journal.take().path == "/r5"
+    }
+
+    def "clear, should remove all the requests"() {
+        given:
+        def journal = new RequestJournal(2)
+        (1..3).each { journal.record(request("GET", "/r$it")) }
+
+        when:
+        journal.clear()
+
+        then:
+        assert journal.size() == 0
+        assert journal.getLastRequest() == null
+        assert journal.getRequests("/r3").isEmpty()
+    }
+
+    private static RecordedRequest request(String method, String path, String body = "", Headers headers = Headers.of()) {
+        def buffer = new Buffer().writeUtf8(body)
+        return new RecordedRequest("$method $path HTTP/1.1", headers, [], buffer.size(), buffer, 0, new Socket())
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.journal
+
+import okhttp3.Headers
+import okhttp3.mockwebserver.RecordedRequest
+import okio.Buffer
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.concurrent.TimeUnit
+
+class RequestLogTest extends Specification {
+
+    @TempDir
+    Path directory
+
+    def "record, should append requests to new segments once the active one is full"() {
+        given:
+        def log = new RequestLog(directory, 1024)
+
+        when:
+        (1..100).each { log.record(request("PUT", "/r$it", "body-$it", Headers.of("X-Index", "$it"))) }
+        def requests = log.collect()
+
+        then:
+        assert log.size() == 100
+        assert Files.list(directory).count() > 1
+        assert requests*.path == (1..100).collect { "/r$it" }
+        assert requests*.method.unique() == ["PUT"]
+        assert requests[41].getHeader("X-Index") == "42"
+        assert requests[41].utf8Body == "body-42"
+        assert log.getLastRequest().path == "/r100"
+
+        cleanup:
+        log.delete()
+    }
+
+    def "record, with a request larger than the segment size, should give it its own segment"() {
+        given:
+        def log = new RequestLog(directory, 1024)
+        def large = "x" * 4096
+
+        when:
+        log.record(request("POST", "/small", "small"))
+        log.record(request("POST", "/large", large))
+        log.record(request("POST", "/small", "small"))
+
+        then:
+        assert log.collect()*.utf8Body == ["small", large, "small"]
+
+        cleanup:
+        log.delete()
+    }
+
+    def "find, should only return the requests matching the method and path"() {
+        given:
+        def log = new RequestLog(directory, 1024)
+        (1..30).each { log.record(request(it % 3 == 0 ? "DELETE" : "GET", "/r${it % 2}")) }
+
+        expect:
+        assert log.find("DELETE", "/r1").collect().size() == 5
+        assert log.find("GET", null).collect().size() == 20
+        assert log.find(null, "/r0").collect().size() == 15
+        assert log.find("GE", "/r0").collect().isEmpty()
+
+        cleanup:
+        log.delete()
+    }
+
+    def "iterator, should not include the requests recorded afterwards"() {
+        given:
+        def log = new RequestLog(directory, 1024)
+        log.record(request("GET", "/before"))
+
+        when:
+        def iterator = log.iterator()
+        log.record(request("GET", "/after"))
+
+        then:
+        assert iterator.collect()*.path == ["/before"]
+
+        cleanup:
+        log.delete()
+    }
+
+    def "take, should return each request once in order across segments"() {
+        given:
+        def log = new RequestLog(directory, 1024)
+        (1..50).each { log.record(request("GET", "/r$it")) }
+
+        expect:
+        assert (1..50).collect { log.take().path } == (1..50).collect { "/r$it" }
+        assert log.take(10, TimeUnit.MILLISECONDS) == null
+
+        when:
+        log.record(request("GET", "/r51"))
+
+        then:
+        assert log.take(1, TimeUnit.SECONDS).path == "/r51"
+
+        cleanup:
+        log.delete()
+    }
+
+    def "close, should keep the segments so that they can be read"() {
+        given:
+        def log = new RequestLog(directory, 1024)
+        (1..20).each { log.record(request("GET", "/r$it")) }
+        def requests = log.find("GET", "/r20")
+
+        when:
+        log.close()
+
+        then:
+        assert requests.collect()*.path == ["/r20"]
+        assert Files.list(directory).count() > 0
+
+        when:
+        log.delete()
+
+        then:
+        assert Files.list(directory).count() == 0
+    }
+
+    private static RecordedRequest request(String method, String path, String body = "", Headers headers = Headers.of()) {
+        def buffer = new Buffer().writeUtf8(body)
+        return new RecordedRequest("$method $path HTTP/1.1", headers, [], buffer.size(), buffer, 0, new Socket())
+    }
+}
@@ -0,0 +1,200 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.replay
+
+import io.fabric8.mockwebserver.DefaultMockServer
+import io.fabric8.mockwebserver.ServerRequest
+import io.fabric8.mockwebserver.ServerResponse
+import io.fabric8.mockwebserver.dsl.HttpMethod
+import io.fabric8.mockwebserver.internal.SimpleRequest
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.Path
+
+class HarLoaderTest extends Specification {
+
+    static final String HAR = '''
+{
+  "log": {
+    "version": "1.2",
+    "creator": {"name": "test", "version": "1.0"},
+    "pages": [{"id": "page_1", "title": "test"}],
+    "entries": [
+      {
+        "startedDateTime": "2021-01-01T00:00:00.000Z",
+        "request": {"method": "GET", "url": "https://example.com/api/v1/users?limit=1#ignored", "headers": []},
+        "response": {
+          "status": 200,
+          "headers": [
+            {"name": "Content-Type", "value": "application/json"},
+            {"name": "Content-Length", "value": "999"}
+          ],
+          "content": {"size": 13, "mimeType": "application/json", "text": "{\\"users\\":[]}"}
+        },
+        "timings": {"wait": 10}
+      },
+      {
+        "request": {"method": "GET", "url": "https://example.com/api/v1/users?limit=1"},
+        "response": {"status": 200, "headers": [{"name": "Content-Type", "value": "application/json"}], "content": {"text": "{\\"users\\":[]}"}}
+      },
+      {
+        "request": {"method": "GET", "url": "https://example.com/api/v1/users?limit=1"},
+        "response": {"status": 500, "headers": [], "content": {"text": "boom"}}
+      },
+      {
+        "request": {"method": "POST", "url": "https://example.com/api/v1/users"},
+        "response": {
+          "status": 201,
+          "headers": [{"name": "Transfer-Encoding", "value": "chunked"}],
+          "content": {"text": "Y3JlYXRlZA==", "encoding": "base64"}
+        }
+      },
+      {
+        "request": {"method": "HEAD", "url": "https://example.com/api/v1/users"},
+        "response": {"status": 200, "headers": [], "content": {}}
+      }
+    ]
+  }
+}
+'''
+
+    @TempDir
+    Path directory
+
+    @Shared
+    OkHttpClient client = new OkHttpClient()
+
+    def "load, should group the entries by method and path"() {
+        given:
+        Map<ServerRequest, Queue<ServerResponse>> responses = new HashMap<>()
+
+        when:
+        def count = new HarLoader().load(new ByteArrayInputStream(HAR.getBytes(StandardCharsets.UTF_8)), responses)
+
+        then:
+        assert count == 4
+        assert responses.size() == 2
+        assert responses.get(new SimpleRequest(HttpMethod.GET, "/api/v1/users?limit=1")).size() == 2
+        assert responses.get(new SimpleRequest(HttpMethod.POST, "/api/v1/users")).size() == 1
+    }
+
+    def "load, should append the entries after the existing expectations"() {
+        given:
+        def server = new DefaultMockServer()
+        server.start()
+        server.expect().get().withPath("/api/v1/users?limit=1").andReturn(200, "existing").once()
+        def har = Files.write(directory.resolve("traffic.har"), HAR.getBytes(StandardCharsets.UTF_8))
+
+        when:
+        server.replay(har)
+        def bodies = (1..4).collect {
+            client.newCall(new Request.Builder().url(server.url("/api/v1/users?limit=1")).build()).execute().withCloseable {
+                "${it.code()} ${it.body().string()}"
+            }
+        }
+
+        then:
+        assert bodies == ["200 existing", "200 {\"users\":[]}", "200 {\"users\":[]}", "500 boom"]
+
+        cleanup:
+        server.shutdown()
+    }
+
+    def "load, should replay the recorded headers and chunked responses"() {
+        given:
+        def server = new DefaultMockServer()
+        server.start()
+        server.replay(Files.write(directory.resolve("traffic.har"), HAR.getBytes(StandardCharsets.UTF_8)))
+
+        when:
+        def get = client.newCall(new Request.Builder().url(server.url("/api/v1/users?limit=1")).build()).execute()
+        def post = client.newCall(new Request.Builder().url(server.url("/api/v1/users"))
+            .post(okhttp3.RequestBody.create(null, "")).build()).execute()
+
+        then:
+        assert get.header("Content-Type") == "application/json"
+        assert get.header("Content-Length") == "12"
+        assert post.code() == 201
+        assert post.header("Transfer-Encoding") == "chunked"
+        assert post.body().string() == "created"
+
+        cleanup:
+        get.close()
+        post.close()
+        server.shutdown()
+    }
+
+    def "load, should replay base64 encoded bodies as the decoded bytes"() {
+        given:
+        byte[] image = [0x89, 0x50, 0x4e, 0x47, 0x00, 0xff, 0xfe, 0x80] as byte[]
+        String har = """{"log":{"entries":[{"request":{"method":"GET","url":"https://example.com/logo.png"},
+            "response":{"status":200,"headers":[{"name":"Content-Type","value":"image/png"}],
+            "content":{"text":"${Base64.getEncoder().encodeToString(image)}","encoding":"base64"}}}]}}"""
+        def server = new DefaultMockServer()
+        server.start()
+        server.replay(Files.write(directory.resolve("binary.har"), har.getBytes(StandardCharsets.UTF_8)))
+
+        when:
+        def response = client.newCall(new Request.Builder().url(server.url("/logo.png")).build()).execute()
+
+        then:
+        assert response.header("Content-Type") == "image/png"
+        assert response.body().bytes() == image
+
+        cleanup:
+        server.shutdown()
+    }
+
+    def "load, with many entries, should load them all"() {
+        given:
+        def har = new StringBuilder('{"log":{"entries":[')
+        (0..<100_000).each {
+            if (it > 0) {
+                har.append(',')
+            }
+            har.append('{"request":{"method":"GET","url":"http://localhost/api/v1/items/').append(it % 1000)
+                .append('"},"response":{"status":200,"headers":[],"content":{"text":"item-').append(it).append('"}}}')
+        }
+        har.append(']}}')
+        Map<ServerRequest, Queue<ServerResponse>> responses = new HashMap<>()
+
+        when:
+        def count = new HarLoader().load(new ByteArrayInputStream(har.toString().getBytes(StandardCharsets.UTF_8)), responses)
+
+        then:
+        assert count == 100_000
+        assert responses.size() == 1000
+        assert responses.values().every { it.size() == 100 }
+    }
+
+    def "pathOf, should return the request target of the URL"() {
+        expect:
+        assert HarLoader.pathOf(url) == path
+
+        where:
+        url                                    | path
+        "https://example.com/api?x=1"          | "/api?x=1"
+        "https://example.com"                  | "/"
+        "http://example.com:8080/a/b#fragment" | "/a/b"
+        "/relative?q"                          | "/relative?q"
+    }
+}
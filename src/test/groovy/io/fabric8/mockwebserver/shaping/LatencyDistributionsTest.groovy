@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.shaping
+
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class LatencyDistributionsTest extends Specification {
+
+    def "fixed, should always return the same latency"() {
+        expect:
+        assert LatencyDistributions.fixed(5, TimeUnit.MILLISECONDS).nextNanos() == 5_000_000L
+    }
+
+    def "uniform, should return latencies within the bounds"() {
+        given:
+        def distribution = LatencyDistributions.uniform(10, 20, TimeUnit.MILLISECONDS)
+
+        when:
+        def samples = (1..10_000).collect { distribution.nextNanos() }
+
+        then:
+        assert samples.every { it >= 10_000_000L && it <= 20_000_000L }
+        assert samples.min() < 11_000_000L
+        assert samples.max() > 19_000_000L
+    }
+
+    def "normal, should return non negative latencies around the mean"() {
+        given:
+        def distribution = LatencyDistributions.normal(10, 10, TimeUnit.MILLISECONDS)
+
+        when:
+        def samples = (1..10_000).collect { distribution.nextNanos() }
+
+        then:
+        assert samples.every { it >= 0 }
+        assert samples.count { it == 0 } > 0
+        assert Math.abs(samples.sort()[5000] - 10_000_000L) < 1_000_000L
+    }
+
+    def "percentiles, should interpolate between the percentiles of the table"() {
+        given:
+        double[] points = [50, 90, 99]
+        long[] nanos = [20, 80, 300]
+
+        expect:
+        assert LatencyDistributions.interpolate(points, nanos, percentile) == expected
+
+        where:
+        percentile | expected
+        10         | 20
+        50         | 20
+        70         | 50
+        90         | 80
+        99.5       | 300
+    }
+
+    def "percentiles, should follow the distribution of the table"() {
+        given:
+        double[] points = [50, 90, 99]
+        long[] nanos = [20_000_000L, 80_000_000L, 300_000_000L]
+        def distribution = LatencyDistributions.percentiles(TimeUnit.NANOSECONDS, points, nanos)
+        def size = 10_000
+        // the rank of the 90th percentile sample has a standard deviation of sqrt(n * p * (1 - p)), allow 5 of them
+        def margin = 5 * Math.sqrt(size * 0.9 * 0.1) / size * 100
+
+        when:
+        def samples = (1..size).collect { distribution.nextNanos() }.sort()
+
+        then:
+        assert samples[0] == 20_000_000L
+        assert samples[9000] >= LatencyDistributions.interpolate(points, nanos, 90 - margin)
+        assert samples[9000] <= LatencyDistributions.interpolate(points, nanos, 90 + margin)
+        assert samples[-1] == 300_000_000L
+    }
+
+    def "percentiles, with an invalid table, should throw an exception"() {
+        when:
+        LatencyDistributions.percentiles(TimeUnit.MILLISECONDS, points as double[], latencies as long[])
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        points       | latencies
+        []           | []
+        [50, 90]     | [20]
+        [90, 50]     | [20, 80]
+        [50, 90]     | [80, 20]
+        [0, 90]      | [20, 80]
+        [50, 101]    | [20, 80]
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.tls
+
+import spock.lang.Shared
+import spock.lang.Specification
+
+class CertificateAuthorityTest extends Specification {
+
+    @Shared
+    CertificateAuthority authority = new CertificateAuthority()
+
+    def "getCertificate, should return a self-signed certificate authority"() {
+        when:
+        def certificate = authority.certificate
+
+        then:
+        certificate.verify(certificate.publicKey)
+        certificate.checkValidity()
+        assert certificate.subjectX500Principal.name == "CN=fabric8 mockwebserver CA"
+        assert certificate.issuerX500Principal == certificate.subjectX500Principal
+        assert certificate.basicConstraints == Integer.MAX_VALUE
+        assert certificate.keyUsage[5]
+        assert certificate.publicKey.algorithm == "EC"
+    }
+
+    def "issue, with a host name, should issue a trusted server certificate for the host"() {
+        when:
+        def entry = authority.issue("api.example.com")
+        def chain = entry.certificateChain
+
+        then:
+        chain[0].verify(authority.certificate.publicKey)
+        assert chain[1] == authority.certificate
+        assert chain[0].subjectX500Principal.name == "CN=api.example.com"
+        assert chain[0].issuerX500Principal == authority.certificate.subjectX500Principal
+        assert chain[0].subjectAlternativeNames.collect { it } == [[2, "api.example.com"]]
+        assert chain[0].extendedKeyUsage == ["1.3.6.1.5.5.7.3.1"]
+        assert chain[0].basicConstraints == -1
+        assert entry.privateKey.algorithm == "EC"
+        authority.trustManager.checkServerTrusted(chain, "ECDHE_ECDSA")
+    }
+
+    def "issue, with an IP address, should issue a certificate for the address"() {
+        expect:
+        assert authority.issue("10.0.0.1").certificateChain[0].subjectAlternativeNames.collect { it } == [[7, "10.0.0.1"]]
+    }
+
+    def "issue, with localhost, should include the loopback address"() {
+        expect:
+        assert authority.issue("localhost").certificateChain[0].subjectAlternativeNames.collect { it } ==
+            [[2, "localhost"], [7, InetAddress.getLoopbackAddress().hostAddress]]
+    }
+
+    def "issue, from another authority, should not be trusted"() {
+        given:
+        def chain = new CertificateAuthority("other").issue("api.example.com").certificateChain
+
+        when:
+        authority.trustManager.checkServerTrusted(chain, "ECDHE_ECDSA")
+
+        then:
+        thrown(java.security.cert.CertificateException)
+    }
+
+    def "oid, should encode the arcs in base 128"() {
+        expect:
+        assert Der.oid("1.2.840.10045.4.3.2").encodeHex().toString() == "06082a8648ce3d040302"
+    }
+
+    def "tlv, with long content, should encode the length in the long form"() {
+        expect:
+        assert Der.tlv(Der.OCTET_STRING, new byte[length]).encodeHex().toString().take(prefix.size()) == prefix
+
+        where:
+        length | prefix
+        127    | "047f"
+        128    | "048180"
+        256    | "04820100"
+        65536  | "0483010000"
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.tls
+
+import spock.lang.Specification
+
+class SniKeyManagerTest extends Specification {
+
+    def "getEntry, should issue the certificate of each host once"() {
+        given:
+        def keyManager = new SniKeyManager(new CertificateAuthority(), "localhost", 16)
+
+        when:
+        def first = keyManager.getEntry("api.example.com")
+
+        then:
+        assert keyManager.getEntry("API.example.com").is(first)
+        assert keyManager.getCertificateChain("api.example.com")[0] == first.certificateChain[0]
+        assert keyManager.getPrivateKey("api.example.com") == first.privateKey
+        assert keyManager.size() == 1
+    }
+
+    def "getEntry, when the cache is full, should evict the least recently used certificate"() {
+        given:
+        def keyManager = new SniKeyManager(new CertificateAuthority(), "localhost", 2)
+        def a = keyManager.getEntry("a.example.com")
+        def b = keyManager.getEntry("b.example.com")
+
+        when:
+        keyManager.getEntry("a.example.com")
+        keyManager.getEntry("c.example.com")
+
+        then:
+        assert keyManager.size() == 2
+        assert keyManager.getEntry("a.example.com").is(a)
+        assert !keyManager.getEntry("b.example.com").is(b)
+    }
+
+    def "chooseServerAlias, with a non EC key type, should return null"() {
+        expect:
+        assert new SniKeyManager(new CertificateAuthority(), "localhost", 1).chooseServerAlias("RSA", null, null) == null
+    }
+}
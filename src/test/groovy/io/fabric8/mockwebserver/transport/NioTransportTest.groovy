@@ -0,0 +1,308 @@
+/**
+ * Copyright (C) 2015 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mockwebserver.transport
+
+import io.fabric8.mockwebserver.Context
+import io.fabric8.mockwebserver.DefaultMockServer
+import io.fabric8.mockwebserver.JsonResponseComposer
+import io.fabric8.mockwebserver.UserAttributeExtractor
+import io.fabric8.mockwebserver.crud.CrudDispatcher
+import io.fabric8.mockwebserver.journal.RequestJournal
+import io.fabric8.mockwebserver.shaping.LatencyDistributions
+import io.fabric8.mockwebserver.shaping.ShapingProfile
+import okhttp3.MediaType
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.RequestBody
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.QueueDispatcher
+import okhttp3.mockwebserver.RecordedRequest
+import okhttp3.mockwebserver.SocketPolicy
+import okio.BufferedSink
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class NioTransportTest extends Specification {
+
+    @Shared
+    OkHttpClient client = new OkHttpClient.Builder().retryOnConnectionFailure(false).build()
+
+    DefaultMockServer server
+
+    def setup() {
+        server = new DefaultMockServer(new NioTransport())
+        server.start()
+    }
+
+    def cleanup() {
+        server.shutdown()
+    }
+
+    def "expect, should be served by the NIO transport"() {
+        given:
+        server.expect().get().withPath("/api/v1/users").andReturn(200, "users").once()
+
+        when:
+        def first = get("/api/v1/users")
+        def second = get("/api/v1/users")
+
+        then:
+        assert first.code() == 200
+        assert first.body().string() == "users"
+        assert second.code() == 404
+        assert server.getRequestCount() == 2
+        assert server.takeRequest().getPath() == "/api/v1/users"
+    }
+
+    def "requests, with fixed length and chunked bodies, should be read"() {
+        given:
+        server.expect().post().withPath("/api/v1/users").andReply(201, { req -> req.getBody().readUtf8() }).always()
+        def chunked = new RequestBody() {
+            @Override
+            MediaType contentType() {
+                return MediaType.get("text/plain")
+            }
+
+            @Override
+            void writeTo(BufferedSink sink) {
+                sink.writeUtf8("first,").flush()
+                sink.writeUtf8("second").flush()
+            }
+        }
+
+        when:
+        def fixed = post("/api/v1/users", RequestBody.create(MediaType.get("text/plain"), "fixed length"))
+        def streamed = post("/api/v1/users", chunked)
+
+        then:
+        assert fixed.body().string() == "fixed length"
+        assert streamed.body().string() == "first,second"
+        assert server.takeRequest().getChunkSizes().isEmpty()
+        def chunkedRequest = server.takeRequest()
+        assert chunkedRequest.getHeader("Transfer-Encoding") == "chunked"
+        assert chunkedRequest.getBodySize() == 12
+    }
+
+    def "requests, on a kept alive connection, should be served in sequence"() {
+        given:
+        server.expect().get().withPath("/api/v1/users").andReturn(200, "users").always()
+
+        when:
+        (1..3).each { get("/api/v1/users").body().string() }
+
+        then:
+        assert (1..3).collect { server.takeRequest().getSequenceNumber() } == [0, 1, 2]
+    }
+
+    def "head request, should not send the body"() {
+        given:
+        def bodies = new DefaultMockServer(new Context(), new NioTransport(), new HashMap<>(), new Dispatcher() {
+            @Override
+            MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setBody("users")
+            }
+        }, false)
+        bodies.start()
+
+        when:
+        def head = client.newCall(new Request.Builder().url(bodies.url("/api/v1/users")).head().build()).execute()
+        def body = client.newCall(new Request.Builder().url(bodies.url("/api/v1/users")).get().build()).execute().body().string()
+
+        then:
+        assert head.code() == 200
+        assert head.header("Content-Length") == "5"
+        assert body == "users"
+        assert bodies.takeRequest().getSequenceNumber() == 0
+        assert bodies.takeRequest().getSequenceNumber() == 1
+
+        cleanup:
+        bodies.shutdown()
+    }
+
+    def "shape, with latency and throttle, should delay the headers and limit the body bandwidth"() {
+        given:
+        server.expect().get().shape(ShapingProfile.create()
+            .withLatency(LatencyDistributions.fixed(300, TimeUnit.MILLISECONDS))
+            .withThrottle(100, 50, TimeUnit.MILLISECONDS))
+            .withPath("/api/v1/shaped").andReturn(200, "x" * 1000).once()
+
+        when:
+        def start = System.nanoTime()
+        def response = get("/api/v1/shaped")
+        def headers = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+        def body = response.body().string()
+        def elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+
+        then:
+        assert body.length() == 1000
+        assert headers >= 300
+        assert elapsed >= 300 + 9 * 50
+    }
+
+    def "shape, with chunk pacing, should send one chunk per period"() {
+        given:
+        server.expect().get().shape(ShapingProfile.create().withChunkPacing(200, TimeUnit.MILLISECONDS))
+            .withPath("/api/v1/paced").andReturnChunked(200, "a", "bb" * 100, "ccc").always()
+
+        when:
+        def start = System.nanoTime()
+        def response = get("/api/v1/paced")
+        def source = response.body().source()
+        def reads = []
+        def buffer = new okio.Buffer()
+        while (source.read(buffer, 8192) != -1) {
+            reads << [TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), buffer.readUtf8()]
+        }
+
+        then:
+        assert reads.collect { it[1] }.join() == "a" + "bb" * 100 + "ccc"
+        assert reads.find { it[1].startsWith("b") }[0] >= 150
+        assert reads.find { it[1] == "ccc" }[0] >= 350
+
+        cleanup:
+        response.close()
+    }
+
+    def "CrudDispatcher, should run on the NIO transport"() {
+        given:
+        def crud = new DefaultMockServer(new Context(), new NioTransport(), new HashMap<>(),
+            new CrudDispatcher(new Context(), new UserAttributeExtractor(), new JsonResponseComposer()), false)
+        crud.start()
+
+        when:
+        def created = client.newCall(new Request.Builder().url(crud.url("/")).post(RequestBody.create(MediaType.get("application/json"),
+            "{\"id\":1,\"username\":\"user\",\"enabled\":true}")).build()).execute()
+        def item = client.newCall(new Request.Builder().url(crud.url("/1")).get().build()).execute()
+
+        then:
+        assert created.code() == 202
+        assert item.body().string() == "{\"id\":1,\"username\":\"user\",\"enabled\":true}"
+
+        cleanup:
+        crud.shutdown()
+    }
+
+    def "socket policy, disconnect after request, should close the connection"() {
+        given:
+        def disconnecting = new DefaultMockServer(new Context(), new NioTransport(), new HashMap<>(), new Dispatcher() {
+            @Override
+            MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST)
+            }
+        }, false)
+        disconnecting.start()
+
+        when:
+        client.newCall(new Request.Builder().url(disconnecting.url("/")).get().build()).execute()
+
+        then:
+        thrown(IOException)
+        assert disconnecting.getRequestCount() == 1
+
+        cleanup:
+        disconnecting.shutdown()
+    }
+
+    def "socket policy, disconnect at start, should close the connection before reading the request"() {
+        given:
+        def queue = new QueueDispatcher()
+        queue.enqueueResponse(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START))
+        queue.enqueueResponse(new MockResponse().setBody("served"))
+        def disconnecting = new DefaultMockServer(new Context(), new NioTransport(), new HashMap<>(), queue, false)
+        disconnecting.start()
+        def socket = new Socket("localhost", disconnecting.getPort())
+        socket.setSoTimeout(10_000)
+
+        when: "nothing is written to the connection"
+        def read = socket.getInputStream().read()
+
+        then:
+        assert read == -1
+
+        when:
+        def response = client.newCall(new Request.Builder().url(disconnecting.url("/")).get().build()).execute()
+
+        then:
+        assert response.body().string() == "served"
+        assert disconnecting.getRequestCount() == 2
+
+        cleanup:
+        socket?.close()
+        disconnecting.shutdown()
+    }
+
+    def "useRequestJournal, should drain the transport queue"() {
+        given:
+        def journaled = new DefaultMockServer(new NioTransport())
+        journaled.useRequestJournal(new RequestJournal(2))
+        journaled.start()
+        journaled.expect().get().withPath("/api/v1/users").andReturn(200, "users").always()
+
+        when:
+        (1..3).each {
+            client.newCall(new Request.Builder().url(journaled.url("/api/v1/users")).get().build()).execute().close()
+        }
+
+        then:
+        assert journaled.getRequestCount() == 3
+        assert journaled.getRequestJournal().size() == 2
+        assert journaled.takeRequest().getPath() == "/api/v1/users"
+
+        cleanup:
+        journaled.shutdown()
+    }
+
+    def "idle connections, should not hold a thread each"() {
+        given:
+        server.expect().get().withPath("/api/v1/users").andReturn(200, "users").always()
+        def threads = Thread.activeCount()
+
+        when:
+        def sockets = (1..200).collect {
+            def socket = new Socket(server.getHostName(), server.getPort())
+            socket.getOutputStream().write("GET /api/v1/users HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes())
+            def reader = new BufferedReader(new InputStreamReader(socket.getInputStream()))
+            assert reader.readLine() == "HTTP/1.1 200 OK"
+            socket
+        }
+
+        then:
+        assert server.getRequestCount() == 200
+        assert Thread.activeCount() - threads < 20
+
+        cleanup:
+        sockets*.close()
+    }
+
+    def "HTTPS, should require the MockWebServer transport"() {
+        when:
+        new DefaultMockServer(new Context(), new NioTransport(), new HashMap<>(), true)
+
+        then:
+        thrown(IllegalStateException)
+    }
+
+    private def get(String path) {
+        return client.newCall(new Request.Builder().url(server.url(path)).get().build()).execute()
+    }
+
+    private def post(String path, RequestBody body) {
+        return client.newCall(new Request.Builder().url(server.url(path)).post(body).build()).execute()
+    }
+}